@@ -15,9 +15,7 @@ import dbs_project.queryImpl.QueryLayerImpl;
 import dbs_project.storage.StorageLayer;
 import dbs_project.storageImpl.StorageLayerImpl;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -90,11 +88,12 @@ public class DatabaseImpl implements Database {
         List<IndexableTable> tableList = new ArrayList<>();
 
         for (File tempFile : listOfFile) {
-            FileInputStream in = new FileInputStream(tempFile);
-            ObjectInputStream ins = new ObjectInputStream(in);
+            if (PersistenceLayerimpl.isPartitionFile(tempFile)) {
+                continue;
+            }
 
             try {
-                tableList.add((IndexableTable) ins.readObject());
+                tableList.add(PersistenceLayerimpl.readTable(tempFile));
             } catch (ClassNotFoundException ex) {
                 throw new IOException();
             }
@@ -21,6 +21,7 @@ import dbs_project.exceptions.InvalidRangeException;
 import dbs_project.exceptions.RangeQueryNotSupportedException;
 import dbs_project.storage.RowCursor;
 import dbs_project.util.IdCursor;
+import dbs_project.util.MemoryAccountable;
 import dbs_project.util.annotation.NotNull;
 import dbs_project.util.annotation.Nullable;
 
@@ -37,7 +38,7 @@ import dbs_project.util.annotation.Nullable;
  * <p/>
  * The index must be dropped automatically if its column or table is dropped.
  */
-public interface Index {
+public interface Index extends MemoryAccountable {
 
     //Minimal bound for a range query
     public static final Object MINIMUM_SEARCH_KEY = new Object();
@@ -49,4 +49,9 @@ public interface IndexLayer extends StorageLayer {
      */    
     @NotNull
     Collection<IndexableTable> getIndexableTables();
+
+    /**
+     * @return Estimated number of bytes retained by the indexes of all tables
+     */
+    long getIndexMemoryUsage();
 }
@@ -20,6 +20,7 @@ import dbs_project.exceptions.IndexAlreadyExistsException;
 import dbs_project.exceptions.NoSuchColumnException;
 import dbs_project.exceptions.NoSuchIndexException;
 import dbs_project.storage.Table;
+import dbs_project.util.MemoryAccountable;
 import dbs_project.util.annotation.NotNull;
 
 import java.util.Collection;
@@ -37,7 +38,7 @@ import java.util.Collection;
  * extend your existing Table implementation by replacing the "extends Table"
  * with "extends IndexableTable".
  */
-public interface IndexableTable extends Table {
+public interface IndexableTable extends Table, MemoryAccountable {
 
     /**
      * Create a new index of the given type for one column of the table. Once
@@ -91,4 +92,9 @@ public interface IndexableTable extends Table {
      */
     @NotNull
     Index getIndex(int indexId) throws NoSuchIndexException;
+
+    /**
+     * @return Estimated number of bytes of the bitmap of live rows
+     */
+    long getDeleteListMemoryUsage();
 }
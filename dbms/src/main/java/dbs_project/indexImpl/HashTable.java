@@ -4,14 +4,19 @@ package dbs_project.indexImpl;
  *
  * @author Dilip
  */
+import dbs_project.storage.DoubleColumnView;
 import dbs_project.storage.ExtendedColumn;
+import dbs_project.storage.IntColumnView;
+import dbs_project.storageImpl.ColumnImpl;
 import dbs_project.utilImpl.BooleanArrayList;
+import dbs_project.utilImpl.MemoryEstimator;
+import dbs_project.utilImpl.StringArenaList;
 import java.util.*;
 import org.apache.commons.collections.primitives.ArrayIntList;
 
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
-import org.apache.commons.collections.primitives.ArrayDoubleList;
+import org.apache.commons.collections.primitives.LongList;
 
 public class HashTable {
 
@@ -56,8 +61,22 @@ public class HashTable {
             rehash();
         }
 
-        int index = getIndex(element, size);
+        return insert(element, getIndex(element, size), rowID);
+    }
+
+    /**
+     * Adds a string whose CRC32 is already known, the bucket is the one
+     * getIndex would compute.
+     */
+    private boolean addString(String element, long crc, int rowID) {
+        if (elementCounter >= (0.8 * bucketLists.length)) {
+            rehash();
+        }
+
+        return insert(element, (int) (crc % size), rowID);
+    }
 
+    private boolean insert(Object element, int index, int rowID) {
         boolean isElementPresent = isElement(element, index);
 
         if (bucketLists[index] == null) {
@@ -74,38 +93,69 @@ public class HashTable {
         return isElementPresent;
     }
 
-    public int bLoadInt(ExtendedColumn keyColumn, BitSet delList) {
-        ArrayIntList entries = (ArrayIntList) keyColumn.getData();
-        int colCur = delList.nextSetBit(0);
-        int x = 0;
+    /**
+     * Estimates the bytes of the table holding keyCount distinct keys. Every
+     * element costs a node, its key and a slot of its bucket list, distinct
+     * keys spread over the buckets. Key sizes are sampled, string keys are
+     * only counted if they are not the column's own instances.
+     */
+    public long getMemoryUsage(long keyCount, boolean countStrings) {
+        double length = bucketLists.length;
+        long usedBuckets = (long) (length * (1 - Math.exp(-keyCount / length)));
+        long bucketBytes = MemoryEstimator.array(bucketLists.length, MemoryEstimator.REFERENCE)
+                + usedBuckets * (MemoryEstimator.object(MemoryEstimator.REFERENCE + 8) + MemoryEstimator.array(10, MemoryEstimator.REFERENCE));
+        long nodeBytes = MemoryEstimator.object(MemoryEstimator.REFERENCE + 4) + MemoryEstimator.REFERENCE;
+        return MemoryEstimator.object(MemoryEstimator.REFERENCE + 8) + bucketBytes + elementCounter * nodeBytes + sampleKeyBytes(countStrings);
+    }
 
-        while (colCur != -1) {
-            boolean isDuplicate = add(entries.get(colCur), colCur + 1);
-            if (!isDuplicate) {
-                x++;
+    private long sampleKeyBytes(boolean countStrings) {
+        List<Object> keys = new ArrayList<>();
+        for (int i = 0; i < bucketLists.length && keys.size() < MemoryEstimator.SAMPLE_SIZE; i++) {
+            if (bucketLists[i] != null && !bucketLists[i].isEmpty()) {
+                Object key = ((Node) bucketLists[i].get(0)).getData();
+                keys.add(key instanceof String && !countStrings ? null : key);
             }
-            colCur = delList.nextSetBit(colCur + 1);
         }
-        return x;
+
+        return keys.isEmpty() ? 0 : MemoryEstimator.sampledValues(keys) * elementCounter / keys.size();
+    }
+
+    public int bLoadInt(ExtendedColumn keyColumn, BitSet delList) {
+        final int[] x = new int[1];
+
+        keyColumn.getIntView().forEach(delList, new IntColumnView.Visitor() {
+            @Override
+            public void visit(int position, int value) {
+                boolean isDuplicate = add(value, position + 1);
+                if (!isDuplicate) {
+                    x[0]++;
+                }
+            }
+        });
+        return x[0];
     }
 
     public int bLoadDouble(ExtendedColumn keyColumn, BitSet delList) {
-        ArrayDoubleList entries = (ArrayDoubleList) keyColumn.getData();
-        int colCur = delList.nextSetBit(0);
-        int x = 0;
+        final int[] x = new int[1];
 
-        while (colCur != -1) {
-            boolean isDuplicate = add(entries.get(colCur), colCur + 1);
-            if (!isDuplicate) {
-                x++;
+        keyColumn.getDoubleView().forEach(delList, new DoubleColumnView.Visitor() {
+            @Override
+            public void visit(int position, double value) {
+                boolean isDuplicate = add(value, position + 1);
+                if (!isDuplicate) {
+                    x[0]++;
+                }
             }
-            colCur = delList.nextSetBit(colCur + 1);
-        }
-        return x;
+        });
+        return x[0];
     }
 
     public int bLoadString(ExtendedColumn keyColumn, BitSet delList) {
-        ArrayList entries = (ArrayList) keyColumn.getData();
+        if (keyColumn.getData() instanceof StringArenaList) {
+            return bLoadArena((StringArenaList) keyColumn.getData(), delList);
+        }
+
+        List entries = (List) keyColumn.getData();
         int colCur = delList.nextSetBit(0);
         int x = 0;
 
@@ -126,6 +176,29 @@ public class HashTable {
         return x;
     }
 
+    /**
+     * Loads a string column kept in byte arenas. Buckets are computed from
+     * the bytes in the arena, the String is only built as the node's key.
+     */
+    private int bLoadArena(StringArenaList entries, BitSet delList) {
+        int colCur = delList.nextSetBit(0);
+        int x = 0;
+
+        while (colCur != -1) {
+            boolean isDuplicate;
+            if (entries.isNull(colCur)) {
+                isDuplicate = add("NaN", colCur + 1);
+            } else {
+                isDuplicate = addString(entries.get(colCur), entries.crc32(colCur), colCur + 1);
+            }
+            if (!isDuplicate) {
+                x++;
+            }
+            colCur = delList.nextSetBit(colCur + 1);
+        }
+        return x;
+    }
+
     public int bLoadBoolean(ExtendedColumn keyColumn, BitSet delList) {
         BooleanArrayList entries = (BooleanArrayList) keyColumn.getData();
         int colCur = delList.nextSetBit(0);
@@ -142,12 +215,12 @@ public class HashTable {
     }
 
     public int bLoadDate(ExtendedColumn keyColumn, BitSet delList) {
-        ArrayList entries = (ArrayList) keyColumn.getData();
+        LongList entries = (LongList) keyColumn.getData();
         int colCur = delList.nextSetBit(0);
         int x = 0;
 
         while (colCur != -1) {
-            if (entries.get(colCur) != null) {
+            if (entries.get(colCur) != ColumnImpl.NULL_DATE) {
                 boolean isDuplicate = add(entries.get(colCur), colCur + 1);
                 if (!isDuplicate) {
                     x++;
@@ -186,7 +259,7 @@ public class HashTable {
 
             if (element == null) {
                 for (int i = 0; i < bucket.size(); i++) {
-                    if (((String) ((Node) bucket.get(i)).getData()).equals("NaN")) {
+                    if ("NaN".equals(((Node) bucket.get(i)).getData())) {
                         list.add(((Node) bucket.get(i)).getRowID());
                     }
                 }
@@ -208,6 +281,12 @@ public class HashTable {
                         list.add(((Node) bucket.get(i)).getRowID());
                     }
                 }
+            } else if (element instanceof Long) {
+                for (int i = 0; i < bucket.size(); i++) {
+                    if (((Node) bucket.get(i)).getData().equals(element)) {
+                        list.add(((Node) bucket.get(i)).getRowID());
+                    }
+                }
             } else if (element instanceof Date) {
                 for (int i = 0; i < bucket.size(); i++) {
                     if (((Date) ((Node) bucket.get(i)).getData()).equals((Date) element)) {
@@ -232,7 +311,7 @@ public class HashTable {
         if (bucket != null) {
             if (element == null) {
                 for (int i = 0; i < bucket.size(); i++) {
-                    if (((String) ((Node) bucket.get(i)).getData()).equals("NaN")) {
+                    if ("NaN".equals(((Node) bucket.get(i)).getData())) {
                         return true;
                     }
                 }
@@ -254,6 +333,12 @@ public class HashTable {
                         return true;
                     }
                 }
+            } else if (element instanceof Long) {
+                for (int i = 0; i < bucket.size(); i++) {
+                    if (((Node) bucket.get(i)).getData().equals(element)) {
+                        return true;
+                    }
+                }
             } else if (element instanceof Date) {
                 for (int i = 0; i < bucket.size(); i++) {
                     if (((Date) ((Node) bucket.get(i)).getData()).equals((Date) element)) {
@@ -304,11 +389,26 @@ public class HashTable {
 
     private long getCrc(String value) {
         Checksum checksum = new CRC32();
-        byte bytes[] = value.getBytes();
+        byte bytes[] = StringArenaList.encode(value);
         checksum.update(bytes, 0, bytes.length);
         return checksum.getValue();
     }
 
+    /**
+     * Mixes all bits of a long key into a non negative int. DATE keys are
+     * epoch millis, multiples of 1000 or of a whole day, and the table size
+     * is a multiple of 1000, so the key itself would fill only a few buckets.
+     */
+    private static int spread(long key) {
+        //finalizer of MurmurHash3
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & Integer.MAX_VALUE;
+    }
+
     private int getIndex(Object element, int size) {
         int index = 0;
 
@@ -320,6 +420,8 @@ public class HashTable {
             index = (int) ((double) element % size);
         } else if (element instanceof String) {
             index = (int) (getCrc((String) element) % size);
+        } else if (element instanceof Long) {
+            index = spread((long) element) % size;
         } else if (element instanceof Date) {
             index = (int) (getCrc(element.toString()) % size);
         } else if (element instanceof Boolean) {
@@ -18,17 +18,22 @@ import dbs_project.util.IdCursor;
 import dbs_project.utilImpl.BPlusBoolTree;
 import dbs_project.utilImpl.BPlusDoubleTree;
 import dbs_project.utilImpl.BPlusIntTree;
+import dbs_project.utilImpl.BPlusLongTree;
 import dbs_project.utilImpl.BPlusTree;
 import dbs_project.utilImpl.BooleanArrayList;
 import dbs_project.utilImpl.IdCursorImpl;
+import dbs_project.utilImpl.MemoryEstimator;
+import dbs_project.utilImpl.StringArenaList;
 import java.text.ParseException;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.collections.primitives.ArrayDoubleList;
 import org.apache.commons.collections.primitives.ArrayIntList;
+import org.apache.commons.collections.primitives.LongList;
+import org.apache.commons.collections.primitives.IntList;
+import org.apache.commons.collections.primitives.DoubleList;
 
 /**
  *
@@ -43,33 +48,60 @@ public class IndexImpl implements Index {
     public IndexImpl(String indexName, ExtendedColumn keyColumn, IndexableTable table, IndexType indexType, int id) throws ParseException {
         this.indexMetaData = new IndexMetaInfoImpl(indexName, keyColumn, table, indexType, id);
         this.type = keyColumn.getMetaData().getType();
+        load(keyColumn, table, indexType);
+    }
+
+    /**
+     * Loads the index again from its key column, after the table moved or
+     * replaced its rows. The index keeps its identity, so callers holding it
+     * find the rows by their new ids.
+     */
+    public void rebuild() throws ParseException {
+        IndexMetaInfo info = indexMetaData;
+        indexMetaData = new IndexMetaInfoImpl(info.getName(), info.getKeyColumn(), info.getTable(), info.getIndexType(), info.getId());
+        load((ExtendedColumn) info.getKeyColumn(), info.getTable(), info.getIndexType());
+    }
+
+    /**
+     * Rows of the key column that are indexed: the live rows, without the
+     * nulls of INTEGER, DOUBLE and BOOLEAN columns, see ColumnImpl.isIndexed.
+     */
+    private BitSet indexedRows(ExtendedColumn keyColumn, IndexableTable table) {
+        if (type == Type.INTEGER || type == Type.DOUBLE || type == Type.BOOLEAN) {
+            return keyColumn.getValidRows();
+        }
+        return ((TableMetaDataImpl) table.getTableMetaData()).getDeleteList();
+    }
+
+    private void load(ExtendedColumn keyColumn, IndexableTable table, IndexType indexType) throws ParseException {
+        BitSet rows = indexedRows(keyColumn, table);
         int incCounter;
         switch (indexType) {
             case HASH:
                 switch (keyColumn.getMetaData().getType()) {
                     case INTEGER:
                         structure = new HashTable();
-                        incCounter = ((HashTable) structure).bLoadInt(keyColumn, ((TableMetaDataImpl) table.getTableMetaData()).getDeleteList());
+                        incCounter = ((HashTable) structure).bLoadInt(keyColumn, rows);
                         ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(incCounter);
                         break;
                     case DOUBLE:
                         structure = new HashTable();
-                        incCounter = ((HashTable) structure).bLoadDouble(keyColumn, ((TableMetaDataImpl) table.getTableMetaData()).getDeleteList());
+                        incCounter = ((HashTable) structure).bLoadDouble(keyColumn, rows);
                         ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(incCounter);
                         break;
                     case BOOLEAN:
                         structure = new HashTable();
-                        incCounter = ((HashTable) structure).bLoadBoolean(keyColumn, ((TableMetaDataImpl) table.getTableMetaData()).getDeleteList());
+                        incCounter = ((HashTable) structure).bLoadBoolean(keyColumn, rows);
                         ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(incCounter);
                         break;
                     case STRING:
                         structure = new HashTable();
-                        incCounter = ((HashTable) structure).bLoadString(keyColumn, ((TableMetaDataImpl) table.getTableMetaData()).getDeleteList());
+                        incCounter = ((HashTable) structure).bLoadString(keyColumn, rows);
                         ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(incCounter);
                         break;
                     case DATE:
                         structure = new HashTable();
-                        incCounter = ((HashTable) structure).bLoadDate(keyColumn, ((TableMetaDataImpl) table.getTableMetaData()).getDeleteList());
+                        incCounter = ((HashTable) structure).bLoadDate(keyColumn, rows);
                         ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(incCounter);
                         break;
                     case OBJECT:
@@ -82,31 +114,30 @@ public class IndexImpl implements Index {
                 switch (keyColumn.getMetaData().getType()) {
                     case INTEGER:
                         structure = new BPlusIntTree();
-                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusIntTree) structure).bulkLoad((ArrayIntList) keyColumn.getData()));
+                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusIntTree) structure).bulkLoad((IntList) keyColumn.getData(), rows));
                         break;
                     case DOUBLE:
                         structure = new BPlusDoubleTree();
-                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusDoubleTree) structure).bulkLoad((ArrayDoubleList) keyColumn.getData()));
+                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusDoubleTree) structure).bulkLoad((DoubleList) keyColumn.getData(), rows));
                         break;
                     case BOOLEAN:
                         structure = new BPlusBoolTree();
-                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusBoolTree) structure).bulkLoad((BooleanArrayList) keyColumn.getData()));
+                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusBoolTree) structure).bulkLoad((BooleanArrayList) keyColumn.getData(), rows));
                         break;
                     case STRING:
                         structure = new BPlusTree(Type.STRING);
-                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusTree) structure).bulkLoad((ArrayList) keyColumn.getData()));
+                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusTree) structure).bulkLoad((List) keyColumn.getData(), rows));
                         break;
                     case DATE:
-                        structure = new BPlusTree(Type.DATE);
-                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusTree) structure).bulkLoad((ArrayList) keyColumn.getData()));
+                        structure = new BPlusLongTree();
+                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusLongTree) structure).bulkLoad((LongList) keyColumn.getData(), rows));
                         break;
                     case OBJECT:
                         structure = new BPlusTree();
-                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusTree) structure).bulkLoad((ArrayList) keyColumn.getData()));
+                        ((IndexMetaInfoImpl) indexMetaData).AddKeyCount(((BPlusTree) structure).bulkLoad((List) keyColumn.getData(), rows));
                 }
 
         }
-
     }
 
     @Override
@@ -134,7 +165,7 @@ public class IndexImpl implements Index {
                         case STRING:
                             return new IdCursorImpl(((HashTable) structure).get((String) searchKey));
                         case DATE:
-                            return new IdCursorImpl(((HashTable) structure).get((Date) searchKey));
+                            return new IdCursorImpl(((HashTable) structure).get(searchKey == null ? null : ((Date) searchKey).getTime()));
                         case OBJECT:
                     }
                 case TREE:
@@ -145,12 +176,11 @@ public class IndexImpl implements Index {
                             return new IdCursorImpl(((BPlusDoubleTree) structure).search((double) searchKey));
                         case BOOLEAN:
                             return new IdCursorImpl(((BPlusBoolTree) structure).search(((boolean) searchKey) ? 1 : 0));
-                        case STRING:
-
                         case DATE:
+                            return new IdCursorImpl(((BPlusLongTree) structure).search(searchKey == null ? ColumnImpl.NULL_DATE : ((Date) searchKey).getTime()));
+                        case STRING:
 
                         case OBJECT:
-                            String key = null;
                             return new IdCursorImpl(((BPlusTree) structure).search(searchKey));
                     }
 
@@ -221,9 +251,25 @@ public class IndexImpl implements Index {
                 ids = ((BPlusBoolTree) structure).getRangedValues(start, end, includeStartKey, includeEndKey);
                 break;
             }
-            case STRING:
+            case DATE: {
+                long start;
+                long end;
+
+                try {
+                    start = ((Date) startSearchKey).getTime();
+                    end = ((Date) endSearchKey).getTime();
+                } catch (Exception ex) {
+                    throw new InvalidKeyException();
+                }
 
-            case DATE:
+                if (end < start) {
+                    throw new InvalidRangeException();
+                }
+
+                ids = ((BPlusLongTree) structure).getRangedValues(start, end, includeStartKey, includeEndKey);
+                break;
+            }
+            case STRING:
 
             case OBJECT: {
                 try {
@@ -247,4 +293,34 @@ public class IndexImpl implements Index {
         return structure;
     }
 
+    /**
+     * Trees are estimated from their node count, the key count and the
+     * indexed rows of the key column.
+     * String keys of hash tables are mostly the column's own instances and
+     * only counted for arena columns.
+     */
+    @Override
+    public long getMemoryUsage() {
+        long keys = indexMetaData.getKeyCount();
+        long rows = indexedRows((ExtendedColumn) indexMetaData.getKeyColumn(), indexMetaData.getTable()).cardinality();
+        long bytes = MemoryEstimator.object(3 * MemoryEstimator.REFERENCE);
+
+        if (structure instanceof HashTable) {
+            boolean ownStrings = ((ExtendedColumn) indexMetaData.getKeyColumn()).getData() instanceof StringArenaList;
+            return bytes + ((HashTable) structure).getMemoryUsage(keys, ownStrings);
+        } else if (structure instanceof BPlusIntTree) {
+            return bytes + ((BPlusIntTree) structure).getMemoryUsage(keys, rows);
+        } else if (structure instanceof BPlusDoubleTree) {
+            return bytes + ((BPlusDoubleTree) structure).getMemoryUsage(keys, rows);
+        } else if (structure instanceof BPlusBoolTree) {
+            return bytes + ((BPlusBoolTree) structure).getMemoryUsage(keys, rows);
+        } else if (structure instanceof BPlusLongTree) {
+            return bytes + ((BPlusLongTree) structure).getMemoryUsage(keys, rows);
+        } else if (structure instanceof BPlusTree) {
+            return bytes + ((BPlusTree) structure).getMemoryUsage(keys, rows);
+        }
+
+        return bytes;
+    }
+
 }
@@ -4,14 +4,19 @@ import dbs_project.exceptions.NoTransactionActiveException;
 import dbs_project.exceptions.TransactionAlreadyActiveException;
 import dbs_project.index.IndexableTable;
 import dbs_project.persistence.PersistenceLayer;
+import dbs_project.storageImpl.PartitionedTableImpl;
 import dbs_project.storageImpl.StorageLayerImpl;
+import dbs_project.storageImpl.TableImpl;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.Map;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,6 +26,8 @@ import java.util.logging.Logger;
  */
 public class PersistenceLayerimpl implements PersistenceLayer {
 
+    //Partition files are named after their table, the separator and the partition
+    public static final String PARTITION_SEPARATOR = "#";
     boolean enabled;
     boolean hasActiveTransaction;
     StorageLayerImpl storage;
@@ -46,19 +53,19 @@ public class PersistenceLayerimpl implements PersistenceLayer {
         this.storage = storage;
     }
 
-    public boolean isActivateAuto() {
+    public synchronized boolean isActivateAuto() {
         return activateAuto;
     }
 
-    public void setActivateAuto(boolean activateAuto) {
+    public synchronized void setActivateAuto(boolean activateAuto) {
         this.activateAuto = activateAuto;
     }
 
-    public String getLastTransaction() {
+    public synchronized String getLastTransaction() {
         return lastTransaction;
     }
 
-    public void setLastTransaction(String lastTransaction) {
+    public synchronized void setLastTransaction(String lastTransaction) {
         this.lastTransaction = lastTransaction;
     }
 
@@ -67,8 +74,25 @@ public class PersistenceLayerimpl implements PersistenceLayer {
         this.enabled = enabled;
     }
 
+    /**
+     * Commits the changed tables after a statement of the given kind that
+     * ran outside a transaction, unless the last statement was of the same
+     * kind. Callers must not hold the lock of any table.
+     */
+    public synchronized void autoCommit(String statement) throws NoTransactionActiveException {
+        if (hasActiveTransaction) {
+            return;
+        }
+
+        activateAuto = true;
+        if (!lastTransaction.equals(statement)) {
+            lastTransaction = statement;
+            commitTransaction();
+        }
+    }
+
     @Override
-    public void beginTransaction() throws TransactionAlreadyActiveException {
+    public synchronized void beginTransaction() throws TransactionAlreadyActiveException {
         if (hasActiveTransaction) {
             throw new TransactionAlreadyActiveException();
         }
@@ -84,8 +108,14 @@ public class PersistenceLayerimpl implements PersistenceLayer {
         hasActiveTransaction = true;
     }
 
+    /**
+     * Writes the changed tables. Commits are serialized on this layer, each
+     * table is written holding its read lock so no statement changes it
+     * half way. A table is taken off the changed list before it is locked, a
+     * statement that changes it after that lists it again.
+     */
     @Override
-    public void commitTransaction() throws NoTransactionActiveException {
+    public synchronized void commitTransaction() throws NoTransactionActiveException {
         if (!hasActiveTransaction && !activateAuto) {
             throw new NoTransactionActiveException();
         }
@@ -96,19 +126,23 @@ public class PersistenceLayerimpl implements PersistenceLayer {
         }
 
         try {
-            for (Map.Entry entry : storage.getChangedTables().entrySet()) {
-                IndexableTable t = (IndexableTable) entry.getValue();
-                FileOutputStream out = new FileOutputStream(filePath + t.getTableMetaData().getName());
-                ObjectOutputStream os = new ObjectOutputStream(out);
-
-                os.writeObject(t);
-                os.flush();
+            Iterator<IndexableTable> it = storage.getChangedTables().values().iterator();
+            while (it.hasNext()) {
+                IndexableTable t = it.next();
+                it.remove();
+
+                Lock lock = getLock(t).readLock();
+                lock.lock();
+                try {
+                    writeTable(t);
+                } finally {
+                    lock.unlock();
+                }
             }
         } catch (IOException ex) {
             ex.printStackTrace();
         }
 
-        storage.getChangedTables().clear();
         hasActiveTransaction = false;
         if (activateAuto) {
             activateAuto = false;
@@ -116,7 +150,7 @@ public class PersistenceLayerimpl implements PersistenceLayer {
     }
 
     @Override
-    public void abortTransaction() throws NoTransactionActiveException {
+    public synchronized void abortTransaction() throws NoTransactionActiveException {
         if (!hasActiveTransaction && !activateAuto) {
             throw new NoTransactionActiveException("No Transaction to abort");
         }
@@ -130,10 +164,7 @@ public class PersistenceLayerimpl implements PersistenceLayer {
                     continue;
                 }
 
-                FileInputStream in = new FileInputStream(tempFile);
-                ObjectInputStream ins = new ObjectInputStream(in);
-
-                storage.replaceTable((IndexableTable) ins.readObject());
+                storage.replaceTable(readTable(tempFile));
             }
 
             storage.getChangedTables().clear();
@@ -147,8 +178,77 @@ public class PersistenceLayerimpl implements PersistenceLayer {
     }
 
     @Override
-    public boolean hasActiveTransaction() {
+    public synchronized boolean hasActiveTransaction() {
         return hasActiveTransaction;
     }
 
+    private static ReadWriteLock getLock(IndexableTable t) {
+        if (t instanceof PartitionedTableImpl) {
+            return ((PartitionedTableImpl) t).getLock();
+        }
+        return ((TableImpl) t).getLock();
+    }
+
+    /**
+     * Writes a table to the file of its name. A partitioned table writes its
+     * spec there and each changed partition to a file of its own.
+     */
+    private void writeTable(IndexableTable t) throws IOException {
+        String path = filePath + t.getTableMetaData().getName();
+        writeObject(path, t);
+
+        if (t instanceof PartitionedTableImpl) {
+            PartitionedTableImpl partitioned = (PartitionedTableImpl) t;
+            BitSet changed = partitioned.getChangedPartitions();
+            for (int p = changed.nextSetBit(0); p >= 0; p = changed.nextSetBit(p + 1)) {
+                writeObject(path + PARTITION_SEPARATOR + p, partitioned.getPartition(p));
+            }
+            changed.clear();
+        }
+    }
+
+    private static void writeObject(String path, Object o) throws IOException {
+        ObjectOutputStream os = new ObjectOutputStream(new FileOutputStream(path));
+        try {
+            os.writeObject(o);
+            os.flush();
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Reads a table written by a commit, with the partitions of a
+     * partitioned table from their files next to it.
+     */
+    public static IndexableTable readTable(File file) throws IOException, ClassNotFoundException {
+        IndexableTable t = (IndexableTable) readObject(file);
+
+        if (t instanceof PartitionedTableImpl) {
+            PartitionedTableImpl partitioned = (PartitionedTableImpl) t;
+            for (int p = 0; p < partitioned.getPartitionCount(); p++) {
+                partitioned.setPartition(p, (TableImpl) readObject(new File(file.getPath() + PARTITION_SEPARATOR + p)));
+            }
+        }
+
+        return t;
+    }
+
+    /**
+     * Returns whether the file holds a partition, those are read with their
+     * table.
+     */
+    public static boolean isPartitionFile(File file) {
+        return file.getName().contains(PARTITION_SEPARATOR);
+    }
+
+    private static Object readObject(File file) throws IOException, ClassNotFoundException {
+        ObjectInputStream ins = new ObjectInputStream(new FileInputStream(file));
+        try {
+            return ins.readObject();
+        } finally {
+            ins.close();
+        }
+    }
+
 }
@@ -10,6 +10,7 @@ import dbs_project.exceptions.NoSuchRowException;
 import dbs_project.exceptions.NoSuchTableException;
 import dbs_project.exceptions.NoTransactionActiveException;
 import dbs_project.exceptions.QueryExecutionException;
+import dbs_project.exceptions.SchemaMismatchException;
 import dbs_project.exceptions.TableAlreadyExistsException;
 import dbs_project.exceptions.TransactionAlreadyActiveException;
 import dbs_project.index.Index;
@@ -17,6 +18,7 @@ import dbs_project.index.IndexableTable;
 import dbs_project.persistence.PersistenceLayer;
 import dbs_project.persistenceImpl.PersistenceLayerimpl;
 import dbs_project.query.QueryLayer;
+import dbs_project.query.predicate.ExpressionElement;
 import dbs_project.query.statement.CreateColumnStatement;
 import dbs_project.query.statement.CreateIndexStatement;
 import dbs_project.query.statement.CreateTableStatement;
@@ -36,9 +38,12 @@ import dbs_project.storage.Table;
 import dbs_project.storage.TableMetaData;
 import dbs_project.storage.Type;
 import dbs_project.storageImpl.ColumnImpl;
+import dbs_project.storageImpl.PartitionedTableImpl;
 import dbs_project.storageImpl.RelationImpl;
 import dbs_project.storageImpl.StorageLayerImpl;
+import dbs_project.storageImpl.TableImpl;
 import dbs_project.storageImpl.TableMetaDataImpl;
+import dbs_project.utilImpl.IdCursorImpl;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -50,6 +55,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.locks.Lock;
+import org.apache.commons.collections.primitives.ArrayIntList;
 
 /**
  *
@@ -93,65 +100,37 @@ public class QueryLayerImpl implements QueryLayer {
             }
 
             Table table = storage.getTable(tableMData.getId());
-            RelationImpl relation = new RelationImpl(table);
-            List<String> colNames = updateStmnt.getColumnNames();
-            List<String> updatedValues = updateStmnt.getUpdateRowData();
-
-            List<BitSet> resultSet = new ArrayList<>();
-            relation.parseExpressionTree(resultSet, updateStmnt.getPredicate());
-
-            if (resultSet.size() != 1) {
-                throw new QueryExecutionException();
-            }
-
-            BitSet result = resultSet.get(0);
-
-            int i = 0;
-            for (; i < colNames.size(); i++) {
-                ExtendedColumn col = (ExtendedColumn) table.getColumn(table.getTableMetaData().getTableSchema().get(colNames.get(i)).getId());
-
-                int rowIndex = result.nextSetBit(0);
-                while (rowIndex != -1) {
-                    switch (col.getMetaData().getType()) {
-                        case INTEGER:
-                            col.updateValue(rowIndex + 1, Integer.parseInt(updatedValues.get(i)));
-                            break;
-                        case DOUBLE:
-                            col.updateValue(rowIndex + 1, Double.parseDouble(updatedValues.get(i)));
-                            break;
-                        case STRING:
-                            col.updateValue(rowIndex + 1, updatedValues.get(i));
-                            break;
-                        case DATE:
-                            col.updateValue(rowIndex + 1, new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH).parse(updatedValues.get(i)));
-                            break;
-                        case BOOLEAN:
-                            col.updateValue(rowIndex + 1, Boolean.parseBoolean(updatedValues.get(i)));
-                            break;
-                        case OBJECT:
-                        //col.updateValue(rowIndex + 1, updatedValues.get(i));
+            Lock lock = lockForWrite(table);
+            int updated;
+            try {
+                List<String> colNames = updateStmnt.getColumnNames();
+                List<String> updatedValues = updateStmnt.getUpdateRowData();
+
+                if (table instanceof PartitionedTableImpl) {
+                    updated = updatePartitions((PartitionedTableImpl) table, updateStmnt.getPredicate(), colNames, updatedValues);
+                } else {
+                    RelationImpl relation = new RelationImpl(table);
+                    List<BitSet> resultSet = new ArrayList<>();
+                    relation.parseExpressionTree(resultSet, updateStmnt.getPredicate());
+
+                    if (resultSet.size() != 1) {
+                        throw new QueryExecutionException();
                     }
 
-                    rowIndex = result.nextSetBit(rowIndex + 1);
+                    BitSet result = resultSet.get(0);
+                    updateColumns((TableImpl) table, result, colNames, updatedValues);
+                    updated = result.cardinality();
                 }
 
+                ((StorageLayerImpl) storage).getChangedTables().put(table.getTableMetaData().getName(), (IndexableTable) table);
+            } finally {
+                lock.unlock();
             }
 
-            ((StorageLayerImpl) storage).getChangedTables().put(table.getTableMetaData().getName(), (IndexableTable) table);
-
-            if (persistence != null) {
-                if (!persistence.hasActiveTransaction()) {
-                    ((PersistenceLayerimpl) persistence).setActivateAuto(true);
-                }
-
-                if (!((PersistenceLayerimpl) persistence).getLastTransaction().equals("U") && !persistence.hasActiveTransaction()) {
-                    ((PersistenceLayerimpl) persistence).setLastTransaction("U");
-                    persistence.commitTransaction();
-                }
-            }
-            return result.cardinality();
-
-        } catch (NoSuchTableException | NoSuchColumnException | ParseException | InvalidKeyException | NoTransactionActiveException ex) {
+            autoCommit("U");
+            return updated;
+        } catch (NoSuchTableException | NoSuchColumnException | ParseException | InvalidKeyException | NoTransactionActiveException
+                | NoSuchRowException | SchemaMismatchException ex) {
             throw new QueryExecutionException(ex.getMessage());
         }
     }
@@ -166,36 +145,42 @@ public class QueryLayerImpl implements QueryLayer {
             }
 
             Table table = storage.getTable(tableMData.getId());
-            RelationImpl relation = new RelationImpl(table);
-            List<BitSet> resultSet = new ArrayList<>();
-
-            relation.parseExpressionTree(resultSet, deleteStmnt.getPredicate());
-
-            if (resultSet.size() != 1) {
-                throw new QueryExecutionException();
-            }
-
-            BitSet result = resultSet.get(0);
-
-            int rowIndex = result.nextSetBit(0);
-            while (rowIndex != -1) {
-                table.deleteRow(rowIndex + 1);
-                rowIndex = result.nextSetBit(rowIndex + 1);
-            }
+            Lock lock = lockForWrite(table);
+            int deleted = 0;
+            try {
+                RelationImpl relation = new RelationImpl(table);
+
+                if (table instanceof PartitionedTableImpl) {
+                    PartitionedTableImpl partitioned = (PartitionedTableImpl) table;
+                    BitSet[] results = relation.evaluatePartitions(partitioned, deleteStmnt.getPredicate());
+
+                    for (int p = 0; p < results.length; p++) {
+                        if (results[p] != null && !results[p].isEmpty()) {
+                            deleteRows(partitioned.getPartition(p), results[p]);
+                            partitioned.markChanged(p);
+                            deleted += results[p].cardinality();
+                        }
+                    }
+                } else {
+                    List<BitSet> resultSet = new ArrayList<>();
+                    relation.parseExpressionTree(resultSet, deleteStmnt.getPredicate());
 
-            ((StorageLayerImpl) storage).getChangedTables().put(table.getTableMetaData().getName(), (IndexableTable) table);
+                    if (resultSet.size() != 1) {
+                        throw new QueryExecutionException();
+                    }
 
-            if (persistence != null) {
-                if (!persistence.hasActiveTransaction()) {
-                    ((PersistenceLayerimpl) persistence).setActivateAuto(true);
+                    BitSet result = resultSet.get(0);
+                    deleteRows(table, result);
+                    deleted = result.cardinality();
                 }
 
-                if (!((PersistenceLayerimpl) persistence).getLastTransaction().equals("D") && !persistence.hasActiveTransaction()) {
-                    ((PersistenceLayerimpl) persistence).setLastTransaction("D");
-                    persistence.commitTransaction();
-                }
+                ((StorageLayerImpl) storage).getChangedTables().put(table.getTableMetaData().getName(), (IndexableTable) table);
+            } finally {
+                lock.unlock();
             }
-            return result.cardinality();
+
+            autoCommit("D");
+            return deleted;
         } catch (NoSuchTableException | NoSuchColumnException | ParseException | NoSuchRowException | InvalidKeyException | NoTransactionActiveException ex) {
             throw new QueryExecutionException(ex.getMessage());
         }
@@ -211,87 +196,36 @@ public class QueryLayerImpl implements QueryLayer {
             }
 
             Table table = storage.getTable(tableMData.getId());
-            List<String> colNames = insertStmnt.getColumnNames();
-            List<ColumnImpl> colList = new ArrayList<>();
-            Iterator itRow = insertStmnt.getDataForRows();
-
-            for (String colName : colNames) {
-                ColumnMetaData colMData = table.getTableMetaData().getTableSchema().get(colName);
-
-                if (colMData == null) {
-                    throw new NoSuchColumnException();
-                }
-
-                colList.add((ColumnImpl) table.getColumn(colMData.getId()));
-            }
-
-            int rowCounter = 0;
-
-            while (itRow.hasNext()) {
-                List<String> valList = (List<String>) itRow.next();
-
-                for (int i = 0; i < colList.size(); i++) {
-                    ColumnImpl column = colList.get(i);
-                    String val = valList.get(i);
-
-                    switch (column.getMetaData().getType()) {
-                        case INTEGER:
-                            if (val != null) {
-                                column.addValue(Integer.parseInt(val));
-                            } else {
-                                column.addValue(Type.NULL_VALUE_INTEGER);
-                            }
-                            break;
-                        case DOUBLE:
-                            if (val != null) {
-                                column.addValue(Double.parseDouble(val));
-                            } else {
-                                column.addValue(Type.NULL_VALUE_DOUBLE);
-                            }
-                            break;
-                        case BOOLEAN:
-                            if (val.equals("true")) {
-                                column.addValue(true);
-                            } else {
-                                column.addValue(Type.NULL_VALUE_BOOLEAN);
-                            }
-                            break;
-                        case DATE: {
-                            if (val != null) {
-                                DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-                                df.setTimeZone(TimeZone.getTimeZone("UTC"));
-                                column.addValue(df.parse(val));
-                            }
+            Lock lock = lockForWrite(table);
+            try {
+                List<String> colNames = insertStmnt.getColumnNames();
+                Iterator itRow = insertStmnt.getDataForRows();
+                DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+                df.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+                if (table instanceof PartitionedTableImpl) {
+                    insertPartitions((PartitionedTableImpl) table, colNames, itRow, df);
+                } else {
+                    List<ColumnImpl> colList = resolveColumns((TableImpl) table, colNames);
+                    int rowCounter = 0;
+
+                    while (itRow.hasNext()) {
+                        appendRow(colList, (List<String>) itRow.next(), df);
+
+                        if (!colList.isEmpty()) {
+                            rowCounter++;
                         }
-                        break;
-                        case STRING:
-
-                        case OBJECT:
-                            if (val != null) {
-                                column.addValue(val);
-                            }
                     }
 
-                    if (i == 0) {
-                        rowCounter++;
-                    }
+                    ((TableMetaDataImpl) table.getTableMetaData()).addRowCountBy(rowCounter);
                 }
 
+                ((StorageLayerImpl) storage).getChangedTables().put(table.getTableMetaData().getName(), (IndexableTable) table);
+            } finally {
+                lock.unlock();
             }
 
-            ((TableMetaDataImpl) table.getTableMetaData()).addRowCountBy(rowCounter);
-            ((StorageLayerImpl) storage).getChangedTables().put(table.getTableMetaData().getName(), (IndexableTable) table);
-
-            if (persistence != null) {
-                if (!persistence.hasActiveTransaction()) {
-                    ((PersistenceLayerimpl) persistence).setActivateAuto(true);
-                }
-
-                if (!((PersistenceLayerimpl) persistence).getLastTransaction().equals("I") && !persistence.hasActiveTransaction()) {
-                    ((PersistenceLayerimpl) persistence).setLastTransaction("I");
-                    persistence.commitTransaction();
-                }
-            }
+            autoCommit("I");
         } catch (NoSuchTableException | NoSuchColumnException | ParseException | NoTransactionActiveException ex) {
             throw new QueryExecutionException();
         }
@@ -330,8 +264,12 @@ public class QueryLayerImpl implements QueryLayer {
             }
 
             Table table = storage.getTable(tableMData.getId());
-
-            table.createColumn(createColumnStmnt.getColumnName(), createColumnStmnt.getColumnType());
+            Lock lock = lockForWrite(table);
+            try {
+                table.createColumn(createColumnStmnt.getColumnName(), createColumnStmnt.getColumnType());
+            } finally {
+                lock.unlock();
+            }
         } catch (NoSuchTableException | ColumnAlreadyExistsException ex) {
             throw new QueryExecutionException();
         }
@@ -347,14 +285,18 @@ public class QueryLayerImpl implements QueryLayer {
             }
 
             IndexableTable table = (IndexableTable) storage.getTable(tableMData.getId());
+            Lock lock = lockForWrite(table);
+            try {
+                ColumnMetaData colMetaData = tableMData.getTableSchema().get(createIndexStmnt.getColumnName());
 
-            ColumnMetaData colMetaData = tableMData.getTableSchema().get(createIndexStmnt.getColumnName());
+                if (colMetaData == null) {
+                    throw new NoSuchColumnException();
+                }
 
-            if (colMetaData == null) {
-                throw new NoSuchColumnException();
+                table.createIndex(createIndexStmnt.getIndexName(), colMetaData.getId(), createIndexStmnt.getIndexType());
+            } finally {
+                lock.unlock();
             }
-
-            table.createIndex(createIndexStmnt.getIndexName(), colMetaData.getId(), createIndexStmnt.getIndexType());
         } catch (NoSuchTableException | NoSuchColumnException | IndexAlreadyExistsException ex) {
             throw new QueryExecutionException();
         }
@@ -370,7 +312,13 @@ public class QueryLayerImpl implements QueryLayer {
                 throw new NoSuchTableException();
             }
 
-            storage.deleteTable(storage.getDatabaseSchema().get(dropTableStmnt.getTableName()).getId());
+            //readers of the table finish before it is dropped
+            Lock lock = lockForWrite(storage.getTable(tableMData.getId()));
+            try {
+                storage.deleteTable(tableMData.getId());
+            } finally {
+                lock.unlock();
+            }
         } catch (NoSuchTableException ex) {
             throw new QueryExecutionException();
         }
@@ -386,14 +334,18 @@ public class QueryLayerImpl implements QueryLayer {
             }
 
             Table table = storage.getTable(tableMData.getId());
+            Lock lock = lockForWrite(table);
+            try {
+                ColumnMetaData colMetaData = tableMData.getTableSchema().get(dropColumnStmnt.getColumnName());
 
-            ColumnMetaData colMetaData = tableMData.getTableSchema().get(dropColumnStmnt.getColumnName());
+                if (colMetaData == null) {
+                    throw new NoSuchColumnException();
+                }
 
-            if (colMetaData == null) {
-                throw new NoSuchColumnException();
+                table.dropColumn(colMetaData.getId());
+            } finally {
+                lock.unlock();
             }
-
-            table.dropColumn(colMetaData.getId());
         } catch (NoSuchTableException | NoSuchColumnException ex) {
             throw new QueryExecutionException();
         }
@@ -409,28 +361,31 @@ public class QueryLayerImpl implements QueryLayer {
             }
 
             IndexableTable table = (IndexableTable) storage.getTable(tableMData.getId());
+            Lock lock = lockForWrite(table);
+            try {
+                ColumnMetaData colMetaData = tableMData.getTableSchema().get(dropIndexStmnt.getColumnName());
 
-            ColumnMetaData colMetaData = tableMData.getTableSchema().get(dropIndexStmnt.getColumnName());
-
-            if (colMetaData == null) {
-                throw new NoSuchColumnException();
-            }
+                if (colMetaData == null) {
+                    throw new NoSuchColumnException();
+                }
 
-            List<Index> indexes = new ArrayList<>(table.getIndexes(colMetaData.getId()));
+                List<Index> indexes = new ArrayList<>(table.getIndexes(colMetaData.getId()));
 
-            boolean indexExists = false;
-            for (Index index : indexes) {
-                if (index.getIndexMetaInfo().getName().equals(dropIndexStmnt.getIndexName())) {
-                    table.dropIndex(index.getIndexMetaInfo().getId());
-                    indexExists = true;
-                    break;
+                boolean indexExists = false;
+                for (Index index : indexes) {
+                    if (index.getIndexMetaInfo().getName().equals(dropIndexStmnt.getIndexName())) {
+                        table.dropIndex(index.getIndexMetaInfo().getId());
+                        indexExists = true;
+                        break;
+                    }
                 }
-            }
 
-            if (!indexExists) {
-                throw new NoSuchIndexException();
+                if (!indexExists) {
+                    throw new NoSuchIndexException();
+                }
+            } finally {
+                lock.unlock();
             }
-
         } catch (NoSuchTableException | NoSuchColumnException | NoSuchIndexException ex) {
             throw new QueryExecutionException();
         }
@@ -461,17 +416,197 @@ public class QueryLayerImpl implements QueryLayer {
             }
 
             Table table = storage.getTable(tableMData.getId());
+            Lock lock = lockForWrite(table);
+            try {
+                ColumnMetaData colMetaData = tableMData.getTableSchema().get(renameColumnStmnt.getColumnName());
+
+                if (colMetaData == null) {
+                    throw new NoSuchColumnException();
+                }
 
-            ColumnMetaData colMetaData = tableMData.getTableSchema().get(renameColumnStmnt.getColumnName());
+                table.renameColumn(colMetaData.getId(), renameColumnStmnt.getNewColumnName());
+            } finally {
+                lock.unlock();
+            }
+        } catch (NoSuchTableException | NoSuchColumnException | ColumnAlreadyExistsException ex) {
+            throw new QueryExecutionException();
+        }
+    }
 
-            if (colMetaData == null) {
+    /**
+     * Persists the changed tables when a statement of another kind than the
+     * last one runs outside a transaction. Called after the write lock is
+     * released, the commit takes the read lock of each table it writes.
+     */
+    private void autoCommit(String statement) throws NoTransactionActiveException {
+        if (persistence != null) {
+            ((PersistenceLayerimpl) persistence).autoCommit(statement);
+        }
+    }
+
+    /**
+     * Takes the write lock of a table. Statements that change a table hold
+     * it until they return, queries hold the read locks while they are
+     * evaluated.
+     */
+    private static Lock lockForWrite(Table table) {
+        Lock lock;
+        if (table instanceof PartitionedTableImpl) {
+            lock = ((PartitionedTableImpl) table).getLock().writeLock();
+        } else {
+            lock = ((TableImpl) table).getLock().writeLock();
+        }
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Sets the columns of the given rows to the values, each value is parsed
+     * once for all rows.
+     */
+    private static void updateColumns(TableImpl table, BitSet rows, List<String> colNames, List<String> updatedValues) throws NoSuchColumnException, ParseException {
+        for (int i = 0; i < colNames.size(); i++) {
+            ExtendedColumn col = table.getSchema().getColumn(colNames.get(i));
+
+            if (col == null) {
                 throw new NoSuchColumnException();
             }
 
-            table.renameColumn(colMetaData.getId(), renameColumnStmnt.getNewColumnName());
-        } catch (NoSuchTableException | NoSuchColumnException | ColumnAlreadyExistsException ex) {
-            throw new QueryExecutionException();
+            if (rows.isEmpty() || col.getMetaData().getType() == Type.OBJECT) {
+                continue;
+            }
+
+            Object value = parseUpdateValue(col.getMetaData().getType(), updatedValues.get(i));
+            for (int rowIndex = rows.nextSetBit(0); rowIndex != -1; rowIndex = rows.nextSetBit(rowIndex + 1)) {
+                col.updateValue(rowIndex + 1, value);
+            }
         }
     }
 
+    private static Object parseUpdateValue(Type type, String value) throws ParseException {
+        switch (type) {
+            case INTEGER:
+                return Integer.parseInt(value);
+            case DOUBLE:
+                return Double.parseDouble(value);
+            case DATE:
+                return new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH).parse(value);
+            case BOOLEAN:
+                return Boolean.parseBoolean(value);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Updates the matching rows of every partition that is not pruned. When
+     * the key column is set the rows move to the partition of the new key.
+     */
+    private static int updatePartitions(PartitionedTableImpl table, ExpressionElement predicate, List<String> colNames, List<String> updatedValues)
+            throws NoSuchTableException, NoSuchColumnException, ParseException, InvalidKeyException, NoSuchRowException, SchemaMismatchException {
+        BitSet[] results = new RelationImpl(table).evaluatePartitions(table, predicate);
+        int keyPosition = colNames.indexOf(table.getKeyColumnName());
+        int target = keyPosition < 0 ? -1 : table.partitionOf(parseUpdateValue(table.getKeyType(), updatedValues.get(keyPosition)));
+        int updated = 0;
+
+        for (int p = 0; p < results.length; p++) {
+            if (results[p] == null || results[p].isEmpty()) {
+                continue;
+            }
+
+            updateColumns(table.getPartition(p), results[p], colNames, updatedValues);
+            table.markChanged(p);
+            updated += results[p].cardinality();
+
+            if (target >= 0) {
+                table.moveRows(p, results[p], target);
+            }
+        }
+
+        return updated;
+    }
+
+    /**
+     * Deletes the rows as one batch, a compaction can only run after the
+     * last of them and cannot renumber the ids still to be deleted.
+     */
+    private static void deleteRows(Table table, BitSet rows) throws NoSuchRowException {
+        ArrayIntList ids = new ArrayIntList(rows.cardinality());
+        for (int rowIndex = rows.nextSetBit(0); rowIndex != -1; rowIndex = rows.nextSetBit(rowIndex + 1)) {
+            ids.add(rowIndex + 1);
+        }
+        table.deleteRows(new IdCursorImpl(ids));
+    }
+
+    private static List<ColumnImpl> resolveColumns(TableImpl table, List<String> colNames) throws NoSuchColumnException {
+        List<ColumnImpl> colList = new ArrayList<>();
+
+        for (String colName : colNames) {
+            ColumnImpl col = (ColumnImpl) table.getSchema().getColumn(colName);
+
+            if (col == null) {
+                throw new NoSuchColumnException();
+            }
+
+            colList.add(col);
+        }
+
+        return colList;
+    }
+
+    private static void appendRow(List<ColumnImpl> colList, List<String> valList, DateFormat df) throws ParseException {
+        for (int i = 0; i < colList.size(); i++) {
+            ColumnImpl column = colList.get(i);
+            column.addValue(parseInsertValue(column.getMetaData().getType(), valList.get(i), df));
+        }
+    }
+
+    private static Object parseInsertValue(Type type, String val, DateFormat df) throws ParseException {
+        if (val == null) {
+            return null;
+        }
+
+        switch (type) {
+            case INTEGER:
+                return Integer.parseInt(val);
+            case DOUBLE:
+                return Double.parseDouble(val);
+            case BOOLEAN:
+                return val.equals("true");
+            case DATE:
+                return df.parse(val);
+            default:
+                return val;
+        }
+    }
+
+    /**
+     * Appends every row to the partition of its key, rows without the key
+     * column go to the first partition.
+     */
+    private static void insertPartitions(PartitionedTableImpl table, List<String> colNames, Iterator itRow, DateFormat df) throws NoSuchColumnException, ParseException {
+        List<List<ColumnImpl>> colLists = new ArrayList<>();
+        for (int p = 0; p < table.getPartitionCount(); p++) {
+            colLists.add(resolveColumns(table.getPartition(p), colNames));
+        }
+
+        int keyPosition = colNames.indexOf(table.getKeyColumnName());
+        Type keyType = table.getKeyType();
+        int[] rowCounters = new int[table.getPartitionCount()];
+
+        while (itRow.hasNext()) {
+            List<String> valList = (List<String>) itRow.next();
+            int p = keyPosition < 0 ? 0 : table.partitionOf(parseInsertValue(keyType, valList.get(keyPosition), df));
+
+            appendRow(colLists.get(p), valList, df);
+            rowCounters[p]++;
+        }
+
+        for (int p = 0; p < rowCounters.length; p++) {
+            if (rowCounters[p] > 0) {
+                ((TableMetaDataImpl) table.getPartition(p).getTableMetaData()).addRowCountBy(rowCounters[p]);
+                table.markChanged(p);
+            }
+        }
+    }
 }
@@ -0,0 +1,24 @@
+package dbs_project.storage;
+
+/**
+ * Physical layouts a column can keep its values in.
+ *
+ * @author kaustuv
+ */
+public enum ColumnEncoding {
+
+    //Let the column decide based on the data it sees
+    AUTO,
+    //One entry per row in a plain list
+    PLAIN,
+    //Int codes into a shared dictionary of distinct values (STRING only)
+    DICTIONARY,
+    //Direct buffers outside the Java heap (INTEGER and DOUBLE only)
+    OFF_HEAP,
+    //Runs of equal values stored once with their length (INTEGER only)
+    RLE,
+    //Blocks packed into the bits needed above their minimum (INTEGER only)
+    BIT_PACKED,
+    //UTF-8 bytes in large shared arrays with one offset per row (STRING only)
+    ARENA
+}
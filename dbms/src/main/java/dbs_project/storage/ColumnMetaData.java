@@ -66,4 +66,11 @@ public interface ColumnMetaData extends Identifiable, Named {
      */
     int getRowId(int positionInColumn) throws IndexOutOfBoundsException;
 
+    /**
+     * @return Statistics on the values of this column or null if the column
+     *         does not keep any
+     */
+    @Nullable
+    ColumnStatistics getStatistics();
+
 }
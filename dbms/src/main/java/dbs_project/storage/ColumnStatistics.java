@@ -0,0 +1,66 @@
+package dbs_project.storage;
+
+/**
+ * Statistics on the live values of a column, kept up to date as values are
+ * added, updated and removed. Minimum, maximum, the distinct count and the
+ * histogram only widen on removals until the table is analyzed again, the
+ * estimates are meant for choosing access paths, not for exact answers.
+ * Values are passed and returned as the column's getters return them:
+ * Integer, Double, Date, String or Boolean.
+ *
+ * @author kaustuv
+ */
+public interface ColumnStatistics {
+
+    /**
+     * Returns the number of live rows holding null.
+     */
+    public int getNullCount();
+
+    /**
+     * Returns the number of live rows holding a value.
+     */
+    public int getValueCount();
+
+    /**
+     * Returns the approximate number of distinct values, from a sketch of
+     * every value the column has seen since it was last analyzed.
+     */
+    public long getDistinctCount();
+
+    /**
+     * Returns the smallest value of an INTEGER, DOUBLE or DATE column, null
+     * for other types or without values.
+     */
+    public Object getMin();
+
+    public Object getMax();
+
+    /**
+     * Returns the number of equi-depth histogram buckets, 0 until the table
+     * is analyzed or for types without an order.
+     */
+    public int getHistogramSize();
+
+    /**
+     * Returns the largest value that falls into a bucket.
+     */
+    public Object getBucketUpperBound(int bucket);
+
+    /**
+     * Returns the number of values in a bucket.
+     */
+    public int getBucketRows(int bucket);
+
+    /**
+     * Estimates the number of live rows equal to the value.
+     */
+    public double estimateEquals(Object value);
+
+    /**
+     * Estimates the number of live rows between low and high, a null bound
+     * leaves the range open on that side. Only INTEGER, DOUBLE and DATE
+     * columns have an order, other columns estimate all values.
+     */
+    public double estimateRange(Object low, boolean includeLow, Object high, boolean includeHigh);
+}
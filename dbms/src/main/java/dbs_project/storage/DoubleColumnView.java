@@ -0,0 +1,36 @@
+package dbs_project.storage;
+
+import java.util.BitSet;
+
+/**
+ * Typed view of the values of a DOUBLE column, read straight from its
+ * primitive storage without boxing. Positions are the ones getDouble takes;
+ * a null or deleted row reads as Type.NULL_VALUE_DOUBLE, so callers mask
+ * their positions with ExtendedColumn.getValidRows. A view is only valid
+ * until the column is encoded differently or reloaded.
+ *
+ * @author kaustuv
+ */
+public interface DoubleColumnView {
+
+    public int size();
+
+    public double get(int position);
+
+    /**
+     * Copies the values at positions from to from + length - 1 to the start
+     * of dst.
+     */
+    public void copyTo(double[] dst, int from, int length);
+
+    /**
+     * Visits the value of every set position of rows below size(), in
+     * ascending order.
+     */
+    public void forEach(BitSet rows, Visitor visitor);
+
+    public interface Visitor {
+
+        public void visit(int position, double value);
+    }
+}
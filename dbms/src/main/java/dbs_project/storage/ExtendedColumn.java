@@ -1,14 +1,17 @@
 package dbs_project.storage;
 
 import dbs_project.index.Index;
+import dbs_project.util.MemoryAccountable;
+import dbs_project.utilImpl.ZoneMap;
 import java.text.ParseException;
+import java.util.BitSet;
 import java.util.List;
 
 /**
  *
  * @author kaustuv
  */
-public interface ExtendedColumn extends Column {
+public interface ExtendedColumn extends Column, MemoryAccountable {
 
     public void addValue(Object o) throws ParseException;
 
@@ -24,4 +27,25 @@ public interface ExtendedColumn extends Column {
 
     public List<Index> getIndexes();
 
+    public ColumnEncoding getEncoding();
+
+    public void setEncoding(ColumnEncoding encoding);
+
+    public BitSet getValidRows();
+
+    public ZoneMap getZoneMap();
+
+    /**
+     * Returns the values of an INTEGER column without boxing, for loops over
+     * many rows. Throws ClassCastException for other types.
+     */
+    public IntColumnView getIntView();
+
+    public DoubleColumnView getDoubleView();
+
+    /**
+     * Returns the values of a DATE column as epoch millis.
+     */
+    public LongColumnView getDateView();
+
 }
@@ -0,0 +1,36 @@
+package dbs_project.storage;
+
+import java.util.BitSet;
+
+/**
+ * Typed view of the values of an INTEGER column, read straight from its
+ * primitive storage without boxing. Positions are the ones getInteger takes;
+ * a null or deleted row reads as Type.NULL_VALUE_INTEGER, so callers mask
+ * their positions with ExtendedColumn.getValidRows. A view is only valid
+ * until the column is encoded differently or reloaded.
+ *
+ * @author kaustuv
+ */
+public interface IntColumnView {
+
+    public int size();
+
+    public int get(int position);
+
+    /**
+     * Copies the values at positions from to from + length - 1 to the start
+     * of dst.
+     */
+    public void copyTo(int[] dst, int from, int length);
+
+    /**
+     * Visits the value of every set position of rows below size(), in
+     * ascending order.
+     */
+    public void forEach(BitSet rows, Visitor visitor);
+
+    public interface Visitor {
+
+        public void visit(int position, int value);
+    }
+}
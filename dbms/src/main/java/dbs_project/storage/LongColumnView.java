@@ -0,0 +1,36 @@
+package dbs_project.storage;
+
+import java.util.BitSet;
+
+/**
+ * Typed view of the values of a DATE column as epoch millis, read straight
+ * from its primitive storage without creating Date objects. Positions are
+ * the ones getDate takes; a null or deleted row reads as Long.MIN_VALUE, so
+ * callers mask their positions with ExtendedColumn.getValidRows. A view is
+ * only valid until the column is reloaded.
+ *
+ * @author kaustuv
+ */
+public interface LongColumnView {
+
+    public int size();
+
+    public long get(int position);
+
+    /**
+     * Copies the values at positions from to from + length - 1 to the start
+     * of dst.
+     */
+    public void copyTo(long[] dst, int from, int length);
+
+    /**
+     * Visits the value of every set position of rows below size(), in
+     * ascending order.
+     */
+    public void forEach(BitSet rows, Visitor visitor);
+
+    public interface Visitor {
+
+        public void visit(int position, long value);
+    }
+}
@@ -0,0 +1,136 @@
+package dbs_project.storage;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * How a partitioned table splits its rows: the key column, the partition
+ * type and the number of partitions. A hash spec sends a row to the hash of
+ * its key modulo the partition count. A range spec has ascending exclusive
+ * upper bounds, partition i holds the keys from bound i - 1 up to bound i
+ * and the last partition everything above the last bound. Null keys always
+ * go to the first partition.
+ *
+ * @author kaustuv
+ */
+public final class PartitionSpec implements Serializable {
+
+    private static final long serialVersionUID = 4421982605873300143L;
+    private final PartitionType type;
+    private final String columnName;
+    private final int partitionCount;
+    private final long[] bounds;
+
+    private PartitionSpec(PartitionType type, String columnName, int partitionCount, long[] bounds) {
+        this.type = type;
+        this.columnName = columnName;
+        this.partitionCount = partitionCount;
+        this.bounds = bounds;
+    }
+
+    public static PartitionSpec hash(String columnName, int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("A table needs at least one partition, found " + partitionCount);
+        }
+
+        return new PartitionSpec(PartitionType.HASH, columnName, partitionCount, new long[0]);
+    }
+
+    /**
+     * Range spec over an INTEGER column, or a DATE column with the bounds in
+     * epoch millis.
+     */
+    public static PartitionSpec range(String columnName, long... upperBounds) {
+        for (int i = 1; i < upperBounds.length; i++) {
+            if (upperBounds[i] <= upperBounds[i - 1]) {
+                throw new IllegalArgumentException("Partition bounds must be ascending, found " + Arrays.toString(upperBounds));
+            }
+        }
+
+        return new PartitionSpec(PartitionType.RANGE, columnName, upperBounds.length + 1, upperBounds.clone());
+    }
+
+    public static PartitionSpec range(String columnName, Date... upperBounds) {
+        long[] millis = new long[upperBounds.length];
+        for (int i = 0; i < upperBounds.length; i++) {
+            millis[i] = upperBounds[i].getTime();
+        }
+
+        return range(columnName, millis);
+    }
+
+    public PartitionType getType() {
+        return type;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Returns the smallest key of a range partition, Long.MIN_VALUE for the
+     * first one.
+     */
+    public long getLowerBound(int partition) {
+        return partition == 0 ? Long.MIN_VALUE : bounds[partition - 1];
+    }
+
+    /**
+     * Returns the largest key of a range partition, Long.MAX_VALUE for the
+     * last one.
+     */
+    public long getUpperBound(int partition) {
+        return partition == partitionCount - 1 ? Long.MAX_VALUE : bounds[partition] - 1;
+    }
+
+    /**
+     * Returns the partition of a key value as the columns store it: Integer,
+     * Double, String, Boolean, Date or a Long of epoch millis.
+     */
+    public int partitionOf(Object key) {
+        if (key == null) {
+            return 0;
+        }
+
+        if (type == PartitionType.HASH) {
+            int hash;
+            if (key instanceof Date) {
+                hash = Long.valueOf(((Date) key).getTime()).hashCode();
+            } else {
+                hash = key.hashCode();
+            }
+            return (hash & Integer.MAX_VALUE) % partitionCount;
+        }
+
+        return rangePartitionOf(toLong(key));
+    }
+
+    /**
+     * Returns the range partition holding the key.
+     */
+    public int rangePartitionOf(long key) {
+        int found = Arrays.binarySearch(bounds, key);
+        return found >= 0 ? found + 1 : -found - 1;
+    }
+
+    /**
+     * Returns the key of an INTEGER or DATE value as a long.
+     */
+    public static long toLong(Object key) {
+        if (key instanceof Date) {
+            return ((Date) key).getTime();
+        }
+
+        return ((Number) key).longValue();
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + columnName + ", " + (type == PartitionType.HASH ? Integer.toString(partitionCount) : Arrays.toString(bounds)) + ")";
+    }
+}
@@ -0,0 +1,14 @@
+package dbs_project.storage;
+
+/**
+ * Ways a partitioned table assigns rows to its partitions.
+ *
+ * @author kaustuv
+ */
+public enum PartitionType {
+
+    //Hash of the key value modulo the partition count, any column type
+    HASH,
+    //Ascending upper bounds of the key value (INTEGER and DATE only)
+    RANGE
+}
@@ -0,0 +1,68 @@
+package dbs_project.storage;
+
+import dbs_project.util.Cursor;
+
+/**
+ * Cursor that moves over a relation one batch of rows at a time. A batch
+ * covers consecutive row positions, every vector holds one entry per position
+ * and the selection vector lists the positions of the rows that belong to the
+ * relation. Vectors are reused, their content is only valid until the next
+ * call of next().
+ *
+ * @author kaustuv
+ */
+public interface RowBatchCursor extends Cursor {
+
+    public int getColumnCount();
+
+    public ColumnMetaData getColumnMetaData(int column);
+
+    /**
+     * Returns the number of positions in the current batch.
+     */
+    public int getLength();
+
+    /**
+     * Returns the number of selected positions in the current batch.
+     */
+    public int getSelectedCount();
+
+    /**
+     * Returns the selected positions, the first getSelectedCount() entries
+     * are valid.
+     */
+    public int[] getSelection();
+
+    public int getRowId(int position);
+
+    public boolean isNull(int column, int position);
+
+    public int[] getIntVector(int column);
+
+    public double[] getDoubleVector(int column);
+
+    /**
+     * Returns the dates of a DATE column as epoch millis.
+     */
+    public long[] getDateVector(int column);
+
+    public boolean[] getBooleanVector(int column);
+
+    /**
+     * Returns true if getCodeVector can be used for the column.
+     */
+    public boolean isDictionaryEncoded(int column);
+
+    /**
+     * Returns the dictionary codes of a dictionary encoded STRING column.
+     */
+    public int[] getCodeVector(int column);
+
+    public String decode(int column, int code);
+
+    /**
+     * Returns the values of a STRING or OBJECT column.
+     */
+    public Object[] getObjectVector(int column);
+
+}
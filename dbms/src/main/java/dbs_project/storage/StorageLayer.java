@@ -39,6 +39,21 @@ public interface StorageLayer {
     int createTable(@NotNull String tableName, @NotNull Map<String, Type> schema)
             throws TableAlreadyExistsException;
 
+    /**
+     * Create a new table split into partitions, each with its own columns,
+     * row bitmap and indexes
+     *
+     * @param tableName    Name of the table to be created
+     * @param schema       Schema as map column name -> type
+     * @param partitioning Key column and partitions of the table
+     * @return Unique id of the new table
+     * @throws TableAlreadyExistsException Table with same name already in DB
+     * @throws IllegalArgumentException    The key column is not in the schema,
+     *                                     or not INTEGER or DATE for ranges
+     */
+    int createTable(@NotNull String tableName, @NotNull Map<String, Type> schema, @NotNull PartitionSpec partitioning)
+            throws TableAlreadyExistsException;
+
     /**
      * Delete a table
      *
@@ -76,4 +91,17 @@ public interface StorageLayer {
     @NotNull
     Map<String, TableMetaData> getDatabaseSchema();
 
+    /**
+     * @return Estimated number of bytes retained by all tables, their
+     * columns, indexes and row bitmaps
+     */
+    long getMemoryUsage();
+
+    /**
+     * @return Report of the estimated bytes per table, column, index and
+     * row bitmap, one line each
+     */
+    @NotNull
+    String getMemoryReport();
+
 }
@@ -22,7 +22,7 @@ public class ColumnCursorImpl implements ColumnCursor {
 
     }
 
-    public ColumnCursorImpl(List<ExtendedColumn> columns) {
+    public ColumnCursorImpl(List<? extends Column> columns) {
         this.columns = new Column[columns.size()];
 
         this.columns = columns.toArray(this.columns);
@@ -105,6 +105,14 @@ public class ColumnCursorImpl implements ColumnCursor {
         return columns[cursor].isNull(index);
     }
 
+    /**
+     * Returns the column the cursor is on, so tables can read its data
+     * directly.
+     */
+    Column getCurrentColumn() {
+        return columns[cursor];
+    }
+
     @Override
     public boolean next() {
         ++cursor;
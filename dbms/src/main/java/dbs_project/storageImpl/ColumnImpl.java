@@ -5,24 +5,47 @@ import static dbs_project.index.IndexType.HASH;
 import static dbs_project.index.IndexType.TREE;
 import dbs_project.indexImpl.IndexImpl;
 import dbs_project.indexImpl.IndexMetaInfoImpl;
+import dbs_project.storage.Column;
 import dbs_project.storage.ColumnMetaData;
+import dbs_project.storage.DoubleColumnView;
+import dbs_project.storage.IntColumnView;
+import dbs_project.storage.LongColumnView;
 import dbs_project.storage.Table;
 import dbs_project.storage.Type;
 import dbs_project.utilImpl.BPlusBoolTree;
 import dbs_project.utilImpl.BPlusDoubleTree;
 import dbs_project.utilImpl.BPlusIntTree;
+import dbs_project.utilImpl.BPlusLongTree;
 import dbs_project.utilImpl.BPlusTree;
 import dbs_project.indexImpl.HashTable;
+import dbs_project.storage.ColumnEncoding;
 import dbs_project.storage.ExtendedColumn;
 import dbs_project.storage.TableMetaData;
+import dbs_project.util.MemoryAccountable;
+import dbs_project.utilImpl.BitPackedIntList;
 import dbs_project.utilImpl.BooleanArrayList;
+import dbs_project.utilImpl.ChunkedDoubleList;
+import dbs_project.utilImpl.ChunkedIntList;
+import dbs_project.utilImpl.ChunkedList;
+import dbs_project.utilImpl.ChunkedLongList;
+import dbs_project.utilImpl.DictionaryStringList;
+import dbs_project.utilImpl.MemoryEstimator;
+import dbs_project.utilImpl.OffHeapDoubleList;
+import dbs_project.utilImpl.OffHeapIntList;
+import dbs_project.utilImpl.RunLengthIntList;
+import dbs_project.utilImpl.StringArenaList;
+import dbs_project.utilImpl.ZoneMap;
 import java.io.Serializable;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import org.apache.commons.collections.primitives.ArrayDoubleList;
-import org.apache.commons.collections.primitives.ArrayIntList;
+import org.apache.commons.collections.primitives.IntList;
+import org.apache.commons.collections.primitives.LongList;
+import org.apache.commons.collections.primitives.DoubleList;
 
 /**
  *
@@ -31,10 +54,25 @@ import org.apache.commons.collections.primitives.ArrayIntList;
 public class ColumnImpl implements ExtendedColumn, Serializable {
 
     private static final long serialVersionUID = 7863262235394607247L;
+    //Rows an AUTO string column sees before it may give up the dictionary
+    static final int DICTIONARY_SAMPLE_SIZE = 4096;
+    //DATE columns keep epoch millis, this marks a null date
+    public static final long NULL_DATE = Long.MIN_VALUE;
+    //New INTEGER and DOUBLE columns start off heap when -Ddbs.offheap=true
+    static final boolean OFF_HEAP_DEFAULT = Boolean.getBoolean("dbs.offheap");
     private ColumnMetaData colMetaData;
     private Object data;
     public List<Index> indexes;
     private TableMetaData srcTabMet;
+    private ColumnEncoding encoding;
+    //Positions holding null, allocated with the first null value
+    private BitSet nullMask;
+    //Per block min/max of INTEGER, DOUBLE and DATE columns
+    private ZoneMap zoneMap;
+    //Set on the clustering key of a table
+    private boolean clusterKey;
+    //Whether the non-null values of the clustering key are in row order
+    private boolean sorted;
 
     public ColumnImpl() {
 
@@ -45,46 +83,67 @@ public class ColumnImpl implements ExtendedColumn, Serializable {
 
         switch (type) {
             case INTEGER:
-                data = new ArrayIntList();
+                data = OFF_HEAP_DEFAULT ? new OffHeapIntList() : new ChunkedIntList();
                 break;
             case DOUBLE:
-                data = new ArrayDoubleList();
+                data = OFF_HEAP_DEFAULT ? new OffHeapDoubleList() : new ChunkedDoubleList();
                 break;
             case BOOLEAN:
                 data = new BooleanArrayList();
                 break;
             case STRING:
-
+                data = new DictionaryStringList();
+                break;
             case DATE:
-
+                data = new ChunkedLongList();
+                break;
             case OBJECT:
-                data = new ArrayList();
+                data = new ChunkedList();
         }
 
         this.colMetaData = new ColumnMetaDataImpl(sourceTable, name, type, id);
+        this.encoding = ColumnEncoding.AUTO;
+
+        if (type != Type.OBJECT) {
+            ((ColumnMetaDataImpl) colMetaData).setStatistics(new ColumnStatisticsImpl(type));
+        }
+
+        if (type == Type.INTEGER || type == Type.DOUBLE || type == Type.DATE) {
+            zoneMap = new ZoneMap();
+        }
 
         if (sourceTable.getTableMetaData() != null) {               //Required for column creation before metadata creation
 
             if (currentRowCount > 0) {
                 if (type == Type.INTEGER) {
                     for (int i = 0; i < currentRowCount; i++) {
-                        ((ArrayIntList) data).add(Type.NULL_VALUE_INTEGER);
+                        ((IntList) data).add(Type.NULL_VALUE_INTEGER);
                     }
                 } else if (type == Type.DOUBLE) {
                     for (int i = 0; i < currentRowCount; i++) {
-                        ((ArrayDoubleList) data).add(Type.NULL_VALUE_DOUBLE);
+                        ((DoubleList) data).add(Type.NULL_VALUE_DOUBLE);
                     }
                 } else if (type == Type.BOOLEAN) {
                     for (int i = 0; i < currentRowCount; i++) {
                         ((BooleanArrayList) data).add(Type.NULL_VALUE_BOOLEAN);
                     }
+                } else if (type == Type.DATE) {
+                    for (int i = 0; i < currentRowCount; i++) {
+                        ((LongList) data).add(NULL_DATE);
+                    }
                 } else {
                     for (int i = 0; i < currentRowCount; i++) {
-                        ((ArrayList) data).add(null);
+                        ((List) data).add(null);
                     }
                 }
+                for (int i = 0; i < currentRowCount; i++) {
+                    markNull(i);
+                }
 
                 srcTabMet = sourceTable.getTableMetaData();
+                if (getStatistics() != null) {
+                    getStatistics().countNulls(srcTabMet.getRowCount());
+                }
 
             } else {
                 currentRowCount = 0;
@@ -102,269 +161,344 @@ public class ColumnImpl implements ExtendedColumn, Serializable {
 
     @Override
     public int getInteger(int index) throws IndexOutOfBoundsException, ClassCastException {
-        int val = ((ArrayIntList) data).get(index);
-
-        if (!(((Integer) ((ArrayIntList) data).get(index)) instanceof Integer)
-                && val != Type.NULL_VALUE_INTEGER) {
-            throw new ClassCastException();
-        }
-
-        //int val = this.isNull(index) ? Type.NULL_VALUE_INTEGER : ((ArrayIntList) data).get(index);
-        return val;
+        //a column of another type fails the cast, a null reads as Type.NULL_VALUE_INTEGER
+        return ((IntList) data).get(index);
     }
 
     @Override
     public boolean getBoolean(int index) throws IndexOutOfBoundsException, ClassCastException {
-        boolean val = ((BooleanArrayList) data).get(index);
-
-        if (!(((Boolean) ((BooleanArrayList) data).get(index)) instanceof Boolean)
-                && val != Type.NULL_VALUE_BOOLEAN) {
-            throw new ClassCastException();
-        }
-
-        // boolean val = this.isNull(index) ? Type.NULL_VALUE_BOOLEAN : ((BooleanArrayList) data).get(index);
-        return val;
+        return ((BooleanArrayList) data).get(index);
     }
 
     @Override
     public double getDouble(int index) throws IndexOutOfBoundsException, ClassCastException {
-        double val = ((ArrayDoubleList) data).get(index);
-
-        if (!(((Double) ((ArrayDoubleList) data).get(index)) instanceof Double)
-                && val != Type.NULL_VALUE_DOUBLE) {
-            throw new ClassCastException();
-        }
-
-        //double val = this.isNull(index) ? Type.NULL_VALUE_DOUBLE : ((ArrayDoubleList) data).get(index);
-        return val;
+        return ((DoubleList) data).get(index);
     }
 
     @Override
     public Date getDate(int index) throws IndexOutOfBoundsException, ClassCastException {
-        if (!(((ArrayList) data).get(index) instanceof Date) && ((ArrayList) data).get(index) != null) {
+        if (colMetaData.getType() == Type.DATE) {
+            long val = ((LongList) data).get(index);
+            return val == NULL_DATE ? null : new Date(val);
+        }
+
+        if (!(((List) data).get(index) instanceof Date) && ((List) data).get(index) != null) {
             throw new ClassCastException();
         }
 
-        return (Date) ((ArrayList) data).get(index);
+        return (Date) ((List) data).get(index);
     }
 
     @Override
     public String getString(int index) throws IndexOutOfBoundsException {
-        if (!(((ArrayList) data).get(index) instanceof String) && ((ArrayList) data).get(index) != null) {
+        if (data instanceof DictionaryStringList) {
+            return ((DictionaryStringList) data).get(index);
+        }
+
+        if (data instanceof StringArenaList) {
+            return ((StringArenaList) data).get(index);
+        }
+
+        if (!(((List) data).get(index) instanceof String) && ((List) data).get(index) != null) {
             throw new ClassCastException();
         }
 
-        return (String) ((ArrayList) data).get(index);
+        return (String) ((List) data).get(index);
     }
 
     @Override
     public Object getObject(int index) throws IndexOutOfBoundsException {
+        if (isNull(index)) {
+            return null;
+        }
+
         switch (colMetaData.getType()) {
             case INTEGER:
-                return ((ArrayIntList) data).get(index);
+                return ((IntList) data).get(index);
             case DOUBLE:
-                return ((ArrayDoubleList) data).get(index);
+                return ((DoubleList) data).get(index);
             case BOOLEAN:
                 return ((BooleanArrayList) data).get(index);
+            case DATE:
+                return getDate(index);
         }
 
-        return ((ArrayList) data).get(index);
+        return ((List) data).get(index);
 
     }
 
     @Override
     public boolean isNull(int index) throws IndexOutOfBoundsException {
-        switch (colMetaData.getType()) {
-            case INTEGER:
-                return ((ArrayIntList) data).get(index) == Type.NULL_VALUE_INTEGER;
-            case DOUBLE:
-                return ((ArrayDoubleList) data).get(index) == Type.NULL_VALUE_DOUBLE;
-            case BOOLEAN:
-                return ((BooleanArrayList) data).get(index) == Type.NULL_VALUE_BOOLEAN;
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
         }
 
-        return (((ArrayList) data).get(index) == null);
+        return nullMask != null && nullMask.get(index);
+    }
+
+    /**
+     * Returns the rows that are neither deleted nor null. Without any null
+     * values this is the table's delete list itself, so callers must not
+     * modify the result.
+     */
+    @Override
+    public BitSet getValidRows() {
+        BitSet delList = ((TableMetaDataImpl) srcTabMet).getDeleteList();
+
+        if (nullMask == null || nullMask.isEmpty()) {
+            return delList;
+        }
+
+        BitSet valid = (BitSet) delList.clone();
+        valid.andNot(nullMask);
+        return valid;
+    }
+
+    /**
+     * Every INTEGER encoding implements the view itself, so the view is the
+     * storage and costs nothing to get.
+     */
+    @Override
+    public IntColumnView getIntView() throws ClassCastException {
+        return (IntColumnView) data;
+    }
+
+    @Override
+    public DoubleColumnView getDoubleView() throws ClassCastException {
+        return (DoubleColumnView) data;
+    }
+
+    @Override
+    public LongColumnView getDateView() throws ClassCastException {
+        if (colMetaData.getType() != Type.DATE) {
+            throw new ClassCastException();
+        }
+        return (LongColumnView) data;
     }
 
     @Override
     public void addValue(Object o) throws ParseException {
         int rowCount;
+        if (o == null) {
+            markNull(size());
+            o = getNullValue();
+        } else if (zoneMap != null) {
+            zoneMap.add(size(), zoneKey(o));
+        }
+
         if (o instanceof Integer) {
-            int val = (int) o;
-            boolean b;
-            ((ArrayIntList) data).add(val);
+            ((IntList) data).add((int) o);
+        } else if (o instanceof Double) {
+            ((DoubleList) data).add((double) o);
+        } else if (o instanceof Boolean) {
+            ((BooleanArrayList) data).add((boolean) o);
+        } else if (colMetaData.getType() == Type.DATE) {
+            ((LongList) data).add(o == null ? NULL_DATE : ((Date) o).getTime());
+        } else if (o instanceof String) {
+            ((List) data).add((String) o);
+            checkDictionary();
+        } else {
+            ((List) data).add(o);
+        }
+        indexValue(o, size());
 
-            for (Index index : indexes) {
-                switch (index.getIndexMetaInfo().getIndexType()) {
-                    case HASH:
-                        IndexImpl indh = (IndexImpl) index;
-                        b = ((HashTable) indh.getStructure()).add(val, ((ArrayIntList) data).size());
-                        if (!b) {
-                            ((IndexMetaInfoImpl) indh.getIndexMetaInfo()).incrementKeyCount();
-                        }
-                        break;
-                    case TREE: {
-                        IndexImpl ind = (IndexImpl) index;
-                        boolean isDuplicate = ((BPlusIntTree) ind.getStructure()).add(val, ((ArrayIntList) data).size());
-                        if (!isDuplicate) {
-                            ((IndexMetaInfoImpl) ind.getIndexMetaInfo()).incrementKeyCount();
-                        }
-                    }
-                }
+        ((ColumnMetaDataImpl) colMetaData).incrementRowCount();
+        rowCount = ((ColumnMetaDataImpl) colMetaData).getRowCount();
+        ((TableMetaDataImpl) srcTabMet).setBSet(rowCount - 1);
+        checkOrder(rowCount - 1);
+        countValue(rowCount - 1, true);
+    }
+
+    /**
+     * Writes a value to the slot of a deleted row and makes the row live
+     * again. removeValue already took the old value out of the indexes, so
+     * the new one is only added to them.
+     */
+    void fillValue(int rowId, Object o) throws ParseException {
+        if (o == null) {
+            markNull(rowId - 1);
+            o = getNullValue();
+        } else {
+            clearNull(rowId - 1);
+            if (zoneMap != null) {
+                zoneMap.add(rowId - 1, zoneKey(o));
             }
+        }
+
+        if (o instanceof Integer) {
+            ((IntList) data).set(rowId - 1, (int) o);
         } else if (o instanceof Double) {
-            double val = (double) o;
-            boolean b;
+            ((DoubleList) data).set(rowId - 1, (double) o);
+        } else if (o instanceof Boolean) {
+            ((BooleanArrayList) data).set(rowId - 1, (boolean) o);
+        } else if (colMetaData.getType() == Type.DATE) {
+            ((LongList) data).set(rowId - 1, o == null ? NULL_DATE : ((Date) o).getTime());
+        } else if (o instanceof String) {
+            ((List) data).set(rowId - 1, (String) o);
+            checkDictionary();
+        } else {
+            ((List) data).set(rowId - 1, o);
+        }
+        indexValue(o, rowId);
 
-            ((ArrayDoubleList) data).add(val);
+        ((TableMetaDataImpl) srcTabMet).setBSet(rowId - 1);
+        checkOrder(rowId - 1);
+        countValue(rowId - 1, true);
+    }
 
-            for (Index index : indexes) {
-                switch (index.getIndexMetaInfo().getIndexType()) {
-                    case HASH:
-                        IndexImpl indh = (IndexImpl) index;
-                        b = ((HashTable) indh.getStructure()).add(val, ((ArrayDoubleList) data).size());
-                        if (!b) {
-                            ((IndexMetaInfoImpl) indh.getIndexMetaInfo()).incrementKeyCount();
-                        }
-                        break;
-                    case TREE: {
-                        IndexImpl ind = (IndexImpl) index;
+    /**
+     * Adds the value of a row to all indexes of the column, o is the value
+     * as stored.
+     */
+    private void indexValue(Object o, int rowId) throws ParseException {
+        if (!isIndexed(rowId - 1)) {
+            return;
+        }
 
-                        boolean isDuplicate = ((BPlusDoubleTree) ind.getStructure()).add(val, ((ArrayDoubleList) data).size());
-                        if (!isDuplicate) {
-                            ((IndexMetaInfoImpl) ind.getIndexMetaInfo()).incrementKeyCount();
-                        }
-                    }
-                }
-            }
-        } else if (o instanceof Boolean) {
-            boolean val = (boolean) o;
-            ((BooleanArrayList) data).add(val);
-            boolean b;
+        for (Index index : indexes) {
+            IndexImpl ind = (IndexImpl) index;
+            boolean isDuplicate;
 
-            for (Index index : indexes) {
-                switch (index.getIndexMetaInfo().getIndexType()) {
-                    case HASH:
-                        IndexImpl indh = (IndexImpl) index;
-                        b = ((HashTable) indh.getStructure()).add(val, ((BooleanArrayList) data).size());
-                        if (!b) {
-                            ((IndexMetaInfoImpl) indh.getIndexMetaInfo()).incrementKeyCount();
-                        }
-                        break;
-                    case TREE: {
-                        IndexImpl ind = (IndexImpl) index;
-                        boolean isDuplicate = ((BPlusBoolTree) ind.getStructure()).add(val ? 1 : 0, ((BooleanArrayList) data).size());
-                        if (!isDuplicate) {
-                            ((IndexMetaInfoImpl) ind.getIndexMetaInfo()).incrementKeyCount();
-                        }
-                    }
+            if (index.getIndexMetaInfo().getIndexType() == HASH) {
+                Object key = o;
+                if (colMetaData.getType() == Type.DATE) {
+                    key = o == null ? null : ((Date) o).getTime();
                 }
-            }
-        } else {
-            if (o instanceof String) {
-                ((ArrayList) data).add((String) o);
-            } else if (o instanceof Date) {
-                ((ArrayList) data).add((Date) o);
+                isDuplicate = ((HashTable) ind.getStructure()).add(key, rowId);
+            } else if (o instanceof Integer) {
+                isDuplicate = ((BPlusIntTree) ind.getStructure()).add((int) o, rowId);
+            } else if (o instanceof Double) {
+                isDuplicate = ((BPlusDoubleTree) ind.getStructure()).add((double) o, rowId);
+            } else if (o instanceof Boolean) {
+                isDuplicate = ((BPlusBoolTree) ind.getStructure()).add((boolean) o ? 1 : 0, rowId);
+            } else if (colMetaData.getType() == Type.DATE) {
+                isDuplicate = ((BPlusLongTree) ind.getStructure()).add(o == null ? NULL_DATE : ((Date) o).getTime(), rowId);
             } else {
-                ((ArrayList) data).add(o);
+                isDuplicate = ((BPlusTree) ind.getStructure()).add(o, rowId);
             }
-            for (Index index : indexes) {
-                switch (index.getIndexMetaInfo().getIndexType()) {
-                    case HASH:
-                        IndexImpl indh = (IndexImpl) index;
-                        boolean isNotDuplicate = ((HashTable) indh.getStructure()).add(o, ((ArrayList) data).size());
-                        if (!isNotDuplicate) {
-                            ((IndexMetaInfoImpl) indh.getIndexMetaInfo()).incrementKeyCount();
-                        }
-                        break;
-                    case TREE: {
-                        IndexImpl ind = (IndexImpl) index;
-                        boolean isDuplicate = ((BPlusTree) ind.getStructure()).add(o, ((ArrayList) data).size());
-                        if (!isDuplicate) {
-                            ((IndexMetaInfoImpl) ind.getIndexMetaInfo()).incrementKeyCount();
-                        }
-                    }
-                }
+
+            if (!isDuplicate) {
+                ((IndexMetaInfoImpl) ind.getIndexMetaInfo()).incrementKeyCount();
             }
         }
-        ((ColumnMetaDataImpl) colMetaData).incrementRowCount();
-        rowCount = ((ColumnMetaDataImpl) colMetaData).getRowCount();
-        ((TableMetaDataImpl) srcTabMet).setBSet(rowCount - 1);
     }
 
     @Override
     public void updateValue(int rowId, Object o) throws ParseException {
+        countValue(rowId - 1, false);
+        boolean wasIndexed = isIndexed(rowId - 1);
+        boolean indexNew = o != null || getNullValue() == null;
+        if (o == null) {
+            markNull(rowId - 1);
+            o = getNullValue();
+        } else {
+            clearNull(rowId - 1);
+            if (zoneMap != null) {
+                zoneMap.add(rowId - 1, zoneKey(o));
+            }
+        }
+
         if (o instanceof Integer) {
-            int element = ((ArrayIntList) data).get(rowId - 1);
-            ((ArrayIntList) data).set(rowId - 1, (int) o);
+            int element = ((IntList) data).get(rowId - 1);
+            ((IntList) data).set(rowId - 1, (int) o);
 
             for (Index index : indexes) {
                 switch (index.getIndexMetaInfo().getIndexType()) {
                     case HASH:
                         IndexImpl indh = (IndexImpl) index;
-                        ((HashTable) indh.getStructure()).remove(element, rowId);
-                        ((HashTable) indh.getStructure()).add(o, rowId);
+                        if (wasIndexed) {
+                            ((HashTable) indh.getStructure()).remove(element, rowId);
+                        }
+                        if (indexNew) {
+                            ((HashTable) indh.getStructure()).add(o, rowId);
+                        }
                         break;
                     case TREE: {
                         IndexImpl ind = (IndexImpl) index;
-                        ((BPlusIntTree) ind.getStructure()).remove(element, rowId);
-                        ((BPlusIntTree) ind.getStructure()).add((int) o, rowId);
+                        if (wasIndexed) {
+                            ((BPlusIntTree) ind.getStructure()).remove(element, rowId);
+                        }
+                        if (indexNew) {
+                            ((BPlusIntTree) ind.getStructure()).add((int) o, rowId);
+                        }
                     }
                 }
             }
         } else if (o instanceof Double) {
-            double element = ((ArrayDoubleList) data).get(rowId - 1);
-            ((ArrayDoubleList) data).set(rowId - 1, (double) o);
+            double element = ((DoubleList) data).get(rowId - 1);
+            ((DoubleList) data).set(rowId - 1, (double) o);
             for (Index index : indexes) {
                 switch (index.getIndexMetaInfo().getIndexType()) {
                     case HASH:
                         IndexImpl indh = (IndexImpl) index;
-                        ((HashTable) indh.getStructure()).remove(element, rowId);
-                        ((HashTable) indh.getStructure()).add(o, rowId);
+                        if (wasIndexed) {
+                            ((HashTable) indh.getStructure()).remove(element, rowId);
+                        }
+                        if (indexNew) {
+                            ((HashTable) indh.getStructure()).add(o, rowId);
+                        }
                         break;
                     case TREE: {
                         IndexImpl ind = (IndexImpl) index;
-                        ((BPlusDoubleTree) ind.getStructure()).remove(element, rowId);
-                        ((BPlusDoubleTree) ind.getStructure()).add((double) o, rowId);
+                        if (wasIndexed) {
+                            ((BPlusDoubleTree) ind.getStructure()).remove(element, rowId);
+                        }
+                        if (indexNew) {
+                            ((BPlusDoubleTree) ind.getStructure()).add((double) o, rowId);
+                        }
                     }
                 }
             }
-        } else if (o instanceof String) {
-            String element = (String) (((ArrayList) data).get(rowId - 1));
-            ((ArrayList) data).set(rowId - 1, (String) o);
+        } else if (colMetaData.getType() == Type.STRING) {
+            String element = (String) (((List) data).get(rowId - 1));
+            ((List) data).set(rowId - 1, (String) o);
+            checkDictionary();
             for (Index index : indexes) {
                 switch (index.getIndexMetaInfo().getIndexType()) {
                     case HASH:
                         IndexImpl indh = (IndexImpl) index;
-                        ((HashTable) indh.getStructure()).remove(element, rowId);
-                        ((HashTable) indh.getStructure()).add(o, rowId);
+                        if (wasIndexed) {
+                            ((HashTable) indh.getStructure()).remove(element, rowId);
+                        }
+                        if (indexNew) {
+                            ((HashTable) indh.getStructure()).add(o, rowId);
+                        }
                         break;
                     case TREE: {
                         IndexImpl ind = (IndexImpl) index;
-                        ((BPlusTree) ind.getStructure()).remove(element, rowId);
-                        ((BPlusTree) ind.getStructure()).add(o, rowId);
+                        if (wasIndexed) {
+                            ((BPlusTree) ind.getStructure()).remove(element, rowId);
+                        }
+                        if (indexNew) {
+                            ((BPlusTree) ind.getStructure()).add(o, rowId);
+                        }
                     }
                 }
             }
 
-        } else if (o instanceof Date) {
-            Date elem = (Date) (((ArrayList) data).get(rowId - 1));
-            String element = null;
-            if (elem != null) {
-                element = elem.toString();
-            }
-            ((ArrayList) data).set(rowId - 1, (Date) o);
+        } else if (colMetaData.getType() == Type.DATE) {
+            long element = ((LongList) data).get(rowId - 1);
+            long val = o == null ? NULL_DATE : ((Date) o).getTime();
+            ((LongList) data).set(rowId - 1, val);
             for (Index index : indexes) {
                 switch (index.getIndexMetaInfo().getIndexType()) {
                     case HASH:
                         IndexImpl indh = (IndexImpl) index;
-                        ((HashTable) indh.getStructure()).remove(element, rowId);
-                        ((HashTable) indh.getStructure()).add(o, rowId);
+                        if (wasIndexed) {
+                            ((HashTable) indh.getStructure()).remove(element == NULL_DATE ? null : element, rowId);
+                        }
+                        if (indexNew) {
+                            ((HashTable) indh.getStructure()).add(o == null ? null : val, rowId);
+                        }
                         break;
                     case TREE: {
                         IndexImpl ind = (IndexImpl) index;
-                        ((BPlusTree) ind.getStructure()).remove(elem, rowId);
-                        ((BPlusTree) ind.getStructure()).add(o, rowId);
+                        if (wasIndexed) {
+                            ((BPlusLongTree) ind.getStructure()).remove(element, rowId);
+                        }
+                        if (indexNew) {
+                            ((BPlusLongTree) ind.getStructure()).add(val, rowId);
+                        }
                     }
 
                 }
@@ -376,29 +510,42 @@ public class ColumnImpl implements ExtendedColumn, Serializable {
                 switch (index.getIndexMetaInfo().getIndexType()) {
                     case HASH:
                         IndexImpl indh = (IndexImpl) index;
-                        ((HashTable) indh.getStructure()).remove(element, rowId);
-                        ((HashTable) indh.getStructure()).add(o, rowId);
+                        if (wasIndexed) {
+                            ((HashTable) indh.getStructure()).remove(element, rowId);
+                        }
+                        if (indexNew) {
+                            ((HashTable) indh.getStructure()).add(o, rowId);
+                        }
                         break;
                     case TREE: {
                         IndexImpl ind = (IndexImpl) index;
-                        ((BPlusBoolTree) ind.getStructure()).remove(element ? 1 : 0, rowId);
-                        ((BPlusBoolTree) ind.getStructure()).add((boolean) o ? 1 : 0, rowId);
+                        if (wasIndexed) {
+                            ((BPlusBoolTree) ind.getStructure()).remove(element ? 1 : 0, rowId);
+                        }
+                        if (indexNew) {
+                            ((BPlusBoolTree) ind.getStructure()).add((boolean) o ? 1 : 0, rowId);
+                        }
                     }
                 }
             }
         } else {
-            ((ArrayList) data).set(rowId - 1, o);
+            ((List) data).set(rowId - 1, o);
         }
-
+        checkOrder(rowId - 1);
+        countValue(rowId - 1, true);
     }
 
     @Override
     public void removeValue(int rowId) throws ParseException {
+        countValue(rowId - 1, false);
+        List<Index> keyIndexes = isIndexed(rowId - 1) ? indexes : Collections.<Index>emptyList();
+        markNull(rowId - 1);
+
         switch (colMetaData.getType()) {
             case INTEGER: {
-                int element = ((ArrayIntList) data).get(rowId - 1);
-                ((ArrayIntList) data).set(rowId - 1, Type.NULL_VALUE_INTEGER);
-                for (Index index : indexes) {
+                int element = ((IntList) data).get(rowId - 1);
+                ((IntList) data).set(rowId - 1, Type.NULL_VALUE_INTEGER);
+                for (Index index : keyIndexes) {
                     switch (index.getIndexMetaInfo().getIndexType()) {
                         case HASH:
                             IndexImpl indh = (IndexImpl) index;
@@ -418,9 +565,9 @@ public class ColumnImpl implements ExtendedColumn, Serializable {
             break;
 
             case DOUBLE: {
-                double element = ((ArrayDoubleList) data).get(rowId - 1);
-                ((ArrayDoubleList) data).set(rowId - 1, Type.NULL_VALUE_DOUBLE);
-                for (Index index : indexes) {
+                double element = ((DoubleList) data).get(rowId - 1);
+                ((DoubleList) data).set(rowId - 1, Type.NULL_VALUE_DOUBLE);
+                for (Index index : keyIndexes) {
                     switch (index.getIndexMetaInfo().getIndexType()) {
                         case HASH:
                             IndexImpl indh = (IndexImpl) index;
@@ -442,7 +589,7 @@ public class ColumnImpl implements ExtendedColumn, Serializable {
             case BOOLEAN: {
                 boolean element = (((BooleanArrayList) data).get(rowId - 1));
                 ((BooleanArrayList) data).set(rowId - 1, Type.NULL_VALUE_BOOLEAN);
-                for (Index index : indexes) {
+                for (Index index : keyIndexes) {
                     switch (index.getIndexMetaInfo().getIndexType()) {
                         case HASH:
                             IndexImpl indh = (IndexImpl) index;
@@ -461,15 +608,37 @@ public class ColumnImpl implements ExtendedColumn, Serializable {
                 }
             }
             break;
+            case DATE: {
+                long element = ((LongList) data).get(rowId - 1);
+                ((LongList) data).set(rowId - 1, NULL_DATE);
+                for (Index index : keyIndexes) {
+                    switch (index.getIndexMetaInfo().getIndexType()) {
+                        case HASH:
+                            IndexImpl indh = (IndexImpl) index;
+                            ((HashTable) indh.getStructure()).remove(element == NULL_DATE ? null : element, rowId);
+                            ((IndexMetaInfoImpl) indh.getIndexMetaInfo()).decrementKeyCount();
+                            break;
+                        case TREE: {
+                            IndexImpl ind = (IndexImpl) index;
+                            boolean remove = ((BPlusLongTree) ind.getStructure()).remove(element, rowId);
+                            if (remove) {
+                                ((IndexMetaInfoImpl) ind.getIndexMetaInfo()).decrementKeyCount();
+                            }
+                        }
+
+                    }
+                }
+            }
+            break;
             default:
-                Object eleObj = ((ArrayList) data).get(rowId - 1);
+                Object eleObj = ((List) data).get(rowId - 1);
                 String element = null;
                 if (eleObj != null) {
                     element = eleObj.toString();
                 }
 
-                ((ArrayList) data).set(rowId - 1, null);
-                for (Index index : indexes) {
+                ((List) data).set(rowId - 1, null);
+                for (Index index : keyIndexes) {
                     switch (index.getIndexMetaInfo().getIndexType()) {
                         case HASH:
                             IndexImpl indh = (IndexImpl) index;
@@ -490,6 +659,337 @@ public class ColumnImpl implements ExtendedColumn, Serializable {
         ((TableMetaDataImpl) srcTabMet).unsetBSet(rowId - 1);
     }
 
+    /**
+     * Appends count values from a typed array: int[] for INTEGER, double[]
+     * for DOUBLE, epoch millis in a long[] for DATE, boolean[] for BOOLEAN
+     * and Object[] otherwise. Null positions are set in nulls and hold the
+     * null placeholder in the array. Indexes are not updated, the caller
+     * rebuilds them after the load.
+     */
+    void appendBatch(Object values, BitSet nulls, int count) {
+        int base = size();
+
+        switch (colMetaData.getType()) {
+            case INTEGER: {
+                int[] vals = (int[]) values;
+                if (data instanceof ChunkedIntList) {
+                    ((ChunkedIntList) data).addAll(vals, count);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        ((IntList) data).add(vals[i]);
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    if (!nulls.get(i)) {
+                        zoneMap.add(base + i, vals[i]);
+                    }
+                }
+            }
+            break;
+            case DOUBLE: {
+                double[] vals = (double[]) values;
+                if (data instanceof ChunkedDoubleList) {
+                    ((ChunkedDoubleList) data).addAll(vals, count);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        ((DoubleList) data).add(vals[i]);
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    if (!nulls.get(i)) {
+                        zoneMap.add(base + i, ZoneMap.doubleKey(vals[i]));
+                    }
+                }
+            }
+            break;
+            case DATE: {
+                long[] vals = (long[]) values;
+                if (data instanceof ChunkedLongList) {
+                    ((ChunkedLongList) data).addAll(vals, count);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        ((LongList) data).add(vals[i]);
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    if (!nulls.get(i)) {
+                        zoneMap.add(base + i, vals[i]);
+                    }
+                }
+            }
+            break;
+            case BOOLEAN: {
+                boolean[] vals = (boolean[]) values;
+                for (int i = 0; i < count; i++) {
+                    ((BooleanArrayList) data).add(vals[i]);
+                }
+            }
+            break;
+            default: {
+                Object[] vals = (Object[]) values;
+                if (data instanceof ChunkedList) {
+                    ((ChunkedList) data).addAll(vals, count);
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        ((List) data).add(vals[i]);
+                    }
+                }
+                checkDictionary();
+            }
+        }
+
+        for (int i = nulls.nextSetBit(0); i >= 0 && i < count; i = nulls.nextSetBit(i + 1)) {
+            markNull(base + i);
+        }
+
+        ((ColumnMetaDataImpl) colMetaData).setRowCount(colMetaData.getRowCount() + count);
+        for (int i = 0; i < count && sorted; i++) {
+            checkOrder(base + i);
+        }
+        for (int i = 0; i < count; i++) {
+            countValue(base + i, true);
+        }
+    }
+
+    /**
+     * Replaces all values by the ones of source, which has the same type.
+     * The values are appended with appendBatch: the chunks of a chunked
+     * source and the unpacked blocks of a bit packed one are copied with one
+     * array copy each, the arrays themselves are not shared with the
+     * source. Other columns are read into typed arrays of LOAD_BATCH_SIZE
+     * values. Rows the table has deleted become null, the physical encoding
+     * is kept. Indexes are left to the table.
+     */
+    void load(Column source) {
+        ColumnEncoding requested = encoding;
+        ColumnEncoding physical = getEncoding();
+        int count = source.getMetaData().getRowCount();
+
+        switch (colMetaData.getType()) {
+            case INTEGER:
+                data = new ChunkedIntList();
+                break;
+            case DOUBLE:
+                data = new ChunkedDoubleList();
+                break;
+            case DATE:
+                data = new ChunkedLongList();
+                break;
+            case BOOLEAN:
+                data = new BooleanArrayList();
+                break;
+            case STRING:
+                if (physical == ColumnEncoding.DICTIONARY) {
+                    data = new DictionaryStringList();
+                } else if (physical == ColumnEncoding.ARENA) {
+                    data = new StringArenaList();
+                } else {
+                    data = new ChunkedList();
+                }
+                break;
+            default:
+                data = new ChunkedList();
+        }
+
+        nullMask = null;
+        if (zoneMap != null) {
+            zoneMap = new ZoneMap();
+        }
+        ((ColumnMetaDataImpl) colMetaData).setRowCount(0);
+
+        Object srcData = source instanceof ColumnImpl ? ((ColumnImpl) source).data : null;
+        BitSet srcNulls = source instanceof ColumnImpl ? ((ColumnImpl) source).nullMask : null;
+
+        if (srcData instanceof ChunkedIntList) {
+            ChunkedIntList chunked = (ChunkedIntList) srcData;
+            for (int chunk = 0, from = 0; chunk < chunked.getChunkCount(); from += chunked.chunkLength(chunk), chunk++) {
+                int length = chunked.chunkLength(chunk);
+                appendBatch(chunked.getChunk(chunk), nullsOf(srcNulls, from, length), length);
+            }
+        } else if (srcData instanceof BitPackedIntList) {
+            BitPackedIntList packed = (BitPackedIntList) srcData;
+            int[] values = new int[BitPackedIntList.BLOCK_SIZE];
+            for (int block = 0, from = 0; block < packed.getBlockCount(); from += packed.blockLength(block), block++) {
+                int length = packed.unpack(block, values);
+                appendBatch(values, nullsOf(srcNulls, from, length), length);
+            }
+        } else if (srcData instanceof ChunkedDoubleList) {
+            ChunkedDoubleList chunked = (ChunkedDoubleList) srcData;
+            for (int chunk = 0, from = 0; chunk < chunked.getChunkCount(); from += chunked.chunkLength(chunk), chunk++) {
+                int length = chunked.chunkLength(chunk);
+                appendBatch(chunked.getChunk(chunk), nullsOf(srcNulls, from, length), length);
+            }
+        } else if (srcData instanceof ChunkedLongList) {
+            ChunkedLongList chunked = (ChunkedLongList) srcData;
+            for (int chunk = 0, from = 0; chunk < chunked.getChunkCount(); from += chunked.chunkLength(chunk), chunk++) {
+                int length = chunked.chunkLength(chunk);
+                appendBatch(chunked.getChunk(chunk), nullsOf(srcNulls, from, length), length);
+            }
+        } else {
+            Object values = TableImpl.newVector(colMetaData.getType());
+            BitSet nulls = new BitSet(TableImpl.LOAD_BATCH_SIZE);
+            for (int from = 0; from < count; from += TableImpl.LOAD_BATCH_SIZE) {
+                int length = Math.min(TableImpl.LOAD_BATCH_SIZE, count - from);
+                nulls.clear();
+                for (int i = 0; i < length; i++) {
+                    boolean isNull = source.isNull(from + i);
+                    if (isNull) {
+                        nulls.set(i);
+                    }
+
+                    switch (colMetaData.getType()) {
+                        case INTEGER:
+                            ((int[]) values)[i] = isNull ? Type.NULL_VALUE_INTEGER : source.getInteger(from + i);
+                            break;
+                        case DOUBLE:
+                            ((double[]) values)[i] = isNull ? Type.NULL_VALUE_DOUBLE : source.getDouble(from + i);
+                            break;
+                        case DATE:
+                            ((long[]) values)[i] = isNull ? NULL_DATE : source.getDate(from + i).getTime();
+                            break;
+                        case BOOLEAN:
+                            ((boolean[]) values)[i] = isNull ? Type.NULL_VALUE_BOOLEAN : source.getBoolean(from + i);
+                            break;
+                        case STRING:
+                            ((Object[]) values)[i] = isNull ? null : source.getString(from + i);
+                            break;
+                        default:
+                            ((Object[]) values)[i] = isNull ? null : source.getObject(from + i);
+                    }
+                }
+                appendBatch(values, nulls, length);
+            }
+        }
+
+        BitSet live = ((TableMetaDataImpl) srcTabMet).getDeleteList();
+        for (int row = live.nextClearBit(0); row < count; row = live.nextClearBit(row + 1)) {
+            markNull(row);
+        }
+
+        //AUTO string columns decide on the dictionary again for the new values
+        setEncoding(requested == ColumnEncoding.AUTO && colMetaData.getType() == Type.STRING ? requested : physical);
+        encoding = requested;
+        sorted = clusterKey && isInOrder();
+        analyze();
+    }
+
+    private static BitSet nullsOf(BitSet nulls, int from, int length) {
+        return nulls == null ? new BitSet() : nulls.get(from, from + length);
+    }
+
+    /**
+     * Rewrites the column with only the given rows, in their current order.
+     * The row at position i of the result is the i-th set bit of rows. Nulls
+     * and the zone map move along, the physical encoding is kept. Indexes are
+     * left to the table, which rebuilds them once all columns are compacted.
+     */
+    void compact(BitSet rows) {
+        int[] positions = new int[rows.cardinality()];
+        for (int row = rows.nextSetBit(0), i = 0; row >= 0; row = rows.nextSetBit(row + 1), i++) {
+            positions[i] = row;
+        }
+
+        reorder(positions);
+    }
+
+    /**
+     * Rewrites the column with the given rows in the given order, the row at
+     * position i of the result is the one at position rows[i] before. Rows
+     * left out are dropped. Like compact, indexes are left to the table.
+     */
+    void reorder(int[] rows) {
+        BitSet oldNulls = nullMask;
+        ColumnEncoding requested = encoding;
+        ColumnEncoding physical = getEncoding();
+        int count = 0;
+
+        nullMask = null;
+        if (zoneMap != null) {
+            zoneMap = new ZoneMap();
+        }
+
+        switch (colMetaData.getType()) {
+            case INTEGER: {
+                IntList src = (IntList) data;
+                ChunkedIntList dst = new ChunkedIntList();
+                for (; count < rows.length; count++) {
+                    int row = rows[count];
+                    int val = src.get(row);
+                    if (oldNulls != null && oldNulls.get(row)) {
+                        markNull(count);
+                    } else {
+                        zoneMap.add(count, val);
+                    }
+                    dst.add(val);
+                }
+                data = dst;
+            }
+            break;
+            case DOUBLE: {
+                DoubleList src = (DoubleList) data;
+                ChunkedDoubleList dst = new ChunkedDoubleList();
+                for (; count < rows.length; count++) {
+                    int row = rows[count];
+                    double val = src.get(row);
+                    if (oldNulls != null && oldNulls.get(row)) {
+                        markNull(count);
+                    } else {
+                        zoneMap.add(count, ZoneMap.doubleKey(val));
+                    }
+                    dst.add(val);
+                }
+                data = dst;
+            }
+            break;
+            case DATE: {
+                LongList src = (LongList) data;
+                ChunkedLongList dst = new ChunkedLongList();
+                for (; count < rows.length; count++) {
+                    int row = rows[count];
+                    long val = src.get(row);
+                    if (oldNulls != null && oldNulls.get(row)) {
+                        markNull(count);
+                    } else {
+                        zoneMap.add(count, val);
+                    }
+                    dst.add(val);
+                }
+                data = dst;
+            }
+            break;
+            case BOOLEAN: {
+                BooleanArrayList src = (BooleanArrayList) data;
+                BooleanArrayList dst = new BooleanArrayList();
+                for (; count < rows.length; count++) {
+                    int row = rows[count];
+                    if (oldNulls != null && oldNulls.get(row)) {
+                        markNull(count);
+                    }
+                    dst.add(src.get(row));
+                }
+                data = dst;
+            }
+            break;
+            default: {
+                List src = (List) data;
+                ChunkedList dst = new ChunkedList();
+                for (; count < rows.length; count++) {
+                    int row = rows[count];
+                    if (oldNulls != null && oldNulls.get(row)) {
+                        markNull(count);
+                    }
+                    dst.add(src.get(row));
+                }
+                data = dst;
+            }
+        }
+
+        //the dense copy is plain, convert it back to the layout it had
+        setEncoding(physical);
+        encoding = requested;
+        ((ColumnMetaDataImpl) colMetaData).setRowCount(count);
+    }
+
     @Override
     public Object getData() {
         return data;
@@ -505,6 +1005,360 @@ public class ColumnImpl implements ExtendedColumn, Serializable {
         this.srcTabMet = srcTabMet;
     }
 
+    @Override
+    public ColumnEncoding getEncoding() {
+        if (data instanceof DictionaryStringList) {
+            return ColumnEncoding.DICTIONARY;
+        }
+
+        if (data instanceof OffHeapIntList || data instanceof OffHeapDoubleList) {
+            return ColumnEncoding.OFF_HEAP;
+        }
+
+        if (data instanceof RunLengthIntList) {
+            return ColumnEncoding.RLE;
+        }
+
+        if (data instanceof BitPackedIntList) {
+            return ColumnEncoding.BIT_PACKED;
+        }
+
+        if (data instanceof StringArenaList) {
+            return ColumnEncoding.ARENA;
+        }
+
+        return ColumnEncoding.PLAIN;
+    }
+
+    @Override
+    public void setEncoding(ColumnEncoding encoding) {
+        this.encoding = encoding;
+
+        switch (colMetaData.getType()) {
+            case INTEGER:
+                if (encoding == ColumnEncoding.OFF_HEAP && !(data instanceof OffHeapIntList)) {
+                    data = new OffHeapIntList((IntList) data);
+                } else if (encoding == ColumnEncoding.RLE && !(data instanceof RunLengthIntList)) {
+                    data = new RunLengthIntList((IntList) data);
+                } else if (encoding == ColumnEncoding.BIT_PACKED && !(data instanceof BitPackedIntList)) {
+                    data = new BitPackedIntList((IntList) data);
+                } else if ((encoding == ColumnEncoding.PLAIN || encoding == ColumnEncoding.AUTO) && !(data instanceof ChunkedIntList)) {
+                    data = new ChunkedIntList((IntList) data);
+                }
+                return;
+            case DOUBLE:
+                if (encoding == ColumnEncoding.OFF_HEAP && !(data instanceof OffHeapDoubleList)) {
+                    data = new OffHeapDoubleList((DoubleList) data);
+                } else if (encoding != ColumnEncoding.OFF_HEAP && data instanceof OffHeapDoubleList) {
+                    data = new ChunkedDoubleList((DoubleList) data);
+                }
+                return;
+            case STRING:
+                break;
+            default:
+                return;
+        }
+
+        switch (encoding) {
+            case AUTO:
+            case DICTIONARY:
+                if (!(data instanceof DictionaryStringList)) {
+                    data = new DictionaryStringList((List<String>) data);
+                }
+                checkDictionary();
+                break;
+            case PLAIN:
+                if (!(data instanceof ChunkedList)) {
+                    data = new ChunkedList<>((List<String>) data);
+                }
+                break;
+            case ARENA:
+                if (!(data instanceof StringArenaList)) {
+                    data = new StringArenaList((List<String>) data);
+                }
+        }
+    }
+
+    /**
+     * Whether the slot goes into the indexes. Null INTEGER, DOUBLE and
+     * BOOLEAN slots hold a placeholder the indexes could not tell from a
+     * real value and are left out. Other types index null as a key of its
+     * own, point queries for null find those rows.
+     */
+    boolean isIndexed(int index) {
+        return !isNull(index) || getNullValue() == null;
+    }
+
+    private void markNull(int index) {
+        if (nullMask == null) {
+            nullMask = new BitSet();
+        }
+
+        if (!nullMask.get(index)) {
+            nullMask.set(index);
+            if (zoneMap != null) {
+                zoneMap.incrementNullCount(index);
+            }
+        }
+    }
+
+    private void clearNull(int index) {
+        if (nullMask != null && nullMask.get(index)) {
+            nullMask.clear(index);
+            if (zoneMap != null) {
+                zoneMap.decrementNullCount(index);
+            }
+        }
+    }
+
+    private static long zoneKey(Object o) {
+        if (o instanceof Double) {
+            return ZoneMap.doubleKey((double) o);
+        }
+
+        if (o instanceof Date) {
+            return ((Date) o).getTime();
+        }
+
+        return (int) o;
+    }
+
+    /**
+     * Value stored in the data list for a null, the null bitmap tells it
+     * apart from a real value.
+     */
+    private Object getNullValue() {
+        switch (colMetaData.getType()) {
+            case INTEGER:
+                return Type.NULL_VALUE_INTEGER;
+            case DOUBLE:
+                return Type.NULL_VALUE_DOUBLE;
+            case BOOLEAN:
+                return Type.NULL_VALUE_BOOLEAN;
+        }
+
+        return null;
+    }
+
+    private int size() {
+        switch (colMetaData.getType()) {
+            case INTEGER:
+                return ((IntList) data).size();
+            case DOUBLE:
+                return ((DoubleList) data).size();
+            case BOOLEAN:
+                return ((BooleanArrayList) data).size();
+            case DATE:
+                return ((LongList) data).size();
+        }
+
+        return ((List) data).size();
+    }
+
+    /**
+     * An AUTO string column drops the dictionary once it has seen enough rows
+     * and more than every second value is distinct. The codes would then only
+     * add to the size of the strings themselves.
+     */
+    private void checkDictionary() {
+        if (encoding != null && encoding != ColumnEncoding.AUTO) {
+            return;
+        }
+
+        if (data instanceof DictionaryStringList) {
+            DictionaryStringList dict = (DictionaryStringList) data;
+            if (dict.size() >= DICTIONARY_SAMPLE_SIZE && dict.dictionarySize() * 2 > dict.size()) {
+                data = new ChunkedList<>(dict);
+            }
+        }
+    }
+
+    /**
+     * Makes the column the clustering key of its table or a plain column
+     * again. A key column tracks whether its non-null values are ascending in
+     * row order, the check starts over from the current values.
+     */
+    void setClusterKey(boolean clusterKey) {
+        this.clusterKey = clusterKey;
+        sorted = clusterKey && isInOrder();
+    }
+
+    /**
+     * Whether the column is a clustering key whose non-null values ascend in
+     * row order, so searchSorted can find the rows of a key range.
+     */
+    public boolean isSorted() {
+        return clusterKey && sorted;
+    }
+
+    /**
+     * Returns the first position from which every non-null value is at least
+     * key, above key when after is set. Null positions are skipped, the
+     * column must be sorted and of type INTEGER, DOUBLE or DATE, the keys
+     * are zone map keys.
+     */
+    public int searchSorted(long key, boolean after) {
+        int low = 0;
+        int high = size();
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int pos = nullMask == null ? mid : nullMask.nextClearBit(mid);
+            if (pos >= high) {
+                //only nulls from mid on
+                high = mid;
+            } else {
+                long value = keyAt(pos);
+                if (value < key || (after && value == key)) {
+                    low = pos + 1;
+                } else {
+                    high = mid;
+                }
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns the value at a position as a zone map key.
+     */
+    long keyAt(int pos) {
+        switch (colMetaData.getType()) {
+            case INTEGER:
+                return ((IntList) data).get(pos);
+            case DOUBLE:
+                return ZoneMap.doubleKey(((DoubleList) data).get(pos));
+            default:
+                return ((LongList) data).get(pos);
+        }
+    }
+
+    /**
+     * Keeps the sorted flag of a clustering key after the value at a position
+     * changed: the value must still lie between its non-null neighbours.
+     * Nulls do not take part in the order.
+     */
+    private void checkOrder(int pos) {
+        if (!sorted || (nullMask != null && nullMask.get(pos))) {
+            return;
+        }
+
+        long value = keyAt(pos);
+        int prev = nullMask == null ? pos - 1 : nullMask.previousClearBit(pos - 1);
+        int next = nullMask == null ? pos + 1 : nullMask.nextClearBit(pos + 1);
+        sorted = (prev < 0 || keyAt(prev) <= value) && (next >= size() || value <= keyAt(next));
+    }
+
+    private boolean isInOrder() {
+        long last = Long.MIN_VALUE;
+        for (int pos = 0; pos < size(); pos++) {
+            if (nullMask != null && nullMask.get(pos)) {
+                continue;
+            }
+
+            long value = keyAt(pos);
+            if (value < last) {
+                return false;
+            }
+            last = value;
+        }
+
+        return true;
+    }
+
+    private ColumnStatisticsImpl getStatistics() {
+        return ((ColumnMetaDataImpl) colMetaData).getStatistics();
+    }
+
+    /**
+     * Adds the value at a position to the column statistics or takes it out
+     * of them.
+     */
+    private void countValue(int pos, boolean add) {
+        ColumnStatisticsImpl stats = getStatistics();
+        if (stats == null) {
+            return;
+        }
+
+        if (nullMask != null && nullMask.get(pos)) {
+            stats.countNulls(add ? 1 : -1);
+            return;
+        }
+
+        switch (colMetaData.getType()) {
+            case INTEGER:
+            case DOUBLE:
+            case DATE:
+                stats.countKey(keyAt(pos), add);
+                break;
+            case STRING:
+                stats.countHash(((List) data).get(pos).hashCode(), add);
+                break;
+            case BOOLEAN:
+                stats.countHash(((BooleanArrayList) data).get(pos) ? 1 : 0, add);
+        }
+    }
+
+    /**
+     * Recounts the statistics from the live rows and builds the histogram of
+     * an INTEGER, DOUBLE or DATE column from an evenly spaced sample of at
+     * most HISTOGRAM_SAMPLE values. Removals never shrink the distinct count,
+     * min, max or the histogram bounds, this brings them back to the values
+     * the column holds.
+     */
+    void analyze() {
+        ColumnStatisticsImpl stats = getStatistics();
+        if (stats == null) {
+            return;
+        }
+
+        stats.reset();
+        BitSet live = ((TableMetaDataImpl) srcTabMet).getDeleteList();
+        for (int row = live.nextSetBit(0); row >= 0 && row < size(); row = live.nextSetBit(row + 1)) {
+            countValue(row, true);
+        }
+
+        if (zoneMap == null || stats.getValueCount() == 0) {
+            return;
+        }
+
+        int step = Math.max(1, stats.getValueCount() / ColumnStatisticsImpl.HISTOGRAM_SAMPLE);
+        long[] sample = new long[Math.min(stats.getValueCount(), ColumnStatisticsImpl.HISTOGRAM_SAMPLE)];
+        int length = 0;
+        int seen = 0;
+        BitSet valid = getValidRows();
+        for (int row = valid.nextSetBit(0); row >= 0 && row < size() && length < sample.length; row = valid.nextSetBit(row + 1)) {
+            if (seen++ % step == 0) {
+                sample[length++] = keyAt(row);
+            }
+        }
+
+        Arrays.sort(sample, 0, length);
+        stats.buildHistogram(sample, length);
+    }
+
+    @Override
+    public ZoneMap getZoneMap() {
+        return zoneMap;
+    }
+
+    /**
+     * Counts the data with its dictionary, the null bitmap, the zone map
+     * and the statistics, indexes are counted by the table.
+     */
+    @Override
+    public long getMemoryUsage() {
+        long bytes = MemoryEstimator.object(6 * MemoryEstimator.REFERENCE) + ((MemoryAccountable) data).getMemoryUsage() + MemoryEstimator.bitSet(nullMask);
+        if (zoneMap != null) {
+            bytes += zoneMap.getMemoryUsage();
+        }
+        if (getStatistics() != null) {
+            bytes += getStatistics().getMemoryUsage();
+        }
+        return bytes;
+    }
+
     @Override
     public List<Index> getIndexes() {
         if (indexes == null) {
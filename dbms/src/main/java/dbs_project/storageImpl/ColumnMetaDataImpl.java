@@ -23,6 +23,7 @@ public class ColumnMetaDataImpl implements ColumnMetaData, Serializable {
     private String name;
     private Type type;
     private int rowId;
+    private ColumnStatisticsImpl statistics;
 
     public ColumnMetaDataImpl() {
     }
@@ -82,4 +83,13 @@ public class ColumnMetaDataImpl implements ColumnMetaData, Serializable {
         rowCount = count;
     }
 
+    @Override
+    public ColumnStatisticsImpl getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(ColumnStatisticsImpl statistics) {
+        this.statistics = statistics;
+    }
+
 }
@@ -0,0 +1,311 @@
+package dbs_project.storageImpl;
+
+import dbs_project.storage.ColumnStatistics;
+import dbs_project.storage.Type;
+import dbs_project.util.MemoryAccountable;
+import dbs_project.utilImpl.MemoryEstimator;
+import dbs_project.utilImpl.ZoneMap;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Column statistics kept by ColumnImpl. Values of INTEGER, DOUBLE and DATE
+ * columns are counted as zone map keys, so one order serves all three;
+ * strings and booleans only feed the null count, the value count and the
+ * distinct count. The distinct count comes from a HyperLogLog sketch. The
+ * histogram is built by ColumnImpl.analyze from a sample of the values, in
+ * between its bucket bounds stay fixed and only the counts move.
+ *
+ * @author kaustuv
+ */
+public class ColumnStatisticsImpl implements ColumnStatistics, MemoryAccountable, Serializable {
+
+    private static final long serialVersionUID = -2254011372948114163L;
+    //Sketch registers are addressed by this many hash bits, 2^10 registers give about 3% error
+    static final int SKETCH_BITS = 10;
+    static final int HISTOGRAM_BUCKETS = 32;
+    //Values analyze sorts at most to place the bucket bounds
+    static final int HISTOGRAM_SAMPLE = 1 << 16;
+    private final Type type;
+    private int nullCount;
+    private int valueCount;
+    private long min;
+    private long max;
+    private byte[] registers;
+    //Inclusive upper bounds and value counts of the buckets, null before the first analyze
+    private long[] bounds;
+    private int[] counts;
+
+    public ColumnStatisticsImpl(Type type) {
+        this.type = type;
+        reset();
+    }
+
+    /**
+     * Forgets all values, the histogram included.
+     */
+    final void reset() {
+        nullCount = 0;
+        valueCount = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        registers = new byte[1 << SKETCH_BITS];
+        bounds = null;
+        counts = null;
+    }
+
+    void countNulls(int delta) {
+        nullCount += delta;
+    }
+
+    /**
+     * Adds the zone map key of a value or takes it out again. Removing only
+     * lowers the counts.
+     */
+    void countKey(long key, boolean add) {
+        if (!add) {
+            valueCount--;
+            if (counts != null) {
+                int bucket = bucketOf(key);
+                counts[bucket] = Math.max(0, counts[bucket] - 1);
+            }
+            return;
+        }
+
+        valueCount++;
+        min = Math.min(min, key);
+        max = Math.max(max, key);
+        sketch(key);
+
+        if (counts != null) {
+            int bucket = bucketOf(key);
+            if (key > bounds[bucket]) {
+                bounds[bucket] = key;
+            }
+            counts[bucket]++;
+        }
+    }
+
+    /**
+     * Adds a value of a column without an order by its hash code.
+     */
+    void countHash(int hash, boolean add) {
+        if (add) {
+            valueCount++;
+            sketch(hash);
+        } else {
+            valueCount--;
+        }
+    }
+
+    /**
+     * Places the bucket bounds at the quantiles of the sorted sample and
+     * spreads the value count over the buckets in the same shares.
+     */
+    void buildHistogram(long[] sample, int length) {
+        int buckets = Math.min(HISTOGRAM_BUCKETS, length);
+        bounds = new long[buckets];
+        counts = new int[buckets];
+
+        for (int b = 0, from = 0; b < buckets; b++) {
+            int to = (int) ((long) (b + 1) * length / buckets);
+            bounds[b] = sample[to - 1];
+            counts[b] = (int) Math.round((double) (to - from) * valueCount / length);
+            from = to;
+        }
+    }
+
+    private int bucketOf(long key) {
+        int found = Arrays.binarySearch(bounds, key);
+        if (found < 0) {
+            found = Math.min(-found - 1, bounds.length - 1);
+        }
+        return found;
+    }
+
+    private void sketch(long value) {
+        //finalizer of MurmurHash3, spreads close keys over all bits
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        int register = (int) (hash >>> (64 - SKETCH_BITS));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << SKETCH_BITS) | (1L << (SKETCH_BITS - 1))) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+    }
+
+    @Override
+    public int getNullCount() {
+        return nullCount;
+    }
+
+    @Override
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    @Override
+    public long getDistinctCount() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte rank : registers) {
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+
+        double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            //linear counting is closer for small counts
+            estimate = m * Math.log((double) m / zeros);
+        }
+
+        return Math.min(Math.round(estimate), valueCount);
+    }
+
+    @Override
+    public Object getMin() {
+        return valueCount > 0 ? toValue(min) : null;
+    }
+
+    @Override
+    public Object getMax() {
+        return valueCount > 0 ? toValue(max) : null;
+    }
+
+    @Override
+    public int getHistogramSize() {
+        return bounds == null ? 0 : bounds.length;
+    }
+
+    @Override
+    public Object getBucketUpperBound(int bucket) {
+        return toValue(bounds[bucket]);
+    }
+
+    @Override
+    public int getBucketRows(int bucket) {
+        return counts[bucket];
+    }
+
+    @Override
+    public double estimateEquals(Object value) {
+        if (valueCount <= 0 || value == null) {
+            return 0;
+        }
+
+        if (isOrdered()) {
+            long key = toKey(value);
+            if (key < min || key > max) {
+                return 0;
+            }
+        }
+
+        return (double) valueCount / Math.max(1, getDistinctCount());
+    }
+
+    @Override
+    public double estimateRange(Object low, boolean includeLow, Object high, boolean includeHigh) {
+        if (!isOrdered()) {
+            return valueCount;
+        }
+
+        double below = low == null ? 0 : countBelow(toKey(low), !includeLow);
+        double upTo = high == null ? valueCount : countBelow(toKey(high), includeHigh);
+        return Math.max(0, upTo - below);
+    }
+
+    /**
+     * Estimates the values below the key, or up to it when inclusive. Within
+     * a bucket, or between min and max without a histogram, the values are
+     * taken to be spread evenly.
+     */
+    private double countBelow(long key, boolean inclusive) {
+        if (valueCount <= 0 || key < min || (key == min && !inclusive)) {
+            return 0;
+        }
+
+        if (key > max || (key == max && inclusive)) {
+            return valueCount;
+        }
+
+        //a bucket covers the keys from its lower bound up to the next key after its upper bound
+        double point = toPoint(inclusive ? key + 1 : key);
+
+        if (bounds == null) {
+            return valueCount * (point - toPoint(min)) / (toPoint(max + 1) - toPoint(min));
+        }
+
+        double below = 0;
+        for (int b = 0; b < bounds.length; b++) {
+            double lower = toPoint(b == 0 ? min : bounds[b - 1] + 1);
+            double upper = toPoint(bounds[b] + 1);
+            if (upper <= point) {
+                below += counts[b];
+            } else {
+                if (point > lower) {
+                    below += counts[b] * (point - lower) / (upper - lower);
+                }
+                break;
+            }
+        }
+
+        return Math.min(below, valueCount);
+    }
+
+    /**
+     * Returns the position of a key on the value axis, so that DOUBLE values
+     * are interpolated by value and not by their bits.
+     */
+    private double toPoint(long key) {
+        if (type == Type.DOUBLE) {
+            return (Double) toValue(key);
+        }
+        return key;
+    }
+
+    private boolean isOrdered() {
+        return type == Type.INTEGER || type == Type.DOUBLE || type == Type.DATE;
+    }
+
+    private Object toValue(long key) {
+        switch (type) {
+            case INTEGER:
+                return (int) key;
+            case DOUBLE:
+                return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+            case DATE:
+                return new Date(key);
+            default:
+                return null;
+        }
+    }
+
+    private long toKey(Object value) {
+        switch (type) {
+            case INTEGER:
+                return ((Number) value).intValue();
+            case DOUBLE:
+                return ZoneMap.doubleKey(((Number) value).doubleValue());
+            default:
+                return ((Date) value).getTime();
+        }
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        long bytes = MemoryEstimator.object(4 * MemoryEstimator.REFERENCE + 2 * 4 + 2 * 8) + MemoryEstimator.array(registers.length, 1);
+        if (bounds != null) {
+            bytes += MemoryEstimator.array(bounds.length, 8) + MemoryEstimator.array(counts.length, 4);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,406 @@
+package dbs_project.storageImpl;
+
+import dbs_project.storage.ColumnMetaData;
+import dbs_project.storage.DoubleColumnView;
+import dbs_project.storage.ExtendedColumn;
+import dbs_project.storage.IntColumnView;
+import dbs_project.storage.LongColumnView;
+import dbs_project.storage.RowCursor;
+import dbs_project.storage.RowMetaData;
+import dbs_project.storage.Type;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Cursor over a copy of the rows of another cursor, or of the selected rows
+ * of some columns. Relations copy their result while they hold the read
+ * locks of their tables, so statements that run while the cursor is read
+ * change nothing it returns. Values are kept column by column, INTEGER,
+ * DOUBLE, DATE and BOOLEAN columns in primitive arrays. Conversions between
+ * types follow RowImpl.
+ *
+ * @author kaustuv
+ */
+public class MaterializedRowCursor implements RowCursor {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private ColumnMetaData[] colsMDatas;
+    private Type[] types;
+    //int[], double[], long[] of epoch millis, boolean[] or Object[] per column
+    private Object[] values;
+    private BitSet[] nulls;
+    private int[] rowIds;
+    private int count;
+    private int cursor;
+    private RowMetaDataImpl metaData;
+
+    /**
+     * Reads the source to its end.
+     */
+    public MaterializedRowCursor(RowCursor source) {
+        cursor = -1;
+        rowIds = new int[INITIAL_CAPACITY];
+
+        while (source.next()) {
+            if (colsMDatas == null) {
+                RowMetaData sourceMetaData = source.getMetaData();
+                ColumnMetaData[] sourceColumns = new ColumnMetaData[sourceMetaData.getColumnCount()];
+                for (int c = 0; c < sourceColumns.length; c++) {
+                    sourceColumns[c] = sourceMetaData.getColumnMetaData(c);
+                }
+                init(sourceColumns);
+            }
+            if (count == rowIds.length) {
+                grow(count * 2);
+            }
+
+            rowIds[count] = source.getMetaData().getId();
+            for (int c = 0; c < types.length; c++) {
+                copy(source, c);
+            }
+            count++;
+        }
+
+        if (colsMDatas == null) {
+            init(new ColumnMetaData[0]);
+        }
+        metaData = new RowMetaDataImpl(0, colsMDatas, colsMDatas.length);
+    }
+
+    /**
+     * Copies the given rows, by position, of the columns. Only these rows
+     * and columns are read, a column at a time, INTEGER, DOUBLE and DATE
+     * values through the typed views of the columns.
+     */
+    public MaterializedRowCursor(List<ExtendedColumn> columns, ColumnMetaData[] colsMDatas, BitSet rows) {
+        cursor = -1;
+        count = rows.cardinality();
+        rowIds = new int[count];
+        for (int row = rows.nextSetBit(0), i = 0; row >= 0; row = rows.nextSetBit(row + 1)) {
+            rowIds[i++] = row + 1;
+        }
+
+        init(colsMDatas);
+        for (int c = 0; c < types.length; c++) {
+            copyColumn(columns.get(c), c, rows);
+        }
+        metaData = new RowMetaDataImpl(0, this.colsMDatas, this.colsMDatas.length);
+    }
+
+    private void init(ColumnMetaData[] columns) {
+        int columnCount = columns.length;
+        colsMDatas = columns;
+        types = new Type[columnCount];
+        values = new Object[columnCount];
+        nulls = new BitSet[columnCount];
+
+        for (int c = 0; c < columnCount; c++) {
+            types[c] = colsMDatas[c].getType();
+            nulls[c] = new BitSet();
+            switch (types[c]) {
+                case INTEGER:
+                    values[c] = new int[rowIds.length];
+                    break;
+                case DOUBLE:
+                    values[c] = new double[rowIds.length];
+                    break;
+                case DATE:
+                    values[c] = new long[rowIds.length];
+                    break;
+                case BOOLEAN:
+                    values[c] = new boolean[rowIds.length];
+                    break;
+                default:
+                    values[c] = new Object[rowIds.length];
+            }
+        }
+    }
+
+    private void grow(int capacity) {
+        rowIds = Arrays.copyOf(rowIds, capacity);
+        for (int c = 0; c < types.length; c++) {
+            switch (types[c]) {
+                case INTEGER:
+                    values[c] = Arrays.copyOf((int[]) values[c], capacity);
+                    break;
+                case DOUBLE:
+                    values[c] = Arrays.copyOf((double[]) values[c], capacity);
+                    break;
+                case DATE:
+                    values[c] = Arrays.copyOf((long[]) values[c], capacity);
+                    break;
+                case BOOLEAN:
+                    values[c] = Arrays.copyOf((boolean[]) values[c], capacity);
+                    break;
+                default:
+                    values[c] = Arrays.copyOf((Object[]) values[c], capacity);
+            }
+        }
+    }
+
+    private void copy(RowCursor source, int c) {
+        if (source.isNull(c)) {
+            nulls[c].set(count);
+            return;
+        }
+
+        switch (types[c]) {
+            case INTEGER:
+                ((int[]) values[c])[count] = source.getInteger(c);
+                break;
+            case DOUBLE:
+                ((double[]) values[c])[count] = source.getDouble(c);
+                break;
+            case DATE:
+                ((long[]) values[c])[count] = source.getDate(c).getTime();
+                break;
+            case BOOLEAN:
+                ((boolean[]) values[c])[count] = source.getBoolean(c);
+                break;
+            case STRING:
+                ((Object[]) values[c])[count] = source.getString(c);
+                break;
+            default:
+                ((Object[]) values[c])[count] = source.getObject(c);
+        }
+    }
+
+    private void copyColumn(ExtendedColumn column, int c, BitSet rows) {
+        final BitSet columnNulls = nulls[c];
+        int i = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1), i++) {
+            if (column.isNull(row)) {
+                columnNulls.set(i);
+            }
+        }
+
+        //the views visit the rows in ascending order, the i-th visited row is the i-th copied one
+        switch (types[c]) {
+            case INTEGER: {
+                final int[] copy = (int[]) values[c];
+                column.getIntView().forEach(rows, new IntColumnView.Visitor() {
+
+                    private int i;
+
+                    @Override
+                    public void visit(int position, int value) {
+                        copy[i++] = value;
+                    }
+                });
+            }
+            break;
+            case DOUBLE: {
+                final double[] copy = (double[]) values[c];
+                column.getDoubleView().forEach(rows, new DoubleColumnView.Visitor() {
+
+                    private int i;
+
+                    @Override
+                    public void visit(int position, double value) {
+                        copy[i++] = value;
+                    }
+                });
+            }
+            break;
+            case DATE: {
+                final long[] copy = (long[]) values[c];
+                column.getDateView().forEach(rows, new LongColumnView.Visitor() {
+
+                    private int i;
+
+                    @Override
+                    public void visit(int position, long value) {
+                        copy[i++] = value;
+                    }
+                });
+            }
+            break;
+            case BOOLEAN: {
+                boolean[] copy = (boolean[]) values[c];
+                i = 0;
+                for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1), i++) {
+                    copy[i] = !columnNulls.get(i) && column.getBoolean(row);
+                }
+            }
+            break;
+            case STRING: {
+                Object[] copy = (Object[]) values[c];
+                i = 0;
+                for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1), i++) {
+                    copy[i] = columnNulls.get(i) ? null : column.getString(row);
+                }
+            }
+            break;
+            default: {
+                Object[] copy = (Object[]) values[c];
+                i = 0;
+                for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1), i++) {
+                    copy[i] = columnNulls.get(i) ? null : column.getObject(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows the cursor holds.
+     */
+    public int getRowCount() {
+        return count;
+    }
+
+    @Override
+    public RowMetaData getMetaData() {
+        metaData.setRowId(rowIds[cursor]);
+        return metaData;
+    }
+
+    @Override
+    public boolean next() {
+        if (cursor + 1 >= count) {
+            cursor = count;
+            return false;
+        }
+        cursor++;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        values = null;
+        count = 0;
+    }
+
+    @Override
+    public int getInteger(int index) throws IndexOutOfBoundsException, ClassCastException {
+        if (isNull(index)) {
+            return Type.NULL_VALUE_INTEGER;
+        }
+
+        switch (types[index]) {
+            case INTEGER:
+                return ((int[]) values[index])[cursor];
+            case DOUBLE:
+                return (int) ((double[]) values[index])[cursor];
+            case OBJECT: {
+                Object o = ((Object[]) values[index])[cursor];
+                if (o instanceof Double) {
+                    return ((Double) o).intValue();
+                }
+                return (int) o;
+            }
+            default:
+                throw new ClassCastException();
+        }
+    }
+
+    @Override
+    public boolean getBoolean(int index) throws IndexOutOfBoundsException, ClassCastException {
+        if (isNull(index)) {
+            return Type.NULL_VALUE_BOOLEAN;
+        }
+
+        switch (types[index]) {
+            case BOOLEAN:
+                return ((boolean[]) values[index])[cursor];
+            case OBJECT:
+                return (boolean) ((Object[]) values[index])[cursor];
+            default:
+                throw new ClassCastException();
+        }
+    }
+
+    @Override
+    public double getDouble(int index) throws IndexOutOfBoundsException, ClassCastException {
+        if (isNull(index)) {
+            return Type.NULL_VALUE_DOUBLE;
+        }
+
+        switch (types[index]) {
+            case DOUBLE:
+                return ((double[]) values[index])[cursor];
+            case INTEGER:
+                return (double) ((int[]) values[index])[cursor];
+            case OBJECT: {
+                Object o = ((Object[]) values[index])[cursor];
+                if (o instanceof Integer) {
+                    return (double) ((Integer) o);
+                }
+                return (double) o;
+            }
+            default:
+                throw new ClassCastException();
+        }
+    }
+
+    @Override
+    public Date getDate(int index) throws IndexOutOfBoundsException, ClassCastException {
+        if (isNull(index)) {
+            return null;
+        }
+
+        if (types[index] == Type.DATE) {
+            return new Date(((long[]) values[index])[cursor]);
+        }
+
+        return (Date) ((Object[]) values[index])[cursor];
+    }
+
+    @Override
+    public String getString(int index) throws IndexOutOfBoundsException {
+        if (isNull(index)) {
+            return null;
+        }
+
+        switch (types[index]) {
+            case INTEGER:
+                return Integer.toString(((int[]) values[index])[cursor]);
+            case DOUBLE:
+                return Double.toString(((double[]) values[index])[cursor]);
+            case BOOLEAN:
+                return Boolean.toString(((boolean[]) values[index])[cursor]);
+            case DATE:
+                return getDate(index).toString();
+            case STRING:
+                return (String) ((Object[]) values[index])[cursor];
+            default: {
+                Object o = ((Object[]) values[index])[cursor];
+                if (o instanceof Integer || o instanceof Double || o instanceof Boolean || o instanceof Date) {
+                    return o.toString();
+                }
+                return (String) o;
+            }
+        }
+    }
+
+    @Override
+    public Object getObject(int index) throws IndexOutOfBoundsException {
+        if (isNull(index)) {
+            return null;
+        }
+
+        switch (types[index]) {
+            case INTEGER:
+                return ((int[]) values[index])[cursor];
+            case DOUBLE:
+                return ((double[]) values[index])[cursor];
+            case DATE:
+                return getDate(index);
+            case BOOLEAN:
+                return ((boolean[]) values[index])[cursor];
+            default:
+                return ((Object[]) values[index])[cursor];
+        }
+    }
+
+    @Override
+    public boolean isNull(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= types.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Columns: " + types.length);
+        }
+        return nulls[index].get(cursor);
+    }
+}
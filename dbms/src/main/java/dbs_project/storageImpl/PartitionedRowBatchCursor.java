@@ -0,0 +1,140 @@
+package dbs_project.storageImpl;
+
+import dbs_project.storage.ColumnMetaData;
+import dbs_project.storage.RowBatchCursor;
+import java.io.IOException;
+
+/**
+ * Batch cursor over a partitioned table. Every partition has a batch cursor
+ * of its own, the batches of one partition are returned before the ones of
+ * the next, so a batch never mixes partitions and row ids only ascend
+ * within a partition. Row ids are the table's row ids.
+ *
+ * @author kaustuv
+ */
+public class PartitionedRowBatchCursor implements RowBatchCursor {
+
+    private PartitionedTableImpl table;
+    //Cursor per partition, null for partitions without selected rows
+    private RowBatchCursor[] cursors;
+    private ColumnMetaData[] metaData;
+    private int partition;
+
+    public PartitionedRowBatchCursor(PartitionedTableImpl table, RowBatchCursor[] cursors, ColumnMetaData[] metaData) {
+        this.table = table;
+        this.cursors = cursors;
+        this.metaData = metaData;
+        this.partition = 0;
+    }
+
+    @Override
+    public boolean next() {
+        if (cursors == null) {
+            return false;
+        }
+
+        for (; partition < cursors.length; partition++) {
+            if (cursors[partition] != null && cursors[partition].next()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (cursors == null) {
+            return;
+        }
+
+        for (RowBatchCursor cursor : cursors) {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        cursors = null;
+    }
+
+    private RowBatchCursor current() {
+        return cursors[partition];
+    }
+
+    @Override
+    public int getColumnCount() {
+        return metaData.length;
+    }
+
+    @Override
+    public ColumnMetaData getColumnMetaData(int column) {
+        return metaData[column];
+    }
+
+    @Override
+    public int getLength() {
+        return current().getLength();
+    }
+
+    @Override
+    public int getSelectedCount() {
+        return current().getSelectedCount();
+    }
+
+    @Override
+    public int[] getSelection() {
+        return current().getSelection();
+    }
+
+    @Override
+    public int getRowId(int position) {
+        return table.toRowId(partition, current().getRowId(position));
+    }
+
+    @Override
+    public boolean isNull(int column, int position) {
+        return current().isNull(column, position);
+    }
+
+    @Override
+    public int[] getIntVector(int column) {
+        return current().getIntVector(column);
+    }
+
+    @Override
+    public double[] getDoubleVector(int column) {
+        return current().getDoubleVector(column);
+    }
+
+    @Override
+    public long[] getDateVector(int column) {
+        return current().getDateVector(column);
+    }
+
+    @Override
+    public boolean[] getBooleanVector(int column) {
+        return current().getBooleanVector(column);
+    }
+
+    /**
+     * Every partition has a dictionary of its own, codes are only valid
+     * within the current batch's partition.
+     */
+    @Override
+    public boolean isDictionaryEncoded(int column) {
+        return current().isDictionaryEncoded(column);
+    }
+
+    @Override
+    public int[] getCodeVector(int column) {
+        return current().getCodeVector(column);
+    }
+
+    @Override
+    public String decode(int column, int code) {
+        return current().decode(column, code);
+    }
+
+    @Override
+    public Object[] getObjectVector(int column) {
+        return current().getObjectVector(column);
+    }
+}
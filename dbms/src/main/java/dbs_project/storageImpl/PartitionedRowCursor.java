@@ -0,0 +1,103 @@
+package dbs_project.storageImpl;
+
+import dbs_project.storage.ColumnMetaData;
+import dbs_project.storage.ExtendedColumn;
+import dbs_project.storage.RowCursor;
+import dbs_project.storage.RowMetaData;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Date;
+
+/**
+ * Cursor over rows of a partitioned table in row id order. Every partition
+ * has one lazy view over its columns, the cursor moves the view of the
+ * current row's partition and reports the table's row id.
+ *
+ * @author kaustuv
+ */
+public class PartitionedRowCursor implements RowCursor {
+
+    private RowViewImpl[] views;
+    private RowViewImpl view;
+    private RowMetaDataImpl metaData;
+    private BitSet rows;
+    private int cursor;
+
+    /**
+     * columns has the projected columns of every partition, rows the table's
+     * row ids starting at bit 0 for row 1.
+     */
+    public PartitionedRowCursor(ExtendedColumn[][] columns, ColumnMetaData[] colsMDatas, BitSet rows) {
+        this.views = new RowViewImpl[columns.length];
+        for (int p = 0; p < columns.length; p++) {
+            views[p] = new RowViewImpl(0, columns[p], colsMDatas);
+        }
+
+        this.metaData = new RowMetaDataImpl(0, colsMDatas, colsMDatas.length);
+        this.rows = rows;
+        this.cursor = -1;
+    }
+
+    @Override
+    public boolean next() {
+        if (rows == null) {
+            return false;
+        }
+
+        cursor = rows.nextSetBit(cursor + 1);
+        if (cursor < 0) {
+            return false;
+        }
+
+        view = views[cursor % views.length];
+        view.setRowId(cursor / views.length + 1);
+        metaData.setRowId(cursor + 1);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        rows = null;
+        view = null;
+    }
+
+    @Override
+    public RowMetaData getMetaData() {
+        return metaData;
+    }
+
+    @Override
+    public int getInteger(int index) throws IndexOutOfBoundsException, ClassCastException {
+        return view.getInteger(index);
+    }
+
+    @Override
+    public boolean getBoolean(int index) throws IndexOutOfBoundsException, ClassCastException {
+        return view.getBoolean(index);
+    }
+
+    @Override
+    public double getDouble(int index) throws IndexOutOfBoundsException, ClassCastException {
+        return view.getDouble(index);
+    }
+
+    @Override
+    public Date getDate(int index) throws IndexOutOfBoundsException, ClassCastException {
+        return view.getDate(index);
+    }
+
+    @Override
+    public String getString(int index) throws IndexOutOfBoundsException {
+        return view.getString(index);
+    }
+
+    @Override
+    public Object getObject(int index) throws IndexOutOfBoundsException {
+        return view.getObject(index);
+    }
+
+    @Override
+    public boolean isNull(int index) throws IndexOutOfBoundsException {
+        return view.isNull(index);
+    }
+}
@@ -0,0 +1,913 @@
+package dbs_project.storageImpl;
+
+import dbs_project.exceptions.ColumnAlreadyExistsException;
+import dbs_project.exceptions.IndexAlreadyExistsException;
+import dbs_project.exceptions.NoSuchColumnException;
+import dbs_project.exceptions.NoSuchIndexException;
+import dbs_project.exceptions.NoSuchRowException;
+import dbs_project.exceptions.SchemaMismatchException;
+import dbs_project.index.Index;
+import dbs_project.index.IndexType;
+import dbs_project.index.IndexableTable;
+import dbs_project.storage.Column;
+import dbs_project.storage.ColumnCursor;
+import dbs_project.storage.ColumnMetaData;
+import dbs_project.storage.ExtendedColumn;
+import dbs_project.storage.PartitionSpec;
+import dbs_project.storage.PartitionType;
+import dbs_project.storage.Row;
+import dbs_project.storage.RowCursor;
+import dbs_project.storage.RowMetaData;
+import dbs_project.storage.TableMetaData;
+import dbs_project.storage.Type;
+import dbs_project.util.IdCursor;
+import dbs_project.utilImpl.IdCursorImpl;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.commons.collections.primitives.ArrayIntList;
+
+/**
+ * Table split into partitions by a PartitionSpec. Every partition is a
+ * TableImpl with its own columns, live row bitmap and indexes, schema and
+ * index changes are made in all of them. Row ids interleave the partitions:
+ * row (local - 1) * n + p + 1 of the table is row local of partition p, so
+ * no mapping is stored and partitions grow without moving rows. Ids a
+ * partition has not reached yet are gaps, like deleted rows. So the ids are
+ * not dense: with uneven partitions the largest id can be up to n times the
+ * row count. An id stays with its row until the row moves to another
+ * partition, which only happens when its key changes, or until its
+ * partition is compacted.
+ *
+ * Only the spec and the table name are serialized. The persistence layer
+ * writes every partition to a file of its own and reads them back with
+ * setPartition, so a commit only writes the partitions that changed.
+ *
+ * @author kaustuv
+ */
+public class PartitionedTableImpl implements IndexableTable, Serializable {
+
+    private static final long serialVersionUID = 2671339584620913170L;
+    private PartitionSpec spec;
+    private int keyColumnId;
+    private PartitionedMetaData tMetaData;
+    private transient TableImpl[] partitions;
+    //Partitions changed since they were last written
+    private transient BitSet changedPartitions;
+    //Live rows of all partitions in table ids, built on demand and dropped on every change
+    private transient volatile BitSet liveRows;
+    private transient ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public PartitionedTableImpl(int tableId, String tableName, Map<String, Type> schema, PartitionSpec spec) {
+        Type keyType = schema.get(spec.getColumnName());
+
+        if (keyType == null) {
+            throw new IllegalArgumentException("The partitioning column " + spec.getColumnName() + " is not in the schema");
+        }
+
+        if (spec.getType() == PartitionType.RANGE && keyType != Type.INTEGER && keyType != Type.DATE) {
+            throw new IllegalArgumentException("Range partitions need an INTEGER or DATE column, " + spec.getColumnName() + " is " + keyType);
+        }
+
+        this.spec = spec;
+        this.partitions = new TableImpl[spec.getPartitionCount()];
+        //same schema map, so every partition gives the columns the same ids
+        for (int p = 0; p < partitions.length; p++) {
+            partitions[p] = new TableImpl(tableId, tableName, schema);
+        }
+
+        this.keyColumnId = partitions[0].getSchema().getColumn(spec.getColumnName()).getMetaData().getId();
+        this.tMetaData = new PartitionedMetaData(this, tableId, tableName);
+        this.changedPartitions = new BitSet();
+        changedPartitions.set(0, partitions.length);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        partitions = new TableImpl[spec.getPartitionCount()];
+        changedPartitions = new BitSet();
+        lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Returns the lock of the table, partitions are only locked through it.
+     * The query layer uses it like the lock of a TableImpl.
+     */
+    public ReadWriteLock getLock() {
+        return lock;
+    }
+
+    public PartitionSpec getSpec() {
+        return spec;
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    public TableImpl getPartition(int partition) {
+        return partitions[partition];
+    }
+
+    /**
+     * Puts a partition read back by the persistence layer in place.
+     */
+    public void setPartition(int partition, TableImpl table) {
+        partitions[partition] = table;
+        liveRows = null;
+    }
+
+    /**
+     * Returns the current name of the partitioning column.
+     */
+    public String getKeyColumnName() {
+        for (ColumnMetaData cMetData : partitions[0].getSchema().getColumnMetaData()) {
+            if (cMetData.getId() == keyColumnId) {
+                return cMetData.getName();
+            }
+        }
+        return spec.getColumnName();
+    }
+
+    public Type getKeyType() {
+        return partitions[0].getSchema().getColumn(getKeyColumnName()).getMetaData().getType();
+    }
+
+    /**
+     * Returns the partition a key value belongs to.
+     */
+    public int partitionOf(Object key) {
+        return spec.partitionOf(key);
+    }
+
+    public int partitionOfRow(int rowId) {
+        return (rowId - 1) % partitions.length;
+    }
+
+    public int toLocalId(int rowId) {
+        return (rowId - 1) / partitions.length + 1;
+    }
+
+    public int toRowId(int partition, int localId) {
+        return (localId - 1) * partitions.length + partition + 1;
+    }
+
+    /**
+     * Sets the bits of a partition's row bitmap in a bitmap of the table's
+     * rows, both starting at bit 0 for row 1.
+     */
+    public void mergeRows(BitSet target, int partition, BitSet rows) {
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            target.set(row * partitions.length + partition);
+        }
+    }
+
+    /**
+     * Returns the bitmap of the live rows of all partitions. It is merged
+     * once and kept until the table changes, like the delete list of a
+     * TableImpl it must not be modified.
+     */
+    public BitSet getLiveRows() {
+        BitSet live = liveRows;
+        if (live == null) {
+            live = new BitSet();
+            for (int p = 0; p < partitions.length; p++) {
+                mergeRows(live, p, ((TableMetaDataImpl) partitions[p].getTableMetaData()).getDeleteList());
+            }
+            liveRows = live;
+        }
+        return live;
+    }
+
+    /**
+     * Returns the partitions changed since the persistence layer last wrote
+     * them. The persistence layer clears it.
+     */
+    public BitSet getChangedPartitions() {
+        return changedPartitions;
+    }
+
+    /**
+     * Called after every change of a partition, also by the query layer
+     * when it writes partitions directly.
+     */
+    public void markChanged(int partition) {
+        changedPartitions.set(partition);
+        liveRows = null;
+    }
+
+    private void markAllChanged() {
+        changedPartitions.set(0, partitions.length);
+        liveRows = null;
+    }
+
+    /**
+     * Moves the given rows of a partition to another one by adding them
+     * there and deleting them here, they get new ids. Updates of the key
+     * column call it for the rows whose key now belongs elsewhere.
+     */
+    public void moveRows(int partition, BitSet rows, int target) throws NoSuchRowException, SchemaMismatchException {
+        if (partition == target) {
+            return;
+        }
+
+        BitSet[] targets = new BitSet[partitions.length];
+        targets[target] = rows;
+        moveRows(partition, targets);
+    }
+
+    /**
+     * Moves the rows of targets[t] of a partition to partition t. The rows
+     * are deleted together once all are added, a compaction of the
+     * partition cannot change the ids of rows still to be moved.
+     */
+    private void moveRows(int partition, BitSet[] targets) throws NoSuchRowException, SchemaMismatchException {
+        ArrayIntList moved = new ArrayIntList();
+
+        for (int t = 0; t < targets.length; t++) {
+            if (targets[t] == null || t == partition) {
+                continue;
+            }
+            for (int row = targets[t].nextSetBit(0); row >= 0; row = targets[t].nextSetBit(row + 1)) {
+                partitions[t].addRow(partitions[partition].getRow(row + 1));
+                moved.add(row + 1);
+            }
+            markChanged(t);
+        }
+
+        if (!moved.isEmpty()) {
+            partitions[partition].deleteRows(new IdCursorImpl(moved));
+            markChanged(partition);
+        }
+    }
+
+    /**
+     * Moves every live row whose key belongs to another partition there,
+     * after the values of the key column were replaced.
+     */
+    private void repartition() throws SchemaMismatchException {
+        String keyName = getKeyColumnName();
+
+        for (int p = 0; p < partitions.length; p++) {
+            ExtendedColumn key = partitions[p].getSchema().getColumn(keyName);
+            BitSet live = ((TableMetaDataImpl) partitions[p].getTableMetaData()).getDeleteList();
+            BitSet[] targets = new BitSet[partitions.length];
+
+            for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+                int target = partitionOf(key.isNull(row) ? null : key.getObject(row));
+                if (target != p) {
+                    if (targets[target] == null) {
+                        targets[target] = new BitSet();
+                    }
+                    targets[target].set(row);
+                }
+            }
+
+            try {
+                moveRows(p, targets);
+            } catch (NoSuchRowException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * Copies the table to one TableImpl with the same row ids, gaps and
+     * deleted rows are deleted rows of the copy. Joins read the typed data
+     * of whole columns and run over the copy.
+     */
+    TableImpl toTable() {
+        TableImpl copy = new TableImpl(tMetaData.getId(), tMetaData.getName(), new HashMap<String, Type>());
+
+        try {
+            for (ExtendedColumn column : partitions[0].sortColumns()) {
+                copy.addColumn(getColumn(column.getMetaData().getId()));
+            }
+
+            BitSet live = getLiveRows();
+            ArrayIntList dead = new ArrayIntList();
+            for (int row = live.nextClearBit(0); row < getRowIdBound(); row = live.nextClearBit(row + 1)) {
+                dead.add(row + 1);
+            }
+            copy.deleteRows(new IdCursorImpl(dead));
+        } catch (SchemaMismatchException | ColumnAlreadyExistsException | NoSuchColumnException | NoSuchRowException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Returns a cursor over the given rows, rows being a bitmap of the
+     * table's row ids starting at bit 0. The columns are picked by name, all
+     * of them for null or "*".
+     */
+    public RowCursor getRows(BitSet rows, List<String> colNames) {
+        boolean all = colNames == null || (colNames.size() == 1 && colNames.get(0).equals("*"));
+        ExtendedColumn[][] columns = new ExtendedColumn[partitions.length][];
+
+        for (int p = 0; p < partitions.length; p++) {
+            SchemaSnapshot snapshot = partitions[p].getSchema();
+            if (all) {
+                columns[p] = snapshot.getColumns();
+            } else {
+                columns[p] = new ExtendedColumn[colNames.size()];
+                for (int i = 0; i < colNames.size(); i++) {
+                    columns[p][i] = snapshot.getColumn(colNames.get(i));
+                }
+            }
+        }
+
+        ColumnMetaData[] metaData = new ColumnMetaData[columns[0].length];
+        for (int i = 0; i < metaData.length; i++) {
+            metaData[i] = columns[0][i].getMetaData();
+        }
+
+        return new PartitionedRowCursor(columns, metaData, rows);
+    }
+
+    private Object keyOf(Row row) {
+        RowMetaData rMetaData = row.getMetaData();
+        String keyName = getKeyColumnName();
+
+        for (int i = 0; i < rMetaData.getColumnCount(); i++) {
+            ColumnMetaData cMetData = rMetaData.getColumnMetaData(i);
+            if (cMetData.getName().equals(keyName)) {
+                try {
+                    return row.isNull(i) ? null : TableImpl.getValue(row, i, cMetData.getType());
+                } catch (ParseException ex) {
+                    return null;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Throws if no partition has the row, deleted rows pass like in
+     * TableImpl.
+     */
+    private void checkRow(int rowId) throws NoSuchRowException {
+        if (rowId < 1 || toLocalId(rowId) > partitions[partitionOfRow(rowId)].getStoredRowCount()) {
+            throw new NoSuchRowException("Row does not exist");
+        }
+    }
+
+    /**
+     * Returns one more than the largest row id in use, the size of the
+     * interleaved id space.
+     */
+    int getRowIdBound() {
+        int bound = 0;
+        for (int p = 0; p < partitions.length; p++) {
+            int stored = partitions[p].getStoredRowCount();
+            if (stored > 0) {
+                bound = Math.max(bound, toRowId(p, stored));
+            }
+        }
+        return bound;
+    }
+
+    @Override
+    public void renameColumn(int columnId, String newColumnName) throws ColumnAlreadyExistsException, NoSuchColumnException {
+        for (TableImpl partition : partitions) {
+            partition.renameColumn(columnId, newColumnName);
+        }
+        markAllChanged();
+    }
+
+    @Override
+    public int createColumn(String columnName, Type columnType) throws ColumnAlreadyExistsException {
+        int columnId = -1;
+        for (TableImpl partition : partitions) {
+            columnId = partition.createColumn(columnName, columnType);
+        }
+        markAllChanged();
+        return columnId;
+    }
+
+    @Override
+    public int addRow(Row row) throws SchemaMismatchException {
+        int p = partitionOf(keyOf(row));
+        TableImpl partition = partitions[p];
+        int stored = partition.getStoredRowCount();
+
+        //a reused slot comes back as the id, an appended row is the new last one
+        int localId = partition.addRow(row);
+        if (partition.getStoredRowCount() > stored) {
+            localId = stored + 1;
+        }
+
+        markChanged(p);
+        return toRowId(p, localId);
+    }
+
+    @Override
+    public IdCursor addRows(RowCursor rows) throws SchemaMismatchException {
+        ArrayIntList ids = new ArrayIntList();
+
+        while (rows.next()) {
+            ids.add(addRow(rows));
+        }
+
+        return new IdCursorImpl(ids);
+    }
+
+    /**
+     * Splits the column by row id, every partition loads the values of its
+     * rows. Like for a TableImpl the column has a value for every row id,
+     * gaps included.
+     */
+    @Override
+    public int addColumn(Column column) throws SchemaMismatchException, ColumnAlreadyExistsException {
+        if (column instanceof ColumnCursorImpl) {
+            column = ((ColumnCursorImpl) column).getCurrentColumn();
+        }
+        checkRowCount(column);
+
+        int columnId = -1;
+        for (int p = 0; p < partitions.length; p++) {
+            columnId = partitions[p].addColumn(new PartitionSlice(column, p));
+        }
+        markAllChanged();
+        return columnId;
+    }
+
+    @Override
+    public IdCursor addColumns(ColumnCursor columns) throws SchemaMismatchException, ColumnAlreadyExistsException {
+        ArrayIntList ids = new ArrayIntList();
+
+        while (columns.next()) {
+            ids.add(addColumn(columns));
+        }
+
+        return new IdCursorImpl(ids);
+    }
+
+    private void checkRowCount(Column column) throws SchemaMismatchException {
+        int rowCount = column.getMetaData().getRowCount();
+        if (rowCount != getRowIdBound()) {
+            throw new SchemaMismatchException("The Column has " + rowCount + " values, the table " + getRowIdBound() + " row ids");
+        }
+    }
+
+    @Override
+    public void deleteRow(int rowId) throws NoSuchRowException {
+        checkRow(rowId);
+        int p = partitionOfRow(rowId);
+        partitions[p].deleteRow(toLocalId(rowId));
+        markChanged(p);
+    }
+
+    @Override
+    public void deleteRows(IdCursor rowIds) throws NoSuchRowException {
+        ArrayIntList[] ids = new ArrayIntList[partitions.length];
+
+        while (rowIds.next()) {
+            int rowId = rowIds.getId();
+            checkRow(rowId);
+
+            int p = partitionOfRow(rowId);
+            if (ids[p] == null) {
+                ids[p] = new ArrayIntList();
+            }
+            ids[p].add(toLocalId(rowId));
+        }
+
+        for (int p = 0; p < partitions.length; p++) {
+            if (ids[p] != null) {
+                partitions[p].deleteRows(new IdCursorImpl(ids[p]));
+                markChanged(p);
+            }
+        }
+    }
+
+    /**
+     * The partitioning column cannot be dropped, it is rejected with a
+     * NoSuchColumnException like a column the table does not have.
+     */
+    @Override
+    public void dropColumn(int columnId) throws NoSuchColumnException {
+        if (columnId == keyColumnId) {
+            throw new NoSuchColumnException("The partitioning column " + getKeyColumnName() + " cannot be dropped");
+        }
+
+        for (TableImpl partition : partitions) {
+            partition.dropColumn(columnId);
+        }
+        markAllChanged();
+    }
+
+    @Override
+    public void dropColumns(IdCursor columnIds) throws NoSuchColumnException {
+        while (columnIds.next()) {
+            dropColumn(columnIds.getId());
+        }
+    }
+
+    /**
+     * Returns a read only view of the column over the table's row ids.
+     */
+    @Override
+    public Column getColumn(int columnId) throws NoSuchColumnException {
+        ExtendedColumn[] columns = new ExtendedColumn[partitions.length];
+        for (int p = 0; p < partitions.length; p++) {
+            columns[p] = partitions[p].getColumn(columnId);
+        }
+
+        return new ColumnView(columns);
+    }
+
+    @Override
+    public ColumnCursor getColumns(IdCursor columnIds) throws NoSuchColumnException {
+        List<Column> cols = new ArrayList<>();
+
+        while (columnIds.next()) {
+            cols.add(getColumn(columnIds.getId()));
+        }
+
+        return new ColumnCursorImpl(cols);
+    }
+
+    @Override
+    public RowCursor getRows(IdCursor rowIds) throws NoSuchRowException {
+        BitSet rows = new BitSet();
+
+        while (rowIds.next()) {
+            checkRow(rowIds.getId());
+            rows.set(rowIds.getId() - 1);
+        }
+
+        return getRows(rows, null);
+    }
+
+    @Override
+    public Row getRow(int rowId) throws NoSuchRowException {
+        checkRow(rowId);
+
+        BitSet row = new BitSet();
+        row.set(rowId - 1);
+        RowCursor cursor = getRows(row, null);
+        cursor.next();
+        return cursor;
+    }
+
+    /**
+     * Updates the row in its partition. A new key of another partition
+     * moves the row there, it then gets a new id and rowId becomes a
+     * deleted row.
+     */
+    @Override
+    public void updateRow(int rowId, Row newRow) throws SchemaMismatchException, NoSuchRowException {
+        checkRow(rowId);
+        int p = partitionOfRow(rowId);
+        int localId = toLocalId(rowId);
+
+        partitions[p].updateRow(localId, newRow);
+        markChanged(p);
+
+        Object key = partitions[p].getSchema().getColumn(getKeyColumnName()).getObject(localId - 1);
+        int target = partitionOf(key);
+        if (target != p) {
+            BitSet moved = new BitSet();
+            moved.set(localId - 1);
+            moveRows(p, moved, target);
+        }
+    }
+
+    @Override
+    public void updateRows(IdCursor rowIds, RowCursor newRows) throws SchemaMismatchException, NoSuchRowException {
+        while (newRows.next()) {
+            rowIds.next();
+            updateRow(rowIds.getId(), newRows);
+        }
+    }
+
+    @Override
+    public void updateColumns(IdCursor columnIds, ColumnCursor updateColumns) throws SchemaMismatchException, NoSuchColumnException {
+        while (columnIds.next()) {
+            if (!updateColumns.next()) {
+                throw new SchemaMismatchException("There are less columns than column ids");
+            }
+            updateColumn(columnIds.getId(), updateColumns);
+        }
+    }
+
+    /**
+     * Splits the column by row id like addColumn. New values of the key
+     * column move the rows whose key now belongs to another partition
+     * there, they get new ids.
+     */
+    @Override
+    public void updateColumn(int columnId, Column updateColumn) throws SchemaMismatchException, NoSuchColumnException {
+        if (updateColumn instanceof ColumnCursorImpl) {
+            updateColumn = ((ColumnCursorImpl) updateColumn).getCurrentColumn();
+        }
+        checkRowCount(updateColumn);
+
+        for (int p = 0; p < partitions.length; p++) {
+            partitions[p].updateColumn(columnId, new PartitionSlice(updateColumn, p));
+        }
+        markAllChanged();
+
+        if (columnId == keyColumnId) {
+            repartition();
+        }
+    }
+
+    @Override
+    public TableMetaData getTableMetaData() {
+        return tMetaData;
+    }
+
+    @Override
+    public RowCursor getRows() {
+        return getRows(getLiveRows(), null);
+    }
+
+    @Override
+    public ColumnCursor getColumns() {
+        List<Column> cols = new ArrayList<>();
+
+        try {
+            for (ColumnMetaData cMetData : partitions[0].getSchema().getColumnMetaData()) {
+                cols.add(getColumn(cMetData.getId()));
+            }
+        } catch (NoSuchColumnException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        return new ColumnCursorImpl(cols);
+    }
+
+    /**
+     * Creates the index in every partition, each indexes its own rows.
+     */
+    @Override
+    public int createIndex(String indexName, int keyColumnId, IndexType indexType) throws IndexAlreadyExistsException, NoSuchColumnException {
+        int indexId = -1;
+        for (TableImpl partition : partitions) {
+            indexId = partition.createIndex(indexName, keyColumnId, indexType);
+        }
+        markAllChanged();
+        return indexId;
+    }
+
+    @Override
+    public void dropIndex(int indexId) throws NoSuchIndexException {
+        for (TableImpl partition : partitions) {
+            partition.dropIndex(indexId);
+        }
+        markAllChanged();
+    }
+
+    /**
+     * Returns the indexes of all partitions, one per partition for every
+     * index created on the table.
+     */
+    @Override
+    public Collection<Index> getIndexes(int keyColumnId) throws NoSuchColumnException {
+        List<Index> indexes = new ArrayList<>();
+        for (TableImpl partition : partitions) {
+            indexes.addAll(partition.getIndexes(keyColumnId));
+        }
+        return indexes;
+    }
+
+    @Override
+    public Collection<Index> getIndexes() {
+        List<Index> indexes = new ArrayList<>();
+        for (TableImpl partition : partitions) {
+            indexes.addAll(partition.getIndexes());
+        }
+        return indexes;
+    }
+
+    /**
+     * Returns the index of the first partition, its row ids are ids of that
+     * partition.
+     */
+    @Override
+    public Index getIndex(int indexId) throws NoSuchIndexException {
+        return partitions[0].getIndex(indexId);
+    }
+
+    /**
+     * Rebuilds the column statistics of every partition, queries estimate
+     * per partition.
+     */
+    public void analyze() {
+        for (TableImpl partition : partitions) {
+            partition.analyze();
+        }
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (TableImpl partition : partitions) {
+            bytes += partition.getMemoryUsage();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getDeleteListMemoryUsage() {
+        long bytes = 0;
+        for (TableImpl partition : partitions) {
+            bytes += partition.getDeleteListMemoryUsage();
+        }
+        return bytes;
+    }
+
+    /**
+     * Meta data of the whole table. The schema is the one of the first
+     * partition, counts and the live rows are summed over all of them.
+     */
+    private static final class PartitionedMetaData extends TableMetaDataImpl {
+
+        private static final long serialVersionUID = 5870212278513350342L;
+        private final PartitionedTableImpl table;
+
+        PartitionedMetaData(PartitionedTableImpl table, int tableId, String tableName) {
+            super(table, tableId, tableName, null);
+            this.table = table;
+        }
+
+        @Override
+        public Map<String, ColumnMetaData> getTableSchema() {
+            return table.partitions[0].getTableMetaData().getTableSchema();
+        }
+
+        @Override
+        public int getRowCount() {
+            int count = 0;
+            for (TableImpl partition : table.partitions) {
+                count += partition.getTableMetaData().getRowCount();
+            }
+            return count;
+        }
+
+        /**
+         * Returns the live rows kept by the table, see getLiveRows. Gaps of
+         * the id space are clear bits like deleted rows.
+         */
+        @Override
+        public BitSet getDeleteList() {
+            return table.getLiveRows();
+        }
+
+        @Override
+        public void setTableName(String tableName) {
+            super.setTableName(tableName);
+            for (TableImpl partition : table.partitions) {
+                ((TableMetaDataImpl) partition.getTableMetaData()).setTableName(tableName);
+            }
+        }
+    }
+
+    /**
+     * The values of a column over the table's row ids that belong to one
+     * partition, position j reads position j * n + p of the source.
+     */
+    private final class PartitionSlice implements Column {
+
+        private final Column source;
+        private final int partition;
+        private final ColumnMetaDataImpl metaData;
+
+        PartitionSlice(Column source, int partition) {
+            this.source = source;
+            this.partition = partition;
+            ColumnMetaData cMetData = source.getMetaData();
+            this.metaData = new ColumnMetaDataImpl(PartitionedTableImpl.this, cMetData.getName(), cMetData.getType(), cMetData.getId());
+            metaData.setRowCount(partitions[partition].getStoredRowCount());
+        }
+
+        private int sourceIndex(int index) {
+            if (index < 0 || index >= metaData.getRowCount()) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + metaData.getRowCount());
+            }
+            return index * partitions.length + partition;
+        }
+
+        @Override
+        public ColumnMetaData getMetaData() {
+            return metaData;
+        }
+
+        @Override
+        public int getInteger(int index) throws IndexOutOfBoundsException, ClassCastException {
+            return source.getInteger(sourceIndex(index));
+        }
+
+        @Override
+        public boolean getBoolean(int index) throws IndexOutOfBoundsException, ClassCastException {
+            return source.getBoolean(sourceIndex(index));
+        }
+
+        @Override
+        public double getDouble(int index) throws IndexOutOfBoundsException, ClassCastException {
+            return source.getDouble(sourceIndex(index));
+        }
+
+        @Override
+        public Date getDate(int index) throws IndexOutOfBoundsException, ClassCastException {
+            return source.getDate(sourceIndex(index));
+        }
+
+        @Override
+        public String getString(int index) throws IndexOutOfBoundsException {
+            return source.getString(sourceIndex(index));
+        }
+
+        @Override
+        public Object getObject(int index) throws IndexOutOfBoundsException {
+            return source.getObject(sourceIndex(index));
+        }
+
+        @Override
+        public boolean isNull(int index) throws IndexOutOfBoundsException {
+            return source.isNull(sourceIndex(index));
+        }
+    }
+
+    /**
+     * Column over the table's row ids, position i reads position i / n of
+     * partition i % n. Gaps read as nulls.
+     */
+    private final class ColumnView implements Column {
+
+        private final ExtendedColumn[] columns;
+        private final ColumnMetaDataImpl metaData;
+
+        ColumnView(ExtendedColumn[] columns) {
+            this.columns = columns;
+            ColumnMetaData first = columns[0].getMetaData();
+            this.metaData = new ColumnMetaDataImpl(PartitionedTableImpl.this, first.getName(), first.getType(), first.getId());
+            metaData.setRowCount(getRowIdBound());
+        }
+
+        private ExtendedColumn columnOf(int index) {
+            if (index < 0 || index >= metaData.getRowCount()) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + metaData.getRowCount());
+            }
+            return columns[index % columns.length];
+        }
+
+        private boolean isGap(int index) {
+            return index / columns.length >= columnOf(index).getMetaData().getRowCount();
+        }
+
+        @Override
+        public ColumnMetaData getMetaData() {
+            return metaData;
+        }
+
+        @Override
+        public int getInteger(int index) throws IndexOutOfBoundsException, ClassCastException {
+            return isGap(index) ? Type.NULL_VALUE_INTEGER : columnOf(index).getInteger(index / columns.length);
+        }
+
+        @Override
+        public boolean getBoolean(int index) throws IndexOutOfBoundsException, ClassCastException {
+            return isGap(index) ? Type.NULL_VALUE_BOOLEAN : columnOf(index).getBoolean(index / columns.length);
+        }
+
+        @Override
+        public double getDouble(int index) throws IndexOutOfBoundsException, ClassCastException {
+            return isGap(index) ? Type.NULL_VALUE_DOUBLE : columnOf(index).getDouble(index / columns.length);
+        }
+
+        @Override
+        public Date getDate(int index) throws IndexOutOfBoundsException, ClassCastException {
+            return isGap(index) ? null : columnOf(index).getDate(index / columns.length);
+        }
+
+        @Override
+        public String getString(int index) throws IndexOutOfBoundsException {
+            return isGap(index) ? null : columnOf(index).getString(index / columns.length);
+        }
+
+        @Override
+        public Object getObject(int index) throws IndexOutOfBoundsException {
+            return isGap(index) ? null : columnOf(index).getObject(index / columns.length);
+        }
+
+        @Override
+        public boolean isNull(int index) throws IndexOutOfBoundsException {
+            return isGap(index) || columnOf(index).isNull(index / columns.length);
+        }
+    }
+}
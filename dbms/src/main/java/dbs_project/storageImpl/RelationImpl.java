@@ -1,10 +1,11 @@
 package dbs_project.storageImpl;
 
 import dbs_project.exceptions.InvalidKeyException;
+import dbs_project.exceptions.InvalidRangeException;
 import dbs_project.exceptions.NoSuchColumnException;
-import dbs_project.exceptions.NoSuchRowException;
 import dbs_project.exceptions.NoSuchTableException;
 import dbs_project.exceptions.QueryExecutionException;
+import dbs_project.exceptions.RangeQueryNotSupportedException;
 import dbs_project.index.Index;
 import dbs_project.index.IndexType;
 import dbs_project.indexImpl.HashTable;
@@ -15,29 +16,46 @@ import dbs_project.query.predicate.Operator;
 import dbs_project.query.predicate.impl.Expressions;
 import dbs_project.storage.ColumnCursor;
 import dbs_project.storage.ColumnMetaData;
+import dbs_project.storage.ColumnStatistics;
+import dbs_project.storage.DoubleColumnView;
 import dbs_project.storage.ExtendedColumn;
+import dbs_project.storage.IntColumnView;
+import dbs_project.storage.LongColumnView;
+import dbs_project.storage.PartitionSpec;
+import dbs_project.storage.PartitionType;
 import dbs_project.storage.Relation;
 import dbs_project.storage.Row;
+import dbs_project.storage.RowBatchCursor;
 import dbs_project.storage.RowCursor;
 import dbs_project.storage.StorageLayer;
 import dbs_project.storage.Table;
 import dbs_project.storage.TableMetaData;
+import dbs_project.storage.Type;
 import dbs_project.util.IdCursor;
+import dbs_project.utilImpl.BitPackedIntList;
 import dbs_project.utilImpl.BooleanArrayList;
-import dbs_project.utilImpl.IdCursorImpl;
+import dbs_project.utilImpl.DictionaryStringList;
+import dbs_project.utilImpl.StringArenaList;
+import dbs_project.utilImpl.RunLengthIntList;
+import dbs_project.utilImpl.ZoneMap;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.apache.commons.collections.primitives.ArrayDoubleList;
-import org.apache.commons.collections.primitives.ArrayIntList;
+import org.apache.commons.collections.primitives.IntList;
 
 /**
  *
@@ -45,6 +63,17 @@ import org.apache.commons.collections.primitives.ArrayIntList;
  */
 public class RelationImpl implements Relation {
 
+    //Rows from which predicates are evaluated on SCAN_POOL, smaller columns are scanned by the caller
+    static final int PARALLEL_SCAN_THRESHOLD = Integer.getInteger("dbs.scan.threshold", 1 << 19);
+    //Workers of parallel scans, -Ddbs.scan.parallelism=1 keeps all scans on the calling thread
+    static final ForkJoinPool SCAN_POOL = new ForkJoinPool(Integer.getInteger("dbs.scan.parallelism", Runtime.getRuntime().availableProcessors()));
+    //Relative costs of the access paths, a scan pays for every row of the column, an index for its probe and every match
+    static final double SCAN_ROW_COST = 1;
+    static final double INDEX_ROW_COST = 8;
+    static final double HASH_PROBE_COST = 16;
+    static final double TREE_PROBE_COST = 64;
+    //Forms of DATE literals that name a whole day, see dateEqualsRange
+    private static final String[] DAY_FORMATS = {"yyyy-MM-dd", "MMMM d, yyyy"};
     StorageLayer storage;
     List<Table> tables;
     List<String> colNames;
@@ -79,74 +108,77 @@ public class RelationImpl implements Relation {
         tables.add(table);
     }
 
-    @Override
-    public RowCursor getRows() {
-        if (tables.size() == 1) {                           //For single tables only
-            if (predicate == null) {                                                    //When no predicate present
-                if (colNames.size() == 1 && colNames.get(0).equals("*")) {              //When all columns are selected
-                    return tables.get(0).getRows();
-                } else {                                                              //When selected columns are selected
-                    List<Row> rows = new ArrayList<>();
-                    ColumnMetaData[] cMetadata = new ColumnMetaData[colNames.size()];
-                    List<ExtendedColumn> columns = new ArrayList<>();
-
-                    LoadColumnNamesForSingleTable(cMetadata, columns);
-
-                    BitSet rowBitList = ((TableMetaDataImpl) tables.get(0).getTableMetaData()).getDeleteList();
-
-                    int rowIndex = rowBitList.nextSetBit(0);
-                    while (rowIndex != -1) {
-                        Row row = new RowImpl(rowIndex + 1, cMetadata, columns, colNames.size());
-                        rows.add(row);
-                        rowIndex = rowBitList.nextSetBit(rowIndex + 1);
-                    }
-
-                    return new RowCursorImpl(rows);
-                }
-            } else {                                                                  //When predicate is present
-                List<BitSet> resultSet = new ArrayList<>();
-
-                try {
-                    parseExpressionTree(resultSet, predicate);
-
-                    if (resultSet.size() == 1) {
-                        BitSet resultBits = resultSet.get(0);
-                        int ind = resultBits.nextSetBit(0);
-
-                        if (colNames.size() == 1 && colNames.get(0).equals("*")) {
-                            ArrayIntList ids = new ArrayIntList();
-                            while (ind != -1) {
-                                ids.add(ind);
-                                ind = resultBits.nextSetBit(ind + 1);
-                            }
-
-                            return tables.get(0).getRows(new IdCursorImpl(ids));
-                        } else {                                                                //When selected columns are selected
-                            List<ExtendedColumn> columns = new ArrayList<>();
-                            ColumnMetaData[] cMetadata = new ColumnMetaData[colNames.size()];
-                            List<Row> rows = new ArrayList<>();
-
-                            if (ind == -1) {
-                                return new RowCursorImpl(rows);
-                            }
+    /**
+     * Relation over copies of the tables of a join, it evaluates the join.
+     */
+    private RelationImpl(List<Table> tables, List<String> colNames, ExpressionElement predicate) {
+        this.tables = tables;
+        this.colNames = colNames;
+        this.predicate = predicate;
+    }
 
-                            LoadColumnNamesForSingleTable(cMetadata, columns);
+    /**
+     * Relation over one partition, it only evaluates predicates.
+     */
+    private RelationImpl(TableImpl partition, ExpressionElement predicate) {
+        this.tables = new ArrayList<>();
+        tables.add(partition);
+        this.predicate = predicate;
+    }
 
-                            while (ind != -1) {
-                                rows.add(new RowImpl(ind + 1, cMetadata, columns, colNames.size()));
-                                ind = resultBits.nextSetBit(ind + 1);
-                            }
+    /**
+     * Evaluates the relation holding the read locks of its tables and copies
+     * the result before the locks are released, so a statement is seen
+     * completely or not at all. Only the selected columns of the matching
+     * rows are copied, see copyRows. Join results are copied row by row
+     * already.
+     */
+    @Override
+    public RowCursor getRows() {
+        List<Lock> locks = lockTables();
+        try {
+            RowCursor rows = evaluateRows();
+            if (rows == null || rows instanceof MaterializedRowCursor || tables.size() > 1) {
+                return rows;
+            }
+            return new MaterializedRowCursor(rows);
+        } finally {
+            unlock(locks);
+        }
+    }
 
-                            return new RowCursorImpl(rows);
-                        }
+    private RowCursor evaluateRows() {
+        if (tables.size() == 1 && tables.get(0) instanceof PartitionedTableImpl) {
+            PartitionedTableImpl table = (PartitionedTableImpl) tables.get(0);
+            try {
+                BitSet[] results = evaluatePartitions(table, predicate);
+                BitSet rows = new BitSet();
+                for (int p = 0; p < results.length; p++) {
+                    if (results[p] != null) {
+                        table.mergeRows(rows, p, results[p]);
                     }
-
-                } catch (NoSuchColumnException | NoSuchRowException | ParseException | InvalidKeyException ex) {
-                    Logger.getLogger(RelationImpl.class.getName()).log(Level.SEVERE, null, ex);
-                    ex.printStackTrace();
                 }
+                return table.getRows(rows, colNames);
+            } catch (NoSuchColumnException | ParseException | InvalidKeyException ex) {
+                Logger.getLogger(RelationImpl.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        } else if (tables.size() == 1) {                           //For single tables only
+            try {
+                return copyRows((TableImpl) tables.get(0));
+            } catch (NoSuchColumnException | ParseException | InvalidKeyException ex) {
+                Logger.getLogger(RelationImpl.class.getName()).log(Level.SEVERE, null, ex);
+                ex.printStackTrace();
             }
         } else if (tables.size() > 1) {                        //For moer than 1 table
+            if (joinsPartitionedTable()) {
+                //the join reads the typed data of whole columns, partitioned tables take part as one copy
+                List<Table> copies = new ArrayList<>();
+                for (Table table : tables) {
+                    copies.add(table instanceof PartitionedTableImpl ? ((PartitionedTableImpl) table).toTable() : table);
+                }
+                return new RelationImpl(copies, colNames, predicate).evaluateRows();
+            }
+
             try {
                 Map<String, List<Expression>> filters = new HashMap<>();
                 List<Expression> joins = new ArrayList<>();
@@ -178,11 +210,371 @@ public class RelationImpl implements Relation {
         return null;
     }
 
+    /**
+     * Copies the selected columns of the rows of a single table that match
+     * the predicate, all live rows without one. The copy is read column by
+     * column while the caller holds the read lock, a cursor that read the
+     * columns lazily would need the lock until it is closed.
+     */
+    private RowCursor copyRows(TableImpl table) throws NoSuchColumnException, ParseException, InvalidKeyException {
+        List<ExtendedColumn> columns;
+        ColumnMetaData[] cMetadata;
+        if (colNames.size() == 1 && colNames.get(0).equals("*")) {              //When all columns are selected
+            SchemaSnapshot snapshot = table.getSchema();
+            columns = snapshot.getColumnList();
+            cMetadata = snapshot.getColumnMetaData();
+        } else {                                                              //When selected columns are selected
+            columns = new ArrayList<>();
+            cMetadata = new ColumnMetaData[colNames.size()];
+            LoadColumnNamesForSingleTable(cMetadata, columns);
+        }
+
+        BitSet rows;
+        if (predicate == null) {
+            rows = ((TableMetaDataImpl) table.getTableMetaData()).getDeleteList();
+        } else {
+            List<BitSet> resultSet = new ArrayList<>();
+            parseExpressionTree(resultSet, predicate);
+            if (resultSet.size() != 1) {
+                return null;
+            }
+            rows = resultSet.get(0);
+        }
+
+        return new MaterializedRowCursor(columns, cMetadata, rows);
+    }
+
+    private boolean joinsPartitionedTable() {
+        for (Table table : tables) {
+            if (table instanceof PartitionedTableImpl) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the result as batches of up to batchSize rows. Only relations
+     * over a single table are supported. The selected rows are fixed under
+     * the read lock, the vectors are read from the columns batch by batch,
+     * so batches are only consistent while no statement writes the table.
+     * Partitioned tables return the batches of one partition after the
+     * other, see PartitionedRowBatchCursor.
+     */
+    public RowBatchCursor getRowBatches(int batchSize) throws NoSuchColumnException, ParseException, InvalidKeyException {
+        if (tables.size() != 1) {
+            throw new UnsupportedOperationException("Batches are only supported for a single table");
+        }
+
+        List<Lock> locks = lockTables();
+        try {
+            if (tables.get(0) instanceof PartitionedTableImpl) {
+                return evaluatePartitionBatches((PartitionedTableImpl) tables.get(0), batchSize);
+            }
+            return evaluateBatches(batchSize);
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    private RowBatchCursor evaluatePartitionBatches(PartitionedTableImpl table, int batchSize) throws NoSuchColumnException, ParseException, InvalidKeyException {
+        BitSet[] results = evaluatePartitions(table, predicate);
+        RowBatchCursor[] cursors = new RowBatchCursor[results.length];
+        ColumnMetaData[] cMetadata = null;
+
+        for (int p = 0; p < results.length; p++) {
+            TableImpl partition = table.getPartition(p);
+            List<ExtendedColumn> columns;
+            if (colNames.size() == 1 && colNames.get(0).equals("*")) {
+                columns = partition.sortColumns();
+            } else {
+                columns = new ArrayList<>();
+                for (String colName : colNames) {
+                    ExtendedColumn column = partition.getSchema().getColumn(colName);
+                    if (column == null) {
+                        throw new NoSuchColumnException(colName + " was not found");
+                    }
+                    columns.add(column);
+                }
+            }
+
+            if (cMetadata == null) {
+                cMetadata = new ColumnMetaData[columns.size()];
+                for (int i = 0; i < cMetadata.length; i++) {
+                    cMetadata[i] = columns.get(i).getMetaData();
+                }
+            }
+
+            if (results[p] != null) {
+                cursors[p] = new RowBatchCursorImpl(columns, results[p], batchSize);
+            }
+        }
+
+        return new PartitionedRowBatchCursor(table, cursors, cMetadata);
+    }
+
+    private RowBatchCursor evaluateBatches(int batchSize) throws NoSuchColumnException, ParseException, InvalidKeyException {
+        List<ExtendedColumn> columns;
+        if (colNames.size() == 1 && colNames.get(0).equals("*")) {
+            columns = ((TableImpl) tables.get(0)).sortColumns();
+        } else {
+            columns = new ArrayList<>();
+            LoadColumnNamesForSingleTable(new ColumnMetaData[colNames.size()], columns);
+        }
+
+        BitSet rows;
+        if (predicate == null) {
+            rows = (BitSet) ((TableMetaDataImpl) tables.get(0).getTableMetaData()).getDeleteList().clone();
+        } else {
+            List<BitSet> resultSet = new ArrayList<>();
+            parseExpressionTree(resultSet, predicate);
+            rows = resultSet.get(0);
+        }
+
+        return new RowBatchCursorImpl(columns, rows, batchSize);
+    }
+
+    /**
+     * Takes the read locks of the tables ordered by table id, so relations
+     * over the same tables always lock them in the same order.
+     */
+    private List<Lock> lockTables() {
+        List<Table> ordered = new ArrayList<>(tables);
+        Collections.sort(ordered, new Comparator<Table>() {
+
+            @Override
+            public int compare(Table o1, Table o2) {
+                return Integer.compare(o1.getTableMetaData().getId(), o2.getTableMetaData().getId());
+            }
+        });
+
+        List<Lock> locks = new ArrayList<>();
+        for (Table table : ordered) {
+            Lock lock = null;
+            if (table instanceof TableImpl) {
+                lock = ((TableImpl) table).getLock().readLock();
+            } else if (table instanceof PartitionedTableImpl) {
+                lock = ((PartitionedTableImpl) table).getLock().readLock();
+            }
+
+            if (lock != null) {
+                lock.lock();
+                locks.add(lock);
+            }
+        }
+        return locks;
+    }
+
+    private static void unlock(List<Lock> locks) {
+        for (Lock lock : locks) {
+            lock.unlock();
+        }
+    }
+
     @Override
     public ColumnCursor getColumns() {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
+    /**
+     * Evaluates the predicate on every partition whose key range or hash can
+     * match it, on SCAN_POOL when there are several. Returns the matching
+     * rows of each partition by partition row, null for pruned partitions.
+     * Without a predicate all live rows match.
+     */
+    public BitSet[] evaluatePartitions(PartitionedTableImpl table, ExpressionElement predicate) throws NoSuchColumnException, ParseException, InvalidKeyException {
+        BitSet candidates = prunePartitions(table, predicate);
+        int[] scanned = new int[candidates.cardinality()];
+        for (int p = candidates.nextSetBit(0), i = 0; p >= 0; p = candidates.nextSetBit(p + 1)) {
+            scanned[i++] = p;
+        }
+
+        BitSet[] results = new BitSet[table.getPartitionCount()];
+        if (scanned.length < 2 || SCAN_POOL.getParallelism() < 2) {
+            for (int p : scanned) {
+                results[p] = evaluatePartition(table.getPartition(p), predicate);
+            }
+            return results;
+        }
+
+        try {
+            SCAN_POOL.invoke(new PartitionTask(table, predicate, scanned, 0, scanned.length, results));
+        } catch (IllegalArgumentException ex) {
+            for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+                if (cause instanceof ParseException) {
+                    throw (ParseException) cause;
+                } else if (cause instanceof NoSuchColumnException) {
+                    throw (NoSuchColumnException) cause;
+                } else if (cause instanceof InvalidKeyException) {
+                    throw (InvalidKeyException) cause;
+                }
+            }
+            throw ex;
+        }
+
+        return results;
+    }
+
+    private static BitSet evaluatePartition(TableImpl partition, ExpressionElement predicate) throws NoSuchColumnException, ParseException, InvalidKeyException {
+        if (predicate == null) {
+            return (BitSet) ((TableMetaDataImpl) partition.getTableMetaData()).getDeleteList().clone();
+        }
+
+        List<BitSet> resultSet = new ArrayList<>();
+        new RelationImpl(partition, predicate).parseExpressionTree(resultSet, predicate);
+        return resultSet.get(0);
+    }
+
+    /**
+     * Splits the partitions to scan in halves down to single partitions,
+     * which are evaluated by the workers of SCAN_POOL.
+     */
+    private static final class PartitionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final PartitionedTableImpl table;
+        private final ExpressionElement predicate;
+        private final int[] scanned;
+        private final int start;
+        private final int end;
+        private final BitSet[] results;
+
+        PartitionTask(PartitionedTableImpl table, ExpressionElement predicate, int[] scanned, int start, int end, BitSet[] results) {
+            this.table = table;
+            this.predicate = predicate;
+            this.scanned = scanned;
+            this.start = start;
+            this.end = end;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                int p = scanned[start];
+                try {
+                    results[p] = evaluatePartition(table.getPartition(p), predicate);
+                } catch (NoSuchColumnException | ParseException | InvalidKeyException ex) {
+                    throw new IllegalArgumentException(ex);
+                }
+                return;
+            }
+
+            int mid = (start + end) >>> 1;
+            invokeAll(new PartitionTask(table, predicate, scanned, start, mid, results),
+                    new PartitionTask(table, predicate, scanned, mid, end, results));
+        }
+    }
+
+    /**
+     * Returns the partitions that can hold rows matching the predicate. A
+     * comparison of the key column with a literal keeps the range
+     * partitions overlapping it, or for hash partitions the one partition
+     * of an equal key. AND intersects and OR unites the partitions of its
+     * operands, everything else keeps all of them.
+     */
+    private BitSet prunePartitions(PartitionedTableImpl table, ExpressionElement element) {
+        BitSet all = new BitSet();
+        all.set(0, table.getPartitionCount());
+
+        if (!(element instanceof Expression)) {
+            return all;
+        }
+
+        Expression expr = (Expression) element;
+        if (expr.getOperator() == Operator.AND || expr.getOperator() == Operator.OR) {
+            BitSet result = prunePartitions(table, expr.getOperand(0));
+            for (int i = 1; i < expr.getOperandCount(); i++) {
+                if (expr.getOperator() == Operator.AND) {
+                    result.and(prunePartitions(table, expr.getOperand(i)));
+                } else {
+                    result.or(prunePartitions(table, expr.getOperand(i)));
+                }
+            }
+            return result;
+        }
+
+        if (expr.getOperandCount() != 2 || !(expr.getOperand(0) instanceof Constant) || !(expr.getOperand(1) instanceof Constant)) {
+            return all;
+        }
+
+        Constant left = (Constant) expr.getOperand(0);
+        Constant right = (Constant) expr.getOperand(1);
+        Operator operator = expr.getOperator();
+        Constant literal;
+        if (left.getType() == Constant.ConstantType.COLUMN_NAME && right.getType() == Constant.ConstantType.VALUE_LITERAL) {
+            if (!left.getValue().equals(table.getKeyColumnName())) {
+                return all;
+            }
+            literal = right;
+        } else if (right.getType() == Constant.ConstantType.COLUMN_NAME && left.getType() == Constant.ConstantType.VALUE_LITERAL) {
+            if (!right.getValue().equals(table.getKeyColumnName())) {
+                return all;
+            }
+            //parseExpressionTree compares column op literal in either order, so pruning does too
+            literal = left;
+        } else {
+            return all;
+        }
+
+        Type keyType = table.getKeyType();
+        try {
+            if (table.getSpec().getType() == PartitionType.HASH) {
+                //doubles and dates match more than one stored key
+                if (operator != Operator.EQ || keyType == Type.DOUBLE || keyType == Type.DATE || keyType == Type.OBJECT) {
+                    return all;
+                }
+
+                Object key;
+                if (keyType == Type.INTEGER) {
+                    key = Integer.parseInt(literal.getValue());
+                } else if (keyType == Type.BOOLEAN) {
+                    key = Boolean.parseBoolean(literal.getValue());
+                } else {
+                    key = literal.getValue();
+                }
+
+                BitSet result = new BitSet();
+                result.set(table.partitionOf(key));
+                return result;
+            }
+
+            //the literals are parsed like the scans parse them
+            long low;
+            long high;
+            if (keyType == Type.DATE) {
+                if (operator == Operator.EQ) {
+                    long[] range = dateEqualsRange(literal.getValue());
+                    if (range == null) {
+                        return new BitSet();
+                    }
+                    low = range[0];
+                    high = range[1];
+                } else {
+                    long lit = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal.getValue()).getTime();
+                    low = operator == Operator.GT ? lit + 1 : operator == Operator.GEQ ? lit : Long.MIN_VALUE;
+                    high = operator == Operator.LT ? lit - 1 : operator == Operator.LEQ ? lit : Long.MAX_VALUE;
+                }
+            } else {
+                long lit = Integer.parseInt(literal.getValue());
+                low = operator == Operator.GT ? lit + 1 : operator == Operator.GEQ || operator == Operator.EQ ? lit : Long.MIN_VALUE;
+                high = operator == Operator.LT ? lit - 1 : operator == Operator.LEQ || operator == Operator.EQ ? lit : Long.MAX_VALUE;
+            }
+
+            BitSet result = new BitSet();
+            PartitionSpec spec = table.getSpec();
+            for (int p = 0; p < spec.getPartitionCount(); p++) {
+                if (spec.getLowerBound(p) <= high && spec.getUpperBound(p) >= low) {
+                    result.set(p);
+                }
+            }
+            return result;
+        } catch (NumberFormatException | ParseException ex) {
+            //the scan reports the literal, pruning just keeps everything
+            return all;
+        }
+    }
+
     private void LoadColumnNamesForSingleTable(ColumnMetaData[] cMetadata, List<ExtendedColumn> columns) {
         for (int i = 0; i < colNames.size(); i++) {
             ColumnMetaData columnMData = tables.get(0).getTableMetaData().getTableSchema().get(colNames.get(i));
@@ -219,36 +611,7 @@ public class RelationImpl implements Relation {
             }
 
             if (constant2.getType() == Constant.ConstantType.VALUE_LITERAL) {
-
-                if (column.getIndexes().size() > 0 && curExpr.getOperator() == Operator.EQ) {                       //if index is present
-                    Index index = column.getIndexes().get(0);
-
-                    IdCursor result = null;
-
-                    switch (column.getMetaData().getType()) {
-                        case INTEGER:
-                            result = index.pointQueryRowIds(Integer.parseInt(constant2.getValue()));
-                            break;
-                        case DOUBLE:
-                            result = index.pointQueryRowIds(Double.parseDouble(constant2.getValue()));
-                            break;
-                        case BOOLEAN:
-                            result = index.pointQueryRowIds(Boolean.parseBoolean(constant2.getValue()));
-                            break;
-                        case STRING:
-                            result = index.pointQueryRowIds(constant2.getValue());
-                            break;
-                        case DATE:
-                            result = index.pointQueryRowIds(new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH).parse(constant2.getValue()));
-                            break;
-                        case OBJECT:
-                    }
-
-                    resultSet.add(ArrayToBits(result));
-                } else {
-                    resultSet.add(compareToLiteral(column, constant2.getValue(), curExpr.getOperator()));
-                }
-
+                resultSet.add(compareColumn(column, constant2.getValue(), curExpr.getOperator()));
             }
 
             return resultSet.size() - 1;
@@ -275,82 +638,391 @@ public class RelationImpl implements Relation {
         }
     }
 
+    /**
+     * Evaluates a comparison of a column with a literal on the access path
+     * chooseIndex finds cheapest.
+     */
+    private BitSet compareColumn(ExtendedColumn column, String literal, Operator operater) throws ParseException, InvalidKeyException {
+        Index index = isSorted(column) ? null : chooseIndex(column, literal, operater);
+        if (index != null) {
+            BitSet found = queryIndex(index, column, literal, operater);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        return compareToLiteral(column, literal, operater);
+    }
+
+    /**
+     * Picks the access path for a comparison with a literal: a hash index for
+     * EQ on other types than DATE, a tree index for EQ and ranges on INTEGER,
+     * DOUBLE and DATE, or null for a scan. Each path costs the rows it touches, the scan every row of
+     * the column and an index a probe plus the matches the column statistics
+     * estimate, each of them a random access.
+     */
+    private static Index chooseIndex(ExtendedColumn column, String literal, Operator operater) throws ParseException {
+        Index hash = null;
+        Index tree = null;
+        for (Index index : column.getIndexes()) {
+            if (index.getIndexMetaInfo().getIndexType() == IndexType.HASH && hash == null) {
+                hash = index;
+            } else if (index.getIndexMetaInfo().getIndexType() == IndexType.TREE && tree == null) {
+                tree = index;
+            }
+        }
+
+        if (hash == null && tree == null) {
+            return null;
+        }
+
+        Type type = column.getMetaData().getType();
+        ColumnStatistics stats = column.getMetaData().getStatistics();
+        double rows;
+
+        if (operater == Operator.EQ && type == Type.DATE) {
+            //a DATE literal names a second or a day, only a tree index can look up the range
+            long[] range = dateEqualsRange(literal);
+            if (tree == null || range == null) {
+                return null;
+            }
+            if (stats == null) {
+                return tree;
+            }
+            hash = null;
+            rows = stats.estimateRange(new Date(range[0]), true, new Date(range[1]), true);
+        } else if (operater == Operator.EQ) {
+            if (stats == null) {
+                return column.getIndexes().get(0);
+            }
+            rows = stats.estimateEquals(parseLiteral(type, literal));
+        } else if (operater == Operator.LT || operater == Operator.LEQ || operater == Operator.GT || operater == Operator.GEQ) {
+            if (tree == null || stats == null || (type != Type.INTEGER && type != Type.DOUBLE && type != Type.DATE)) {
+                return null;
+            }
+            hash = null;
+            Object lit = parseLiteral(type, literal);
+            if (operater == Operator.LT || operater == Operator.LEQ) {
+                rows = stats.estimateRange(null, false, lit, operater == Operator.LEQ);
+            } else {
+                rows = stats.estimateRange(lit, operater == Operator.GEQ, null, false);
+            }
+        } else {
+            return null;
+        }
+
+        double scanCost = column.getMetaData().getRowCount() * SCAN_ROW_COST;
+        double hashCost = hash == null ? Double.MAX_VALUE : HASH_PROBE_COST + rows * INDEX_ROW_COST;
+        double treeCost = tree == null ? Double.MAX_VALUE : TREE_PROBE_COST + rows * INDEX_ROW_COST;
+
+        if (scanCost <= Math.min(hashCost, treeCost)) {
+            return null;
+        }
+        return hashCost <= treeCost ? hash : tree;
+    }
+
+    /**
+     * Reads a literal as the scan does for ranges, DATE literals in the
+     * "MMMM d, yyyy" form.
+     */
+    private static Object parseLiteral(Type type, String literal) throws ParseException {
+        switch (type) {
+            case INTEGER:
+                return Integer.parseInt(literal);
+            case DOUBLE:
+                return Double.parseDouble(literal);
+            case BOOLEAN:
+                return Boolean.parseBoolean(literal);
+            case DATE:
+                return new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal);
+            default:
+                return literal;
+        }
+    }
+
+    /**
+     * Reads the DATE literal of an EQ comparison as the first and last epoch
+     * millis it names, every access path matches the rows in between. A
+     * literal in Date.toString() form carries seconds and names its second,
+     * "yyyy-MM-dd" and "MMMM d, yyyy" literals name their whole day. Returns
+     * null for other literals, they match no row.
+     */
+    static long[] dateEqualsRange(String literal) {
+        try {
+            long second = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.ENGLISH).parse(literal).getTime();
+            return new long[]{second, second + 999};
+        } catch (ParseException ex) {
+            //not a second, try the day forms
+        }
+
+        for (String format : DAY_FORMATS) {
+            try {
+                Calendar day = Calendar.getInstance();
+                day.setTime(new SimpleDateFormat(format, Locale.ENGLISH).parse(literal));
+                long first = day.getTimeInMillis();
+                day.add(Calendar.DAY_OF_MONTH, 1);
+                return new long[]{first, day.getTimeInMillis() - 1};
+            } catch (ParseException ex) {
+                //try the next form
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Looks the rows of a comparison up in an index, only live rows without
+     * nulls are returned. Returns null if the index cannot answer it.
+     */
+    private BitSet queryIndex(Index index, ExtendedColumn column, String literal, Operator operater) throws ParseException, InvalidKeyException {
+        IdCursor result = null;
+        Type type = column.getMetaData().getType();
+
+        if (operater == Operator.EQ && type == Type.DATE) {
+            long[] range = dateEqualsRange(literal);
+            try {
+                result = index.rangeQueryRowIds(new Date(range[0]), new Date(range[1]), true, true);
+            } catch (InvalidRangeException | RangeQueryNotSupportedException ex) {
+                return null;
+            }
+        } else if (operater == Operator.EQ) {
+            switch (type) {
+                case INTEGER:
+                    result = index.pointQueryRowIds(Integer.parseInt(literal));
+                    break;
+                case DOUBLE:
+                    result = index.pointQueryRowIds(Double.parseDouble(literal));
+                    break;
+                case BOOLEAN:
+                    result = index.pointQueryRowIds(Boolean.parseBoolean(literal));
+                    break;
+                case STRING:
+                    result = index.pointQueryRowIds(literal);
+                    break;
+                case OBJECT:
+            }
+        } else {
+            Object lit = parseLiteral(type, literal);
+            Object low;
+            Object high;
+            switch (type) {
+                case INTEGER:
+                    low = Integer.MIN_VALUE;
+                    high = Integer.MAX_VALUE;
+                    break;
+                case DOUBLE:
+                    low = Double.NEGATIVE_INFINITY;
+                    high = Double.POSITIVE_INFINITY;
+                    break;
+                default:
+                    low = new Date(Long.MIN_VALUE);
+                    high = new Date(Long.MAX_VALUE);
+            }
+
+            try {
+                if (operater == Operator.LT || operater == Operator.LEQ) {
+                    result = index.rangeQueryRowIds(low, lit, true, operater == Operator.LEQ);
+                } else {
+                    result = index.rangeQueryRowIds(lit, high, operater == Operator.GEQ, true);
+                }
+            } catch (InvalidRangeException | RangeQueryNotSupportedException ex) {
+                return null;
+            }
+        }
+
+        if (result == null) {
+            return null;
+        }
+
+        BitSet found = ArrayToBits(result);
+        found.and(column.getValidRows());
+        return found;
+    }
+
     private BitSet compareToLiteral(ExtendedColumn col, String literal, Operator operater) throws ParseException {
-        BitSet vals = new BitSet();
-        BitSet delList = ((TableMetaDataImpl) col.getSrcTabMet()).getDeleteList();
+        if (isSorted(col)) {
+            BitSet found = searchSorted((ColumnImpl) col, literal, operater);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        //live rows without nulls, scans below need no null checks of their own
+        BitSet rows = col.getValidRows();
+
+        if (col.getData() instanceof RunLengthIntList) {
+            return compareRuns((RunLengthIntList) col.getData(), rows, Integer.parseInt(literal), operater);
+        }
+
+        if (col.getData() instanceof BitPackedIntList) {
+            return comparePacked(col, rows, Integer.parseInt(literal), operater);
+        }
+
+        if (col.getMetaData().getType() == Type.BOOLEAN) {
+            if (operater != Operator.EQ) {
+                return new BitSet();
+            }
+            //word level mask of matching rows, anded with the live rows
+            BitSet vals = ((BooleanArrayList) col.getData()).toBitSet(Boolean.parseBoolean(literal));
+            vals.and(rows);
+            return vals;
+        }
+
+        int size = col.getMetaData().getRowCount();
+        long[] matches = new long[(size + 63) >>> 6];
+
+        if (size < PARALLEL_SCAN_THRESHOLD || SCAN_POOL.getParallelism() < 2) {
+            scanRange(col, literal, operater, rows, 0, size, matches);
+        } else {
+            try {
+                SCAN_POOL.invoke(new ScanTask(col, literal, operater, rows, 0, size, matches));
+            } catch (IllegalArgumentException ex) {
+                for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+                    if (cause instanceof ParseException) {
+                        throw (ParseException) cause;
+                    }
+                }
+                throw ex;
+            }
+        }
+
+        //the word wise scans also match null and deleted rows next to live ones
+        BitSet found = BitSet.valueOf(matches);
+        found.and(rows);
+        return found;
+    }
+
+    private static boolean isSorted(ExtendedColumn col) {
+        return col instanceof ColumnImpl && ((ColumnImpl) col).isSorted();
+    }
+
+    /**
+     * Answers a predicate on the sorted clustering key of a table by binary
+     * search. The matching rows are one range of row ids, only its live rows
+     * without nulls are returned. The literal is read as scanRange reads it,
+     * operators the search does not cover give null.
+     */
+    private BitSet searchSorted(ColumnImpl col, String literal, Operator operater) throws ParseException {
+        long key;
+        long last = 0;
+        switch (col.getMetaData().getType()) {
+            case INTEGER:
+                key = Integer.parseInt(literal);
+                break;
+            case DOUBLE:
+                key = ZoneMap.doubleKey(Double.parseDouble(literal));
+                break;
+            default:
+                if (operater == Operator.EQ) {
+                    long[] range = dateEqualsRange(literal);
+                    if (range == null) {
+                        return new BitSet();
+                    }
+                    key = range[0];
+                    last = range[1];
+                } else {
+                    key = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal).getTime();
+                }
+        }
 
+        int start;
+        int end;
+        switch (operater) {
+            case EQ:
+                start = col.searchSorted(key, false);
+                end = col.searchSorted(col.getMetaData().getType() == Type.DATE ? last : key, true);
+                break;
+            case GT:
+                start = col.searchSorted(key, true);
+                end = col.getMetaData().getRowCount();
+                break;
+            case GEQ:
+                start = col.searchSorted(key, false);
+                end = col.getMetaData().getRowCount();
+                break;
+            case LT:
+                start = 0;
+                end = col.searchSorted(key, false);
+                break;
+            case LEQ:
+                start = 0;
+                end = col.searchSorted(key, true);
+                break;
+            default:
+                return null;
+        }
+
+        BitSet found = new BitSet();
+        if (start < end) {
+            found.set(start, end);
+            found.and(col.getValidRows());
+        }
+        return found;
+    }
+
+    /**
+     * Sets the bits of the rows in [start, end) that match the predicate in
+     * matches. Ranges that start at a multiple of 64 write disjoint words, so
+     * several of them can be scanned at the same time.
+     */
+    private void scanRange(ExtendedColumn col, String literal, Operator operater, BitSet rows, int start, int end, long[] matches) throws ParseException {
         if (operater == Operator.EQ) {
             switch (col.getMetaData().getType()) {
                 case INTEGER: {
                     int lit = Integer.parseInt(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (lit == col.getInteger(j)) {
-                            vals.set(j);
-                        }
-                    }
+                    BitSet candidates = pruneBlocks(col, rows, lit, lit, start, end);
+                    matchInts(col.getIntView(), candidates, start, end, lit, lit, matches);
                 }
                 break;
                 case DOUBLE: {
                     double lit = Double.parseDouble(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (lit == col.getDouble(j)) {
-                            vals.set(j);
-                        }
-                    }
+                    BitSet candidates = pruneBlocks(col, rows, ZoneMap.doubleKey(lit), ZoneMap.doubleKey(lit), start, end);
+                    matchDoubles(col.getDoubleView(), candidates, start, end, lit, lit, matches);
                 }
                 break;
-                case BOOLEAN: {
-                    boolean lit = Boolean.parseBoolean(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
+                case STRING: {
+                    if (col.getData() instanceof DictionaryStringList) {             //compare codes instead of strings
+                        DictionaryStringList dict = (DictionaryStringList) col.getData();
+                        int code = dict.codeOf(literal);
 
-                        if (!delList.get(j)) {
-                            continue;
+                        if (code == DictionaryStringList.NO_CODE) {
+                            break;
                         }
 
-                        if (lit == col.getBoolean(j)) {
-                            vals.set(j);
+                        IntList codes = dict.getCodes();
+                        for (int j = rows.nextSetBit(start); j >= 0 && j < end; j = rows.nextSetBit(j + 1)) {
+                            if (codes.get(j) == code) {
+                                matches[j >>> 6] |= 1L << j;
+                            }
                         }
+                        break;
                     }
-                }
-                break;
-                case STRING: {
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
 
-                        if (!delList.get(j)) {
-                            continue;
+                    if (col.getData() instanceof StringArenaList) {                 //compare bytes instead of strings
+                        StringArenaList arena = (StringArenaList) col.getData();
+                        byte[] lit = StringArenaList.encode(literal);
+                        for (int j = rows.nextSetBit(start); j >= 0 && j < end; j = rows.nextSetBit(j + 1)) {
+                            if (arena.equalsBytes(j, lit)) {
+                                matches[j >>> 6] |= 1L << j;
+                            }
                         }
+                        break;
+                    }
 
+                    for (int j = rows.nextSetBit(start); j >= 0 && j < end; j = rows.nextSetBit(j + 1)) {
                         if (literal.equals(col.getString(j))) {
-                            vals.set(j);
+                            matches[j >>> 6] |= 1L << j;
                         }
                     }
                 }
                 break;
                 case DATE: {
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-                        Date d = col.getDate(j);
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (d != null) {
-                            if (literal.equals(d.toString())) {
-                                vals.set(j);
-                            }
-                        }
-
+                    long[] range = dateEqualsRange(literal);
+                    if (range == null) {
+                        break;
                     }
+                    BitSet candidates = pruneBlocks(col, rows, range[0], range[1], start, end);
+                    matchLongs(col.getDateView(), candidates, start, end, range[0], range[1], matches);
                 }
                 break;
                 case OBJECT:
@@ -360,30 +1032,14 @@ public class RelationImpl implements Relation {
             switch (col.getMetaData().getType()) {
                 case INTEGER: {
                     int lit = Integer.parseInt(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (col.getInteger(j) > lit) {
-                            vals.set(j);
-                        }
-                    }
+                    BitSet candidates = pruneBlocks(col, rows, (long) lit + 1, Long.MAX_VALUE, start, end);
+                    matchInts(col.getIntView(), candidates, start, end, (long) lit + 1, Long.MAX_VALUE, matches);
                 }
                 break;
                 case DOUBLE: {
                     double lit = Double.parseDouble(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (col.getDouble(j) > lit) {
-                            vals.set(j);
-                        }
-                    }
+                    BitSet candidates = pruneBlocks(col, rows, ZoneMap.doubleKey(lit) + 1, Long.MAX_VALUE, start, end);
+                    matchDoubles(col.getDoubleView(), candidates, start, end, above(lit), Double.POSITIVE_INFINITY, matches);
                 }
                 break;
                 case BOOLEAN:
@@ -391,20 +1047,9 @@ public class RelationImpl implements Relation {
                 case STRING:
                     break;
                 case DATE: {
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-                        Date d = col.getDate(j);
-                        Date literalDate = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal);
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (d != null) {
-                            if (d.compareTo(literalDate) > 0) {
-                                vals.set(j);
-                            }
-                        }
-
-                    }
+                    long lit = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal).getTime();
+                    BitSet candidates = pruneBlocks(col, rows, lit + 1, Long.MAX_VALUE, start, end);
+                    matchLongs(col.getDateView(), candidates, start, end, lit + 1, Long.MAX_VALUE, matches);
                 }
                 break;
                 case OBJECT:
@@ -414,30 +1059,14 @@ public class RelationImpl implements Relation {
             switch (col.getMetaData().getType()) {
                 case INTEGER: {
                     int lit = Integer.parseInt(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (col.getInteger(j) < lit) {
-                            vals.set(j);
-                        }
-                    }
+                    BitSet candidates = pruneBlocks(col, rows, Long.MIN_VALUE, (long) lit - 1, start, end);
+                    matchInts(col.getIntView(), candidates, start, end, Long.MIN_VALUE, (long) lit - 1, matches);
                 }
                 break;
                 case DOUBLE: {
                     double lit = Double.parseDouble(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (col.getDouble(j) < lit) {
-                            vals.set(j);
-                        }
-                    }
+                    BitSet candidates = pruneBlocks(col, rows, Long.MIN_VALUE, ZoneMap.doubleKey(lit) - 1, start, end);
+                    matchDoubles(col.getDoubleView(), candidates, start, end, Double.NEGATIVE_INFINITY, below(lit), matches);
                 }
                 break;
                 case BOOLEAN:
@@ -445,20 +1074,9 @@ public class RelationImpl implements Relation {
                 case STRING:
                     break;
                 case DATE: {
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-                        Date d = col.getDate(j);
-                        Date literalDate = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal);
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (d != null) {
-                            if (d.compareTo(literalDate) < 0) {
-                                vals.set(j);
-                            }
-                        }
-
-                    }
+                    long lit = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal).getTime();
+                    BitSet candidates = pruneBlocks(col, rows, Long.MIN_VALUE, lit - 1, start, end);
+                    matchLongs(col.getDateView(), candidates, start, end, Long.MIN_VALUE, lit - 1, matches);
                 }
                 break;
                 case OBJECT:
@@ -468,30 +1086,14 @@ public class RelationImpl implements Relation {
             switch (col.getMetaData().getType()) {
                 case INTEGER: {
                     int lit = Integer.parseInt(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (col.getInteger(j) <= lit) {
-                            vals.set(j);
-                        }
-                    }
+                    BitSet candidates = pruneBlocks(col, rows, Long.MIN_VALUE, lit, start, end);
+                    matchInts(col.getIntView(), candidates, start, end, Long.MIN_VALUE, lit, matches);
                 }
                 break;
                 case DOUBLE: {
                     double lit = Double.parseDouble(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (col.getDouble(j) <= lit) {
-                            vals.set(j);
-                        }
-                    }
+                    BitSet candidates = pruneBlocks(col, rows, Long.MIN_VALUE, ZoneMap.doubleKey(lit), start, end);
+                    matchDoubles(col.getDoubleView(), candidates, start, end, Double.NEGATIVE_INFINITY, lit, matches);
                 }
                 break;
                 case BOOLEAN:
@@ -499,20 +1101,9 @@ public class RelationImpl implements Relation {
                 case STRING:
                     break;
                 case DATE: {
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-                        Date d = col.getDate(j);
-                        Date literalDate = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal);
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (d != null) {
-                            if (d.compareTo(literalDate) <= 0) {
-                                vals.set(j);
-                            }
-                        }
-
-                    }
+                    long lit = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal).getTime();
+                    BitSet candidates = pruneBlocks(col, rows, Long.MIN_VALUE, lit, start, end);
+                    matchLongs(col.getDateView(), candidates, start, end, Long.MIN_VALUE, lit, matches);
                 }
                 break;
                 case OBJECT:
@@ -522,30 +1113,14 @@ public class RelationImpl implements Relation {
             switch (col.getMetaData().getType()) {
                 case INTEGER: {
                     int lit = Integer.parseInt(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (col.getInteger(j) >= lit) {
-                            vals.set(j);
-                        }
-                    }
+                    BitSet candidates = pruneBlocks(col, rows, lit, Long.MAX_VALUE, start, end);
+                    matchInts(col.getIntView(), candidates, start, end, lit, Long.MAX_VALUE, matches);
                 }
                 break;
                 case DOUBLE: {
                     double lit = Double.parseDouble(literal);
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-
-                        if (!delList.get(j)) {
-                            continue;
-                        }
-
-                        if (col.getDouble(j) >= lit) {
-                            vals.set(j);
-                        }
-                    }
+                    BitSet candidates = pruneBlocks(col, rows, ZoneMap.doubleKey(lit), Long.MAX_VALUE, start, end);
+                    matchDoubles(col.getDoubleView(), candidates, start, end, lit, Double.POSITIVE_INFINITY, matches);
                 }
                 break;
                 case BOOLEAN:
@@ -553,30 +1128,279 @@ public class RelationImpl implements Relation {
                 case STRING:
                     break;
                 case DATE: {
-                    for (int j = 0; j < col.getMetaData().getRowCount(); j++) {
-                        Date d = col.getDate(j);
-                        Date literalDate = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal);
-                        if (!delList.get(j)) {
-                            continue;
-                        }
+                    long lit = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal).getTime();
+                    BitSet candidates = pruneBlocks(col, rows, lit, Long.MAX_VALUE, start, end);
+                    matchLongs(col.getDateView(), candidates, start, end, lit, Long.MAX_VALUE, matches);
+                }
+                break;
+                case OBJECT:
 
-                        if (d != null) {
-                            if (d.compareTo(literalDate) >= 0) {
-                                vals.set(j);
-                            }
-                        }
+            }
+        }
+    }
 
-                    }
+    /**
+     * Sets the bits of the values between low and high, both inclusive, in
+     * every word of 64 rows in [start, end) that holds a candidate. A word is
+     * copied out of the column and compared without branches; rows of the
+     * word that are no candidates get bits as well, compareToLiteral masks
+     * them out with the live rows.
+     */
+    private static void matchInts(IntColumnView values, BitSet candidates, int start, int end, long low, long high, long[] matches) {
+        int limit = Math.min(end, values.size());
+        int[] word = new int[64];
+
+        for (int j = candidates.nextSetBit(start); j >= 0 && j < limit; j = candidates.nextSetBit((j | 63) + 1)) {
+            int base = j & ~63;
+            int length = Math.min(64, limit - base);
+            values.copyTo(word, base, length);
+
+            long bits = 0;
+            for (int i = 0; i < length; i++) {
+                long val = word[i];
+                bits |= (val >= low & val <= high ? 1L : 0L) << i;
+            }
+            matches[base >>> 6] |= bits;
+        }
+    }
+
+    private static void matchDoubles(DoubleColumnView values, BitSet candidates, int start, int end, double low, double high, long[] matches) {
+        int limit = Math.min(end, values.size());
+        double[] word = new double[64];
+
+        for (int j = candidates.nextSetBit(start); j >= 0 && j < limit; j = candidates.nextSetBit((j | 63) + 1)) {
+            int base = j & ~63;
+            int length = Math.min(64, limit - base);
+            values.copyTo(word, base, length);
+
+            long bits = 0;
+            for (int i = 0; i < length; i++) {
+                double val = word[i];
+                bits |= (val >= low & val <= high ? 1L : 0L) << i;
+            }
+            matches[base >>> 6] |= bits;
+        }
+    }
+
+    private static void matchLongs(LongColumnView values, BitSet candidates, int start, int end, long low, long high, long[] matches) {
+        int limit = Math.min(end, values.size());
+        long[] word = new long[64];
+
+        for (int j = candidates.nextSetBit(start); j >= 0 && j < limit; j = candidates.nextSetBit((j | 63) + 1)) {
+            int base = j & ~63;
+            int length = Math.min(64, limit - base);
+            values.copyTo(word, base, length);
+
+            long bits = 0;
+            for (int i = 0; i < length; i++) {
+                long val = word[i];
+                bits |= (val >= low & val <= high ? 1L : 0L) << i;
+            }
+            matches[base >>> 6] |= bits;
+        }
+    }
+
+    /**
+     * Returns the smallest double greater than lit, so that val > lit reads
+     * val >= above(lit). NaN matches nothing.
+     */
+    private static double above(double lit) {
+        return lit < Double.POSITIVE_INFINITY ? Math.nextUp(lit) : Double.NaN;
+    }
+
+    private static double below(double lit) {
+        return lit > Double.NEGATIVE_INFINITY ? Math.nextAfter(lit, Double.NEGATIVE_INFINITY) : Double.NaN;
+    }
+
+    /**
+     * Splits a scan in halves down to morsels of one zone map block, which
+     * are scanned by the workers of SCAN_POOL.
+     */
+    private final class ScanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final ExtendedColumn col;
+        private final String literal;
+        private final Operator operater;
+        private final BitSet rows;
+        private final int start;
+        private final int end;
+        private final long[] matches;
+
+        ScanTask(ExtendedColumn col, String literal, Operator operater, BitSet rows, int start, int end, long[] matches) {
+            this.col = col;
+            this.literal = literal;
+            this.operater = operater;
+            this.rows = rows;
+            this.start = start;
+            this.end = end;
+            this.matches = matches;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= ZoneMap.BLOCK_SIZE) {
+                try {
+                    scanRange(col, literal, operater, rows, start, end, matches);
+                } catch (ParseException ex) {
+                    throw new IllegalArgumentException(ex);
                 }
+                return;
+            }
+
+            int blocks = (end - start + ZoneMap.BLOCK_SIZE - 1) >>> ZoneMap.BLOCK_SHIFT;
+            int mid = start + (blocks / 2 << ZoneMap.BLOCK_SHIFT);
+            invokeAll(new ScanTask(col, literal, operater, rows, start, mid, matches),
+                    new ScanTask(col, literal, operater, rows, mid, end, matches));
+        }
+    }
+
+    /**
+     * Evaluates a predicate on a run length encoded column with one
+     * comparison per run, a matching run is set as a whole range.
+     */
+    private BitSet compareRuns(RunLengthIntList runs, BitSet rows, int lit, Operator operater) {
+        BitSet vals = new BitSet();
+
+        for (int run = 0; run < runs.getRunCount(); run++) {
+            int val = runs.getRunValue(run);
+            boolean match;
+
+            switch (operater) {
+                case EQ:
+                    match = val == lit;
+                    break;
+                case GT:
+                    match = val > lit;
+                    break;
+                case LT:
+                    match = val < lit;
+                    break;
+                case LEQ:
+                    match = val <= lit;
+                    break;
+                case GEQ:
+                    match = val >= lit;
+                    break;
+                default:
+                    match = false;
+            }
+
+            if (match) {
+                vals.set(runs.getRunStart(run), runs.getRunEnd(run));
+            }
+        }
+
+        vals.and(rows);
+        return vals;
+    }
+
+    /**
+     * Evaluates a predicate on a bit packed column a block at a time. Every
+     * block with candidate rows is unpacked once and all of its values are
+     * compared in one loop, the matches are anded with the candidates last.
+     */
+    private BitSet comparePacked(ExtendedColumn col, BitSet rows, int lit, Operator operater) {
+        long from;
+        long to;
+
+        switch (operater) {
+            case EQ:
+                from = lit;
+                to = lit;
                 break;
-                case OBJECT:
+            case GT:
+                from = (long) lit + 1;
+                to = Integer.MAX_VALUE;
+                break;
+            case LT:
+                from = Integer.MIN_VALUE;
+                to = (long) lit - 1;
+                break;
+            case LEQ:
+                from = Integer.MIN_VALUE;
+                to = lit;
+                break;
+            case GEQ:
+                from = lit;
+                to = Integer.MAX_VALUE;
+                break;
+            default:
+                return new BitSet();
+        }
+
+        BitPackedIntList packed = (BitPackedIntList) col.getData();
+        BitSet candidates = pruneBlocks(col, rows, from, to, 0, packed.size());
+        long[] matches = new long[(packed.size() + 63) >>> 6];
+        int[] values = new int[BitPackedIntList.BLOCK_SIZE];
+
+        for (int block = 0; block < packed.getBlockCount(); block++) {
+            int start = block << BitPackedIntList.BLOCK_SHIFT;
+            int next = candidates.nextSetBit(start);
+            if (next < 0) {
+                break;
+            }
+            if (next - start >= BitPackedIntList.BLOCK_SIZE) {
+                block = (next >>> BitPackedIntList.BLOCK_SHIFT) - 1;
+                continue;
+            }
 
+            int length = packed.unpack(block, values);
+            for (int i = 0; i < length; i++) {
+                long val = values[i];
+                if (val >= from && val <= to) {
+                    matches[(start + i) >>> 6] |= 1L << (start + i);
+                }
             }
         }
 
+        BitSet vals = BitSet.valueOf(matches);
+        vals.and(candidates);
         return vals;
     }
 
+    /**
+     * Leaves out the rows of every block in [start, end) whose zone map range
+     * cannot hold a value between from and to, both inclusive. Returns rows
+     * itself if no block can be skipped and an empty set if all can be.
+     */
+    private BitSet pruneBlocks(ExtendedColumn col, BitSet rows, long from, long to, int start, int end) {
+        if (from > to) {
+            return new BitSet();
+        }
+
+        ZoneMap zones = col.getZoneMap();
+        if (zones == null) {
+            return rows;
+        }
+
+        int first = start >>> ZoneMap.BLOCK_SHIFT;
+        int last = Math.min(zones.getBlockCount(), (end + ZoneMap.BLOCK_SIZE - 1) >>> ZoneMap.BLOCK_SHIFT);
+        int pruned = 0;
+        for (int block = first; block < last; block++) {
+            if (!zones.mayContain(block, from, to)) {
+                pruned++;
+            }
+        }
+
+        //a morsel of a parallel scan is a single block, it is kept or skipped without a copy
+        if (pruned == 0) {
+            return rows;
+        }
+        if (pruned == last - first) {
+            return new BitSet();
+        }
+
+        BitSet candidates = (BitSet) rows.clone();
+        for (int block = first; block < last; block++) {
+            if (!zones.mayContain(block, from, to)) {
+                candidates.clear(block << ZoneMap.BLOCK_SHIFT, (block + 1) << ZoneMap.BLOCK_SHIFT);
+            }
+        }
+
+        return candidates;
+    }
+
     private void parseJoinedExpressionTrees(Map<String, List<Expression>> filters, List<Expression> joins, ExpressionElement curPredicate)
             throws NoSuchColumnException, QueryExecutionException {
         Expression curExpr = (Expression) curPredicate;
@@ -673,34 +1497,7 @@ public class RelationImpl implements Relation {
             ColumnMetaData columnMData = tables.get(0).getTableMetaData().getTableSchema().get(expr.getOperand(0).toString());
             ExtendedColumn column = (ExtendedColumn) tables.get(0).getColumn(columnMData.getId());
 
-            if (column.getIndexes().size() > 0 && expr.getOperator() == Operator.EQ) {                       //if index is present
-                Index index = column.getIndexes().get(0);
-
-                IdCursor result = null;
-
-                switch (column.getMetaData().getType()) {
-                    case INTEGER:
-                        result = index.pointQueryRowIds(Integer.parseInt(expr.getOperand(1).toString()));
-                        break;
-                    case DOUBLE:
-                        result = index.pointQueryRowIds(Double.parseDouble(expr.getOperand(1).toString()));
-                        break;
-                    case BOOLEAN:
-                        result = index.pointQueryRowIds(Boolean.parseBoolean(expr.getOperand(1).toString()));
-                        break;
-                    case STRING:
-                        result = index.pointQueryRowIds(expr.getOperand(1).toString());
-                        break;
-                    case DATE:
-                        result = index.pointQueryRowIds(new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH).parse(expr.getOperand(1).toString()));
-                        break;
-                    case OBJECT:
-                }
-
-                resultsPerTable.add(ArrayToBits(result));
-            } else {
-                resultsPerTable.add(compareToLiteral(column, expr.getOperand(1).toString(), expr.getOperator()));
-            }
+            resultsPerTable.add(compareColumn(column, expr.getOperand(1).toString(), expr.getOperator()));
         }
     }
 
@@ -719,9 +1516,10 @@ public class RelationImpl implements Relation {
             BitSet[] colBitSets = new BitSet[2];
             for (int tabId = 0; tabId < tables.size(); tabId++) {
                 for (int i = 0; i < 2; i++) {
-                    if (tables.get(tabId).getTableMetaData().getTableSchema().get(columnNames[i]) != null) {
+                    ExtendedColumn col = ((TableImpl) tables.get(tabId)).getSchema().getColumn(columnNames[i]);
+                    if (col != null) {
                         colBitSets[i] = resultsPerTable.get(tabId);
-                        columns[i] = (ExtendedColumn) tables.get(tabId).getColumn(tables.get(tabId).getTableMetaData().getTableSchema().get(columnNames[i]).getId());
+                        columns[i] = col;
                         tableTracker[joinInd][i] = tabId;
                     }
                 }
@@ -731,76 +1529,100 @@ public class RelationImpl implements Relation {
 
             switch (columns[0].getMetaData().getType()) {
                 case INTEGER: {
-                    ArrayIntList data1 = (ArrayIntList) columns[0].getData();
-                    ArrayIntList data2 = (ArrayIntList) columns[1].getData();
+                    //both sides are copied to arrays once, the loops below only compare ints
+                    int[] rows1 = toRowArray(colBitSets[0]);
+                    int[] rows2 = toRowArray(colBitSets[1]);
+                    int[] data1 = gatherInts(columns[0].getIntView(), rows1);
+                    int[] data2 = gatherInts(columns[1].getIntView(), rows2);
 
                     //left with right
-                    int ind1 = colBitSets[0].nextSetBit(0);
-                    while (ind1 != -1) {
-                        int ind2 = colBitSets[1].nextSetBit(0);
-                        while (ind2 != -1) {
-                            if (data1.get(ind1) == data2.get(ind2)) {
-                                int[] tempRow = {ind1, ind2};
+                    for (int ind1 = 0; ind1 < rows1.length; ind1++) {
+                        int val = data1[ind1];
+                        for (int ind2 = 0; ind2 < rows2.length; ind2++) {
+                            if (val == data2[ind2]) {
+                                int[] tempRow = {rows1[ind1], rows2[ind2]};
                                 joinRows.add(tempRow);
                             }
-                            ind2 = colBitSets[1].nextSetBit(ind2 + 1);
                         }
-
-                        ind1 = colBitSets[0].nextSetBit(ind1 + 1);
                     }
 
                 }
                 break;
                 case DOUBLE: {
-                    ArrayDoubleList data1 = (ArrayDoubleList) columns[0].getData();
-                    ArrayDoubleList data2 = (ArrayDoubleList) columns[1].getData();
+                    int[] rows1 = toRowArray(colBitSets[0]);
+                    int[] rows2 = toRowArray(colBitSets[1]);
+                    double[] data1 = gatherDoubles(columns[0].getDoubleView(), rows1);
+                    double[] data2 = gatherDoubles(columns[1].getDoubleView(), rows2);
 
                     //left with right
-                    int ind1 = colBitSets[0].nextSetBit(0);
-                    while (ind1 != -1) {
-                        int ind2 = colBitSets[1].nextSetBit(0);
-                        while (ind2 != -1) {
-                            if (data1.get(ind1) == data2.get(ind2)) {
-                                int[] tempRow = {ind1, ind2};
+                    for (int ind1 = 0; ind1 < rows1.length; ind1++) {
+                        double val = data1[ind1];
+                        for (int ind2 = 0; ind2 < rows2.length; ind2++) {
+                            if (val == data2[ind2]) {
+                                int[] tempRow = {rows1[ind1], rows2[ind2]};
                                 joinRows.add(tempRow);
                             }
-                            ind2 = colBitSets[1].nextSetBit(ind2 + 1);
                         }
-
-                        ind1 = colBitSets[0].nextSetBit(ind1 + 1);
                     }
 
                 }
                 break;
                 case STRING: {
-                    ArrayList data1 = (ArrayList) columns[0].getData();
-                    ArrayList data2 = (ArrayList) columns[1].getData();
+                    if (columns[0].getData() instanceof DictionaryStringList && columns[1].getData() instanceof DictionaryStringList) {
+                        DictionaryStringList dict1 = (DictionaryStringList) columns[0].getData();
+                        DictionaryStringList dict2 = (DictionaryStringList) columns[1].getData();
+
+                        //translate the right dictionary into codes of the left one once, then join on ints
+                        int[] translated = new int[dict2.dictionarySize()];
+                        for (int code = 0; code < translated.length; code++) {
+                            translated[code] = dict1.codeOf(dict2.decode(code));
+                        }
 
-                    //left with right
-                    int ind1 = colBitSets[0].nextSetBit(0);
-                    while (ind1 != -1) {
-                        int ind2 = colBitSets[1].nextSetBit(0);
-                        while (ind2 != -1) {
-                            if (data1.get(ind1) == null) {
-                                if (data2.get(ind2) == null) {
+                        IntList codes1 = dict1.getCodes();
+                        IntList codes2 = dict2.getCodes();
+
+                        //left with right
+                        int ind1 = colBitSets[0].nextSetBit(0);
+                        while (ind1 != -1) {
+                            int code1 = codes1.get(ind1);
+                            int ind2 = colBitSets[1].nextSetBit(0);
+                            while (ind2 != -1) {
+                                int code2 = codes2.get(ind2);
+                                if (code1 == (code2 == DictionaryStringList.NULL_CODE ? code2 : translated[code2])) {
                                     int[] tempRow = {ind1, ind2};
                                     joinRows.add(tempRow);
                                 }
-                            } else if (data1.get(ind1).equals(data2.get(ind2))) {
-                                int[] tempRow = {ind1, ind2};
-                                joinRows.add(tempRow);
+                                ind2 = colBitSets[1].nextSetBit(ind2 + 1);
                             }
-                            ind2 = colBitSets[1].nextSetBit(ind2 + 1);
+
+                            ind1 = colBitSets[0].nextSetBit(ind1 + 1);
                         }
+                        break;
+                    }
 
-                        ind1 = colBitSets[0].nextSetBit(ind1 + 1);
+                    if (columns[0].getData() instanceof StringArenaList && columns[1].getData() instanceof StringArenaList) {
+                        StringArenaList arena1 = (StringArenaList) columns[0].getData();
+                        StringArenaList arena2 = (StringArenaList) columns[1].getData();
+
+                        //left with right on the raw bytes, nulls join with each other
+                        int ind1 = colBitSets[0].nextSetBit(0);
+                        while (ind1 != -1) {
+                            int ind2 = colBitSets[1].nextSetBit(0);
+                            while (ind2 != -1) {
+                                if (arena1.equalsValue(ind1, arena2, ind2)) {
+                                    int[] tempRow = {ind1, ind2};
+                                    joinRows.add(tempRow);
+                                }
+                                ind2 = colBitSets[1].nextSetBit(ind2 + 1);
+                            }
+
+                            ind1 = colBitSets[0].nextSetBit(ind1 + 1);
+                        }
+                        break;
                     }
 
-                }
-                break;
-                case DATE: {
-                    ArrayList data1 = (ArrayList) columns[0].getData();
-                    ArrayList data2 = (ArrayList) columns[1].getData();
+                    List data1 = (List) columns[0].getData();
+                    List data2 = (List) columns[1].getData();
 
                     //left with right
                     int ind1 = colBitSets[0].nextSetBit(0);
@@ -812,12 +1634,7 @@ public class RelationImpl implements Relation {
                                     int[] tempRow = {ind1, ind2};
                                     joinRows.add(tempRow);
                                 }
-                            } else if (data2.get(ind2) == null) {
-                                if (data1.get(ind1) == null) {
-                                    int[] tempRow = {ind1, ind2};
-                                    joinRows.add(tempRow);
-                                }
-                            } else if (data1.get(ind1).toString().equals(data2.get(ind2).toString())) {
+                            } else if (data1.get(ind1).equals(data2.get(ind2))) {
                                 int[] tempRow = {ind1, ind2};
                                 joinRows.add(tempRow);
                             }
@@ -827,6 +1644,26 @@ public class RelationImpl implements Relation {
                         ind1 = colBitSets[0].nextSetBit(ind1 + 1);
                     }
 
+                }
+                break;
+                case DATE: {
+                    //dates join on the second, the precision of Date.toString() the join compared before
+                    int[] rows1 = toRowArray(colBitSets[0]);
+                    int[] rows2 = toRowArray(colBitSets[1]);
+                    long[] data1 = gatherSeconds(columns[0].getDateView(), rows1);
+                    long[] data2 = gatherSeconds(columns[1].getDateView(), rows2);
+
+                    //left with right, null dates share NULL_DATE and join with each other
+                    for (int ind1 = 0; ind1 < rows1.length; ind1++) {
+                        long val = data1[ind1];
+                        for (int ind2 = 0; ind2 < rows2.length; ind2++) {
+                            if (val == data2[ind2]) {
+                                int[] tempRow = {rows1[ind1], rows2[ind2]};
+                                joinRows.add(tempRow);
+                            }
+                        }
+                    }
+
                 }
                 break;
                 case BOOLEAN: {
@@ -897,7 +1734,13 @@ public class RelationImpl implements Relation {
 
             for (String colName : colNames) {
                 int corresTable = selectColumnsPerTable.get(colName);
-                ExtendedColumn col = (ExtendedColumn) tables.get(corresTable).getColumn(tables.get(corresTable).getTableMetaData().getTableSchema().get(colName).getId());
+                ExtendedColumn col = ((TableImpl) tables.get(corresTable)).getSchema().getColumn(colName);
+
+                if (col.isNull(result[corresTable])) {
+                    data[position] = null;
+                    position++;
+                    continue;
+                }
 
                 switch (col.getMetaData().getType()) {
                     case INTEGER:
@@ -927,6 +1770,63 @@ public class RelationImpl implements Relation {
         }
     }
 
+    private static int[] toRowArray(BitSet rows) {
+        int[] ids = new int[rows.cardinality()];
+        int i = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            ids[i++] = row;
+        }
+        return ids;
+    }
+
+    /**
+     * Copies the values of the given ascending rows to an array. Bit packed
+     * data is unpacked once per block instead of once per row.
+     */
+    private static int[] gatherInts(IntColumnView data, int[] rows) {
+        int[] vals = new int[rows.length];
+
+        if (data instanceof BitPackedIntList) {
+            BitPackedIntList packed = (BitPackedIntList) data;
+            int[] values = new int[BitPackedIntList.BLOCK_SIZE];
+            int block = -1;
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] >>> BitPackedIntList.BLOCK_SHIFT != block) {
+                    block = rows[i] >>> BitPackedIntList.BLOCK_SHIFT;
+                    packed.unpack(block, values);
+                }
+                vals[i] = values[rows[i] & (BitPackedIntList.BLOCK_SIZE - 1)];
+            }
+        } else {
+            for (int i = 0; i < rows.length; i++) {
+                vals[i] = data.get(rows[i]);
+            }
+        }
+
+        return vals;
+    }
+
+    private static double[] gatherDoubles(DoubleColumnView data, int[] rows) {
+        double[] vals = new double[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            vals[i] = data.get(rows[i]);
+        }
+        return vals;
+    }
+
+    /**
+     * Copies the dates of the given rows as whole seconds since the epoch,
+     * rounded down. NULL_DATE is kept, so nulls only equal nulls.
+     */
+    private static long[] gatherSeconds(LongColumnView data, int[] rows) {
+        long[] vals = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            long millis = data.get(rows[i]);
+            vals[i] = millis == ColumnImpl.NULL_DATE ? millis : millis / 1000 - (millis % 1000 < 0 ? 1 : 0);
+        }
+        return vals;
+    }
+
     private BitSet ArrayToBits(IdCursor result) {
         BitSet bSet = new BitSet();
 
@@ -0,0 +1,309 @@
+package dbs_project.storageImpl;
+
+import dbs_project.storage.ColumnMetaData;
+import dbs_project.storage.ExtendedColumn;
+import dbs_project.storage.RowBatchCursor;
+import dbs_project.storage.Type;
+import dbs_project.utilImpl.BooleanArrayList;
+import dbs_project.utilImpl.ChunkedDoubleList;
+import dbs_project.utilImpl.ChunkedIntList;
+import dbs_project.utilImpl.ChunkedLongList;
+import dbs_project.utilImpl.DictionaryStringList;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import org.apache.commons.collections.primitives.DoubleList;
+import org.apache.commons.collections.primitives.IntList;
+import org.apache.commons.collections.primitives.LongList;
+
+/**
+ * Batch cursor over the columns of one table. A column's vector is only
+ * filled when it is asked for, once per batch, and the arrays are allocated
+ * once for the whole scan.
+ *
+ * @author kaustuv
+ */
+public class RowBatchCursorImpl implements RowBatchCursor {
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final int CHUNK_MASK = ChunkedIntList.CHUNK_SIZE - 1;
+
+    private ExtendedColumn[] columns;
+    private ColumnMetaData[] metaData;
+    private BitSet rows;
+    private int rowCount;
+    private int start;
+    private int length;
+    private int[] selection;
+    private int selectedCount;
+    private int batch;
+    private Object[] vectors;
+    private int[] filledBatch;
+    //codes of dictionary encoded columns, apart from their string vectors
+    private int[][] codeVectors;
+    private int[] filledCodes;
+
+    public RowBatchCursorImpl(List<ExtendedColumn> columns, BitSet rows, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, found " + batchSize);
+        }
+
+        this.columns = columns.toArray(new ExtendedColumn[columns.size()]);
+        this.metaData = new ColumnMetaData[this.columns.length];
+        for (int i = 0; i < this.columns.length; i++) {
+            metaData[i] = this.columns[i].getMetaData();
+        }
+
+        this.rows = rows;
+        this.rowCount = this.columns.length == 0 ? 0 : metaData[0].getRowCount();
+        this.selection = new int[batchSize];
+        this.vectors = new Object[this.columns.length];
+        this.filledBatch = new int[this.columns.length];
+        this.codeVectors = new int[this.columns.length][];
+        this.filledCodes = new int[this.columns.length];
+        this.start = 0;
+        this.length = 0;
+        this.batch = -1;
+    }
+
+    @Override
+    public boolean next() {
+        if (columns == null) {
+            return false;
+        }
+
+        //batches start at the next selected row, runs of unselected rows are skipped
+        int from = rows.nextSetBit(start + length);
+        if (from < 0 || from >= rowCount) {
+            return false;
+        }
+
+        start = from;
+        length = Math.min(selection.length, rowCount - start);
+        selectedCount = 0;
+        for (int row = from; row >= 0 && row < start + length; row = rows.nextSetBit(row + 1)) {
+            selection[selectedCount++] = row - start;
+        }
+
+        batch++;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        columns = null;
+        vectors = null;
+        codeVectors = null;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return metaData.length;
+    }
+
+    @Override
+    public ColumnMetaData getColumnMetaData(int column) {
+        return metaData[column];
+    }
+
+    @Override
+    public int getLength() {
+        return length;
+    }
+
+    @Override
+    public int getSelectedCount() {
+        return selectedCount;
+    }
+
+    @Override
+    public int[] getSelection() {
+        return selection;
+    }
+
+    @Override
+    public int getRowId(int position) {
+        return start + position + 1;
+    }
+
+    @Override
+    public boolean isNull(int column, int position) {
+        return columns[column].isNull(start + position);
+    }
+
+    @Override
+    public int[] getIntVector(int column) {
+        checkType(column, Type.INTEGER);
+        int[] vector = (int[]) vectors[column];
+
+        if (vector == null) {
+            vector = new int[selection.length];
+            vectors[column] = vector;
+        } else if (filledBatch[column] == batch) {
+            return vector;
+        }
+
+        copyInts((IntList) columns[column].getData(), vector);
+        filledBatch[column] = batch;
+        return vector;
+    }
+
+    @Override
+    public double[] getDoubleVector(int column) {
+        checkType(column, Type.DOUBLE);
+        double[] vector = (double[]) vectors[column];
+
+        if (vector == null) {
+            vector = new double[selection.length];
+            vectors[column] = vector;
+        } else if (filledBatch[column] == batch) {
+            return vector;
+        }
+
+        DoubleList data = (DoubleList) columns[column].getData();
+        if (data instanceof ChunkedDoubleList) {
+            ChunkedDoubleList chunked = (ChunkedDoubleList) data;
+            for (int copied = 0; copied < length;) {
+                int pos = start + copied;
+                int count = Math.min(length - copied, ChunkedIntList.CHUNK_SIZE - (pos & CHUNK_MASK));
+                System.arraycopy(chunked.getChunk(pos >>> ChunkedIntList.CHUNK_SHIFT), pos & CHUNK_MASK, vector, copied, count);
+                copied += count;
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                vector[i] = data.get(start + i);
+            }
+        }
+
+        filledBatch[column] = batch;
+        return vector;
+    }
+
+    @Override
+    public long[] getDateVector(int column) {
+        checkType(column, Type.DATE);
+        long[] vector = (long[]) vectors[column];
+
+        if (vector == null) {
+            vector = new long[selection.length];
+            vectors[column] = vector;
+        } else if (filledBatch[column] == batch) {
+            return vector;
+        }
+
+        LongList data = (LongList) columns[column].getData();
+        if (data instanceof ChunkedLongList) {
+            ChunkedLongList chunked = (ChunkedLongList) data;
+            for (int copied = 0; copied < length;) {
+                int pos = start + copied;
+                int count = Math.min(length - copied, ChunkedIntList.CHUNK_SIZE - (pos & CHUNK_MASK));
+                System.arraycopy(chunked.getChunk(pos >>> ChunkedIntList.CHUNK_SHIFT), pos & CHUNK_MASK, vector, copied, count);
+                copied += count;
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                vector[i] = data.get(start + i);
+            }
+        }
+
+        filledBatch[column] = batch;
+        return vector;
+    }
+
+    @Override
+    public boolean[] getBooleanVector(int column) {
+        checkType(column, Type.BOOLEAN);
+        boolean[] vector = (boolean[]) vectors[column];
+
+        if (vector == null) {
+            vector = new boolean[selection.length];
+            vectors[column] = vector;
+        } else if (filledBatch[column] == batch) {
+            return vector;
+        }
+
+        BooleanArrayList data = (BooleanArrayList) columns[column].getData();
+        for (int i = 0; i < length; i++) {
+            vector[i] = data.get(start + i);
+        }
+
+        filledBatch[column] = batch;
+        return vector;
+    }
+
+    @Override
+    public boolean isDictionaryEncoded(int column) {
+        return columns[column].getData() instanceof DictionaryStringList;
+    }
+
+    @Override
+    public int[] getCodeVector(int column) {
+        if (!isDictionaryEncoded(column)) {
+            throw new ClassCastException("Column " + metaData[column].getName() + " is not dictionary encoded");
+        }
+
+        int[] vector = codeVectors[column];
+
+        if (vector == null) {
+            vector = new int[selection.length];
+            codeVectors[column] = vector;
+        } else if (filledCodes[column] == batch) {
+            return vector;
+        }
+
+        copyInts(((DictionaryStringList) columns[column].getData()).getCodes(), vector);
+        filledCodes[column] = batch;
+        return vector;
+    }
+
+    @Override
+    public String decode(int column, int code) {
+        return ((DictionaryStringList) columns[column].getData()).decode(code);
+    }
+
+    @Override
+    public Object[] getObjectVector(int column) {
+        if (metaData[column].getType() != Type.STRING && metaData[column].getType() != Type.OBJECT) {
+            throw new ClassCastException();
+        }
+
+        Object[] vector = (Object[]) vectors[column];
+
+        if (vector == null) {
+            vector = new Object[selection.length];
+            vectors[column] = vector;
+        } else if (filledBatch[column] == batch) {
+            return vector;
+        }
+
+        List data = (List) columns[column].getData();
+        for (int i = 0; i < length; i++) {
+            vector[i] = data.get(start + i);
+        }
+
+        filledBatch[column] = batch;
+        return vector;
+    }
+
+    private void copyInts(IntList data, int[] vector) {
+        if (data instanceof ChunkedIntList) {
+            ChunkedIntList chunked = (ChunkedIntList) data;
+            for (int copied = 0; copied < length;) {
+                int pos = start + copied;
+                int count = Math.min(length - copied, ChunkedIntList.CHUNK_SIZE - (pos & CHUNK_MASK));
+                System.arraycopy(chunked.getChunk(pos >>> ChunkedIntList.CHUNK_SHIFT), pos & CHUNK_MASK, vector, copied, count);
+                copied += count;
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                vector[i] = data.get(start + i);
+            }
+        }
+    }
+
+    private void checkType(int column, Type type) {
+        if (metaData[column].getType() != type) {
+            throw new ClassCastException();
+        }
+    }
+}
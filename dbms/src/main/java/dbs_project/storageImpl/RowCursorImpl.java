@@ -10,10 +10,7 @@ import dbs_project.storage.RowMetaData;
 import dbs_project.storage.Table;
 import dbs_project.storage.Type;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import org.objectweb.asm.xml.SAXAnnotationAdapter;
@@ -25,9 +22,14 @@ import org.objectweb.asm.xml.SAXAnnotationAdapter;
 public class RowCursorImpl implements RowCursor {
 
     private Row[] rows;
+    private Row row;
+    //Set for cursors over a projection, which move one lazy view over the rows
+    private RowViewImpl view;
     private Column[] columns;
     private int cursor;
     private boolean rowMode;
+    //Reused for every row of a table cursor, only the row id changes
+    private RowMetaDataImpl tableRowMetaData;
     BitSet validRows;
     TableImpl tab;
 
@@ -42,31 +44,41 @@ public class RowCursorImpl implements RowCursor {
         this.rows = rows.toArray(this.rows);
     }
 
+    /**
+     * Cursor over the given rows of a projection. Values are read from the
+     * columns when they are asked for, no row is copied.
+     */
+    public RowCursorImpl(List<ExtendedColumn> columns, ColumnMetaData[] colsMDatas, BitSet validRows) {
+        cursor = -1;
+        rowMode = true;
+        this.validRows = validRows;
+        this.view = new RowViewImpl(0, columns.toArray(new ExtendedColumn[columns.size()]), colsMDatas);
+    }
+
     public RowCursorImpl(Table table, BitSet validRows) {
         cursor = -1;
         rowMode = false;
         tab = (TableImpl) table;
         this.validRows = validRows;
-        List<ExtendedColumn> cols = tab.sortColumns();
-        this.columns = new Column[cols.size()];
-        this.columns = cols.toArray(this.columns);
+        SchemaSnapshot snapshot = tab.getSchema();
+        this.columns = snapshot.getColumns();
+        this.tableRowMetaData = new RowMetaDataImpl(0, snapshot.getColumnMetaData(), columns.length);
     }
 
     @Override
     public RowMetaData getMetaData() {
         if (rowMode) {
-            return rows[cursor].getMetaData();
+            return row.getMetaData();
         } else {
-            ColumnMetaData[] cMetaData = getColumnMetaDataArray();
-            RowMetaData rMet = new RowMetaDataImpl(cursor + 1, cMetaData, columns.length);
-            return rMet;
+            tableRowMetaData.setRowId(cursor + 1);
+            return tableRowMetaData;
         }
     }
 
     @Override
     public int getInteger(int index) throws IndexOutOfBoundsException, ClassCastException {
         if (rowMode) {
-            return rows[cursor].getInteger(index);
+            return row.getInteger(index);
         } else {
             if (columns[index].getMetaData().getType() == Type.DOUBLE) {
             return ((Double) columns[index].getDouble(cursor)).intValue();
@@ -78,7 +90,7 @@ public class RowCursorImpl implements RowCursor {
     @Override
     public boolean getBoolean(int index) throws IndexOutOfBoundsException, ClassCastException {
         if (rowMode) {
-            return rows[cursor].getBoolean(index);
+            return row.getBoolean(index);
         } else {
             return columns[index].getBoolean(cursor);
         }
@@ -87,7 +99,7 @@ public class RowCursorImpl implements RowCursor {
     @Override
     public double getDouble(int index) throws IndexOutOfBoundsException, ClassCastException {
         if (rowMode) {
-            return rows[cursor].getDouble(index);
+            return row.getDouble(index);
         } else {
             if (columns[index].getMetaData().getType() == Type.INTEGER) {
                 return (double) (columns[index].getInteger(cursor));
@@ -99,7 +111,7 @@ public class RowCursorImpl implements RowCursor {
     @Override
     public Date getDate(int index) throws IndexOutOfBoundsException, ClassCastException {
         if (rowMode) {
-            return rows[cursor].getDate(index);
+            return row.getDate(index);
         } else {
             return columns[index].getDate(cursor);
         }
@@ -108,8 +120,12 @@ public class RowCursorImpl implements RowCursor {
     @Override
     public String getString(int index) throws IndexOutOfBoundsException {
         if (rowMode) {
-            return rows[cursor].getString(index);
+            return row.getString(index);
         } else {
+            if (columns[index].isNull(cursor)) {
+                return null;
+            }
+
             if (columns[index].getMetaData().getType() == Type.INTEGER) {
                 return Integer.toString(columns[index].getInteger(cursor));
             }
@@ -135,7 +151,7 @@ public class RowCursorImpl implements RowCursor {
     @Override
     public Object getObject(int index) throws IndexOutOfBoundsException {
         if (rowMode) {
-            return rows[cursor].getObject(index);
+            return row.getObject(index);
         } else {
             return columns[index].getObject(cursor);
         }
@@ -144,9 +160,9 @@ public class RowCursorImpl implements RowCursor {
     @Override
     public boolean isNull(int index) throws IndexOutOfBoundsException {
         if (rowMode) {
-            return rows[cursor].getObject(index) == null;
+            return row.isNull(index);
         } else {
-            return columns[index].getObject(cursor) == null;
+            return columns[index].isNull(cursor);
         }
     }
 
@@ -154,13 +170,28 @@ public class RowCursorImpl implements RowCursor {
     public boolean next() {
 
         if (rowMode) {
+            if (view != null) {
+                cursor = validRows.nextSetBit(cursor + 1);
+                if (cursor == -1) {
+                    row = null;
+                    view = null;
+                    return false;
+                }
+                view.setRowId(cursor + 1);
+                row = view;
+                return true;
+            }
             if (rows == null) {
                 return false;
             }
             if (rows.length == 0) {
                 return false;
             }
-            return (++cursor < rows.length);
+            if (++cursor < rows.length) {
+                row = rows[cursor];
+                return true;
+            }
+            return false;
         } else {
             if (columns == null) {
                 return false;
@@ -183,24 +214,10 @@ public class RowCursorImpl implements RowCursor {
     public void close() throws IOException {
         if (rowMode) {
             rows = null;
+            view = null;
         } else {
             columns = null;
         }
     }
 
-    private ColumnMetaData[] getColumnMetaDataArray() {
-        List<ColumnMetaData> listOfColumnsMdatas = new ArrayList<>(tab.getTableMetaData().getTableSchema().values());
-        ColumnMetaData[] colMetsArr = new ColumnMetaData[columns.length];
-        Collections.sort(listOfColumnsMdatas, new Comparator<ColumnMetaData>() {
-
-            @Override
-            public int compare(ColumnMetaData o1, ColumnMetaData o2) {
-                return o1.getId() - o2.getId();
-            }
-        });
-
-        colMetsArr = listOfColumnsMdatas.toArray(colMetsArr);
-        return colMetsArr;
-    }
-
 }
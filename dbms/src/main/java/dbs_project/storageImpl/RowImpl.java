@@ -1,15 +1,12 @@
 package dbs_project.storageImpl;
 
-import dbs_project.storage.Column;
 import dbs_project.storage.ColumnMetaData;
-import dbs_project.storage.ExtendedColumn;
 import dbs_project.storage.Row;
 import dbs_project.storage.RowMetaData;
 import dbs_project.storage.Type;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.List;
 import java.util.TimeZone;
 
 /**
@@ -26,36 +23,6 @@ public class RowImpl implements Row {
 
     }
 
-    public RowImpl(int rowId, ColumnMetaData[] colsMDatas, List<ExtendedColumn> listOfColumns, int columnCount) {
-        rMetaData = new RowMetaDataImpl(rowId, colsMDatas, columnCount);
-        data = new Object[listOfColumns.size()];
-
-        for (int i = 0; i < listOfColumns.size(); i++) {
-            Column c = listOfColumns.get(i);
-
-            switch (c.getMetaData().getType()) {
-                case INTEGER:
-                    data[i] = (Integer) c.getInteger(rowId - 1);
-                    break;
-                case DOUBLE:
-                    data[i] = (Double) c.getDouble(rowId - 1);
-                    break;
-                case STRING:
-                    data[i] = (String) c.getString(rowId - 1);
-                    break;
-                case DATE:
-                    data[i] = (Date) c.getDate(rowId - 1);
-                    break;
-                case BOOLEAN:
-                    data[i] = (Boolean) c.getBoolean(rowId - 1);
-                    break;
-                case OBJECT:
-                    data[i] = (Object) c.getObject(rowId - 1);
-            }
-
-        }
-    }
-
     public RowImpl(Object[] data, int rowId, ColumnMetaData[] colsMDatas) {
         this.data = data;
         rMetaData = new RowMetaDataImpl(rowId, colsMDatas, colsMDatas.length);
@@ -152,18 +119,6 @@ public class RowImpl implements Row {
 
     @Override
     public boolean isNull(int index) throws IndexOutOfBoundsException {
-        if (data[index] instanceof Integer) {
-            return ((int) data[index]) == Type.NULL_VALUE_INTEGER;
-        }
-
-        if (data[index] instanceof Double) {
-            return ((double) data[index]) == Type.NULL_VALUE_DOUBLE;
-        }
-
-        if (data[index] instanceof Boolean) {
-            return ((boolean) data[index]) == Type.NULL_VALUE_BOOLEAN;
-        }
-
         return data[index] == null;
     }
 
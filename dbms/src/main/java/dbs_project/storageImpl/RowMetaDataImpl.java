@@ -38,4 +38,8 @@ public class RowMetaDataImpl implements RowMetaData {
         return rowId;
     }
 
+    void setRowId(int rowId) {
+        this.rowId = rowId;
+    }
+
 }
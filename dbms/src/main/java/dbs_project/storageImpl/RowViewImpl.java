@@ -0,0 +1,170 @@
+package dbs_project.storageImpl;
+
+import dbs_project.storage.ColumnMetaData;
+import dbs_project.storage.ExtendedColumn;
+import dbs_project.storage.Row;
+import dbs_project.storage.RowMetaData;
+import dbs_project.storage.Type;
+import java.util.Date;
+
+/**
+ * Row that only keeps its id and reads every value from the columns when it
+ * is asked for. The column and meta data arrays are shared by all views of a
+ * result. Conversions between types follow RowImpl.
+ *
+ * @author kaustuv
+ */
+public class RowViewImpl implements Row {
+
+    private int rowId;
+    private ExtendedColumn[] columns;
+    private ColumnMetaData[] colsMDatas;
+    private RowMetaDataImpl metaData;
+
+    public RowViewImpl(int rowId, ExtendedColumn[] columns, ColumnMetaData[] colsMDatas) {
+        this.rowId = rowId;
+        this.columns = columns;
+        this.colsMDatas = colsMDatas;
+    }
+
+    @Override
+    public RowMetaData getMetaData() {
+        if (metaData == null) {
+            metaData = new RowMetaDataImpl(rowId, colsMDatas, colsMDatas.length);
+        }
+        return metaData;
+    }
+
+    /**
+     * Moves the view to another row, cursors reuse one view for all rows.
+     */
+    void setRowId(int rowId) {
+        this.rowId = rowId;
+        if (metaData != null) {
+            metaData.setRowId(rowId);
+        }
+    }
+
+    @Override
+    public int getInteger(int index) throws IndexOutOfBoundsException, ClassCastException {
+        ExtendedColumn c = columns[index];
+
+        if (c.isNull(rowId - 1)) {
+            return Type.NULL_VALUE_INTEGER;
+        }
+
+        switch (c.getMetaData().getType()) {
+            case INTEGER:
+                return c.getInteger(rowId - 1);
+            case DOUBLE:
+                return (int) c.getDouble(rowId - 1);
+            case OBJECT: {
+                Object o = c.getObject(rowId - 1);
+                if (o instanceof Double) {
+                    return ((Double) o).intValue();
+                }
+                return (int) o;
+            }
+            default:
+                throw new ClassCastException();
+        }
+    }
+
+    @Override
+    public boolean getBoolean(int index) throws IndexOutOfBoundsException, ClassCastException {
+        ExtendedColumn c = columns[index];
+
+        if (c.isNull(rowId - 1)) {
+            return Type.NULL_VALUE_BOOLEAN;
+        }
+
+        switch (c.getMetaData().getType()) {
+            case BOOLEAN:
+                return c.getBoolean(rowId - 1);
+            case OBJECT:
+                return (boolean) c.getObject(rowId - 1);
+            default:
+                throw new ClassCastException();
+        }
+    }
+
+    @Override
+    public double getDouble(int index) throws IndexOutOfBoundsException, ClassCastException {
+        ExtendedColumn c = columns[index];
+
+        if (c.isNull(rowId - 1)) {
+            return Type.NULL_VALUE_DOUBLE;
+        }
+
+        switch (c.getMetaData().getType()) {
+            case DOUBLE:
+                return c.getDouble(rowId - 1);
+            case INTEGER:
+                return (double) c.getInteger(rowId - 1);
+            case OBJECT: {
+                Object o = c.getObject(rowId - 1);
+                if (o instanceof Integer) {
+                    return (double) ((Integer) o);
+                }
+                return (double) o;
+            }
+            default:
+                throw new ClassCastException();
+        }
+    }
+
+    @Override
+    public Date getDate(int index) throws IndexOutOfBoundsException, ClassCastException {
+        ExtendedColumn c = columns[index];
+
+        if (c.isNull(rowId - 1)) {
+            return null;
+        }
+
+        if (c.getMetaData().getType() == Type.DATE) {
+            return c.getDate(rowId - 1);
+        }
+
+        return (Date) c.getObject(rowId - 1);
+    }
+
+    @Override
+    public String getString(int index) throws IndexOutOfBoundsException {
+        ExtendedColumn c = columns[index];
+
+        if (c.isNull(rowId - 1)) {
+            return null;
+        }
+
+        switch (c.getMetaData().getType()) {
+            case INTEGER:
+                return Integer.toString(c.getInteger(rowId - 1));
+            case DOUBLE:
+                return Double.toString(c.getDouble(rowId - 1));
+            case BOOLEAN:
+                return Boolean.toString(c.getBoolean(rowId - 1));
+            case DATE:
+                return c.getDate(rowId - 1).toString();
+            case STRING:
+                return c.getString(rowId - 1);
+            default: {
+                Object o = c.getObject(rowId - 1);
+                if (o instanceof Integer || o instanceof Double || o instanceof Boolean || o instanceof Date) {
+                    return o.toString();
+                }
+                return (String) o;
+            }
+        }
+    }
+
+    @Override
+    public Object getObject(int index) throws IndexOutOfBoundsException {
+        return columns[index].getObject(rowId - 1);
+    }
+
+    @Override
+    public boolean isNull(int index) throws IndexOutOfBoundsException {
+        return columns[index].isNull(rowId - 1);
+    }
+
+}
@@ -0,0 +1,89 @@
+package dbs_project.storageImpl;
+
+import dbs_project.storage.ColumnMetaData;
+import dbs_project.storage.ExtendedColumn;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columns of a table ordered by id, with their meta data and a name lookup.
+ * The table builds a new snapshot on every schema change and never modifies
+ * an old one, so its arrays are shared with cursors and rows and must not be
+ * modified by them.
+ *
+ * @author kaustuv
+ */
+public final class SchemaSnapshot {
+
+    private final int version;
+    private final ExtendedColumn[] columns;
+    private final ColumnMetaData[] metaData;
+    private final List<ExtendedColumn> columnList;
+    private final Map<String, Integer> positions;
+
+    SchemaSnapshot(int version, Collection<ExtendedColumn> tableColumns) {
+        this.version = version;
+        this.columns = tableColumns.toArray(new ExtendedColumn[tableColumns.size()]);
+        Arrays.sort(columns, new Comparator<ExtendedColumn>() {
+
+            @Override
+            public int compare(ExtendedColumn o1, ExtendedColumn o2) {
+                return o1.getMetaData().getId() - o2.getMetaData().getId();
+            }
+        });
+
+        this.metaData = new ColumnMetaData[columns.length];
+        this.positions = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            metaData[i] = columns[i].getMetaData();
+            positions.put(metaData[i].getName(), i);
+        }
+
+        this.columnList = Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    /**
+     * Returns the number of schema changes the table had when the snapshot
+     * was taken.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public ExtendedColumn[] getColumns() {
+        return columns;
+    }
+
+    public List<ExtendedColumn> getColumnList() {
+        return columnList;
+    }
+
+    public ColumnMetaData[] getColumnMetaData() {
+        return metaData;
+    }
+
+    /**
+     * Returns the position of the named column, -1 if there is none.
+     */
+    public int indexOf(String columnName) {
+        Integer position = positions.get(columnName);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Returns the named column, null if there is none.
+     */
+    public ExtendedColumn getColumn(String columnName) {
+        Integer position = positions.get(columnName);
+        return position == null ? null : columns[position];
+    }
+}
@@ -2,20 +2,26 @@ package dbs_project.storageImpl;
 
 import dbs_project.exceptions.NoSuchTableException;
 import dbs_project.exceptions.TableAlreadyExistsException;
+import dbs_project.index.Index;
 import dbs_project.index.IndexLayer;
 import dbs_project.index.IndexableTable;
+import dbs_project.storage.ExtendedColumn;
+import dbs_project.storage.PartitionSpec;
 import dbs_project.storage.Table;
 import dbs_project.storage.TableMetaData;
 import dbs_project.storage.Type;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Tables by id and by name. Lookups read concurrent maps without locking,
+ * catalog changes are synchronized so the two maps change together.
  *
  * @author kaustuv
  */
@@ -23,17 +29,22 @@ public class StorageLayerImpl implements IndexLayer {
 
     Map<Integer, IndexableTable> tableList;
     Map<String, IndexableTable> changedTables;
+    //Meta data by table name, kept in step with tableList
+    private Map<String, TableMetaData> catalog;
+    private Map<String, TableMetaData> schemaView;
 
     public StorageLayerImpl() {
-        tableList = new HashMap();
-        changedTables = new HashMap();
+        tableList = new ConcurrentHashMap<>();
+        changedTables = new ConcurrentHashMap<>();
+        catalog = new ConcurrentHashMap<>();
+        schemaView = Collections.unmodifiableMap(catalog);
     }
 
     public StorageLayerImpl(List<IndexableTable> list) {
-        tableList = new HashMap();
-        changedTables = new HashMap();
+        this();
         for (IndexableTable t : list) {
             tableList.put(t.getTableMetaData().getId(), t);
+            catalog.put(t.getTableMetaData().getName(), t.getTableMetaData());
         }
     }
 
@@ -45,20 +56,44 @@ public class StorageLayerImpl implements IndexLayer {
         this.changedTables = changedTables;
     }
 
-    public void replaceTable(IndexableTable table) {
-        if (tableList.get(table.getTableMetaData().getId()) != null) {
+    public synchronized void replaceTable(IndexableTable table) {
+        IndexableTable old = tableList.get(table.getTableMetaData().getId());
+        if (old != null) {
             tableList.put(table.getTableMetaData().getId(), table);
+            catalog.remove(old.getTableMetaData().getName());
+            catalog.put(table.getTableMetaData().getName(), table.getTableMetaData());
         }
     }
 
     @Override
-    public int createTable(String tableName, Map<String, Type> schema) throws TableAlreadyExistsException {
-        for (Table table : tableList.values()) {
-            if (table.getTableMetaData().getName().equals(tableName)) {
-                throw new TableAlreadyExistsException("The table " + tableName + " already Exists");
-            }
+    public synchronized int createTable(String tableName, Map<String, Type> schema) throws TableAlreadyExistsException {
+        if (catalog.containsKey(tableName)) {
+            throw new TableAlreadyExistsException("The table " + tableName + " already Exists");
+        }
+
+        int tableId = newTableId();
+        TableImpl table = new TableImpl(tableId, tableName, schema);
+        tableList.put(tableId, table);
+        catalog.put(tableName, table.getTableMetaData());
+
+        return tableId;
+    }
+
+    @Override
+    public synchronized int createTable(String tableName, Map<String, Type> schema, PartitionSpec partitioning) throws TableAlreadyExistsException {
+        if (catalog.containsKey(tableName)) {
+            throw new TableAlreadyExistsException("The table " + tableName + " already Exists");
         }
 
+        int tableId = newTableId();
+        PartitionedTableImpl table = new PartitionedTableImpl(tableId, tableName, schema, partitioning);
+        tableList.put(tableId, table);
+        catalog.put(tableName, table.getTableMetaData());
+
+        return tableId;
+    }
+
+    private int newTableId() {
         Random random = new Random();
         int tableId;
 
@@ -70,50 +105,43 @@ public class StorageLayerImpl implements IndexLayer {
             }
         }
 
-        tableList.put(tableId, new TableImpl(tableId, tableName, schema));
-
         return tableId;
     }
 
     @Override
-    public void deleteTable(int tableId) throws NoSuchTableException {
-        if (tableList.get(tableId) == null) {
+    public synchronized void deleteTable(int tableId) throws NoSuchTableException {
+        IndexableTable t = tableList.remove(tableId);
+        if (t == null) {
             throw new NoSuchTableException("The table does not Exists");
         }
 
-        tableList.remove(tableId);
+        catalog.remove(t.getTableMetaData().getName());
     }
 
     @Override
-    public void renameTable(int tableId, String newName) throws TableAlreadyExistsException, NoSuchTableException {
+    public synchronized void renameTable(int tableId, String newName) throws TableAlreadyExistsException, NoSuchTableException {
         Table t = tableList.get(tableId);
         if (t == null) {
             throw new NoSuchTableException("The table does not Exists");
         }
 
-        for (Table table : tableList.values()) {
-            if (table.getTableMetaData().getName().equals(newName)) {
-                throw new TableAlreadyExistsException("The table " + newName + " already Exists");
-            }
+        if (catalog.containsKey(newName)) {
+            throw new TableAlreadyExistsException("The table " + newName + " already Exists");
         }
 
         TableMetaDataImpl tmd = (TableMetaDataImpl) t.getTableMetaData();
+        catalog.remove(tmd.getName());
         tmd.setTableName(newName);
+        catalog.put(newName, tmd);
     }
 
+    /**
+     * Returns a read only view of the catalog, it follows later table
+     * changes. Looking up a name does not copy anything.
+     */
     @Override
     public Map<String, TableMetaData> getDatabaseSchema() {
-        Map<String, TableMetaData> schema = new HashMap<>();
-        Table t;
-
-        Iterator it = tableList.entrySet().iterator();
-        while (it.hasNext()) {
-            t = (Table) ((Map.Entry) it.next()).getValue();
-
-            schema.put(t.getTableMetaData().getName(), t.getTableMetaData());
-        }
-
-        return schema;
+        return schemaView;
     }
 
     @Override
@@ -132,6 +160,70 @@ public class StorageLayerImpl implements IndexLayer {
         return new ArrayList<>(tableList.values());
     }
 
+    @Override
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (IndexableTable t : tableList.values()) {
+            bytes += t.getMemoryUsage();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getIndexMemoryUsage() {
+        long bytes = 0;
+        for (IndexableTable t : tableList.values()) {
+            for (Index index : t.getIndexes()) {
+                bytes += index.getMemoryUsage();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Lists the tables by name, each with its columns by id, its indexes and
+     * its bitmap of live rows, and ends with the total.
+     */
+    @Override
+    public String getMemoryReport() {
+        List<IndexableTable> tables = new ArrayList<>(tableList.values());
+        Collections.sort(tables, new Comparator<IndexableTable>() {
+
+            @Override
+            public int compare(IndexableTable o1, IndexableTable o2) {
+                return o1.getTableMetaData().getName().compareTo(o2.getTableMetaData().getName());
+            }
+        });
+
+        StringBuilder report = new StringBuilder();
+        long total = 0;
+        for (IndexableTable t : tables) {
+            long tableBytes = t.getMemoryUsage();
+            total += tableBytes;
+            report.append("table ").append(t.getTableMetaData().getName()).append(": ").append(tableBytes).append(" bytes\n");
+
+            if (t instanceof PartitionedTableImpl) {
+                PartitionedTableImpl partitioned = (PartitionedTableImpl) t;
+                for (int p = 0; p < partitioned.getPartitionCount(); p++) {
+                    report.append("  partition ").append(p).append(": ").append(partitioned.getPartition(p).getMemoryUsage()).append(" bytes\n");
+                }
+            } else {
+                for (ExtendedColumn col : ((TableImpl) t).sortColumns()) {
+                    report.append("  column ").append(col.getMetaData().getName()).append(' ').append(col.getMetaData().getType())
+                            .append(' ').append(col.getEncoding()).append(": ").append(col.getMemoryUsage()).append(" bytes\n");
+                }
+            }
+            for (Index index : t.getIndexes()) {
+                report.append("  index ").append(index.getIndexMetaInfo().getName()).append(' ').append(index.getIndexMetaInfo().getIndexType())
+                        .append(": ").append(index.getMemoryUsage()).append(" bytes\n");
+            }
+            report.append("  live rows: ").append(t.getDeleteListMemoryUsage()).append(" bytes\n");
+        }
+        report.append("total: ").append(total).append(" bytes\n");
+
+        return report.toString();
+    }
+
     @Override
     public Collection<Table> getTables() {
         List<Table> tables = new ArrayList<>();
@@ -7,6 +7,7 @@ import dbs_project.exceptions.NoSuchIndexException;
 import dbs_project.exceptions.NoSuchRowException;
 import dbs_project.exceptions.SchemaMismatchException;
 import dbs_project.index.Index;
+import dbs_project.index.IndexMetaInfo;
 import dbs_project.index.IndexType;
 import dbs_project.index.IndexableTable;
 import dbs_project.indexImpl.IndexImpl;
@@ -15,22 +16,32 @@ import dbs_project.storage.ColumnCursor;
 import dbs_project.storage.ColumnMetaData;
 import dbs_project.storage.ExtendedColumn;
 import dbs_project.storage.Row;
+import dbs_project.storage.RowBatchCursor;
 import dbs_project.storage.RowCursor;
 import dbs_project.storage.RowMetaData;
 import dbs_project.storage.TableMetaData;
 import dbs_project.storage.Type;
 import dbs_project.util.IdCursor;
 import dbs_project.utilImpl.IdCursorImpl;
+import dbs_project.utilImpl.MemoryEstimator;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.collections.primitives.ArrayIntList;
@@ -42,14 +53,45 @@ import org.apache.commons.collections.primitives.ArrayIntList;
 public class TableImpl implements IndexableTable, Serializable {
 
     private static final long serialVersionUID = 7863262235394607247L;
+    //Dead row ratio past which deletes compact the table, 0 never compacts
+    static final double COMPACTION_RATIO_DEFAULT = Double.parseDouble(System.getProperty("dbs.compaction.ratio", "0"));
+    //Whether new rows fill the slots of deleted rows before they are appended
+    static final boolean SLOT_REUSE_DEFAULT = Boolean.getBoolean("dbs.slot.reuse");
+    //Rows addRows collects per column before appending them
+    static final int LOAD_BATCH_SIZE = 4096;
     private Map<Integer, ExtendedColumn> columnList;
     private Map<Integer, Index> indexes;
     private TableMetaData tMetaData;
+    private double compactionRatio = COMPACTION_RATIO_DEFAULT;
+    private boolean slotReuse = SLOT_REUSE_DEFAULT;
+    //Every slot below it is live, free slots are searched from here
+    private transient int freeSlotHint;
+    //Built on first use after a column change, not serialized
+    private transient SchemaSnapshot schema;
+    private int schemaVersion;
+    private transient ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //Column the rows are kept sorted by, -1 for none
+    private int clusterColumnId = -1;
 
     public TableImpl() {
 
     }
 
+    /**
+     * Returns the lock of the table. The query layer holds the read lock
+     * while a query is evaluated and the write lock while a statement
+     * changes the table. The Table methods do not lock, callers sharing a
+     * table between threads take the lock themselves.
+     */
+    public ReadWriteLock getLock() {
+        return lock;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new ReentrantReadWriteLock();
+    }
+
     public TableImpl(int tableId, String tableName, Map<String, Type> schema) {
         Map<String, ColumnMetaData> cMap = new HashMap<>();
         columnList = new HashMap<>();
@@ -94,10 +136,30 @@ public class TableImpl implements IndexableTable, Serializable {
         tMetaData.getTableSchema().remove(col.getMetaData().getName());
         ((ColumnMetaDataImpl) col.getMetaData()).setName(newColumnName);
         tMetaData.getTableSchema().put(newColumnName, col.getMetaData());
+        schemaChanged();
     }
 
     @Override
     public int createColumn(String columnName, Type columnType) throws ColumnAlreadyExistsException {
+        int maxId = nextColumnId(columnName) - 1;
+        int currentRowCount = -1;
+
+        if (maxId != -1) {
+            currentRowCount = columnList.get(maxId).getMetaData().getRowCount();
+        }
+
+        ExtendedColumn col = new ColumnImpl(this, columnName, columnType, maxId + 1, currentRowCount);
+        tMetaData.getTableSchema().put(columnName, col.getMetaData());
+        columnList.put(maxId + 1, col);
+        schemaChanged();
+
+        return maxId + 1;
+    }
+
+    /**
+     * Returns the id a new column gets, one more than the largest id in use.
+     */
+    private int nextColumnId(String columnName) throws ColumnAlreadyExistsException {
         Column compareCol;
         int maxId = -1;
         for (Map.Entry entry : columnList.entrySet()) {
@@ -110,16 +172,6 @@ public class TableImpl implements IndexableTable, Serializable {
             maxId = maxId > compareCol.getMetaData().getId() ? maxId : compareCol.getMetaData().getId();
         }
 
-        int currentRowCount = -1;
-
-        if (maxId != -1) {
-            currentRowCount = columnList.get(maxId).getMetaData().getRowCount();
-        }
-
-        ExtendedColumn col = new ColumnImpl(this, columnName, columnType, maxId + 1, currentRowCount);
-        tMetaData.getTableSchema().put(columnName, col.getMetaData());
-        columnList.put(maxId + 1, col);
-
         return maxId + 1;
     }
 
@@ -128,35 +180,25 @@ public class TableImpl implements IndexableTable, Serializable {
         RowMetaData rMetaData = row.getMetaData();
         for (int i = 0; i < rMetaData.getColumnCount(); i++) {
             ColumnMetaData cMetData = rMetaData.getColumnMetaData(i);
-            if (tMetaData.getTableSchema().get(cMetData.getName()) == null) {
+            if (getSchema().getColumn(cMetData.getName()) == null) {
                 throw new SchemaMismatchException("The Row contains incorrect data");
             }
         }
 
+        if (slotReuse) {
+            int slot = nextFreeSlot();
+            if (slot >= 0) {
+                ExtendedColumn[] cols = getSchema().getColumns();
+                fillSlot(slot, row, cols, mapColumns(rMetaData, cols));
+                return slot + 1;
+            }
+        }
+
         for (int i = 0; i < row.getMetaData().getColumnCount(); i++) {
             try {
                 ColumnMetaData cMetData = rMetaData.getColumnMetaData(i);
-                ColumnImpl col = (ColumnImpl) columnList.get((tMetaData.getTableSchema().get(cMetData.getName())).getId());
-
-                switch (cMetData.getType()) {
-                    case INTEGER:
-                        col.addValue(row.getInteger(i));
-                        break;
-                    case DOUBLE:
-                        col.addValue(row.getDouble(i));
-                        break;
-                    case STRING:
-                        col.addValue(row.getString(i));
-                        break;
-                    case DATE:
-                        col.addValue(row.getDate(i));
-                        break;
-                    case BOOLEAN:
-                        col.addValue(row.getBoolean(i));
-                        break;
-                    case OBJECT:
-                        col.addValue(row.getObject(i));
-                }
+                ColumnImpl col = (ColumnImpl) getSchema().getColumn(cMetData.getName());
+                col.addValue(row.isNull(i) ? null : getValue(row, i, cMetData.getType()));
             } catch (ParseException ex) {
                 Logger.getLogger(TableImpl.class.getName()).log(Level.SEVERE, null, ex);
             }
@@ -165,74 +207,302 @@ public class TableImpl implements IndexableTable, Serializable {
         return rMetaData.getId();
     }
 
+    static Object getValue(Row row, int index, Type type) throws ParseException {
+        switch (type) {
+            case INTEGER:
+                return row.getInteger(index);
+            case DOUBLE:
+                return row.getDouble(index);
+            case STRING:
+                return row.getString(index);
+            case DATE:
+                return row.getDate(index);
+            case BOOLEAN:
+                return row.getBoolean(index);
+            default:
+                return row.getObject(index);
+        }
+    }
+
+    /**
+     * Writes a row to the slot of a deleted row, source maps every column to
+     * the row's position of its value, -1 for a null. The row gets the id of
+     * the slot.
+     */
+    private void fillSlot(int slot, Row row, ExtendedColumn[] cols, int[] source) {
+        for (int c = 0; c < cols.length; c++) {
+            try {
+                int pos = source[c];
+                Object value = pos < 0 || row.isNull(pos) ? null : getValue(row, pos, cols[c].getMetaData().getType());
+                ((ColumnImpl) cols[c]).fillValue(slot + 1, value);
+            } catch (ParseException ex) {
+                Logger.getLogger(TableImpl.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        ((TableMetaDataImpl) tMetaData).incrementRowCoutByOne();
+        freeSlotHint = slot + 1;
+    }
+
+    /**
+     * Returns the lowest slot of a deleted row, -1 if all stored rows are
+     * live. The slots are the clear bits of the delete list below the
+     * stored row count, the hint skips the live prefix found by earlier
+     * calls.
+     */
+    private int nextFreeSlot() {
+        int slot = ((TableMetaDataImpl) tMetaData).getDeleteList().nextClearBit(freeSlotHint);
+        freeSlotHint = slot;
+        return slot < getStoredRowCount() ? slot : -1;
+    }
+
+    public boolean isSlotReuse() {
+        return slotReuse;
+    }
+
+    /**
+     * Sets whether addRow and addRows write new rows to the slots of deleted
+     * rows, lowest first, before they append. The columns then only grow
+     * when no row is dead, but a new row can get the id of a deleted one.
+     */
+    public void setSlotReuse(boolean slotReuse) {
+        this.slotReuse = slotReuse;
+    }
+
     @Override
     public IdCursor addRows(RowCursor rows) throws SchemaMismatchException {
+        return addRows(rows, 1);
+    }
+
+    /**
+     * Appends the rows column by column. The column of every cursor position
+     * is resolved once from the first row, values are collected in typed
+     * arrays of LOAD_BATCH_SIZE rows and every column appends a whole batch
+     * at once, up to the given number of columns in parallel. Table columns
+     * the rows do not have get nulls. Indexes are rebuilt once at the end
+     * instead of being updated per value.
+     */
+    public IdCursor addRows(RowCursor rows, int threads) throws SchemaMismatchException {
+        List<ExtendedColumn> sorted = sortColumns();
+        ColumnImpl[] cols = sorted.toArray(new ColumnImpl[sorted.size()]);
+        int[] source = null;
+        Object[] vectors = new Object[cols.length];
+        BitSet[] nulls = new BitSet[cols.length];
+        int first = cols.length == 0 ? 0 : cols[0].getMetaData().getRowCount();
+        int count = 0;
+        int loaded = 0;
         ArrayIntList ids = new ArrayIntList();
-        ColumnMetaData cMetData = null;
-        boolean checkSchema = true;
+        ExecutorService executor = threads > 1 && cols.length > 1 ? Executors.newFixedThreadPool(Math.min(threads, cols.length)) : null;
 
-        while (rows.next()) {
-            RowMetaData rMetaData = rows.getMetaData();
+        try {
+            while (rows.next()) {
+                if (source == null) {
+                    source = mapColumns(rows.getMetaData(), cols);
+                    for (int c = 0; c < cols.length; c++) {
+                        vectors[c] = newVector(cols[c].getMetaData().getType());
+                        nulls[c] = new BitSet(LOAD_BATCH_SIZE);
+                    }
+                }
 
-            if (checkSchema) {
-                for (int i = 0; i < rMetaData.getColumnCount(); i++) {
-                    cMetData = rMetaData.getColumnMetaData(i);
-                    if (tMetaData.getTableSchema().get(cMetData.getName()) == null) {
-                        throw new SchemaMismatchException("The Row contains incorrect data");
+                if (slotReuse) {
+                    int slot = nextFreeSlot();
+                    if (slot >= 0) {
+                        fillSlot(slot, rows, cols, source);
+                        ids.add(slot + 1);
+                        continue;
                     }
                 }
-                checkSchema = false;
-            }
 
-            ColumnImpl col = null;
-            for (int i = 0; i < rows.getMetaData().getColumnCount(); i++) {
-                try {
-                    cMetData = rMetaData.getColumnMetaData(i);
-                    col = (ColumnImpl) columnList.get((tMetaData.getTableSchema().get(cMetData.getName())).getId());
+                ids.add(first + loaded + count + 1);
+                for (int c = 0; c < cols.length; c++) {
+                    int pos = source[c];
+                    boolean isNull = pos < 0 || rows.isNull(pos);
+                    if (isNull) {
+                        nulls[c].set(count);
+                    }
 
-                    switch (cMetData.getType()) {
+                    switch (cols[c].getMetaData().getType()) {
                         case INTEGER:
-                            col.addValue(rows.getInteger(i));
+                            ((int[]) vectors[c])[count] = isNull ? Type.NULL_VALUE_INTEGER : rows.getInteger(pos);
                             break;
                         case DOUBLE:
-                            col.addValue(rows.getDouble(i));
-                            break;
-                        case STRING:
-                            col.addValue(rows.getString(i));
+                            ((double[]) vectors[c])[count] = isNull ? Type.NULL_VALUE_DOUBLE : rows.getDouble(pos);
                             break;
                         case DATE:
-                            col.addValue(rows.getDate(i));
+                            ((long[]) vectors[c])[count] = isNull ? ColumnImpl.NULL_DATE : rows.getDate(pos).getTime();
                             break;
                         case BOOLEAN:
-                            col.addValue(rows.getBoolean(i));
+                            ((boolean[]) vectors[c])[count] = isNull ? Type.NULL_VALUE_BOOLEAN : rows.getBoolean(pos);
+                            break;
+                        case STRING:
+                            ((Object[]) vectors[c])[count] = isNull ? null : rows.getString(pos);
                             break;
                         case OBJECT:
-                            col.addValue(rows.getObject(i));
+                            ((Object[]) vectors[c])[count] = isNull ? null : rows.getObject(pos);
                     }
-                } catch (ParseException ex) {
-                    Logger.getLogger(TableImpl.class.getName()).log(Level.SEVERE, null, ex);
                 }
+
+                if (++count == LOAD_BATCH_SIZE) {
+                    appendBatch(cols, vectors, nulls, count, executor);
+                    loaded += count;
+                    count = 0;
+                }
+            }
+
+            if (count > 0) {
+                appendBatch(cols, vectors, nulls, count, executor);
+                loaded += count;
             }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
 
-            ids.add(columnList.get(0).getMetaData().getRowCount());
-            ((TableMetaDataImpl) tMetaData).incrementRowCoutByOne();
+        if (loaded > 0 && !indexes.isEmpty()) {
+            rebuildIndexes();
         }
 
         return new IdCursorImpl(ids);
     }
 
+    /**
+     * Returns the cursor position of every column of the schema snapshot, -1
+     * for columns the rows do not have.
+     */
+    private int[] mapColumns(RowMetaData rMetaData, ExtendedColumn[] cols) throws SchemaMismatchException {
+        int[] source = new int[cols.length];
+        Arrays.fill(source, -1);
+
+        for (int i = 0; i < rMetaData.getColumnCount(); i++) {
+            int position = getSchema().indexOf(rMetaData.getColumnMetaData(i).getName());
+            if (position < 0) {
+                throw new SchemaMismatchException("The Row contains incorrect data");
+            }
+
+            source[position] = i;
+        }
+
+        return source;
+    }
+
+    static Object newVector(Type type) {
+        switch (type) {
+            case INTEGER:
+                return new int[LOAD_BATCH_SIZE];
+            case DOUBLE:
+                return new double[LOAD_BATCH_SIZE];
+            case DATE:
+                return new long[LOAD_BATCH_SIZE];
+            case BOOLEAN:
+                return new boolean[LOAD_BATCH_SIZE];
+            default:
+                return new Object[LOAD_BATCH_SIZE];
+        }
+    }
+
+    private void appendBatch(final ColumnImpl[] cols, final Object[] vectors, final BitSet[] nulls, final int count, ExecutorService executor) {
+        if (executor == null) {
+            for (int c = 0; c < cols.length; c++) {
+                cols[c].appendBatch(vectors[c], nulls[c], count);
+            }
+        } else {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int c = 0; c < cols.length; c++) {
+                final int col = c;
+                tasks.add(executor.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        cols[col].appendBatch(vectors[col], nulls[col], count);
+                    }
+                }));
+            }
+
+            try {
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                throw new IllegalStateException("Appending a batch of rows failed", ex);
+            }
+        }
+
+        for (int c = 0; c < cols.length; c++) {
+            nulls[c].clear();
+        }
+
+        if (cols.length > 0) {
+            int end = cols[0].getMetaData().getRowCount();
+            ((TableMetaDataImpl) tMetaData).getDeleteList().set(end - count, end);
+            ((TableMetaDataImpl) tMetaData).addRowCountBy(count);
+        }
+    }
+
+    /**
+     * Loads the column in bulk with ColumnImpl.load, chunk by chunk when it
+     * is a column of a table. The first column of a table brings the rows.
+     */
     @Override
     public int addColumn(Column column) throws SchemaMismatchException, ColumnAlreadyExistsException {
-        throw new UnsupportedOperationException("Not supported yet.");
+        if (column instanceof ColumnCursorImpl) {
+            column = ((ColumnCursorImpl) column).getCurrentColumn();
+        }
+
+        ColumnMetaData cMetData = column.getMetaData();
+        int rowCount = cMetData.getRowCount();
+
+        if (!columnList.isEmpty() && rowCount != getStoredRowCount()) {
+            throw new SchemaMismatchException("The Column has " + rowCount + " values, the table " + getStoredRowCount() + " rows");
+        }
+
+        int columnId = nextColumnId(cMetData.getName());
+        ColumnImpl col = new ColumnImpl(this, cMetData.getName(), cMetData.getType(), columnId, -1);
+        col.setSrcTabMet(tMetaData);
+
+        if (columnList.isEmpty()) {
+            BitSet live = new BitSet();
+            live.set(0, rowCount);
+            ((TableMetaDataImpl) tMetaData).setDeleteList(live);
+            ((TableMetaDataImpl) tMetaData).addRowCountBy(rowCount - tMetaData.getRowCount());
+        }
+
+        col.load(column);
+        tMetaData.getTableSchema().put(cMetData.getName(), col.getMetaData());
+        columnList.put(columnId, col);
+        schemaChanged();
+
+        return columnId;
     }
 
     @Override
     public IdCursor addColumns(ColumnCursor columns) throws SchemaMismatchException, ColumnAlreadyExistsException {
-        throw new UnsupportedOperationException("Not supported yet.");
+        ArrayIntList ids = new ArrayIntList();
+
+        while (columns.next()) {
+            ids.add(addColumn(columns));
+        }
+
+        return new IdCursorImpl(ids);
     }
 
     @Override
     public void deleteRow(int rowId) throws NoSuchRowException {
+        removeRow(rowId);
+        compactIfNeeded();
+    }
+
+    @Override
+    public void deleteRows(IdCursor rowIds) throws NoSuchRowException {
+        //row ids of the cursor stay valid until all of them are deleted
+        while (rowIds.next()) {
+            removeRow(rowIds.getId());
+        }
+        compactIfNeeded();
+    }
+
+    private void removeRow(int rowId) {
+        freeSlotHint = Math.min(freeSlotHint, rowId - 1);
         for (Map.Entry entry : columnList.entrySet()) {
             try {
                 ColumnImpl col = (ColumnImpl) entry.getValue();
@@ -245,12 +515,246 @@ public class TableImpl implements IndexableTable, Serializable {
         ((TableMetaDataImpl) tMetaData).decrementRowCoutByOne();
     }
 
-    @Override
-    public void deleteRows(IdCursor rowIds) throws NoSuchRowException {
-        while (rowIds.next()) {
-            deleteRow(rowIds.getId());
+    /**
+     * Rewrites all columns without the deleted rows and rebuilds the
+     * indexes. Row ids change: the row that now has id i is the one whose
+     * old id is the i-th id of the returned cursor. A clustered table whose
+     * rows are out of order is sorted by its key at the same time.
+     */
+    public IdCursor compact() {
+        if (needsClustering()) {
+            return cluster();
+        }
+
+        ArrayIntList oldIds = new ArrayIntList();
+        BitSet live = ((TableMetaDataImpl) tMetaData).getDeleteList();
+
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            oldIds.add(row + 1);
+        }
+
+        for (ExtendedColumn col : columnList.values()) {
+            ((ColumnImpl) col).compact(live);
+        }
+
+        BitSet compacted = new BitSet();
+        compacted.set(0, oldIds.size());
+        ((TableMetaDataImpl) tMetaData).setDeleteList(compacted);
+        freeSlotHint = 0;
+
+        rebuildIndexes();
+
+        return new IdCursorImpl(oldIds);
+    }
+
+    /**
+     * Makes a column the clustering key of the table, -1 drops the key. The
+     * rows are sorted by the key right away, nulls first, which drops the
+     * deleted rows and changes row ids like compact. Appends of ascending
+     * keys keep the order. Once a change breaks it, scans fall back to reading
+     * the key until cluster or compact sorts the rows again, row ids never
+     * change behind the caller's back. Scans answer range predicates on a
+     * sorted key by binary search. Only INTEGER, DOUBLE and DATE columns can
+     * be keys.
+     */
+    public void setClusteringKey(int columnId) throws NoSuchColumnException {
+        ColumnImpl col = columnId < 0 ? null : (ColumnImpl) getColumn(columnId);
+
+        if (col != null) {
+            Type type = col.getMetaData().getType();
+            if (type != Type.INTEGER && type != Type.DOUBLE && type != Type.DATE) {
+                throw new IllegalArgumentException("Only INTEGER, DOUBLE and DATE columns can be clustering keys, found " + type);
+            }
+        }
+
+        if (columnList.containsKey(clusterColumnId)) {
+            ((ColumnImpl) columnList.get(clusterColumnId)).setClusterKey(false);
+        }
+
+        clusterColumnId = columnId;
+        if (col != null) {
+            col.setClusterKey(true);
+            if (!col.isSorted()) {
+                cluster();
+            }
+        }
+    }
+
+    public int getClusteringKey() {
+        return clusterColumnId;
+    }
+
+    /**
+     * Whether the table has a clustering key its rows are no longer sorted
+     * by.
+     */
+    public boolean needsClustering() {
+        ExtendedColumn col = columnList.get(clusterColumnId);
+        return col != null && !((ColumnImpl) col).isSorted();
+    }
+
+    /**
+     * Rewrites all columns with the live rows sorted by the clustering key,
+     * rows with a null key first and equal keys in their current order.
+     * Deleted rows are dropped and the indexes rebuilt. The row that now has
+     * id i is the one whose old id is the i-th id of the returned cursor.
+     */
+    public IdCursor cluster() {
+        ColumnImpl key = (ColumnImpl) columnList.get(clusterColumnId);
+        if (key == null) {
+            throw new IllegalStateException("The table has no clustering key");
         }
 
+        BitSet live = ((TableMetaDataImpl) tMetaData).getDeleteList();
+        int[] rows = new int[live.cardinality()];
+        long[] keys = new long[rows.length];
+        int nulls = 0;
+        int count = 0;
+
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            if (key.isNull(row)) {
+                rows[nulls++] = row;
+            }
+        }
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            if (!key.isNull(row)) {
+                rows[nulls + count] = row;
+                keys[nulls + count] = key.keyAt(row);
+                count++;
+            }
+        }
+        sortByKey(rows, keys, nulls, rows.length);
+
+        for (ExtendedColumn col : columnList.values()) {
+            ((ColumnImpl) col).reorder(rows);
+        }
+
+        BitSet clustered = new BitSet();
+        clustered.set(0, rows.length);
+        ((TableMetaDataImpl) tMetaData).setDeleteList(clustered);
+        freeSlotHint = 0;
+        key.setClusterKey(true);
+
+        rebuildIndexes();
+
+        ArrayIntList oldIds = new ArrayIntList(rows.length);
+        for (int row : rows) {
+            oldIds.add(row + 1);
+        }
+        return new IdCursorImpl(oldIds);
+    }
+
+    /**
+     * Stable merge sort of rows[from, to) by their keys, keys move along.
+     */
+    private static void sortByKey(int[] rows, long[] keys, int from, int to) {
+        int[] rowBuffer = new int[rows.length];
+        long[] keyBuffer = new long[keys.length];
+
+        for (int width = 1; width < to - from; width *= 2) {
+            for (int left = from; left < to; left += 2 * width) {
+                int mid = Math.min(left + width, to);
+                int right = Math.min(left + 2 * width, to);
+                int i = left;
+                int j = mid;
+                int k = left;
+
+                while (i < mid && j < right) {
+                    if (keys[j] < keys[i]) {
+                        rowBuffer[k] = rows[j];
+                        keyBuffer[k++] = keys[j++];
+                    } else {
+                        rowBuffer[k] = rows[i];
+                        keyBuffer[k++] = keys[i++];
+                    }
+                }
+                while (i < mid) {
+                    rowBuffer[k] = rows[i];
+                    keyBuffer[k++] = keys[i++];
+                }
+                while (j < right) {
+                    rowBuffer[k] = rows[j];
+                    keyBuffer[k++] = keys[j++];
+                }
+            }
+
+            System.arraycopy(rowBuffer, from, rows, from, to - from);
+            System.arraycopy(keyBuffer, from, keys, from, to - from);
+        }
+    }
+
+    /**
+     * Rebuilds the statistics of all columns from the live rows, with fresh
+     * histograms. Statistics are kept up to date as rows change, but removals
+     * do not narrow min, max, the distinct count or the histogram bounds.
+     */
+    public void analyze() {
+        for (ExtendedColumn col : columnList.values()) {
+            ((ColumnImpl) col).analyze();
+        }
+    }
+
+    /**
+     * Number of rows the columns hold, deleted ones included.
+     */
+    int getStoredRowCount() {
+        if (columnList.isEmpty()) {
+            return 0;
+        }
+
+        return columnList.values().iterator().next().getMetaData().getRowCount();
+    }
+
+    /**
+     * Number of deleted rows that still take up space in the columns.
+     */
+    public int getDeadRowCount() {
+        return getStoredRowCount() - tMetaData.getRowCount();
+    }
+
+    public double getCompactionRatio() {
+        return compactionRatio;
+    }
+
+    /**
+     * Sets the share of deleted rows among all stored rows past which a
+     * delete compacts the table. Deletes then change the ids of the rows
+     * left, so 0 turns it off.
+     */
+    public void setCompactionRatio(double compactionRatio) {
+        this.compactionRatio = compactionRatio;
+    }
+
+    private void compactIfNeeded() {
+        if (compactionRatio <= 0 || columnList.isEmpty()) {
+            return;
+        }
+
+        int stored = columnList.values().iterator().next().getMetaData().getRowCount();
+        if (stored > 0 && getDeadRowCount() > compactionRatio * stored) {
+            compact();
+        }
+    }
+
+    private void rebuildIndexes() {
+        rebuildIndexes(columnList.values());
+    }
+
+    /**
+     * Reloads every index on the given columns from the current column data.
+     * The index objects stay the same, so indexes callers hold stay valid.
+     */
+    private void rebuildIndexes(Collection<ExtendedColumn> keyColumns) {
+        for (Index index : indexes.values()) {
+            if (!keyColumns.contains(index.getIndexMetaInfo().getKeyColumn())) {
+                continue;
+            }
+            try {
+                ((IndexImpl) index).rebuild();
+            } catch (ParseException ex) {
+                Logger.getLogger(TableImpl.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
     }
 
     @Override
@@ -263,6 +767,11 @@ public class TableImpl implements IndexableTable, Serializable {
 
         tMetaData.getTableSchema().remove(col.getMetaData().getName());
         columnList.remove(col.getMetaData().getId());
+        schemaChanged();
+
+        if (columnId == clusterColumnId) {
+            clusterColumnId = -1;
+        }
 
         List<Index> indList = new ArrayList<>(indexes.values());
 
@@ -291,7 +800,13 @@ public class TableImpl implements IndexableTable, Serializable {
 
     @Override
     public ColumnCursor getColumns(IdCursor columnIds) throws NoSuchColumnException {
-        throw new UnsupportedOperationException("Not supported yet.");
+        List<ExtendedColumn> cols = new ArrayList<>();
+
+        while (columnIds.next()) {
+            cols.add(getColumn(columnIds.getId()));
+        }
+
+        return new ColumnCursorImpl(cols);
     }
 
     @Override
@@ -313,8 +828,7 @@ public class TableImpl implements IndexableTable, Serializable {
          }
          return new RowCursorImpl(rows);*/
         BitSet idList = new BitSet();
-        List<ExtendedColumn> cols = sortColumns();
-        int rowCount = cols.get(0).getMetaData().getRowCount();
+        int rowCount = getStoredRowCount();
 
         while (rowIds.next()) {
 
@@ -329,17 +843,12 @@ public class TableImpl implements IndexableTable, Serializable {
 
     @Override
     public Row getRow(int rowId) throws NoSuchRowException {
-        List<ExtendedColumn> cols = new ArrayList<>(columnList.values());
-
-        if (cols.size() > 0) {
-            if (rowId > cols.get(0).getMetaData().getRowCount()) {
-                throw new NoSuchRowException("Row does not exist");
-            }
+        if (rowId > getStoredRowCount()) {
+            throw new NoSuchRowException("Row does not exist");
         }
 
-        Row row = new RowImpl(rowId, sortColumnMetaData(), sortColumns(), columnList.size());
-
-        return row;
+        SchemaSnapshot snapshot = getSchema();
+        return new RowViewImpl(rowId, snapshot.getColumns(), snapshot.getColumnMetaData());
     }
 
     @Override
@@ -349,7 +858,7 @@ public class TableImpl implements IndexableTable, Serializable {
         for (int i = 0; i < rMet.getColumnCount(); i++) {
             cMet = rMet.getColumnMetaData(i);
 
-            if (columnList.get(tMetaData.getTableSchema().get(cMet.getName()).getId()) == null) {
+            if (getSchema().getColumn(cMet.getName()) == null) {
                 throw new SchemaMismatchException("Columns don't match the table's column List");
             }
         }
@@ -365,7 +874,12 @@ public class TableImpl implements IndexableTable, Serializable {
             try {
                 cMet = rMet.getColumnMetaData(i);
 
-                ColumnImpl c = (ColumnImpl) columnList.get(tMetaData.getTableSchema().get(cMet.getName()).getId());
+                ColumnImpl c = (ColumnImpl) getSchema().getColumn(cMet.getName());
+
+                if (newRow.isNull(i)) {
+                    c.updateValue(rowId, null);
+                    continue;
+                }
 
                 switch (cMet.getType()) {
                     case INTEGER:
@@ -405,7 +919,7 @@ public class TableImpl implements IndexableTable, Serializable {
             for (int i = 0; i < rMet.getColumnCount(); i++) {
                 cMet = rMet.getColumnMetaData(i);
 
-                if (columnList.get(tMetaData.getTableSchema().get(cMet.getName()).getId()) == null) {
+                if (getSchema().getColumn(cMet.getName()) == null) {
                     throw new SchemaMismatchException("Columns don't match the table's column List");
                 }
             }
@@ -424,7 +938,12 @@ public class TableImpl implements IndexableTable, Serializable {
                 try {
                     cMet = rMet.getColumnMetaData(i);
 
-                    ColumnImpl c = (ColumnImpl) columnList.get(tMetaData.getTableSchema().get(cMet.getName()).getId());
+                    ColumnImpl c = (ColumnImpl) getSchema().getColumn(cMet.getName());
+
+                    if (newRows.isNull(i)) {
+                        c.updateValue(rowId, null);
+                        continue;
+                    }
 
                     switch (cMet.getType()) {
                         case INTEGER:
@@ -453,14 +972,53 @@ public class TableImpl implements IndexableTable, Serializable {
 
     }
 
+    /**
+     * Replaces the columns one by one and rebuilds the indexes on them once
+     * all of them are loaded.
+     */
     @Override
     public void updateColumns(IdCursor columnIds, ColumnCursor updateColumns) throws SchemaMismatchException, NoSuchColumnException {
-        throw new UnsupportedOperationException("Not supported yet.");
+        List<ExtendedColumn> updated = new ArrayList<>();
+
+        while (columnIds.next()) {
+            if (!updateColumns.next()) {
+                throw new SchemaMismatchException("There are less columns than column ids");
+            }
+            updated.add(replaceColumn(columnIds.getId(), updateColumns));
+        }
+
+        rebuildIndexes(updated);
     }
 
     @Override
     public void updateColumn(int columnId, Column updateColumn) throws SchemaMismatchException, NoSuchColumnException {
-        throw new UnsupportedOperationException("Not supported yet.");
+        rebuildIndexes(Collections.<ExtendedColumn>singletonList(replaceColumn(columnId, updateColumn)));
+    }
+
+    /**
+     * Loads the values of updateColumn into the column, see
+     * ColumnImpl.load. Indexes are left to the caller.
+     */
+    private ColumnImpl replaceColumn(int columnId, Column updateColumn) throws SchemaMismatchException, NoSuchColumnException {
+        ColumnImpl col = (ColumnImpl) getColumn(columnId);
+
+        if (updateColumn instanceof ColumnCursorImpl) {
+            updateColumn = ((ColumnCursorImpl) updateColumn).getCurrentColumn();
+        }
+
+        if (updateColumn.getMetaData().getType() != col.getMetaData().getType()) {
+            throw new SchemaMismatchException("The Column has type " + updateColumn.getMetaData().getType() + " instead of " + col.getMetaData().getType());
+        }
+
+        if (updateColumn.getMetaData().getRowCount() != col.getMetaData().getRowCount()) {
+            throw new SchemaMismatchException("The Column has " + updateColumn.getMetaData().getRowCount() + " values, the table " + col.getMetaData().getRowCount() + " rows");
+        }
+
+        if (updateColumn != col) {
+            col.load(updateColumn);
+        }
+
+        return col;
     }
 
     @Override
@@ -495,6 +1053,13 @@ public class TableImpl implements IndexableTable, Serializable {
         return new ColumnCursorImpl(sortColumns());
     }
 
+    /**
+     * Returns the rows of the table as batches of up to batchSize rows.
+     */
+    public RowBatchCursor getRowBatches(int batchSize) {
+        return new RowBatchCursorImpl(sortColumns(), ((TableMetaDataImpl) tMetaData).getDeleteList(), batchSize);
+    }
+
     @Override
     public int createIndex(String indexName, int keyColumnId, IndexType indexType) throws IndexAlreadyExistsException, NoSuchColumnException {
 
@@ -567,6 +1132,26 @@ public class TableImpl implements IndexableTable, Serializable {
         return indexes.values();
     }
 
+    /**
+     * Counts the columns, the indexes and the bitmap of live rows.
+     */
+    @Override
+    public long getMemoryUsage() {
+        long bytes = getDeleteListMemoryUsage();
+        for (ExtendedColumn col : columnList.values()) {
+            bytes += col.getMemoryUsage();
+        }
+        for (Index index : indexes.values()) {
+            bytes += index.getMemoryUsage();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getDeleteListMemoryUsage() {
+        return MemoryEstimator.bitSet(((TableMetaDataImpl) tMetaData).getDeleteList());
+    }
+
     @Override
     public Index getIndex(int indexId) throws NoSuchIndexException {
         if (indexes.get(indexId) == null) {
@@ -575,31 +1160,29 @@ public class TableImpl implements IndexableTable, Serializable {
         return indexes.get(indexId);
     }
 
+    /**
+     * Returns the columns ordered by id. The list is shared by all callers
+     * until the next column change and cannot be modified.
+     */
     public List<ExtendedColumn> sortColumns() {
-        List<ExtendedColumn> listOfColumns = new ArrayList<>(columnList.values());
-        Collections.sort(listOfColumns, new Comparator<Column>() {
-
-            @Override
-            public int compare(Column o1, Column o2) {
-                return o1.getMetaData().getId() - o2.getMetaData().getId();
-            }
-        });
-
-        return listOfColumns;
+        return getSchema().getColumnList();
     }
 
-    private ColumnMetaData[] sortColumnMetaData() {
-        List<ColumnMetaData> listOfColumnsMdatas = new ArrayList<>(tMetaData.getTableSchema().values());
-        ColumnMetaData[] colMetsArr = new ColumnMetaData[columnList.size()];
-        Collections.sort(listOfColumnsMdatas, new Comparator<ColumnMetaData>() {
-
-            @Override
-            public int compare(ColumnMetaData o1, ColumnMetaData o2) {
-                return o1.getId() - o2.getId();
-            }
-        });
+    /**
+     * Returns the current schema snapshot. It is only rebuilt after columns
+     * are created, added, renamed or dropped.
+     */
+    public SchemaSnapshot getSchema() {
+        SchemaSnapshot snapshot = schema;
+        if (snapshot == null) {
+            snapshot = new SchemaSnapshot(schemaVersion, columnList.values());
+            schema = snapshot;
+        }
+        return snapshot;
+    }
 
-        colMetsArr = listOfColumnsMdatas.toArray(colMetsArr);
-        return colMetsArr;
+    private void schemaChanged() {
+        schemaVersion++;
+        schema = null;
     }
 }
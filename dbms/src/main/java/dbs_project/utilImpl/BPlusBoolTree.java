@@ -1,6 +1,7 @@
 package dbs_project.utilImpl;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Arrays;
 import java.util.List;
 import org.apache.commons.collections.primitives.ArrayIntList;
@@ -13,6 +14,8 @@ public class BPlusBoolTree {
 
     private Node globalRootNode;
     private static final int N = 4;
+    //Nodes created so far, nodes are never merged away
+    private int nodeCount;
 
     class Node {
 
@@ -25,6 +28,7 @@ public class BPlusBoolTree {
 
         public Node() {
             numKeys = 0;
+            nodeCount++;
             keys = new int[2 * N - 1];
             Arrays.fill(keys, -1);
             values = new ArrayIntList[2 * N - 1];
@@ -37,6 +41,14 @@ public class BPlusBoolTree {
         globalRootNode.isLeafNode = true;
     }
 
+    /**
+     * Estimates the bytes of the nodes and of the row id lists, given the
+     * number of keys and of row ids in the tree.
+     */
+    public long getMemoryUsage(long keyCount, long rowCount) {
+        return nodeCount * MemoryEstimator.treeNode(N, 4) + MemoryEstimator.intLists(keyCount, rowCount);
+    }
+
     public boolean add(int key, int object) {
         ArrayIntList keyVals = search(key);
 
@@ -257,9 +269,9 @@ public class BPlusBoolTree {
         return null;
     }
 
-    public int bulkLoad(BooleanArrayList entries) {
+    public int bulkLoad(BooleanArrayList entries, BitSet rows) {
         int count = 0;
-        for (int i = 0; i < entries.size(); i++) {
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
             if (!add(entries.get(i) ? 1 : 0, i + 1)) {
                 count++;
             }
@@ -1,9 +1,10 @@
 package dbs_project.utilImpl;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import org.apache.commons.collections.primitives.ArrayDoubleList;
 import org.apache.commons.collections.primitives.ArrayIntList;
+import org.apache.commons.collections.primitives.DoubleList;
 
 /**
  *
@@ -13,6 +14,8 @@ public class BPlusDoubleTree {
 
     private Node globalRootNode;
     private static final int N = 4;
+    //Nodes created so far, nodes are never merged away
+    private int nodeCount;
 
     public class Node {
 
@@ -25,6 +28,7 @@ public class BPlusDoubleTree {
 
         public Node() {
             numKeys = 0;
+            nodeCount++;
             keys = new double[2 * N - 1];
             values = new ArrayIntList[2 * N - 1];
             childNodes = new Node[2 * N];
@@ -36,6 +40,14 @@ public class BPlusDoubleTree {
         globalRootNode.isLeafNode = true;
     }
 
+    /**
+     * Estimates the bytes of the nodes and of the row id lists, given the
+     * number of keys and of row ids in the tree.
+     */
+    public long getMemoryUsage(long keyCount, long rowCount) {
+        return nodeCount * MemoryEstimator.treeNode(N, 8) + MemoryEstimator.intLists(keyCount, rowCount);
+    }
+
     public boolean add(double key, int object) {
 
         ArrayIntList keyVals = search(key);
@@ -302,10 +314,10 @@ public class BPlusDoubleTree {
         return null;
     }
 
-    public int bulkLoad(ArrayDoubleList entries) {
+    public int bulkLoad(DoubleList entries, BitSet rows) {
         int count = 0;
 
-        for (int i = 0; i < entries.size(); i++) {
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
             if (!add(entries.get(i), i + 1)) {
                 count++;
             }
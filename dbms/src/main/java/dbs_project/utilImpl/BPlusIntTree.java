@@ -1,8 +1,10 @@
 package dbs_project.utilImpl;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import org.apache.commons.collections.primitives.ArrayIntList;
+import org.apache.commons.collections.primitives.IntList;
 
 /**
  *
@@ -12,6 +14,8 @@ public class BPlusIntTree {
 
     private Node globalRootNode;
     private static final int N = 4;
+    //Nodes created so far, nodes are never merged away
+    private int nodeCount;
     private Node parent = null;
 
     public class Node {
@@ -25,6 +29,7 @@ public class BPlusIntTree {
 
         public Node() {
             numKeys = 0;
+            nodeCount++;
             keys = new int[2 * N - 1];
             values = new ArrayIntList[2 * N - 1];
             childNodes = new Node[2 * N];
@@ -36,6 +41,14 @@ public class BPlusIntTree {
         globalRootNode.isLeafNode = true;
     }
 
+    /**
+     * Estimates the bytes of the nodes and of the row id lists, given the
+     * number of keys and of row ids in the tree.
+     */
+    public long getMemoryUsage(long keyCount, long rowCount) {
+        return nodeCount * MemoryEstimator.treeNode(N, 4) + MemoryEstimator.intLists(keyCount, rowCount);
+    }
+
     public boolean add(int key, int object) {
         ArrayIntList keyVals = search(key);
 
@@ -312,10 +325,9 @@ public class BPlusIntTree {
         return null;
     }
 
-    public int bulkLoad(ArrayIntList entries) {
+    public int bulkLoad(IntList entries, BitSet rows) {
         int count = 0;
-        for (int i = 0; i < entries.size(); i++) {
-            //System.out.println(i);
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
             if (!add(entries.get(i), i + 1)) {
                 count++;
             }
@@ -4,6 +4,7 @@ import dbs_project.storage.Type;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.List;
 import java.util.zip.CRC32;
@@ -18,6 +19,8 @@ public class BPlusTree {
 
     private Node globalRootNode;
     private static final int N = 4;
+    //Nodes created so far, nodes are never merged away
+    private int nodeCount;
     private Type type;
     SimpleDateFormat df = new SimpleDateFormat("E MMM dd HH:mm:ss Z yyyy");
     ArrayIntList nullList = new ArrayIntList();
@@ -33,6 +36,7 @@ public class BPlusTree {
 
         public Node() {
             numKeys = 0;
+            nodeCount++;
             keys = new Object[2 * N - 1];
             values = new ArrayIntList[2 * N - 1];
             childNodes = new Node[2 * N];
@@ -49,6 +53,14 @@ public class BPlusTree {
         this.type = type;
     }
 
+    /**
+     * Estimates the bytes of the nodes and of the row id lists, given the
+     * number of keys and of row ids in the tree.
+     */
+    public long getMemoryUsage(long keyCount, long rowCount) {
+        return nodeCount * MemoryEstimator.treeNode(N, MemoryEstimator.REFERENCE) + MemoryEstimator.intLists(keyCount, rowCount);
+    }
+
     public boolean add(Object objKey, int object) throws ParseException {
 
         if (objKey == null) {
@@ -287,9 +299,9 @@ public class BPlusTree {
         return null;
     }
 
-    public int bulkLoad(ArrayList entries) throws ParseException {
+    public int bulkLoad(List entries, BitSet rows) throws ParseException {
         int count = 0;
-        for (int i = 0; i < entries.size(); i++) {
+        for (int i = rows.nextSetBit(0); i >= 0; i = rows.nextSetBit(i + 1)) {
             if (!add(entries.get(i), i + 1)) {
                 count++;
             }
@@ -0,0 +1,287 @@
+package dbs_project.utilImpl;
+
+import dbs_project.storage.IntColumnView;
+import dbs_project.util.MemoryAccountable;
+import java.io.Serializable;
+import java.util.BitSet;
+import org.apache.commons.collections.primitives.IntList;
+import org.apache.commons.collections.primitives.RandomAccessIntList;
+
+/**
+ * List of int primitives stored in blocks of BLOCK_SIZE values. A full block
+ * keeps its minimum as reference and every value as the difference to it,
+ * packed into as few bits as the largest difference needs. The last block is
+ * kept unpacked until it is full.
+ *
+ * Scans should unpack a whole block at once, get only unpacks one value.
+ */
+public class BitPackedIntList extends RandomAccessIntList implements Serializable, MemoryAccountable, IntColumnView {
+
+    private static final long serialVersionUID = 4602158163207947213L;
+    public static final int BLOCK_SHIFT = ChunkedIntList.CHUNK_SHIFT;
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] references;
+    private byte[] bitWidths;
+    private long[][] words;
+    private int packedCount;
+    private int[] tail;
+    private int size;
+
+    public BitPackedIntList() {
+        references = new int[4];
+        bitWidths = new byte[4];
+        words = new long[4][];
+        packedCount = 0;
+        tail = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Constructs a bit packed copy of the given list.
+     */
+    public BitPackedIntList(IntList data) {
+        this();
+        for (int i = 0; i < data.size(); i++) {
+            add(data.get(i));
+        }
+    }
+
+    @Override
+    public int get(int index) {
+        checkRange(index);
+        int block = index >>> BLOCK_SHIFT;
+
+        if (block == packedCount) {
+            return tail[index & BLOCK_MASK];
+        }
+
+        int bits = bitWidths[block];
+        if (bits == 0) {
+            return references[block];
+        }
+
+        long bitPos = (long) (index & BLOCK_MASK) * bits;
+        long[] blockWords = words[block];
+        int word = (int) (bitPos >>> 6);
+        int offset = (int) (bitPos & 63);
+        long code = blockWords[word] >>> offset;
+        if (offset + bits > 64) {
+            code |= blockWords[word + 1] << (64 - offset);
+        }
+
+        return references[block] + (int) (code & ((1L << bits) - 1));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int set(int index, int element) {
+        int oldVal = get(index);
+        int block = index >>> BLOCK_SHIFT;
+
+        if (block == packedCount) {
+            tail[index & BLOCK_MASK] = element;
+            return oldVal;
+        }
+
+        int bits = bitWidths[block];
+        long code = (long) element - references[block];
+
+        if (code >= 0 && code < (1L << bits)) {
+            long bitPos = (long) (index & BLOCK_MASK) * bits;
+            writeCode(words[block], bitPos, bits, code);
+        } else {
+            //the value is outside of the block's frame, pack it again
+            int[] values = new int[BLOCK_SIZE];
+            unpack(block, values);
+            values[index & BLOCK_MASK] = element;
+            pack(block, values);
+        }
+
+        return oldVal;
+    }
+
+    @Override
+    public boolean add(int element) {
+        int offset = size & BLOCK_MASK;
+
+        if (offset == tail.length) {
+            int[] oldTail = tail;
+            tail = new int[Math.min(BLOCK_SIZE, oldTail.length * 2)];
+            System.arraycopy(oldTail, 0, tail, 0, oldTail.length);
+        }
+
+        tail[offset] = element;
+        size++;
+        incrModCount();
+
+        if (offset == BLOCK_MASK) {
+            if (packedCount == references.length) {
+                growBlocks();
+            }
+            pack(packedCount, tail);
+            packedCount++;
+            tail = new int[INITIAL_CAPACITY];
+        }
+
+        return true;
+    }
+
+    /**
+     * Decodes value by value, whole blocks are cheaper through unpack.
+     */
+    @Override
+    public void copyTo(int[] dst, int from, int length) {
+        checkRange(from, length);
+        for (int i = 0; i < length; i++) {
+            dst[i] = get(from + i);
+        }
+    }
+
+    @Override
+    public void forEach(BitSet rows, IntColumnView.Visitor visitor) {
+        for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+            visitor.visit(i, get(i));
+        }
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        long bytes = MemoryEstimator.object(4 * MemoryEstimator.REFERENCE + 2 * 4) + MemoryEstimator.array(references.length, 4)
+                + MemoryEstimator.array(bitWidths.length, 1) + MemoryEstimator.array(words.length, MemoryEstimator.REFERENCE)
+                + MemoryEstimator.array(tail.length, 4);
+        for (int i = 0; i < packedCount; i++) {
+            bytes += MemoryEstimator.array(words[i].length, 8);
+        }
+        return bytes;
+    }
+
+    public int getBlockCount() {
+        return (size + BLOCK_MASK) >>> BLOCK_SHIFT;
+    }
+
+    public int blockLength(int block) {
+        return Math.min(BLOCK_SIZE, size - (block << BLOCK_SHIFT));
+    }
+
+    /**
+     * Returns the number of bits every value of a full block is packed into,
+     * 32 for the unpacked last block.
+     */
+    public int getBitWidth(int block) {
+        return block == packedCount ? 32 : bitWidths[block];
+    }
+
+    /**
+     * Writes the values of a block to the start of the given array, which
+     * must hold at least BLOCK_SIZE values. Returns the length of the block.
+     */
+    public int unpack(int block, int[] values) {
+        int length = blockLength(block);
+
+        if (block == packedCount) {
+            System.arraycopy(tail, 0, values, 0, length);
+            return length;
+        }
+
+        int reference = references[block];
+        int bits = bitWidths[block];
+
+        if (bits == 0) {
+            for (int i = 0; i < length; i++) {
+                values[i] = reference;
+            }
+            return length;
+        }
+
+        long[] blockWords = words[block];
+        long mask = (1L << bits) - 1;
+        long bitPos = 0;
+        for (int i = 0; i < length; i++, bitPos += bits) {
+            int word = (int) (bitPos >>> 6);
+            int offset = (int) (bitPos & 63);
+            long code = blockWords[word] >>> offset;
+            if (offset + bits > 64) {
+                code |= blockWords[word + 1] << (64 - offset);
+            }
+            values[i] = reference + (int) (code & mask);
+        }
+
+        return length;
+    }
+
+    /**
+     * Packs a full block of values with the smallest width their range
+     * allows.
+     */
+    private void pack(int block, int[] values) {
+        int min = values[0];
+        int max = values[0];
+        for (int i = 1; i < BLOCK_SIZE; i++) {
+            if (values[i] < min) {
+                min = values[i];
+            } else if (values[i] > max) {
+                max = values[i];
+            }
+        }
+
+        long range = (long) max - min;
+        int bits = 64 - Long.numberOfLeadingZeros(range);
+        long[] blockWords = new long[(int) (((long) BLOCK_SIZE * bits + 63) >>> 6)];
+
+        long bitPos = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++, bitPos += bits) {
+            writeCode(blockWords, bitPos, bits, (long) values[i] - min);
+        }
+
+        references[block] = min;
+        bitWidths[block] = (byte) bits;
+        words[block] = blockWords;
+    }
+
+    private static void writeCode(long[] blockWords, long bitPos, int bits, long code) {
+        if (bits == 0) {
+            return;
+        }
+
+        long mask = (1L << bits) - 1;
+        int word = (int) (bitPos >>> 6);
+        int offset = (int) (bitPos & 63);
+        blockWords[word] = (blockWords[word] & ~(mask << offset)) | (code << offset);
+        if (offset + bits > 64) {
+            int shift = 64 - offset;
+            blockWords[word + 1] = (blockWords[word + 1] & ~(mask >>> shift)) | (code >>> shift);
+        }
+    }
+
+    private void growBlocks() {
+        int newLength = references.length * 2;
+        int[] oldReferences = references;
+        byte[] oldBitWidths = bitWidths;
+        long[][] oldWords = words;
+        references = new int[newLength];
+        bitWidths = new byte[newLength];
+        words = new long[newLength][];
+        System.arraycopy(oldReferences, 0, references, 0, packedCount);
+        System.arraycopy(oldBitWidths, 0, bitWidths, 0, packedCount);
+        System.arraycopy(oldWords, 0, words, 0, packedCount);
+    }
+
+    private void checkRange(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Should be at least 0 and less than " + size + ", found " + index);
+        }
+    }
+
+    private void checkRange(int from, int length) {
+        if (from < 0 || length < 0 || from + length > size) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + (from + length) + " exceeds " + size);
+        }
+    }
+}
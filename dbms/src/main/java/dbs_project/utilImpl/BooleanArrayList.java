@@ -3,14 +3,20 @@ package dbs_project.utilImpl;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import dbs_project.util.MemoryAccountable;
 import java.io.IOException;
+import java.util.BitSet;
 
 /**
- * ArrayList of boolean primitives.
+ * ArrayList of boolean primitives. Values are packed into the bits of long
+ * words, so a list costs one bit per element.
  */
-public class BooleanArrayList implements Serializable {
+public class BooleanArrayList implements Serializable, MemoryAccountable {
 
-  private boolean[] array;
+  private static final int ADDRESS_BITS = 6;
+  private static final int WORD_SIZE = 1 << ADDRESS_BITS;
+
+  private long[] words;
   private int size;
 
   public static int initialCapacity = 10;
@@ -29,7 +35,7 @@ public class BooleanArrayList implements Serializable {
     if (initialCapacity < 0) {
       throw new IllegalArgumentException("Capacity can't be negative: " + initialCapacity);
     }
-    array = new boolean[initialCapacity];
+    words = new long[wordCount(initialCapacity)];
     size = 0;
   }
 
@@ -38,9 +44,11 @@ public class BooleanArrayList implements Serializable {
    * The list instance has an initial capacity of 110% the size of the specified array.
    */
   public BooleanArrayList(boolean[] data) {
-    array = new boolean[(int) (data.length * 1.1) + 1];
+    words = new long[wordCount((int) (data.length * 1.1) + 1)];
     size = data.length;
-    System.arraycopy(data, 0, array, 0, size);
+    for (int i = 0; i < size; i++) {
+      setBit(i, data[i]);
+    }
   }
 
   // ---------------------------------------------------------------- conversion
@@ -50,10 +58,28 @@ public class BooleanArrayList implements Serializable {
    */
   public boolean[] toArray() {
     boolean[] result = new boolean[size];
-    System.arraycopy(array, 0, result, 0, size);
+    for (int i = 0; i < size; i++) {
+      result[i] = getBit(i);
+    }
     return result;
   }
 
+  /**
+   * Returns the positions holding the given value as a BitSet. Built a whole
+   * word at a time, so filters on boolean columns do not need a per row loop.
+   */
+  public BitSet toBitSet(boolean value) {
+    int wordsInUse = wordCount(size);
+    long[] mask = new long[wordsInUse];
+    for (int i = 0; i < wordsInUse; i++) {
+      mask[i] = value ? words[i] : ~words[i];
+    }
+    if (wordsInUse > 0 && (size & (WORD_SIZE - 1)) != 0) {
+      mask[wordsInUse - 1] &= (1L << size) - 1;     //shift count is taken mod 64
+    }
+    return BitSet.valueOf(mask);
+  }
+
   // ---------------------------------------------------------------- methods
 
   /**
@@ -61,7 +87,7 @@ public class BooleanArrayList implements Serializable {
    */
   public boolean get(int index) {
     checkRange(index);
-    return array[index];
+    return getBit(index);
   }
 
   /**
@@ -71,6 +97,11 @@ public class BooleanArrayList implements Serializable {
     return size;
   }
 
+  @Override
+  public long getMemoryUsage() {
+    return MemoryEstimator.object(MemoryEstimator.REFERENCE + 4) + MemoryEstimator.array(words.length, 8);
+  }
+
   /**
    * Removes the element at the specified position in this list.
    * Shifts any subsequent elements to the left (subtracts
@@ -84,11 +115,8 @@ public class BooleanArrayList implements Serializable {
    */
   public boolean remove(int index) {
     checkRange(index);
-    boolean oldval = array[index];
-    int numtomove = size - index - 1;
-    if (numtomove > 0) {
-      System.arraycopy(array, index + 1, array, index, numtomove);
-    }
+    boolean oldval = getBit(index);
+    shiftLeft(index, index + 1);
     size--;
     return oldval;
   }
@@ -102,10 +130,7 @@ public class BooleanArrayList implements Serializable {
     if (fromIndex >= toIndex) {
       return;
     }
-    int numtomove = size - toIndex;
-    if (numtomove > 0) {
-      System.arraycopy(array, toIndex, array, fromIndex, numtomove);
-    }
+    shiftLeft(fromIndex, toIndex);
     size -= (toIndex - fromIndex);
   }
 
@@ -118,8 +143,8 @@ public class BooleanArrayList implements Serializable {
    */
   public boolean set(int index, boolean element) {
     checkRange(index);
-    boolean oldval = array[index];
-    array[index] = element;
+    boolean oldval = getBit(index);
+    setBit(index, element);
     return oldval;
   }
 
@@ -128,7 +153,7 @@ public class BooleanArrayList implements Serializable {
    */
   public void add(boolean element) {
     ensureCapacity(size + 1);
-    array[size++] = element;
+    setBit(size++, element);
   }
 
   /**
@@ -142,9 +167,8 @@ public class BooleanArrayList implements Serializable {
   public void add(int index, boolean element) {
     checkRangeIncludingEndpoint(index);
     ensureCapacity(size + 1);
-    int numtomove = size - index;
-    System.arraycopy(array, index, array, index + 1, numtomove);
-    array[index] = element;
+    shiftRight(index, 1);
+    setBit(index, element);
     size++;
   }
 
@@ -158,7 +182,9 @@ public class BooleanArrayList implements Serializable {
     }
     int newcap = size + (int) (dataLen * 1.1) + 1;
     ensureCapacity(newcap);
-    System.arraycopy(data, 0, array, size, dataLen);
+    for (int i = 0; i < dataLen; i++) {
+      setBit(size + i, data[i]);
+    }
     size += dataLen;
   }
 
@@ -172,8 +198,10 @@ public class BooleanArrayList implements Serializable {
     }
     int newcap = size + (int) (dataLen * 1.1) + 1;
     ensureCapacity(newcap);
-    System.arraycopy(array, index, array, index + dataLen, size - index);
-    System.arraycopy(data, 0, array, index, dataLen);
+    shiftRight(index, dataLen);
+    for (int i = 0; i < dataLen; i++) {
+      setBit(index + i, data[i]);
+    }
     size += dataLen;
   }
 
@@ -182,6 +210,9 @@ public class BooleanArrayList implements Serializable {
    * The list will be empty after this call returns.
    */
   public void clear() {
+    for (int i = 0; i < words.length; i++) {
+      words[i] = 0;
+    }
     size = 0;
   }
 
@@ -191,12 +222,7 @@ public class BooleanArrayList implements Serializable {
    * Returns true if this list contains the specified element.
    */
   public boolean contains(boolean data) {
-    for (int i = 0; i < size; i++) {
-      if (array[i] == data) {
-        return true;
-      }
-    }
-    return false;
+    return indexOf(data) != -1;
   }
 
 
@@ -204,9 +230,12 @@ public class BooleanArrayList implements Serializable {
    * Searches for the first occurence of the given argument.
    */
   public int indexOf(boolean data) {
-    for (int i = 0; i < size; i++) {
-      if (array[i] == data) {
-        return i;
+    int wordsInUse = wordCount(size);
+    for (int i = 0; i < wordsInUse; i++) {
+      long word = data ? words[i] : ~words[i];
+      if (word != 0) {
+        int index = (i << ADDRESS_BITS) + Long.numberOfTrailingZeros(word);
+        return index < size ? index : -1;
       }
     }
     return -1;
@@ -217,7 +246,7 @@ public class BooleanArrayList implements Serializable {
    */
   public int lastIndexOf(boolean data) {
     for (int i = size - 1; i >= 0; i--) {
-      if (array[i] == data) {
+      if (getBit(i) == data) {
         return i;
       }
     }
@@ -241,11 +270,12 @@ public class BooleanArrayList implements Serializable {
    * the minimum capacity argument.
    */
   public void ensureCapacity(int mincap) {
-    if (mincap > array.length) {
-      int newcap = ((array.length * 3) >> 1) + 1;
-      boolean[] olddata = array;
-      array = new boolean[newcap < mincap ? mincap : newcap];
-      System.arraycopy(olddata, 0, array, 0, size);
+    int minwords = wordCount(mincap);
+    if (minwords > words.length) {
+      int newcap = ((words.length * 3) >> 1) + 1;
+      long[] olddata = words;
+      words = new long[newcap < minwords ? minwords : newcap];
+      System.arraycopy(olddata, 0, words, 0, olddata.length);
     }
   }
 
@@ -254,10 +284,11 @@ public class BooleanArrayList implements Serializable {
    * An application can use this operation to minimize the storage of some instance.
    */
   public void trimToSize() {
-    if (size < array.length) {
-      boolean[] olddata = array;
-      array = new boolean[size];
-      System.arraycopy(olddata, 0, array, 0, size);
+    int wordsInUse = wordCount(size);
+    if (wordsInUse < words.length) {
+      long[] olddata = words;
+      words = new long[wordsInUse];
+      System.arraycopy(olddata, 0, words, 0, wordsInUse);
     }
   }
 
@@ -265,22 +296,63 @@ public class BooleanArrayList implements Serializable {
 
   private void writeObject(ObjectOutputStream out) throws IOException {
     out.defaultWriteObject();
-    out.writeInt(array.length);
-    for (int i = 0; i < size; i++) {
-      out.writeBoolean(array[i]);
+    out.writeInt(words.length);
+    int wordsInUse = wordCount(size);
+    for (int i = 0; i < wordsInUse; i++) {
+      out.writeLong(words[i]);
     }
   }
 
   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
     in.defaultReadObject();
-    array = new boolean[in.readInt()];
-    for (int i = 0; i < size; i++) {
-      array[i] = in.readBoolean();
+    words = new long[in.readInt()];
+    int wordsInUse = wordCount(size);
+    for (int i = 0; i < wordsInUse; i++) {
+      words[i] = in.readLong();
     }
   }
 
   // ---------------------------------------------------------------- privates
 
+  private static int wordCount(int bits) {
+    return (bits + WORD_SIZE - 1) >>> ADDRESS_BITS;
+  }
+
+  private boolean getBit(int index) {
+    return (words[index >>> ADDRESS_BITS] & (1L << index)) != 0;
+  }
+
+  private void setBit(int index, boolean value) {
+    if (value) {
+      words[index >>> ADDRESS_BITS] |= (1L << index);
+    } else {
+      words[index >>> ADDRESS_BITS] &= ~(1L << index);
+    }
+  }
+
+  /**
+   * Moves the elements from toIndex onwards down to fromIndex.
+   */
+  private void shiftLeft(int fromIndex, int toIndex) {
+    int dst = fromIndex;
+    for (int src = toIndex; src < size; src++, dst++) {
+      setBit(dst, getBit(src));
+    }
+    for (; dst < size; dst++) {
+      setBit(dst, false);
+    }
+  }
+
+  /**
+   * Moves the elements from index onwards up by count positions. Capacity
+   * must already be ensured.
+   */
+  private void shiftRight(int index, int count) {
+    for (int src = size - 1; src >= index; src--) {
+      setBit(src + count, getBit(src));
+    }
+  }
+
   private void checkRange(int index) {
     if (index < 0 || index >= size) {
       throw new IndexOutOfBoundsException("Index should be at least 0 and less than " + size + ", found " + index);
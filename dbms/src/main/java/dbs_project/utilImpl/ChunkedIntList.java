@@ -0,0 +1,208 @@
+package dbs_project.utilImpl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import dbs_project.storage.IntColumnView;
+import dbs_project.util.MemoryAccountable;
+import java.io.Serializable;
+import java.util.BitSet;
+import org.apache.commons.collections.primitives.IntList;
+import org.apache.commons.collections.primitives.RandomAccessIntList;
+
+/**
+ * List of int primitives stored in fixed size chunks of CHUNK_SIZE values.
+ * Appending allocates a new chunk instead of copying the whole list. Only a
+ * chunk that is not full yet grows, so small lists stay small.
+ */
+public class ChunkedIntList extends RandomAccessIntList implements Serializable, MemoryAccountable, IntColumnView {
+
+    private static final long serialVersionUID = -2465730312296436951L;
+    public static final int CHUNK_SHIFT = 16;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private transient int[][] chunks;
+    private transient int chunkCount;
+    private int size;
+
+    public ChunkedIntList() {
+        chunks = new int[4][];
+        chunkCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Constructs a chunked copy of the given list.
+     */
+    public ChunkedIntList(IntList data) {
+        this();
+        for (int i = 0; i < data.size(); i++) {
+            add(data.get(i));
+        }
+    }
+
+    @Override
+    public int get(int index) {
+        checkRange(index);
+        return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int set(int index, int element) {
+        checkRange(index);
+        int[] chunk = chunks[index >>> CHUNK_SHIFT];
+        int oldVal = chunk[index & CHUNK_MASK];
+        chunk[index & CHUNK_MASK] = element;
+        return oldVal;
+    }
+
+    @Override
+    public boolean add(int element) {
+        int chunk = size >>> CHUNK_SHIFT;
+        int offset = size & CHUNK_MASK;
+
+        if (chunk == chunkCount) {
+            addChunk(chunk == 0 ? INITIAL_CAPACITY : CHUNK_SIZE);
+        } else if (offset == chunks[chunk].length) {
+            growChunk(chunk);
+        }
+
+        chunks[chunk][offset] = element;
+        size++;
+        incrModCount();
+        return true;
+    }
+
+    /**
+     * Appends the first length values of the array. Each chunk is grown at
+     * most once and filled with a single copy.
+     */
+    public void addAll(int[] values, int length) {
+        int copied = 0;
+
+        while (copied < length) {
+            int chunk = size >>> CHUNK_SHIFT;
+            int offset = size & CHUNK_MASK;
+            int count = Math.min(length - copied, CHUNK_SIZE - offset);
+
+            if (chunk == chunkCount) {
+                addChunk(chunk == 0 ? Math.max(INITIAL_CAPACITY, count) : CHUNK_SIZE);
+            }
+            while (chunks[chunk].length < offset + count) {
+                growChunk(chunk);
+            }
+
+            System.arraycopy(values, copied, chunks[chunk], offset, count);
+            size += count;
+            copied += count;
+        }
+
+        incrModCount();
+    }
+
+    /**
+     * Returns the backing array of a chunk. Scans can loop over it directly,
+     * the first chunkLength(chunk) entries are in use.
+     */
+    public int[] getChunk(int chunk) {
+        return chunks[chunk];
+    }
+
+    public int chunkLength(int chunk) {
+        return Math.min(CHUNK_SIZE, size - (chunk << CHUNK_SHIFT));
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Copies chunk by chunk with System.arraycopy.
+     */
+    @Override
+    public void copyTo(int[] dst, int from, int length) {
+        checkRange(from, length);
+        int copied = 0;
+
+        while (copied < length) {
+            int index = from + copied;
+            int offset = index & CHUNK_MASK;
+            int count = Math.min(length - copied, CHUNK_SIZE - offset);
+            System.arraycopy(chunks[index >>> CHUNK_SHIFT], offset, dst, copied, count);
+            copied += count;
+        }
+    }
+
+    @Override
+    public void forEach(BitSet rows, IntColumnView.Visitor visitor) {
+        for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+            visitor.visit(i, chunks[i >>> CHUNK_SHIFT][i & CHUNK_MASK]);
+        }
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        long bytes = MemoryEstimator.object(MemoryEstimator.REFERENCE + 8) + MemoryEstimator.array(chunks.length, MemoryEstimator.REFERENCE);
+        for (int i = 0; i < chunkCount; i++) {
+            bytes += MemoryEstimator.array(chunks[i].length, 4);
+        }
+        return bytes;
+    }
+
+    private void addChunk(int capacity) {
+        if (chunkCount == chunks.length) {
+            int[][] oldChunks = chunks;
+            chunks = new int[chunkCount * 2][];
+            System.arraycopy(oldChunks, 0, chunks, 0, chunkCount);
+        }
+        chunks[chunkCount++] = new int[capacity];
+    }
+
+    private void growChunk(int chunk) {
+        int[] oldChunk = chunks[chunk];
+        chunks[chunk] = new int[Math.min(CHUNK_SIZE, oldChunk.length * 2)];
+        System.arraycopy(oldChunk, 0, chunks[chunk], 0, oldChunk.length);
+    }
+
+    private void checkRange(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Should be at least 0 and less than " + size + ", found " + index);
+        }
+    }
+
+    private void checkRange(int from, int length) {
+        if (from < 0 || length < 0 || from + length > size) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + (from + length) + " exceeds " + size);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < chunkCount; i++) {
+            int length = chunkLength(i);
+            for (int j = 0; j < length; j++) {
+                out.writeInt(chunks[i][j]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        chunkCount = (size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+        chunks = new int[Math.max(4, chunkCount)][];
+        for (int i = 0; i < chunkCount; i++) {
+            int length = chunkLength(i);
+            chunks[i] = new int[length];
+            for (int j = 0; j < length; j++) {
+                chunks[i][j] = in.readInt();
+            }
+        }
+    }
+}
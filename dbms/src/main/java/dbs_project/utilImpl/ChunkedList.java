@@ -0,0 +1,169 @@
+package dbs_project.utilImpl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import dbs_project.util.MemoryAccountable;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List of objects stored in fixed size chunks of CHUNK_SIZE references, the
+ * object counterpart of ChunkedIntList. Appending never copies the whole
+ * list.
+ */
+public class ChunkedList<E> extends AbstractList<E> implements RandomAccess, Serializable, MemoryAccountable {
+
+    private static final long serialVersionUID = 2781746393013462409L;
+    public static final int CHUNK_SHIFT = ChunkedIntList.CHUNK_SHIFT;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private transient Object[][] chunks;
+    private transient int chunkCount;
+    private int size;
+
+    public ChunkedList() {
+        chunks = new Object[4][];
+        chunkCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Constructs a chunked copy of the given list.
+     */
+    public ChunkedList(List<? extends E> data) {
+        this();
+        for (int i = 0; i < data.size(); i++) {
+            add(data.get(i));
+        }
+    }
+
+    @Override
+    public E get(int index) {
+        checkRange(index);
+        return (E) chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        checkRange(index);
+        Object[] chunk = chunks[index >>> CHUNK_SHIFT];
+        E oldVal = (E) chunk[index & CHUNK_MASK];
+        chunk[index & CHUNK_MASK] = element;
+        return oldVal;
+    }
+
+    @Override
+    public boolean add(E element) {
+        int chunk = size >>> CHUNK_SHIFT;
+        int offset = size & CHUNK_MASK;
+
+        if (chunk == chunkCount) {
+            addChunk(chunk == 0 ? INITIAL_CAPACITY : CHUNK_SIZE);
+        } else if (offset == chunks[chunk].length) {
+            growChunk(chunk);
+        }
+
+        chunks[chunk][offset] = element;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Appends the first length values of the array. Each chunk is grown at
+     * most once and filled with a single copy.
+     */
+    public void addAll(Object[] values, int length) {
+        int copied = 0;
+
+        while (copied < length) {
+            int chunk = size >>> CHUNK_SHIFT;
+            int offset = size & CHUNK_MASK;
+            int count = Math.min(length - copied, CHUNK_SIZE - offset);
+
+            if (chunk == chunkCount) {
+                addChunk(chunk == 0 ? Math.max(INITIAL_CAPACITY, count) : CHUNK_SIZE);
+            }
+            while (chunks[chunk].length < offset + count) {
+                growChunk(chunk);
+            }
+
+            System.arraycopy(values, copied, chunks[chunk], offset, count);
+            size += count;
+            copied += count;
+        }
+
+        modCount++;
+    }
+
+    /**
+     * Estimates the values from a sample of them, a value referenced from
+     * more than one slot is counted every time.
+     */
+    @Override
+    public long getMemoryUsage() {
+        long bytes = MemoryEstimator.object(MemoryEstimator.REFERENCE + 8) + MemoryEstimator.array(chunks.length, MemoryEstimator.REFERENCE);
+        for (int i = 0; i < chunkCount; i++) {
+            bytes += MemoryEstimator.array(chunks[i].length, MemoryEstimator.REFERENCE);
+        }
+        return bytes + MemoryEstimator.sampledValues(this);
+    }
+
+    private void addChunk(int capacity) {
+        if (chunkCount == chunks.length) {
+            Object[][] oldChunks = chunks;
+            chunks = new Object[chunkCount * 2][];
+            System.arraycopy(oldChunks, 0, chunks, 0, chunkCount);
+        }
+        chunks[chunkCount++] = new Object[capacity];
+    }
+
+    private void growChunk(int chunk) {
+        Object[] oldChunk = chunks[chunk];
+        chunks[chunk] = new Object[Math.min(CHUNK_SIZE, oldChunk.length * 2)];
+        System.arraycopy(oldChunk, 0, chunks[chunk], 0, oldChunk.length);
+    }
+
+    private int chunkLength(int chunk) {
+        return Math.min(CHUNK_SIZE, size - (chunk << CHUNK_SHIFT));
+    }
+
+    private void checkRange(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < chunkCount; i++) {
+            int length = chunkLength(i);
+            for (int j = 0; j < length; j++) {
+                out.writeObject(chunks[i][j]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        chunkCount = (size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+        chunks = new Object[Math.max(4, chunkCount)][];
+        for (int i = 0; i < chunkCount; i++) {
+            int length = chunkLength(i);
+            chunks[i] = new Object[length];
+            for (int j = 0; j < length; j++) {
+                chunks[i][j] = in.readObject();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package dbs_project.utilImpl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import dbs_project.util.MemoryAccountable;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import org.apache.commons.collections.primitives.IntList;
+
+/**
+ * List of strings stored as int codes into a shared dictionary. Every distinct
+ * value is kept once, each row only costs one int.
+ */
+public class DictionaryStringList extends AbstractList<String> implements RandomAccess, Serializable, MemoryAccountable {
+
+    private static final long serialVersionUID = 7863262235394607247L;
+
+    /**
+     * Code used for null values.
+     */
+    public static final int NULL_CODE = -1;
+
+    /**
+     * Returned by codeOf for values that are not in the dictionary.
+     */
+    public static final int NO_CODE = -2;
+
+    private ChunkedIntList codes;
+    private ArrayList<String> dictionary;
+    private transient HashMap<String, Integer> lookup;
+    //Bytes of the dictionary's strings, counted as they are added
+    private transient long dictionaryBytes;
+
+    public DictionaryStringList() {
+        codes = new ChunkedIntList();
+        dictionary = new ArrayList<>();
+        lookup = new HashMap<>();
+    }
+
+    /**
+     * Constructs a dictionary encoded copy of the given list.
+     */
+    public DictionaryStringList(List<String> data) {
+        this();
+        for (int i = 0; i < data.size(); i++) {
+            add(data.get(i));
+        }
+    }
+
+    @Override
+    public String get(int index) {
+        int code = codes.get(index);
+        return code == NULL_CODE ? null : dictionary.get(code);
+    }
+
+    @Override
+    public int size() {
+        return codes.size();
+    }
+
+    @Override
+    public boolean add(String element) {
+        codes.add(encode(element));
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public String set(int index, String element) {
+        String oldVal = get(index);
+        codes.set(index, encode(element));
+        return oldVal;
+    }
+
+    /**
+     * Returns the dictionary code stored at the specified position.
+     */
+    public int getCode(int index) {
+        return codes.get(index);
+    }
+
+    /**
+     * Returns the code of the given value or NO_CODE if the value is not part
+     * of the dictionary. Null is mapped to NULL_CODE.
+     */
+    public int codeOf(String element) {
+        if (element == null) {
+            return NULL_CODE;
+        }
+
+        Integer code = lookup.get(element);
+        return code == null ? NO_CODE : code;
+    }
+
+    /**
+     * Returns the value for a dictionary code.
+     */
+    public String decode(int code) {
+        return code == NULL_CODE ? null : dictionary.get(code);
+    }
+
+    /**
+     * Returns the number of distinct non null values in the dictionary.
+     */
+    public int dictionarySize() {
+        return dictionary.size();
+    }
+
+    /**
+     * Returns the code array. Used by scans to compare ints instead of strings.
+     */
+    public IntList getCodes() {
+        return codes;
+    }
+
+    /**
+     * Counts every lookup entry as a 32 byte node and a boxed code, with a
+     * table of about twice the entries.
+     */
+    @Override
+    public long getMemoryUsage() {
+        int entries = dictionary.size();
+        long lookupBytes = MemoryEstimator.array(2L * entries, MemoryEstimator.REFERENCE) + entries * (32L + MemoryEstimator.object(4));
+        return MemoryEstimator.object(3 * MemoryEstimator.REFERENCE + 8) + codes.getMemoryUsage()
+                + MemoryEstimator.array(entries, MemoryEstimator.REFERENCE) + dictionaryBytes + lookupBytes;
+    }
+
+    private int encode(String element) {
+        if (element == null) {
+            return NULL_CODE;
+        }
+
+        Integer code = lookup.get(element);
+
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(element);
+            lookup.put(element, code);
+            dictionaryBytes += MemoryEstimator.string(element);
+        }
+
+        return code;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lookup = new HashMap<>();
+        for (int i = 0; i < dictionary.size(); i++) {
+            lookup.put(dictionary.get(i), i);
+            dictionaryBytes += MemoryEstimator.string(dictionary.get(i));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package dbs_project.utilImpl;
+
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Sizes of objects and arrays on a 64 bit JVM with compressed references,
+ * the default below 32 GB of heap. Used by the storage classes to estimate
+ * their memory from their sizes and capacities without walking the values.
+ */
+public final class MemoryEstimator {
+
+    public static final int OBJECT_HEADER = 12;
+    public static final int ARRAY_HEADER = 16;
+    public static final int REFERENCE = 4;
+    //Values getMemoryUsage looks at to estimate the objects of a list
+    public static final int SAMPLE_SIZE = 1024;
+
+    private MemoryEstimator() {
+    }
+
+    public static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Bytes of an object with the given bytes of fields.
+     */
+    public static long object(long fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /**
+     * Bytes of an array of length elements of elementBytes each.
+     */
+    public static long array(long length, int elementBytes) {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+
+    public static long bitSet(BitSet bits) {
+        if (bits == null) {
+            return 0;
+        }
+
+        return object(REFERENCE + 4 + 1) + array(bits.size() >>> 6, 8);
+    }
+
+    /**
+     * Bytes of a value and what only it refers to. Booleans are shared and
+     * cost nothing.
+     */
+    public static long value(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 0;
+        }
+
+        if (value instanceof String) {
+            return string((String) value);
+        }
+
+        if (value instanceof Long || value instanceof Double || value instanceof Date) {
+            return object(8);
+        }
+
+        return object(4);
+    }
+
+    /**
+     * Bytes of a B+ tree node of the given order with keys of keyBytes
+     * each, objects the keys refer to are not included.
+     */
+    public static long treeNode(int order, int keyBytes) {
+        return object(4 + 1 + 4 * REFERENCE) + array(2 * order - 1, keyBytes) + array(2 * order - 1, REFERENCE) + array(2 * order, REFERENCE);
+    }
+
+    /**
+     * Bytes of lists ArrayIntLists holding values ints together, lists
+     * start with 8 ints and grow by half.
+     */
+    public static long intLists(long lists, long values) {
+        return lists * (object(REFERENCE + 8) + array(8, 4)) + Math.max(0, values - 8 * lists) * 6;
+    }
+
+    public static long string(String value) {
+        return object(REFERENCE + 4) + array(value.length(), 2);
+    }
+
+    /**
+     * Estimates the bytes of the values of a list from up to SAMPLE_SIZE
+     * evenly spaced values, the references to them are not included.
+     */
+    public static long sampledValues(List<?> values) {
+        int size = values.size();
+        if (size == 0) {
+            return 0;
+        }
+
+        int step = Math.max(1, size / SAMPLE_SIZE);
+        long sampleBytes = 0;
+        int samples = 0;
+        for (int i = 0; i < size; i += step) {
+            sampleBytes += value(values.get(i));
+            samples++;
+        }
+
+        return sampleBytes * size / samples;
+    }
+}
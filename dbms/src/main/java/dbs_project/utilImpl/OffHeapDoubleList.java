@@ -0,0 +1,144 @@
+package dbs_project.utilImpl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import dbs_project.storage.DoubleColumnView;
+import dbs_project.util.MemoryAccountable;
+import java.io.Serializable;
+import java.util.BitSet;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import org.apache.commons.collections.primitives.DoubleList;
+import org.apache.commons.collections.primitives.RandomAccessDoubleList;
+
+/**
+ * List of double primitives kept outside the Java heap. Values live in direct
+ * buffers of CHUNK_SIZE entries each, the garbage collector only sees the
+ * buffer handles and appending never copies the values already stored.
+ */
+public class OffHeapDoubleList extends RandomAccessDoubleList implements Serializable, MemoryAccountable, DoubleColumnView {
+
+    private static final long serialVersionUID = -6424816394052617135L;
+    public static final int CHUNK_SHIFT = 16;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private transient ArrayList<DoubleBuffer> chunks;
+    private int size;
+
+    public OffHeapDoubleList() {
+        chunks = new ArrayList<>();
+        size = 0;
+    }
+
+    /**
+     * Constructs an off heap copy of the given list.
+     */
+    public OffHeapDoubleList(DoubleList data) {
+        this();
+        for (int i = 0; i < data.size(); i++) {
+            add(data.get(i));
+        }
+    }
+
+    @Override
+    public double get(int index) {
+        checkRange(index);
+        return chunks.get(index >>> CHUNK_SHIFT).get(index & CHUNK_MASK);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double set(int index, double element) {
+        checkRange(index);
+        DoubleBuffer chunk = chunks.get(index >>> CHUNK_SHIFT);
+        double oldVal = chunk.get(index & CHUNK_MASK);
+        chunk.put(index & CHUNK_MASK, element);
+        return oldVal;
+    }
+
+    @Override
+    public boolean add(double element) {
+        if ((size >>> CHUNK_SHIFT) == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer());
+        }
+
+        chunks.get(size >>> CHUNK_SHIFT).put(size & CHUNK_MASK, element);
+        size++;
+        incrModCount();
+        return true;
+    }
+
+    /**
+     * Reads with absolute gets, the buffer positions stay untouched so
+     * concurrent scans can share the chunks.
+     */
+    @Override
+    public void copyTo(double[] dst, int from, int length) {
+        checkRange(from, length);
+        int copied = 0;
+
+        while (copied < length) {
+            int index = from + copied;
+            int offset = index & CHUNK_MASK;
+            int count = Math.min(length - copied, CHUNK_SIZE - offset);
+            DoubleBuffer chunk = chunks.get(index >>> CHUNK_SHIFT);
+            for (int i = 0; i < count; i++) {
+                dst[copied + i] = chunk.get(offset + i);
+            }
+            copied += count;
+        }
+    }
+
+    @Override
+    public void forEach(BitSet rows, DoubleColumnView.Visitor visitor) {
+        for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+            visitor.visit(i, chunks.get(i >>> CHUNK_SHIFT).get(i & CHUNK_MASK));
+        }
+    }
+
+    /**
+     * Counts the direct buffers at full capacity although they are outside
+     * the heap, a buffer and its view add about 128 bytes of heap.
+     */
+    @Override
+    public long getMemoryUsage() {
+        return MemoryEstimator.array(chunks.size(), MemoryEstimator.REFERENCE) + chunks.size() * (128L + CHUNK_SIZE * 8L);
+    }
+
+    private void checkRange(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Should be at least 0 and less than " + size + ", found " + index);
+        }
+    }
+
+    private void checkRange(int from, int length) {
+        if (from < 0 || length < 0 || from + length > size) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + (from + length) + " exceeds " + size);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < size; i++) {
+            out.writeDouble(get(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = size;
+        chunks = new ArrayList<>();
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            add(in.readDouble());
+        }
+    }
+}
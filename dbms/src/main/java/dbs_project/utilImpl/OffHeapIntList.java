@@ -0,0 +1,144 @@
+package dbs_project.utilImpl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import dbs_project.storage.IntColumnView;
+import dbs_project.util.MemoryAccountable;
+import java.io.Serializable;
+import java.util.BitSet;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import org.apache.commons.collections.primitives.IntList;
+import org.apache.commons.collections.primitives.RandomAccessIntList;
+
+/**
+ * List of int primitives kept outside the Java heap. Values live in direct
+ * buffers of CHUNK_SIZE entries each, the garbage collector only sees the
+ * buffer handles and appending never copies the values already stored.
+ */
+public class OffHeapIntList extends RandomAccessIntList implements Serializable, MemoryAccountable, IntColumnView {
+
+    private static final long serialVersionUID = 3158437924062341178L;
+    public static final int CHUNK_SHIFT = 16;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private transient ArrayList<IntBuffer> chunks;
+    private int size;
+
+    public OffHeapIntList() {
+        chunks = new ArrayList<>();
+        size = 0;
+    }
+
+    /**
+     * Constructs an off heap copy of the given list.
+     */
+    public OffHeapIntList(IntList data) {
+        this();
+        for (int i = 0; i < data.size(); i++) {
+            add(data.get(i));
+        }
+    }
+
+    @Override
+    public int get(int index) {
+        checkRange(index);
+        return chunks.get(index >>> CHUNK_SHIFT).get(index & CHUNK_MASK);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int set(int index, int element) {
+        checkRange(index);
+        IntBuffer chunk = chunks.get(index >>> CHUNK_SHIFT);
+        int oldVal = chunk.get(index & CHUNK_MASK);
+        chunk.put(index & CHUNK_MASK, element);
+        return oldVal;
+    }
+
+    @Override
+    public boolean add(int element) {
+        if ((size >>> CHUNK_SHIFT) == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE * 4).order(ByteOrder.nativeOrder()).asIntBuffer());
+        }
+
+        chunks.get(size >>> CHUNK_SHIFT).put(size & CHUNK_MASK, element);
+        size++;
+        incrModCount();
+        return true;
+    }
+
+    /**
+     * Reads with absolute gets, the buffer positions stay untouched so
+     * concurrent scans can share the chunks.
+     */
+    @Override
+    public void copyTo(int[] dst, int from, int length) {
+        checkRange(from, length);
+        int copied = 0;
+
+        while (copied < length) {
+            int index = from + copied;
+            int offset = index & CHUNK_MASK;
+            int count = Math.min(length - copied, CHUNK_SIZE - offset);
+            IntBuffer chunk = chunks.get(index >>> CHUNK_SHIFT);
+            for (int i = 0; i < count; i++) {
+                dst[copied + i] = chunk.get(offset + i);
+            }
+            copied += count;
+        }
+    }
+
+    @Override
+    public void forEach(BitSet rows, IntColumnView.Visitor visitor) {
+        for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+            visitor.visit(i, chunks.get(i >>> CHUNK_SHIFT).get(i & CHUNK_MASK));
+        }
+    }
+
+    /**
+     * Counts the direct buffers at full capacity although they are outside
+     * the heap, a buffer and its view add about 128 bytes of heap.
+     */
+    @Override
+    public long getMemoryUsage() {
+        return MemoryEstimator.array(chunks.size(), MemoryEstimator.REFERENCE) + chunks.size() * (128L + CHUNK_SIZE * 4L);
+    }
+
+    private void checkRange(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Should be at least 0 and less than " + size + ", found " + index);
+        }
+    }
+
+    private void checkRange(int from, int length) {
+        if (from < 0 || length < 0 || from + length > size) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + (from + length) + " exceeds " + size);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < size; i++) {
+            out.writeInt(get(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = size;
+        chunks = new ArrayList<>();
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            add(in.readInt());
+        }
+    }
+}
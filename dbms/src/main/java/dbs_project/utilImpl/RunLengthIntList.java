@@ -0,0 +1,233 @@
+package dbs_project.utilImpl;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import dbs_project.storage.IntColumnView;
+import dbs_project.util.MemoryAccountable;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import org.apache.commons.collections.primitives.IntList;
+import org.apache.commons.collections.primitives.RandomAccessIntList;
+
+/**
+ * List of int primitives stored as runs of equal values. Each run keeps its
+ * value and the exclusive end index of the run, a position is found by a
+ * binary search over the run ends. Sequential access reuses the last run
+ * found and does not search at all.
+ */
+public class RunLengthIntList extends RandomAccessIntList implements Serializable, MemoryAccountable, IntColumnView {
+
+    private static final long serialVersionUID = -1772516190420383644L;
+
+    private int[] values;
+    private int[] ends;
+    private int runCount;
+    private int size;
+    private transient int lastRun;
+
+    public RunLengthIntList() {
+        values = new int[16];
+        ends = new int[16];
+        runCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Constructs a run length encoded copy of the given list.
+     */
+    public RunLengthIntList(IntList data) {
+        this();
+        for (int i = 0; i < data.size(); i++) {
+            add(data.get(i));
+        }
+    }
+
+    @Override
+    public int get(int index) {
+        return values[findRun(index)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(int element) {
+        if (runCount > 0 && values[runCount - 1] == element) {
+            ends[runCount - 1]++;
+        } else {
+            insertRuns(runCount, 1);
+            values[runCount - 1] = element;
+            ends[runCount - 1] = size + 1;
+        }
+
+        size++;
+        incrModCount();
+        return true;
+    }
+
+    @Override
+    public int set(int index, int element) {
+        int run = findRun(index);
+        int oldVal = values[run];
+
+        if (oldVal == element) {
+            return oldVal;
+        }
+
+        int start = getRunStart(run);
+        int end = ends[run];
+
+        if (end - start == 1) {
+            values[run] = element;
+        } else if (index == start) {
+            insertRuns(run, 1);
+            values[run] = element;
+            ends[run] = index + 1;
+        } else if (index == end - 1) {
+            insertRuns(run + 1, 1);
+            ends[run] = index;
+            values[run + 1] = element;
+            ends[run + 1] = end;
+            run++;
+        } else {
+            insertRuns(run + 1, 2);
+            ends[run] = index;
+            values[run + 1] = element;
+            ends[run + 1] = index + 1;
+            values[run + 2] = oldVal;
+            ends[run + 2] = end;
+            run++;
+        }
+
+        //the changed run may now continue one of its neighbours
+        if (run + 1 < runCount && values[run + 1] == element) {
+            removeRun(run);
+        }
+        if (run > 0 && values[run - 1] == element) {
+            removeRun(run - 1);
+        }
+
+        lastRun = 0;
+        return oldVal;
+    }
+
+    public int getRunCount() {
+        return runCount;
+    }
+
+    public int getRunValue(int run) {
+        return values[run];
+    }
+
+    public int getRunStart(int run) {
+        return run == 0 ? 0 : ends[run - 1];
+    }
+
+    /**
+     * Fills the copy run by run.
+     */
+    @Override
+    public void copyTo(int[] dst, int from, int length) {
+        if (from < 0 || length < 0 || from + length > size) {
+            throw new IndexOutOfBoundsException("Range " + from + " to " + (from + length) + " exceeds " + size);
+        }
+        if (length == 0) {
+            return;
+        }
+
+        int copied = 0;
+        for (int run = findRun(from); copied < length; run++) {
+            int count = Math.min(length - copied, ends[run] - (from + copied));
+            Arrays.fill(dst, copied, copied + count, values[run]);
+            copied += count;
+        }
+    }
+
+    /**
+     * Positions are visited in ascending order, so get finds every run
+     * without a search.
+     */
+    @Override
+    public void forEach(BitSet rows, IntColumnView.Visitor visitor) {
+        for (int i = rows.nextSetBit(0); i >= 0 && i < size; i = rows.nextSetBit(i + 1)) {
+            visitor.visit(i, get(i));
+        }
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        return MemoryEstimator.object(2 * MemoryEstimator.REFERENCE + 3 * 4) + 2 * MemoryEstimator.array(values.length, 4);
+    }
+
+    /**
+     * Returns the index after the last position of the run.
+     */
+    public int getRunEnd(int run) {
+        return ends[run];
+    }
+
+    /**
+     * Returns the run that holds the given position.
+     */
+    public int findRun(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Should be at least 0 and less than " + size + ", found " + index);
+        }
+
+        int run = lastRun;
+        if (run < runCount && index < ends[run] && index >= getRunStart(run)) {
+            return run;
+        }
+        if (run + 1 < runCount && index < ends[run + 1] && index >= ends[run]) {
+            lastRun = run + 1;
+            return run + 1;
+        }
+
+        int low = 0;
+        int high = runCount - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= index) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        lastRun = low;
+        return low;
+    }
+
+    private void insertRuns(int at, int count) {
+        if (runCount + count > values.length) {
+            int newLength = Math.max(values.length * 2, runCount + count);
+            int[] oldValues = values;
+            int[] oldEnds = ends;
+            values = new int[newLength];
+            ends = new int[newLength];
+            System.arraycopy(oldValues, 0, values, 0, runCount);
+            System.arraycopy(oldEnds, 0, ends, 0, runCount);
+        }
+
+        System.arraycopy(values, at, values, at + count, runCount - at);
+        System.arraycopy(ends, at, ends, at + count, runCount - at);
+        runCount += count;
+    }
+
+    /**
+     * Merges the run into the following one.
+     */
+    private void removeRun(int at) {
+        System.arraycopy(values, at + 1, values, at, runCount - at - 1);
+        System.arraycopy(ends, at + 1, ends, at, runCount - at - 1);
+        runCount--;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lastRun = 0;
+    }
+}
@@ -0,0 +1,225 @@
+package dbs_project.utilImpl;
+
+import dbs_project.util.MemoryAccountable;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.zip.CRC32;
+
+/**
+ * List of strings kept as UTF-8 bytes in large shared byte arenas. Every
+ * value is an address (arena and offset) and a length, -1 for null, so a row
+ * costs its bytes plus 12 instead of a String and its char array. get builds
+ * a new String on every call, scans should use the byte based methods.
+ *
+ * A value never spans two arenas. Values that are set again are appended,
+ * their old bytes stay in the arena until the list is copied.
+ */
+public class StringArenaList extends AbstractList<String> implements RandomAccess, Serializable, MemoryAccountable {
+
+    private static final long serialVersionUID = 3126587432096175219L;
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+    public static final int ARENA_SIZE = 1 << 20;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NULL_LENGTH = -1;
+
+    private byte[][] arenas;
+    private int arenaCount;
+    //Bytes in use in the last arena
+    private int used;
+    private ChunkedLongList addresses;
+    private ChunkedIntList lengths;
+
+    public StringArenaList() {
+        arenas = new byte[4][];
+        arenaCount = 0;
+        used = 0;
+        addresses = new ChunkedLongList();
+        lengths = new ChunkedIntList();
+    }
+
+    /**
+     * Constructs an arena copy of the given list.
+     */
+    public StringArenaList(List<String> data) {
+        this();
+        for (int i = 0; i < data.size(); i++) {
+            add(data.get(i));
+        }
+    }
+
+    public static byte[] encode(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+    @Override
+    public String get(int index) {
+        int length = lengths.get(index);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        long address = addresses.get(index);
+        return new String(arenas[(int) (address >>> 32)], (int) address, length, UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return lengths.size();
+    }
+
+    @Override
+    public String set(int index, String element) {
+        String oldVal = get(index);
+
+        if (element == null) {
+            lengths.set(index, NULL_LENGTH);
+        } else {
+            byte[] bytes = encode(element);
+            addresses.set(index, append(bytes));
+            lengths.set(index, bytes.length);
+        }
+
+        return oldVal;
+    }
+
+    @Override
+    public boolean add(String element) {
+        if (element == null) {
+            addresses.add(0);
+            lengths.add(NULL_LENGTH);
+        } else {
+            byte[] bytes = encode(element);
+            addresses.add(append(bytes));
+            lengths.add(bytes.length);
+        }
+
+        modCount++;
+        return true;
+    }
+
+    public boolean isNull(int index) {
+        return lengths.get(index) == NULL_LENGTH;
+    }
+
+    /**
+     * Compares the bytes of a value with UTF-8 bytes, null only equals null.
+     */
+    public boolean equalsBytes(int index, byte[] value) {
+        int length = lengths.get(index);
+
+        if (length == NULL_LENGTH || value == null) {
+            return length == NULL_LENGTH && value == null;
+        }
+
+        if (length != value.length) {
+            return false;
+        }
+
+        long address = addresses.get(index);
+        byte[] arena = arenas[(int) (address >>> 32)];
+        int offset = (int) address;
+        for (int i = 0; i < length; i++) {
+            if (arena[offset + i] != value[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Compares the bytes of a value with a value of another list, null only
+     * equals null.
+     */
+    public boolean equalsValue(int index, StringArenaList other, int otherIndex) {
+        int length = lengths.get(index);
+        int otherLength = other.lengths.get(otherIndex);
+
+        if (length != otherLength) {
+            return false;
+        }
+
+        if (length == NULL_LENGTH) {
+            return true;
+        }
+
+        long address = addresses.get(index);
+        long otherAddress = other.addresses.get(otherIndex);
+        byte[] arena = arenas[(int) (address >>> 32)];
+        byte[] otherArena = other.arenas[(int) (otherAddress >>> 32)];
+        int offset = (int) address;
+        int otherOffset = (int) otherAddress;
+        for (int i = 0; i < length; i++) {
+            if (arena[offset + i] != otherArena[otherOffset + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the CRC32 of a non null value's bytes, the checksum of the
+     * UTF-8 encoded String.
+     */
+    public long crc32(int index) {
+        long address = addresses.get(index);
+        CRC32 checksum = new CRC32();
+        checksum.update(arenas[(int) (address >>> 32)], (int) address, lengths.get(index));
+        return checksum.getValue();
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        return MemoryEstimator.object(3 * MemoryEstimator.REFERENCE + 2 * 4) + MemoryEstimator.array(arenas.length, MemoryEstimator.REFERENCE)
+                + getArenaBytes() + arenaCount * MemoryEstimator.ARRAY_HEADER + addresses.getMemoryUsage() + lengths.getMemoryUsage();
+    }
+
+    /**
+     * Returns the bytes of all arenas, unused space included.
+     */
+    public long getArenaBytes() {
+        long bytes = 0;
+        for (int i = 0; i < arenaCount; i++) {
+            bytes += arenas[i].length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Copies the bytes to the last arena and returns their address. The
+     * first arena grows up to ARENA_SIZE, later ones are allocated at full
+     * size, larger values get an arena of their own.
+     */
+    private long append(byte[] bytes) {
+        int length = bytes.length;
+
+        if (arenaCount == 0) {
+            addArena(Math.max(INITIAL_CAPACITY, length));
+        } else if (used + length > arenas[arenaCount - 1].length) {
+            byte[] last = arenas[arenaCount - 1];
+            if (last.length < ARENA_SIZE && used + length <= ARENA_SIZE) {
+                arenas[arenaCount - 1] = Arrays.copyOf(last, Math.min(ARENA_SIZE, Math.max(last.length * 2, used + length)));
+            } else {
+                addArena(Math.max(ARENA_SIZE, length));
+            }
+        }
+
+        System.arraycopy(bytes, 0, arenas[arenaCount - 1], used, length);
+        long address = ((long) (arenaCount - 1) << 32) | used;
+        used += length;
+        return address;
+    }
+
+    private void addArena(int capacity) {
+        if (arenaCount == arenas.length) {
+            arenas = Arrays.copyOf(arenas, arenaCount * 2);
+        }
+        arenas[arenaCount++] = new byte[capacity];
+        used = 0;
+    }
+}
@@ -0,0 +1,116 @@
+package dbs_project.utilImpl;
+
+import dbs_project.util.MemoryAccountable;
+import java.io.Serializable;
+
+/**
+ * Minimum, maximum and null count for every block of BLOCK_SIZE rows of a
+ * column. Values are kept as long keys, doubles through doubleKey, so one
+ * map serves INTEGER, DOUBLE and DATE columns. Updates only widen a block's
+ * range, a range may therefore be larger than the values left in the block
+ * but never smaller.
+ */
+public class ZoneMap implements Serializable, MemoryAccountable {
+
+    private static final long serialVersionUID = -3418229650138406825L;
+    public static final int BLOCK_SHIFT = ChunkedIntList.CHUNK_SHIFT;
+    public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private long[] min;
+    private long[] max;
+    private int[] nullCount;
+    private int blockCount;
+
+    public ZoneMap() {
+        min = new long[4];
+        max = new long[4];
+        nullCount = new int[4];
+        blockCount = 0;
+    }
+
+    /**
+     * Maps a double to a long key with the same order, for all values but
+     * NaN. Both zeros map to the same key as they compare equal.
+     */
+    public static long doubleKey(double value) {
+        long bits = Double.doubleToLongBits(value == 0 ? 0.0 : value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Widens the block of the given row to include the key.
+     */
+    public void add(int row, long key) {
+        int block = block(row);
+        if (key < min[block]) {
+            min[block] = key;
+        }
+        if (key > max[block]) {
+            max[block] = key;
+        }
+    }
+
+    public void incrementNullCount(int row) {
+        int block = block(row);
+        nullCount[block]++;
+    }
+
+    public void decrementNullCount(int row) {
+        int block = block(row);
+        nullCount[block]--;
+    }
+
+    /**
+     * Returns false if no value of the block can lie within from and to,
+     * both inclusive.
+     */
+    public boolean mayContain(int block, long from, long to) {
+        return block >= blockCount || (min[block] <= to && max[block] >= from);
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public long getMin(int block) {
+        return min[block];
+    }
+
+    public long getMax(int block) {
+        return max[block];
+    }
+
+    public int getNullCount(int block) {
+        return nullCount[block];
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        return MemoryEstimator.object(3 * MemoryEstimator.REFERENCE + 4) + 2 * MemoryEstimator.array(min.length, 8) + MemoryEstimator.array(nullCount.length, 4);
+    }
+
+    private int block(int row) {
+        int block = row >>> BLOCK_SHIFT;
+
+        while (block >= blockCount) {
+            if (blockCount == min.length) {
+                int newLength = min.length * 2;
+                long[] oldMin = min;
+                long[] oldMax = max;
+                int[] oldNullCount = nullCount;
+                min = new long[newLength];
+                max = new long[newLength];
+                nullCount = new int[newLength];
+                System.arraycopy(oldMin, 0, min, 0, blockCount);
+                System.arraycopy(oldMax, 0, max, 0, blockCount);
+                System.arraycopy(oldNullCount, 0, nullCount, 0, blockCount);
+            }
+            min[blockCount] = Long.MAX_VALUE;
+            max[blockCount] = Long.MIN_VALUE;
+            nullCount[blockCount] = 0;
+            blockCount++;
+        }
+
+        return block;
+    }
+}
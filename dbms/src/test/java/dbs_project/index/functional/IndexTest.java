@@ -24,6 +24,7 @@ import dbs_project.index.IndexMetaInfo;
 import dbs_project.index.IndexType;
 import dbs_project.index.IndexableTable;
 import dbs_project.storage.ColumnMetaData;
+import dbs_project.storage.ExtendedColumn;
 import dbs_project.storage.RowCursor;
 import dbs_project.storage.RowMetaData;
 import dbs_project.storage.Type;
@@ -510,6 +511,105 @@ public class IndexTest {
         bulkLoadIndex(IndexType.TREE);
     }
 
+    /**
+     * DATE keys are epoch millis in whole seconds or whole days. A hash
+     * index has to spread them over its buckets, if they pile up in a few
+     * buckets every insert scans them and this test runs into its timeout.
+     */
+    @Test(timeout = 15000L)
+    public void testDateKeysInHashIndex() throws Exception {
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("colDa", Type.DATE);
+        int tableid = layer.createTable("Table_A", schema);
+        IndexableTable table = layer.getTable(tableid);
+        int colId = table.getTableMetaData().getTableSchema().get("colDa").getId();
+
+        List<Date> dates = new ArrayList<>();
+        for (int i = 0; i < 120000; i++) {
+            dates.add(new Date(i * 86400000L));
+            dates.add(new Date(1300000000000L + i * 1000L));
+        }
+        IdCursor added = table.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(dates, colId, "colDa", Type.DATE))));
+        int[] rowIds = new int[dates.size()];
+        for (int i = 0; added.next(); i++) {
+            rowIds[i] = added.getId();
+        }
+
+        Index index = table.getIndex(table.createIndex(INDEXNAME, colId, IndexType.HASH));
+        List<Date> more = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            more.add(new Date(7200000000000L + i * 1000L));
+        }
+        RowCursor rc = new SimpleRowCursor(Arrays.asList(new SimpleColumn(more, colId, "colDa", Type.DATE)));
+        while (rc.next()) {
+            table.addRow(rc);
+        }
+
+        for (int i = 0; i < dates.size(); i += 997) {
+            IdCursor found = index.pointQueryRowIds(dates.get(i));
+            assertTrue("Date key not found!", found.next());
+            assertEquals("Wrong rowid was returned!", rowIds[i], found.getId());
+            assertFalse("Too many rowids were returned!", found.next());
+        }
+        IdCursor found = index.pointQueryRowIds(more.get(more.size() - 1));
+        assertTrue("Inserted date key not found!", found.next());
+        assertEquals("Wrong rowid was returned!", dates.size() + more.size(), found.getId());
+        assertFalse("Unknown date key was found!", index.pointQueryRowIds(new Date(123456789L)).next());
+    }
+
+    /**
+     * Null values are stored as the INTEGER null placeholder 0 but must not
+     * be found under it, and updates into and out of null keep the indexes
+     * in step.
+     */
+    @Test(timeout = 300000L)
+    public void testNullsNotIndexed() throws Exception {
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("colI", Type.INTEGER);
+        schema.put("colS", Type.STRING);
+        IndexableTable table = layer.getTable(layer.createTable("Table_A", schema));
+        int colIid = table.getTableMetaData().getTableSchema().get("colI").getId();
+        int colSid = table.getTableMetaData().getTableSchema().get("colS").getId();
+
+        table.addRows(new SimpleRowCursor(Arrays.asList(
+                new SimpleColumn(Arrays.asList(0, null, 5, null, 0), colIid, "colI", Type.INTEGER),
+                new SimpleColumn(Arrays.asList("a", null, "b", null, "a"), colSid, "colS", Type.STRING))));
+        Index hash = table.getIndex(table.createIndex("hashI", colIid, IndexType.HASH));
+        Index tree = table.getIndex(table.createIndex("treeI", colIid, IndexType.TREE));
+        Index strings = table.getIndex(table.createIndex("hashS", colSid, IndexType.HASH));
+
+        assertEquals(Arrays.asList(1, 5), ids(hash.pointQueryRowIds(0)));
+        assertEquals(Arrays.asList(1, 5), ids(tree.pointQueryRowIds(0)));
+        assertEquals(Arrays.asList(1, 5), ids(strings.pointQueryRowIds("a")));
+
+        ExtendedColumn colI = (ExtendedColumn) table.getColumn(colIid);
+        colI.updateValue(1, null);
+        colI.updateValue(2, 7);
+        ((ExtendedColumn) table.getColumn(colSid)).updateValue(3, null);
+        table.deleteRow(4);
+        RowCursor nulls = new SimpleRowCursor(Arrays.asList(
+                new SimpleColumn(Arrays.asList((Object) null), colIid, "colI", Type.INTEGER),
+                new SimpleColumn(Arrays.asList((Object) null), colSid, "colS", Type.STRING)));
+        nulls.next();
+        table.addRow(nulls);
+
+        assertEquals(Arrays.asList(5), ids(hash.pointQueryRowIds(0)));
+        assertEquals(Arrays.asList(5), ids(tree.pointQueryRowIds(0)));
+        assertEquals(Arrays.asList(2), ids(hash.pointQueryRowIds(7)));
+        assertEquals(Arrays.asList(2), ids(tree.pointQueryRowIds(7)));
+        assertEquals(Arrays.asList(2, 3, 5), ids(tree.rangeQueryRowIds(-1, 7, true, true)));
+        assertTrue(ids(strings.pointQueryRowIds("b")).isEmpty());
+    }
+
+    private static List<Integer> ids(IdCursor cursor) {
+        List<Integer> ids = new ArrayList<>();
+        while (cursor.next()) {
+            ids.add(cursor.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
     private void insertIndex(IndexType it) throws Exception {
         final Map<String, IndexableTable> tables = TestTableBuilder
                 .createTables(TABLE_NAMES, layer);
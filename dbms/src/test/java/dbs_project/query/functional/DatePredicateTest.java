@@ -0,0 +1,124 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.query.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.index.IndexType;
+import dbs_project.query.QueryLayer;
+import dbs_project.query.predicate.Expression;
+import dbs_project.query.predicate.Operator;
+import dbs_project.query.predicate.impl.Constants;
+import dbs_project.query.predicate.impl.Expressions;
+import dbs_project.storage.RowCursor;
+import dbs_project.storage.Type;
+import dbs_project.util.Utils;
+
+import org.junit.*;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for EQ predicates on DATE columns: a literal matches the
+ * same rows whether the query scans the column or looks it up in an index.
+ */
+public class DatePredicateTest {
+
+    private static final String EVENTS = "events";
+    private static final int ROWS = 3000;
+    private static final int DAYS = 100;
+    private QueryLayer qLayer;
+    private List<String> days;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        qLayer = DatabaseFactory.INSTANCE.createInstance().getQueryLayer();
+        qLayer.createTable(Statements.buildCreateTableStatement(EVENTS, Arrays.asList("id", "day"), Arrays.asList(Type.INTEGER, Type.DATE)));
+
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(df.parse("1995-01-01"));
+        days = new ArrayList<>();
+        for (int d = 0; d < DAYS; d++) {
+            days.add(df.format(calendar.getTime()));
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        List<List<String>> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(Arrays.asList(Integer.toString(i), i % 50 == 0 ? null : days.get(i % DAYS)));
+        }
+        qLayer.executeInsertRows(Statements.buildInsertRowsStatement(EVENTS, Arrays.asList("id", "day"), rows.iterator()));
+    }
+
+    @Test(timeout = 300000L)
+    public void testSameRowsWithAndWithoutIndex() throws Exception {
+        String day = days.get(14);
+        String second = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH).parse(day).toString();
+        String otherSecond = new Date(new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH).parse(day).getTime() + 1000).toString();
+
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 14; i < ROWS; i += DAYS) {
+            if (i % 50 != 0) {
+                expected.add(i);
+            }
+        }
+        assertFalse(expected.isEmpty());
+
+        List<Set<Integer>> scanned = Arrays.asList(query(day), query(second), query(otherSecond), query("not a date"));
+        assertEquals("Day literal", expected, scanned.get(0));
+        assertEquals("Second literal", expected, scanned.get(1));
+        assertTrue("A second without rows matched", scanned.get(2).isEmpty());
+        assertTrue("An unknown literal matched", scanned.get(3).isEmpty());
+
+        qLayer.createIndex(Statements.buildCreateIndexStatement(EVENTS, "day", "dayHash", IndexType.HASH));
+        assertEquals(scanned, Arrays.asList(query(day), query(second), query(otherSecond), query("not a date")));
+
+        qLayer.createIndex(Statements.buildCreateIndexStatement(EVENTS, "day", "dayTree", IndexType.TREE));
+        assertEquals(scanned, Arrays.asList(query(day), query(second), query(otherSecond), query("not a date")));
+    }
+
+    private Set<Integer> query(String literal) throws Exception {
+        Expression predicate = Expressions.createExpression(Operator.EQ, Constants.createColumnNameConstant("day"), Constants.createLiteralConstant(literal));
+        RowCursor rows = qLayer.executeQuery(Statements.buildQueryStatement(Arrays.asList("id"), predicate, EVENTS)).getRows();
+
+        Set<Integer> ids = new HashSet<>();
+        while (rows.next()) {
+            assertTrue("Row returned twice", ids.add(rows.getInteger(0)));
+        }
+        return ids;
+    }
+}
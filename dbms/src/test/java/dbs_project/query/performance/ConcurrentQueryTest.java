@@ -0,0 +1,278 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.query.performance;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.query.QueryLayer;
+import dbs_project.query.functional.Statements;
+import dbs_project.query.predicate.ExpressionElement;
+import dbs_project.query.predicate.Operator;
+import dbs_project.query.predicate.impl.Constants;
+import dbs_project.query.predicate.impl.Expressions;
+import dbs_project.storage.RowCursor;
+import dbs_project.storage.Type;
+import dbs_project.util.Utils;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs queries from several threads against one table, with and without a
+ * concurrent writer, and measures how reader throughput scales.
+ */
+public class ConcurrentQueryTest {
+
+    private static final String TABLE = "items";
+    private static final List<String> COLUMNS = Arrays.asList("id", "price", "grp");
+    private static final List<Type> TYPES = Arrays.asList(Type.INTEGER, Type.DOUBLE, Type.STRING);
+    private static final int ROWS = 200000;
+    private static final int WRITE_BATCH = 1000;
+    private static final int QUERIES = 200;
+    private static final int READERS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private static List<String> results;
+    private QueryLayer qLayer;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Utils.redirectStreams();
+        results = new ArrayList<>();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        Utils.getOut().println("<measurements layer=\"concurrency\">");
+        for (String res : results) {
+            Utils.getOut().println(res);
+        }
+        Utils.getOut().println("</measurements>");
+        Utils.getOut().println();
+
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        qLayer = DatabaseFactory.INSTANCE.createInstance().getQueryLayer();
+        qLayer.createTable(Statements.buildCreateTableStatement(TABLE, COLUMNS, TYPES));
+        qLayer.executeInsertRows(Statements.buildInsertRowsStatement(TABLE, COLUMNS, rows(0, ROWS, false)));
+    }
+
+    @Test(timeout = 300000L)
+    public void readersWithWriterTest() throws Exception {
+        final AtomicBoolean done = new AtomicBoolean(false);
+        ExecutorService pool = Executors.newFixedThreadPool(READERS + 1);
+
+        try {
+            //inserts, updates and deletes a batch of negative prices until the readers are done
+            Future<Integer> writer = pool.submit(new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws Exception {
+                    int rounds = 0;
+                    while (!done.get()) {
+                        qLayer.executeInsertRows(Statements.buildInsertRowsStatement(TABLE, COLUMNS,
+                                rows(ROWS + rounds * WRITE_BATCH, WRITE_BATCH, true)));
+                        assertEquals(WRITE_BATCH, qLayer.executeUpdateRows(Statements.buildUpdateRowStatement(TABLE,
+                                Collections.singletonList("grp"), negativePrice(), Collections.singletonList("updated"))));
+                        assertEquals(WRITE_BATCH, qLayer.executeDeleteRows(Statements.buildDeleteRowsStatement(TABLE, negativePrice())));
+                        rounds++;
+                    }
+                    return rounds;
+                }
+            });
+
+            //every statement is atomic for readers, they see all of a batch or none of it, also in the values
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                readers.add(pool.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() throws Exception {
+                        for (int q = 0; q < QUERIES / READERS; q++) {
+                            assertEquals(ROWS, checkRows(Expressions.createExpression(Operator.GEQ,
+                                    Constants.createColumnNameConstant("price"), Constants.createLiteralConstant("0"))));
+                            int negative = checkRows(negativePrice());
+                            assertTrue("Partial batch of " + negative + " rows", negative == 0 || negative == WRITE_BATCH);
+                        }
+                        return QUERIES / READERS;
+                    }
+                }));
+            }
+
+            for (Future<Integer> reader : readers) {
+                reader.get();
+            }
+            done.set(true);
+            Utils.getOut().println("Writer rounds: " + writer.get());
+        } finally {
+            done.set(true);
+            pool.shutdownNow();
+        }
+
+        assertEquals(0, count(negativePrice()));
+        assertEquals(ROWS, count(null));
+    }
+
+    @Test(timeout = 300000L)
+    public void readerScalingTest() throws Exception {
+        //warm up the scan code before timing
+        runReaders(1, QUERIES / 4);
+
+        long single = runReaders(1, QUERIES);
+        long parallel = runReaders(READERS, QUERIES);
+        outputTime("Readers-1", single);
+        outputTime("Readers-" + READERS, parallel);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        double speedup = (double) single / parallel;
+        Utils.getOut().println("Speedup with " + READERS + " readers on " + cores + " cores: " + speedup);
+        if (cores >= 4) {
+            //readers share the table's read lock, so they must not run one at a time
+            assertTrue("Readers did not scale, speedup " + speedup, speedup > 1.5);
+        }
+    }
+
+    /**
+     * Runs the given number of range queries spread over the threads and
+     * returns the elapsed time in nanoseconds.
+     */
+    private long runReaders(int threads, final int queries) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        long startTime = System.nanoTime();
+        try {
+            for (int i = 0; i < threads; i++) {
+                final int first = i;
+                final int step = threads;
+                futures.add(pool.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() throws Exception {
+                        int total = 0;
+                        for (int q = first; q < queries; q += step) {
+                            int low = (q * 7919) % ROWS;
+                            total += count(Expressions.createExpression(Operator.AND,
+                                    Expressions.createExpression(Operator.GEQ, Constants.createColumnNameConstant("id"),
+                                    Constants.createLiteralConstant(Integer.toString(low))),
+                                    Expressions.createExpression(Operator.LT, Constants.createColumnNameConstant("price"),
+                                    Constants.createLiteralConstant(Double.toString(low + ROWS / 10)))));
+                        }
+                        return total;
+                    }
+                }));
+            }
+
+            for (Future<Integer> future : futures) {
+                assertTrue(future.get() > 0);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        return System.nanoTime() - startTime;
+    }
+
+    private int count(ExpressionElement predicate) throws Exception {
+        RowCursor cursor = qLayer.executeQuery(Statements.buildQueryStatement(COLUMNS, predicate, TABLE)).getRows();
+        int count = 0;
+        while (cursor.next()) {
+            count++;
+        }
+        cursor.close();
+        return count;
+    }
+
+    /**
+     * Counts the rows of a query and checks that every row holds the values
+     * one statement wrote. A batch is updated by a single statement, so its
+     * rows are either all updated or none is.
+     */
+    private int checkRows(ExpressionElement predicate) throws Exception {
+        RowCursor cursor = qLayer.executeQuery(Statements.buildQueryStatement(COLUMNS, predicate, TABLE)).getRows();
+        int count = 0;
+        int updated = 0;
+        while (cursor.next()) {
+            int id = cursor.getInteger(0);
+            double price = cursor.getDouble(1);
+            String grp = cursor.getString(2);
+            assertEquals("Torn row " + id, id < ROWS ? id : -id - 1, price, 0);
+            if ("updated".equals(grp)) {
+                updated++;
+            } else {
+                assertEquals("Torn row " + id, "g" + (id % 16), grp);
+            }
+            count++;
+        }
+        cursor.close();
+        assertTrue("Partial update of " + updated + " rows", updated == 0 || updated == count);
+        return count;
+    }
+
+    private static ExpressionElement negativePrice() {
+        return Expressions.createExpression(Operator.LT, Constants.createColumnNameConstant("price"),
+                Constants.createLiteralConstant("0"));
+    }
+
+    /**
+     * Rows with ids from first, the price is the id or its negation.
+     */
+    private static Iterator<List<String>> rows(final int first, final int count, final boolean negative) {
+        return new Iterator<List<String>>() {
+
+            private int next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next < first + count;
+            }
+
+            @Override
+            public List<String> next() {
+                int id = next++;
+                return Arrays.asList(Integer.toString(id), Double.toString(negative ? -id - 1 : id), "g" + (id % 16));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private void outputTime(String testCaseName, long nanoTime) {
+        String timeString = NumberFormat.getInstance(Locale.US).format(nanoTime / 1000d / 1000d / 1000d);
+        Utils.getOut().println(testCaseName + "\tTime: " + timeString + " seconds");
+        results.add("<measurement><name>" + testCaseName + "</name>"
+                + "<value>" + timeString + "</value></measurement>");
+    }
+}
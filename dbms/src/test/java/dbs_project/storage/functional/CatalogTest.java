@@ -0,0 +1,180 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.storage.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.exceptions.NoSuchTableException;
+import dbs_project.exceptions.TableAlreadyExistsException;
+import dbs_project.storage.*;
+import dbs_project.storageImpl.RelationImpl;
+import dbs_project.util.*;
+
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for the table catalog: the database schema finds every
+ * table by its current name and follows creates, renames and deletes.
+ */
+public final class CatalogTest {
+
+    private StorageLayer storage;
+    private Map<String, Type> schema;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        storage = DatabaseFactory.INSTANCE.createInstance().getStorageLayer();
+        schema = new HashMap<>();
+        schema.put("val", Type.INTEGER);
+    }
+
+    @Test(timeout = 300000L)
+    public void testCatalogFollowsChanges() throws Exception {
+        Map<String, TableMetaData> catalog = storage.getDatabaseSchema();
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            ids.put("t" + i, storage.createTable("t" + i, schema));
+        }
+        ids.put("parts", storage.createTable("parts", schema, PartitionSpec.hash("val", 3)));
+        checkCatalog(ids);
+        assertSame("Catalog view not kept up to date", catalog, storage.getDatabaseSchema());
+
+        try {
+            storage.createTable("t3", schema);
+            fail("Table name used twice");
+        } catch (TableAlreadyExistsException ex) {
+        }
+
+        storage.renameTable(ids.get("t1"), "renamed");
+        ids.put("renamed", ids.remove("t1"));
+        storage.renameTable(ids.get("parts"), "partitioned");
+        ids.put("partitioned", ids.remove("parts"));
+        try {
+            storage.renameTable(ids.get("t2"), "t3");
+            fail("Table renamed to the name of another");
+        } catch (TableAlreadyExistsException ex) {
+        }
+        checkCatalog(ids);
+
+        int deleted = ids.remove("t4");
+        storage.deleteTable(deleted);
+        storage.deleteTable(ids.remove("renamed"));
+        checkCatalog(ids);
+        try {
+            storage.deleteTable(deleted);
+            fail("Table deleted twice");
+        } catch (NoSuchTableException ex) {
+        }
+
+        //the name of a deleted table can be used again, queries find the new table
+        ids.put("renamed", storage.createTable("renamed", schema));
+        storage.getTable(ids.get("renamed")).addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList(7), 0, "val", Type.INTEGER))));
+        RowCursor rows = new RelationImpl(storage, Arrays.asList("renamed"), Arrays.asList("val"), null).getRows();
+        assertTrue(rows.next());
+        assertEquals(7, rows.getInteger(0));
+        assertFalse(rows.next());
+        checkCatalog(ids);
+
+        try {
+            catalog.remove("t0");
+            fail("Catalog modified through the schema view");
+        } catch (UnsupportedOperationException ex) {
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testConcurrentChanges() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Map<String, Integer>>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int thread = t;
+            results.add(executor.submit(new Callable<Map<String, Integer>>() {
+
+                @Override
+                public Map<String, Integer> call() throws Exception {
+                    Map<String, Integer> ids = new HashMap<>();
+                    for (int i = 0; i < 200; i++) {
+                        String name = "t" + thread + "_" + i;
+                        int id = storage.createTable(name, schema);
+                        if (i % 3 == 0) {
+                            storage.renameTable(id, "r" + thread + "_" + i);
+                            name = "r" + thread + "_" + i;
+                        }
+                        if (i % 4 == 0) {
+                            storage.deleteTable(id);
+                        } else {
+                            ids.put(name, id);
+                        }
+                        assertEquals(i % 4 != 0, storage.getDatabaseSchema().containsKey(name));
+                    }
+                    return ids;
+                }
+            }));
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        for (Future<Map<String, Integer>> result : results) {
+            ids.putAll(result.get());
+        }
+        executor.shutdown();
+        checkCatalog(ids);
+    }
+
+    /**
+     * Checks that the catalog holds exactly the given tables under their
+     * names, and that every table knows its name.
+     */
+    private void checkCatalog(Map<String, Integer> ids) throws Exception {
+        Map<String, TableMetaData> catalog = storage.getDatabaseSchema();
+        assertEquals(ids.keySet(), new HashSet<>(catalog.keySet()));
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            TableMetaData metaData = catalog.get(entry.getKey());
+            assertEquals(entry.getKey(), metaData.getName());
+            assertEquals((int) entry.getValue(), metaData.getId());
+            assertSame(metaData, storage.getTable(entry.getValue()).getTableMetaData());
+        }
+
+        Set<String> names = new HashSet<>();
+        for (Table table : storage.getTables()) {
+            names.add(table.getTableMetaData().getName());
+        }
+        assertEquals(ids.keySet(), names);
+    }
+}
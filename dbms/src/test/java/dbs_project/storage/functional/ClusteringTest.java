@@ -0,0 +1,171 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.storage.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.index.Index;
+import dbs_project.index.IndexLayer;
+import dbs_project.index.IndexType;
+import dbs_project.storage.*;
+import dbs_project.storageImpl.TableImpl;
+import dbs_project.util.*;
+
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for clustered tables: row ids only change when the table
+ * is clustered or compacted, and indexes follow the new ids.
+ */
+public final class ClusteringTest {
+
+    private static final int ROWS = 5000;
+    private IndexLayer layer;
+    private TableImpl table;
+    private int keyId;
+    private int valId;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        layer = DatabaseFactory.INSTANCE.createInstance().getIndexLayer();
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("key", Type.INTEGER);
+        schema.put("val", Type.INTEGER);
+        table = (TableImpl) layer.getTable(layer.createTable("clustered", schema));
+        keyId = table.getTableMetaData().getTableSchema().get("key").getId();
+        valId = table.getTableMetaData().getTableSchema().get("val").getId();
+    }
+
+    @Test(timeout = 300000L)
+    public void testIdsStableUntilClustered() throws Exception {
+        Map<Integer, Integer> keys = new HashMap<>();
+        List<Integer> keyData = new ArrayList<>();
+        List<Integer> valData = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            keyData.add(i * 2);
+            valData.add(i + 1);
+        }
+        addRows(keyData, valData, keys);
+        table.setClusteringKey(keyId);
+        assertFalse("In order rows need no clustering", table.needsClustering());
+
+        Index keyIndex = table.getIndex(table.createIndex("keyIdx", keyId, IndexType.HASH));
+        Index valIndex = table.getIndex(table.createIndex("valIdx", valId, IndexType.TREE));
+
+        for (int rowId = 5; rowId <= ROWS; rowId += 5) {
+            table.deleteRow(rowId);
+            keys.remove(rowId);
+        }
+        keyData.clear();
+        valData.clear();
+        for (int i = 0; i < ROWS / 10; i++) {
+            keyData.add(ROWS * 2 - i * 4 - 1);
+            valData.add(ROWS + i);
+        }
+        addRows(keyData, valData, keys);
+
+        assertTrue("Descending appends break the order", table.needsClustering());
+        checkRows(keys, keyIndex, valIndex);
+
+        IdCursor oldIds = table.cluster();
+        Map<Integer, Integer> clustered = new HashMap<>();
+        for (int rowId = 1; oldIds.next(); rowId++) {
+            assertTrue("Deleted row kept by clustering", keys.containsKey(oldIds.getId()));
+            clustered.put(rowId, keys.get(oldIds.getId()));
+        }
+        assertEquals(keys.size(), clustered.size());
+        assertFalse(table.needsClustering());
+
+        Column key = table.getColumn(keyId);
+        for (int rowId = 2; rowId <= clustered.size(); rowId++) {
+            assertTrue("Rows not sorted by key", key.getInteger(rowId - 2) <= key.getInteger(rowId - 1));
+        }
+        checkRows(clustered, keyIndex, valIndex);
+    }
+
+    @Test(timeout = 300000L)
+    public void testCompactionClusters() throws Exception {
+        Map<Integer, Integer> keys = new HashMap<>();
+        addRows(Arrays.asList(1, 2, 3, 4), Arrays.asList(10, 20, 30, 40), keys);
+        table.setClusteringKey(keyId);
+        addRows(Arrays.asList(0), Arrays.asList(50), keys);
+        table.deleteRow(2);
+        keys.remove(2);
+        assertTrue(table.needsClustering());
+
+        IdCursor oldIds = table.compact();
+        int[] expected = {5, 1, 3, 4};
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(oldIds.next());
+            assertEquals(expected[i], oldIds.getId());
+            assertEquals((int) keys.get(expected[i]), table.getColumn(keyId).getInteger(i));
+        }
+        assertFalse(oldIds.next());
+        assertFalse(table.needsClustering());
+    }
+
+    private void addRows(List<Integer> keyData, List<Integer> valData, Map<Integer, Integer> keys) throws Exception {
+        int first = table.getTableMetaData().getRowCount() + table.getDeadRowCount() + 1;
+        table.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(keyData, keyId, "key", Type.INTEGER),
+                new SimpleColumn(valData, valId, "val", Type.INTEGER))));
+        for (int i = 0; i < keyData.size(); i++) {
+            keys.put(first + i, keyData.get(i));
+        }
+    }
+
+    /**
+     * Checks the key of every live row and that both indexes find each row
+     * by its current id.
+     */
+    private void checkRows(Map<Integer, Integer> keys, Index keyIndex, Index valIndex) throws Exception {
+        assertEquals(keys.size(), table.getTableMetaData().getRowCount());
+        Column key = table.getColumn(keyId);
+        Column val = table.getColumn(valId);
+
+        for (Map.Entry<Integer, Integer> entry : keys.entrySet()) {
+            int rowId = entry.getKey();
+            assertEquals("Row id changed", (int) entry.getValue(), key.getInteger(rowId - 1));
+
+            IdCursor found = keyIndex.pointQueryRowIds(entry.getValue());
+            assertTrue("Key not found in index", found.next());
+            assertEquals("Index returned a stale row id", rowId, found.getId());
+            assertFalse(found.next());
+
+            found = valIndex.pointQueryRowIds(val.getInteger(rowId - 1));
+            assertTrue("Value not found in index", found.next());
+            assertEquals("Index returned a stale row id", rowId, found.getId());
+            assertFalse(found.next());
+        }
+    }
+}
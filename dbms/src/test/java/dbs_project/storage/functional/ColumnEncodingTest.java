@@ -0,0 +1,466 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.storage.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.query.predicate.Operator;
+import dbs_project.query.predicate.impl.Constants;
+import dbs_project.query.predicate.impl.Expressions;
+import dbs_project.storage.*;
+import dbs_project.storageImpl.RelationImpl;
+import dbs_project.storageImpl.TableImpl;
+import dbs_project.util.*;
+import dbs_project.utilImpl.BitPackedIntList;
+import dbs_project.utilImpl.BooleanArrayList;
+import dbs_project.utilImpl.DictionaryStringList;
+import dbs_project.utilImpl.OffHeapDoubleList;
+import dbs_project.utilImpl.OffHeapIntList;
+import dbs_project.utilImpl.StringArenaList;
+
+import org.apache.commons.collections.primitives.ArrayIntList;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for the encodings of column data: values and nulls read
+ * back the same through every encoding, after updates and deletes, and
+ * queries find the same rows.
+ */
+public final class ColumnEncodingTest {
+
+    private static final int ROWS = 5000;
+    private StorageLayer storage;
+    private TableImpl table;
+    private ExtendedColumn column;
+    //value of every row by position, deleted rows read as null
+    private List<Object> expected;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        storage = DatabaseFactory.INSTANCE.createInstance().getStorageLayer();
+    }
+
+    /**
+     * Creates the table "values" with the single column "val" holding the
+     * given values, null entries are nulls.
+     */
+    private void createColumn(Type type, List<?> data) throws Exception {
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("val", type);
+        table = (TableImpl) storage.getTable(storage.createTable("values", schema));
+        column = table.getColumn(table.getTableMetaData().getTableSchema().get("val").getId());
+        expected = new ArrayList<>();
+        addRows(data);
+    }
+
+    private void addRows(List<?> data) throws Exception {
+        table.addRows(new SimpleRowCursor(Arrays.asList(column(data))));
+        expected.addAll(data);
+    }
+
+    private void updateRow(int rowId, Object value) throws Exception {
+        ArrayIntList rowIds = new ArrayIntList();
+        rowIds.add(rowId);
+        table.updateRows(IntIteratorWrapper.wrap(rowIds.iterator()), new SimpleRowCursor(Arrays.asList(column(Collections.singletonList(value)))));
+        expected.set(rowId - 1, value);
+    }
+
+    private void deleteRow(int rowId) throws Exception {
+        table.deleteRow(rowId);
+        expected.set(rowId - 1, null);
+    }
+
+    private SimpleColumn column(List<?> data) {
+        return new SimpleColumn(data, column.getMetaData().getId(), "val", column.getMetaData().getType());
+    }
+
+    private void checkColumn() {
+        assertEquals(expected.size(), column.getMetaData().getRowCount());
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.get(i) == null) {
+                assertTrue("Null lost at " + i, column.isNull(i));
+                assertNull(column.getObject(i));
+            } else {
+                assertFalse("Value read as null at " + i, column.isNull(i));
+                assertEquals("Value changed at " + i, expected.get(i), column.getObject(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the rows a query finds with the given predicate on
+     * "val".
+     */
+    private Set<Integer> query(Operator operator, String literal) throws Exception {
+        RowCursor rows = new RelationImpl(storage, Arrays.asList("values"), Arrays.asList("val"),
+                Expressions.createExpression(operator, Constants.createColumnNameConstant("val"), Constants.createLiteralConstant(literal))).getRows();
+        Set<Integer> found = new HashSet<>();
+        while (rows.next()) {
+            assertTrue("Row returned twice", found.add(rows.getMetaData().getId()));
+        }
+        return found;
+    }
+
+    /**
+     * Returns the ids of the rows whose expected value equals the given one.
+     */
+    private Set<Integer> rowsWith(Object value) {
+        Set<Integer> rows = new HashSet<>();
+        for (int i = 0; i < expected.size(); i++) {
+            if (value.equals(expected.get(i))) {
+                rows.add(i + 1);
+            }
+        }
+        return rows;
+    }
+
+    @Test(timeout = 300000L)
+    public void testDictionaryRoundTrip() throws Exception {
+        List<String> data = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            data.add(i % 11 == 0 ? null : "v" + (i % 7));
+        }
+        createColumn(Type.STRING, data);
+        assertEquals(ColumnEncoding.DICTIONARY, column.getEncoding());
+        assertEquals("Nulls need no code", 7, ((DictionaryStringList) column.getData()).dictionarySize());
+        checkColumn();
+
+        updateRow(3, "fresh");
+        updateRow(4, null);
+        updateRow(12, "v1");
+        deleteRow(5);
+        deleteRow(23);
+        addRows(Arrays.asList("v2", null, "later"));
+        checkColumn();
+
+        DictionaryStringList dictionary = (DictionaryStringList) column.getData();
+        assertEquals(DictionaryStringList.NULL_CODE, dictionary.getCode(3));
+        assertEquals("fresh", dictionary.decode(dictionary.getCode(2)));
+        assertEquals(DictionaryStringList.NO_CODE, dictionary.codeOf("missing"));
+
+        assertEquals(rowsWith("v3"), query(Operator.EQ, "v3"));
+        assertEquals(rowsWith("fresh"), query(Operator.EQ, "fresh"));
+        assertTrue(query(Operator.EQ, "missing").isEmpty());
+    }
+
+    @Test(timeout = 300000L)
+    public void testDictionaryDroppedForDistinctValues() throws Exception {
+        List<String> data = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            data.add(i % 13 == 0 ? null : "distinct" + i);
+        }
+        createColumn(Type.STRING, data);
+        assertEquals("Automatic encoding kept a dictionary of distinct values", ColumnEncoding.PLAIN, column.getEncoding());
+        checkColumn();
+
+        column.setEncoding(ColumnEncoding.DICTIONARY);
+        assertEquals(ColumnEncoding.DICTIONARY, column.getEncoding());
+        addRows(Arrays.asList("distinct0", null, "new"));
+        assertEquals("Explicit encoding dropped the dictionary", ColumnEncoding.DICTIONARY, column.getEncoding());
+        updateRow(2, "distinct0");
+        deleteRow(3);
+        checkColumn();
+        assertEquals(rowsWith("distinct0"), query(Operator.EQ, "distinct0"));
+
+        column.setEncoding(ColumnEncoding.PLAIN);
+        assertEquals(ColumnEncoding.PLAIN, column.getEncoding());
+        checkColumn();
+    }
+
+    @Test(timeout = 300000L)
+    public void testBooleanRoundTrip() throws Exception {
+        //a few hundred rows span several words of bits
+        List<Boolean> data = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            data.add(i % 17 == 0 ? null : i % 3 == 0);
+        }
+        createColumn(Type.BOOLEAN, data);
+        checkColumn();
+
+        updateRow(63, true);
+        updateRow(64, null);
+        updateRow(65, false);
+        updateRow(18, true);
+        deleteRow(128);
+        deleteRow(129);
+        addRows(Arrays.asList(true, null, false));
+        checkColumn();
+
+        //nulls store false, they must not match either literal
+        assertEquals(rowsWith(true), query(Operator.EQ, "true"));
+        assertEquals(rowsWith(false), query(Operator.EQ, "false"));
+    }
+
+    @Test(timeout = 300000L)
+    public void testBooleanListShifts() throws Exception {
+        Random random = new Random(42);
+        BooleanArrayList list = new BooleanArrayList(1);
+        List<Boolean> reference = new ArrayList<>();
+
+        for (int op = 0; op < 5000; op++) {
+            boolean value = random.nextBoolean();
+            int choice = random.nextInt(10);
+            if (reference.isEmpty() || choice < 4) {
+                list.add(value);
+                reference.add(value);
+            } else if (choice < 6) {
+                int index = random.nextInt(reference.size() + 1);
+                list.add(index, value);
+                reference.add(index, value);
+            } else if (choice < 7) {
+                int index = random.nextInt(reference.size() + 1);
+                list.addAll(index, new boolean[]{value, !value, value});
+                reference.addAll(index, Arrays.asList(value, !value, value));
+            } else if (choice < 8) {
+                int index = random.nextInt(reference.size());
+                list.set(index, value);
+                reference.set(index, value);
+            } else if (choice < 9) {
+                int index = random.nextInt(reference.size());
+                assertEquals(reference.remove(index), list.remove(index));
+            } else {
+                int from = random.nextInt(reference.size());
+                int to = Math.min(reference.size() - 1, from + random.nextInt(100));
+                list.removeRange(from, to);
+                reference.subList(from, to).clear();
+            }
+        }
+
+        assertEquals(reference.size(), list.size());
+        BitSet trues = list.toBitSet(true);
+        BitSet falses = list.toBitSet(false);
+        for (int i = 0; i < reference.size(); i++) {
+            assertEquals("Bit changed at " + i, reference.get(i), list.get(i));
+            assertEquals(reference.get(i), trues.get(i));
+            assertEquals(!reference.get(i), falses.get(i));
+        }
+        assertEquals("Bits past the end set", reference.size(), trues.cardinality() + falses.cardinality());
+        assertEquals(reference.indexOf(true), list.indexOf(true));
+        assertEquals(reference.indexOf(false), list.indexOf(false));
+        assertEquals(reference.lastIndexOf(true), list.lastIndexOf(true));
+    }
+    @Test(timeout = 300000L)
+    public void testOffHeapIntegers() throws Exception {
+        List<Integer> data = new ArrayList<>();
+        for (int i = 0; i < OffHeapIntList.CHUNK_SIZE + ROWS; i++) {
+            data.add(i % 11 == 0 ? null : i % 100 - 50);
+        }
+        createColumn(Type.INTEGER, data);
+        column.setEncoding(ColumnEncoding.OFF_HEAP);
+        assertEquals(ColumnEncoding.OFF_HEAP, column.getEncoding());
+        assertTrue(column.getData() instanceof OffHeapIntList);
+        checkColumn();
+
+        addRows(Arrays.asList(7, null, 0));
+        updateRow(1, 49);
+        updateRow(2, null);
+        updateRow(OffHeapIntList.CHUNK_SIZE + 1, 0);
+        deleteRow(OffHeapIntList.CHUNK_SIZE);
+        assertEquals(ColumnEncoding.OFF_HEAP, column.getEncoding());
+        checkColumn();
+        assertEquals(rowsWith(0), query(Operator.EQ, "0"));
+        assertEquals(rowsWith(49), query(Operator.EQ, "49"));
+
+        column.setEncoding(ColumnEncoding.PLAIN);
+        assertEquals(ColumnEncoding.PLAIN, column.getEncoding());
+        checkColumn();
+    }
+
+    @Test(timeout = 300000L)
+    public void testOffHeapDoubles() throws Exception {
+        List<Double> data = new ArrayList<>();
+        for (int i = 0; i < OffHeapDoubleList.CHUNK_SIZE + ROWS; i++) {
+            data.add(i % 11 == 0 ? null : (i % 100) / 4.0);
+        }
+        createColumn(Type.DOUBLE, data);
+        column.setEncoding(ColumnEncoding.OFF_HEAP);
+        assertEquals(ColumnEncoding.OFF_HEAP, column.getEncoding());
+        assertTrue(column.getData() instanceof OffHeapDoubleList);
+        checkColumn();
+
+        addRows(Arrays.asList(7.5, null, 0.0));
+        updateRow(1, 0.25);
+        updateRow(2, null);
+        updateRow(OffHeapDoubleList.CHUNK_SIZE + 1, 0.0);
+        deleteRow(OffHeapDoubleList.CHUNK_SIZE);
+        checkColumn();
+        assertEquals(rowsWith(0.25), query(Operator.EQ, "0.25"));
+
+        column.setEncoding(ColumnEncoding.PLAIN);
+        assertEquals(ColumnEncoding.PLAIN, column.getEncoding());
+        checkColumn();
+    }
+
+    /**
+     * The tests run with 64M of direct memory. Every switch to OFF_HEAP
+     * takes a few megabytes, they only add up to more than the limit if the
+     * buffers of earlier switches are never released.
+     */
+    @Test(timeout = 300000L)
+    public void testOffHeapReleased() throws Exception {
+        List<Double> data = new ArrayList<>();
+        for (int i = 0; i < OffHeapDoubleList.CHUNK_SIZE * 3; i++) {
+            data.add(i % 11 == 0 ? null : i / 2.0);
+        }
+        createColumn(Type.DOUBLE, data);
+
+        for (int round = 0; round < 60; round++) {
+            column.setEncoding(ColumnEncoding.OFF_HEAP);
+            assertEquals(data.get(1), column.getObject(1));
+            column.setEncoding(ColumnEncoding.PLAIN);
+        }
+        checkColumn();
+
+        storage.deleteTable(table.getTableMetaData().getId());
+        for (int round = 0; round < 60; round++) {
+            createColumn(Type.DOUBLE, data);
+            column.setEncoding(ColumnEncoding.OFF_HEAP);
+            storage.deleteTable(table.getTableMetaData().getId());
+        }
+    }
+    @Test(timeout = 300000L)
+    public void testBitPackedRoundTrip() throws Exception {
+        //a narrow block, a block of the full int range, a constant block and an unpacked tail
+        List<Integer> data = new ArrayList<>();
+        for (int i = 0; i < BitPackedIntList.BLOCK_SIZE; i++) {
+            data.add(i % 11 == 0 ? null : 1000 + i % 8);
+        }
+        for (int i = 0; i < BitPackedIntList.BLOCK_SIZE; i++) {
+            data.add(i % 13 == 0 ? null : i == 5 ? Integer.MIN_VALUE : i == 6 ? Integer.MAX_VALUE : i * 31 - 1000000);
+        }
+        for (int i = 0; i < BitPackedIntList.BLOCK_SIZE + ROWS; i++) {
+            data.add(5);
+        }
+        createColumn(Type.INTEGER, data);
+        column.setEncoding(ColumnEncoding.BIT_PACKED);
+        assertEquals(ColumnEncoding.BIT_PACKED, column.getEncoding());
+
+        BitPackedIntList packed = (BitPackedIntList) column.getData();
+        assertEquals(4, packed.getBlockCount());
+        assertTrue("Narrow block not packed", packed.getBitWidth(0) < 16);
+        assertEquals(32, packed.getBitWidth(1));
+        assertEquals(0, packed.getBitWidth(2));
+        checkColumn();
+        checkComparisons(-1000000, 0, 5, 1003, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        //values outside of a block's frame widen it
+        updateRow(2, Integer.MIN_VALUE);
+        updateRow(3, null);
+        updateRow(12, 1001);
+        updateRow(BitPackedIntList.BLOCK_SIZE * 2 + 1, 6);
+        updateRow(BitPackedIntList.BLOCK_SIZE * 2 + 2, -5);
+        deleteRow(BitPackedIntList.BLOCK_SIZE + 7);
+        deleteRow(BitPackedIntList.BLOCK_SIZE * 3 + 1);
+        addRows(Arrays.asList(Integer.MAX_VALUE, null, 5));
+        assertEquals(ColumnEncoding.BIT_PACKED, column.getEncoding());
+        checkColumn();
+        checkComparisons(-5, 5, 6, 1001, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Test(timeout = 300000L)
+    public void testArenaRoundTrip() throws Exception {
+        //multi-byte characters, empty strings and values filling several arenas
+        StringBuilder big = new StringBuilder();
+        while (big.length() < StringArenaList.ARENA_SIZE + 10) {
+            big.append("\u00e4\u20ac\ud83d\ude00x");
+        }
+        List<String> data = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            String value = i % 11 == 0 ? null : i % 10 == 0 ? "" : "\u00fcber-" + i + "-\ud83d\ude00-" + new String(new char[i % 300]).replace('\0', 'a');
+            data.add(value);
+        }
+        data.set(77, big.toString());
+        createColumn(Type.STRING, data);
+        column.setEncoding(ColumnEncoding.ARENA);
+        assertEquals(ColumnEncoding.ARENA, column.getEncoding());
+        assertTrue("Values fit into one arena", ((StringArenaList) column.getData()).getArenaBytes() > 2L * StringArenaList.ARENA_SIZE);
+        checkColumn();
+
+        updateRow(2, "\u00e4");
+        updateRow(3, null);
+        updateRow(11, "");
+        updateRow(78, big.toString() + "!");
+        deleteRow(4);
+        addRows(Arrays.asList("\ud83d\ude00", null, ""));
+        assertEquals(ColumnEncoding.ARENA, column.getEncoding());
+        checkColumn();
+
+        //empty strings are values, nulls are not
+        assertEquals(rowsWith(""), query(Operator.EQ, ""));
+        assertEquals(rowsWith("\u00e4"), query(Operator.EQ, "\u00e4"));
+        assertEquals(rowsWith("\ud83d\ude00"), query(Operator.EQ, "\ud83d\ude00"));
+        assertEquals(rowsWith(big.toString()), query(Operator.EQ, big.toString()));
+
+        column.setEncoding(ColumnEncoding.PLAIN);
+        checkColumn();
+    }
+
+    /**
+     * Checks that scans with every comparison against the given literals find
+     * the rows the expected values match.
+     */
+    private void checkComparisons(int... literals) throws Exception {
+        for (int literal : literals) {
+            for (Operator operator : Arrays.asList(Operator.EQ, Operator.LT, Operator.LEQ, Operator.GT, Operator.GEQ)) {
+                Set<Integer> rows = new HashSet<>();
+                for (int i = 0; i < expected.size(); i++) {
+                    if (expected.get(i) != null && matches(operator, Integer.compare((Integer) expected.get(i), literal))) {
+                        rows.add(i + 1);
+                    }
+                }
+                assertEquals(operator + " " + literal, rows, query(operator, Integer.toString(literal)));
+            }
+        }
+    }
+
+    private static boolean matches(Operator operator, int cmp) {
+        switch (operator) {
+            case EQ:
+                return cmp == 0;
+            case LT:
+                return cmp < 0;
+            case LEQ:
+                return cmp <= 0;
+            case GT:
+                return cmp > 0;
+            default:
+                return cmp >= 0;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.storage.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.index.Index;
+import dbs_project.index.IndexLayer;
+import dbs_project.index.IndexType;
+import dbs_project.query.predicate.Operator;
+import dbs_project.query.predicate.impl.Constants;
+import dbs_project.query.predicate.impl.Expressions;
+import dbs_project.storage.*;
+import dbs_project.storageImpl.RelationImpl;
+import dbs_project.storageImpl.TableImpl;
+import dbs_project.util.*;
+import dbs_project.utilImpl.ChunkedDoubleList;
+import dbs_project.utilImpl.ChunkedIntList;
+import dbs_project.utilImpl.ChunkedList;
+import dbs_project.utilImpl.ChunkedLongList;
+import dbs_project.utilImpl.ZoneMap;
+
+import org.apache.commons.collections.primitives.ArrayIntList;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for how columns store their rows: nulls are kept apart
+ * from the placeholder values stored for them, values read back the same
+ * across chunk boundaries, and scans skipping blocks never miss a row.
+ */
+public final class ColumnStorageTest {
+
+    private IndexLayer layer;
+    private TableImpl table;
+    private ExtendedColumn column;
+    //value of every row by position, deleted rows read as null
+    private List<Object> expected;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        layer = DatabaseFactory.INSTANCE.createInstance().getIndexLayer();
+    }
+
+    /**
+     * Creates the table "rows" with the single column "val" holding the given
+     * values, null entries are nulls.
+     */
+    private void createColumn(Type type, List<?> data) throws Exception {
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("val", type);
+        table = (TableImpl) layer.getTable(layer.createTable("rows", schema));
+        column = table.getColumn(table.getTableMetaData().getTableSchema().get("val").getId());
+        expected = new ArrayList<>();
+        table.addRows(new SimpleRowCursor(Arrays.asList(column(data))));
+        expected.addAll(data);
+    }
+
+    private void updateRow(int rowId, Object value) throws Exception {
+        ArrayIntList rowIds = new ArrayIntList();
+        rowIds.add(rowId);
+        table.updateRows(IntIteratorWrapper.wrap(rowIds.iterator()), new SimpleRowCursor(Arrays.asList(column(Collections.singletonList(value)))));
+        expected.set(rowId - 1, value);
+    }
+
+    private void deleteRow(int rowId) throws Exception {
+        table.deleteRow(rowId);
+        expected.set(rowId - 1, null);
+    }
+
+    private SimpleColumn column(List<?> data) {
+        return new SimpleColumn(data, column.getMetaData().getId(), "val", column.getMetaData().getType());
+    }
+
+    private void checkColumn() {
+        assertEquals(expected.size(), column.getMetaData().getRowCount());
+        BitSet valid = new BitSet();
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.get(i) == null) {
+                assertTrue("Null lost at " + i, column.isNull(i));
+                assertNull(column.getObject(i));
+            } else {
+                assertFalse("Value read as null at " + i, column.isNull(i));
+                assertEquals("Value changed at " + i, expected.get(i), column.getObject(i));
+                valid.set(i);
+            }
+        }
+        assertEquals(valid, column.getValidRows());
+    }
+
+    private Set<Integer> query(Operator operator, String literal) throws Exception {
+        RowCursor rows = new RelationImpl(layer, Arrays.asList("rows"), Arrays.asList("val"),
+                Expressions.createExpression(operator, Constants.createColumnNameConstant("val"), Constants.createLiteralConstant(literal))).getRows();
+        Set<Integer> found = new HashSet<>();
+        while (rows.next()) {
+            assertTrue("Row returned twice", found.add(rows.getMetaData().getId()));
+        }
+        return found;
+    }
+
+    private static Set<Integer> ids(IdCursor cursor) {
+        Set<Integer> ids = new HashSet<>();
+        while (cursor.next()) {
+            assertTrue("Row returned twice", ids.add(cursor.getId()));
+        }
+        return ids;
+    }
+
+    private Set<Integer> rowsWith(Object value) {
+        Set<Integer> rows = new HashSet<>();
+        for (int i = 0; i < expected.size(); i++) {
+            if (value.equals(expected.get(i))) {
+                rows.add(i + 1);
+            }
+        }
+        return rows;
+    }
+
+    @Test(timeout = 300000L)
+    public void testIntegerNullsApartFromPlaceholder() throws Exception {
+        List<Integer> data = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            data.add(i % 5 == 0 ? null : i % 3);
+        }
+        createColumn(Type.INTEGER, data);
+        Index hash = table.getIndex(table.createIndex("valHash", column.getMetaData().getId(), IndexType.HASH));
+        Index tree = table.getIndex(table.createIndex("valTree", column.getMetaData().getId(), IndexType.TREE));
+        checkNulls(Type.NULL_VALUE_INTEGER, hash, tree);
+
+        updateRow(1, 0);
+        updateRow(4, null);
+        updateRow(7, 2);
+        deleteRow(10);
+        checkNulls(Type.NULL_VALUE_INTEGER, hash, tree);
+    }
+
+    @Test(timeout = 300000L)
+    public void testDoubleNullsApartFromPlaceholder() throws Exception {
+        List<Double> data = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            data.add(i % 5 == 0 ? null : (i % 3) * 1.5);
+        }
+        createColumn(Type.DOUBLE, data);
+        Index hash = table.getIndex(table.createIndex("valHash", column.getMetaData().getId(), IndexType.HASH));
+        Index tree = table.getIndex(table.createIndex("valTree", column.getMetaData().getId(), IndexType.TREE));
+        checkNulls(Type.NULL_VALUE_DOUBLE, hash, tree);
+
+        updateRow(1, 0.0);
+        updateRow(4, null);
+        updateRow(7, 3.0);
+        deleteRow(10);
+        checkNulls(Type.NULL_VALUE_DOUBLE, hash, tree);
+    }
+
+    /**
+     * Checks the column and that scans and indexes find the rows holding the
+     * placeholder value, but none of the nulls.
+     */
+    private void checkNulls(Object placeholder, Index... indexes) throws Exception {
+        checkColumn();
+        Set<Integer> rows = rowsWith(placeholder);
+        assertFalse(rows.isEmpty());
+        assertEquals(rows, query(Operator.EQ, placeholder.toString()));
+        for (Index index : indexes) {
+            assertEquals(rows, ids(index.pointQueryRowIds(placeholder)));
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testChunkedListsAcrossChunks() throws Exception {
+        int size = ChunkedIntList.CHUNK_SIZE * 2 + 1000;
+        int[] ints = new int[size];
+        long[] longs = new long[size];
+        double[] doubles = new double[size];
+        Object[] strings = new Object[size];
+        for (int i = 0; i < size; i++) {
+            ints[i] = i * 7 - 5;
+            longs[i] = i * 1000L - 3;
+            doubles[i] = i / 4.0;
+            strings[i] = i % 9 == 0 ? null : "s" + i;
+        }
+
+        //single appends and bulk appends that start in the middle of a chunk
+        ChunkedIntList intList = new ChunkedIntList();
+        ChunkedLongList longList = new ChunkedLongList();
+        ChunkedDoubleList doubleList = new ChunkedDoubleList();
+        ChunkedList<Object> stringList = new ChunkedList<>();
+        int single = 100;
+        for (int i = 0; i < single; i++) {
+            intList.add(ints[i]);
+            longList.add(longs[i]);
+            doubleList.add(doubles[i]);
+            stringList.add(strings[i]);
+        }
+        intList.addAll(Arrays.copyOfRange(ints, single, size), size - single);
+        longList.addAll(Arrays.copyOfRange(longs, single, size), size - single);
+        doubleList.addAll(Arrays.copyOfRange(doubles, single, size), size - single);
+        stringList.addAll(Arrays.copyOfRange(strings, single, size), size - single);
+
+        assertEquals(3, intList.getChunkCount());
+        assertEquals(ChunkedIntList.CHUNK_SIZE, intList.chunkLength(1));
+        assertEquals(1000, intList.chunkLength(2));
+        assertEquals(size, intList.size());
+        assertEquals(size, longList.size());
+        assertEquals(size, doubleList.size());
+        assertEquals(size, stringList.size());
+        for (int i = 0; i < size; i++) {
+            assertEquals(ints[i], intList.get(i));
+            assertEquals(longs[i], longList.get(i));
+            assertEquals(doubles[i], doubleList.get(i), 0);
+            assertEquals(strings[i], stringList.get(i));
+        }
+
+        //copies spanning all three chunks
+        int from = ChunkedIntList.CHUNK_SIZE - 10;
+        int length = ChunkedIntList.CHUNK_SIZE + 20;
+        int[] intCopy = new int[length];
+        long[] longCopy = new long[length];
+        double[] doubleCopy = new double[length];
+        intList.copyTo(intCopy, from, length);
+        longList.copyTo(longCopy, from, length);
+        doubleList.copyTo(doubleCopy, from, length);
+        assertArrayEquals(Arrays.copyOfRange(ints, from, from + length), intCopy);
+        assertArrayEquals(Arrays.copyOfRange(longs, from, from + length), longCopy);
+        assertArrayEquals(Arrays.copyOfRange(doubles, from, from + length), doubleCopy, 0);
+
+        for (int index : new int[]{0, ChunkedIntList.CHUNK_SIZE - 1, ChunkedIntList.CHUNK_SIZE, size - 1}) {
+            assertEquals(ints[index], intList.set(index, -1));
+            assertEquals(-1, intList.get(index));
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testTableAcrossChunks() throws Exception {
+        List<Integer> data = new ArrayList<>();
+        for (int i = 0; i < ChunkedIntList.CHUNK_SIZE * 2 + 1000; i++) {
+            data.add(i % 1000 == 0 ? null : i);
+        }
+        createColumn(Type.INTEGER, data);
+        checkColumn();
+
+        updateRow(ChunkedIntList.CHUNK_SIZE, null);
+        updateRow(ChunkedIntList.CHUNK_SIZE + 1, -1);
+        updateRow(ChunkedIntList.CHUNK_SIZE * 2 + 1, 7);
+        deleteRow(ChunkedIntList.CHUNK_SIZE - 1);
+        deleteRow(data.size());
+        checkColumn();
+    }
+    @Test(timeout = 300000L)
+    public void testZoneMapsNeverPruneMatches() throws Exception {
+        //every block holds a range of values of its own, so most blocks can be skipped
+        List<Integer> data = new ArrayList<>();
+        for (int i = 0; i < ZoneMap.BLOCK_SIZE * 3; i++) {
+            data.add(i % 500 == 0 ? null : (i >>> ZoneMap.BLOCK_SHIFT) * 100000 + i % 1000);
+        }
+        createColumn(Type.INTEGER, data);
+        checkZones(-1, 0, 1, 999, 1000, 100000, 100500, 199999, 200999, 300000);
+
+        //values moved into the range of other blocks must still be found
+        updateRow(1, 200500);
+        updateRow(2, null);
+        updateRow(ZoneMap.BLOCK_SIZE * 2 + 2, -5);
+        updateRow(ZoneMap.BLOCK_SIZE + 2, 250000);
+        deleteRow(ZoneMap.BLOCK_SIZE * 2 + 3);
+        checkZones(-6, -5, 0, 1, 200500, 200501, 250000, 250001);
+    }
+
+    @Test(timeout = 300000L)
+    public void testZoneMapsOfDoubles() throws Exception {
+        List<Double> data = new ArrayList<>();
+        for (int i = 0; i < ZoneMap.BLOCK_SIZE + 5000; i++) {
+            double value = (i % 1000) / 8.0;
+            data.add(i % 700 == 0 ? null : i < ZoneMap.BLOCK_SIZE ? -value : value);
+        }
+        createColumn(Type.DOUBLE, data);
+        updateRow(ZoneMap.BLOCK_SIZE + 10, -0.0);
+        updateRow(3, 500.25);
+        checkZones(-124.875, -0.125, -0.0, 0.0, 0.125, 124.875, 500.25, 500.5);
+    }
+
+    /**
+     * Checks that every value lies within the range of its block and that
+     * range queries around the given literals find exactly the matching
+     * rows.
+     */
+    private void checkZones(Object... literals) throws Exception {
+        checkColumn();
+        ZoneMap zones = column.getZoneMap();
+        assertNotNull(zones);
+        for (int i = 0; i < expected.size(); i++) {
+            Object value = expected.get(i);
+            if (value != null) {
+                long key = value instanceof Double ? ZoneMap.doubleKey((Double) value) : (Integer) value;
+                assertTrue("Value outside the range of its block at " + i, zones.mayContain(i >>> ZoneMap.BLOCK_SHIFT, key, key));
+            }
+        }
+
+        for (Object literal : literals) {
+            for (Operator operator : Arrays.asList(Operator.EQ, Operator.LT, Operator.LEQ, Operator.GT, Operator.GEQ)) {
+                assertEquals(operator + " " + literal, rowsMatching(operator, ((Number) literal).doubleValue()), query(operator, literal.toString()));
+            }
+        }
+    }
+
+    private Set<Integer> rowsMatching(Operator operator, double literal) {
+        Set<Integer> rows = new HashSet<>();
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.get(i) == null) {
+                continue;
+            }
+            int cmp = Double.compare(((Number) expected.get(i)).doubleValue() + 0.0, literal + 0.0);
+            boolean match;
+            switch (operator) {
+                case EQ:
+                    match = cmp == 0;
+                    break;
+                case LT:
+                    match = cmp < 0;
+                    break;
+                case LEQ:
+                    match = cmp <= 0;
+                    break;
+                case GT:
+                    match = cmp > 0;
+                    break;
+                default:
+                    match = cmp >= 0;
+            }
+            if (match) {
+                rows.add(i + 1);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.storage.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.storage.*;
+import dbs_project.storageImpl.ColumnImpl;
+import dbs_project.storageImpl.TableImpl;
+import dbs_project.util.*;
+import dbs_project.utilImpl.ChunkedIntList;
+
+import org.apache.commons.collections.primitives.ArrayIntList;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for the typed views of columns: get, copyTo and forEach
+ * read the same values as getInteger, getDouble and getDate through every
+ * encoding, across chunks, with nulls and deleted rows read as the
+ * placeholders stored for them.
+ */
+public final class ColumnViewTest {
+
+    private static final int ROWS = ChunkedIntList.CHUNK_SIZE + 5000;
+    private static final long START = 1325376000000L;
+    private StorageLayer storage;
+    private TableImpl table;
+    private ExtendedColumn column;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        storage = DatabaseFactory.INSTANCE.createInstance().getStorageLayer();
+    }
+
+    /**
+     * Creates the table "values" with the single column "val" holding the
+     * given values, null entries are nulls. Every 19th row is deleted.
+     */
+    private void createColumn(Type type, List<?> data) throws Exception {
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("val", type);
+        table = (TableImpl) storage.getTable(storage.createTable("values", schema));
+        column = table.getColumn(table.getTableMetaData().getTableSchema().get("val").getId());
+        table.addRows(new SimpleRowCursor(Arrays.asList(column(data))));
+        for (int rowId = 19; rowId <= data.size(); rowId += 19) {
+            table.deleteRow(rowId);
+        }
+    }
+
+    private SimpleColumn column(List<?> data) {
+        return new SimpleColumn(data, column.getMetaData().getId(), "val", column.getMetaData().getType());
+    }
+
+    /**
+     * Updates a row on both sides of the first chunk boundary and appends
+     * rows, so the views are checked after writes as well.
+     */
+    private void changeRows(Object value) throws Exception {
+        ArrayIntList rowIds = new ArrayIntList();
+        rowIds.add(ChunkedIntList.CHUNK_SIZE);
+        rowIds.add(ChunkedIntList.CHUNK_SIZE + 1);
+        table.updateRows(IntIteratorWrapper.wrap(rowIds.iterator()), new SimpleRowCursor(Arrays.asList(column(Arrays.asList(value, null)))));
+        table.addRows(new SimpleRowCursor(Arrays.asList(column(Arrays.asList(null, value)))));
+    }
+
+    /**
+     * Returns the positions a copy starts at: the first row, a few rows
+     * before the chunk boundary so the copy spans it, and the last rows.
+     */
+    private int[] copyStarts(int length) {
+        int size = column.getMetaData().getRowCount();
+        return new int[]{0, ChunkedIntList.CHUNK_SIZE - length / 2, ChunkedIntList.CHUNK_SIZE, size - length};
+    }
+
+    private void checkIntView() {
+        final IntColumnView view = column.getIntView();
+        int size = column.getMetaData().getRowCount();
+        assertEquals(size, view.size());
+        for (int i = 0; i < size; i++) {
+            if (column.isNull(i)) {
+                assertEquals("Null read as a value at " + i, Type.NULL_VALUE_INTEGER, view.get(i));
+            }
+            assertEquals("View differs at " + i, column.getInteger(i), view.get(i));
+        }
+
+        int[] copy = new int[100];
+        for (int from : copyStarts(copy.length)) {
+            view.copyTo(copy, from, copy.length);
+            for (int i = 0; i < copy.length; i++) {
+                assertEquals("Copy differs at " + (from + i), column.getInteger(from + i), copy[i]);
+            }
+        }
+
+        final BitSet visited = new BitSet();
+        view.forEach(column.getValidRows(), new IntColumnView.Visitor() {
+
+            @Override
+            public void visit(int position, int value) {
+                assertFalse("Position visited twice", visited.get(position));
+                visited.set(position);
+                assertEquals(column.getInteger(position), value);
+            }
+        });
+        assertEquals(column.getValidRows(), visited);
+    }
+
+    private void checkDoubleView() {
+        DoubleColumnView view = column.getDoubleView();
+        int size = column.getMetaData().getRowCount();
+        assertEquals(size, view.size());
+        for (int i = 0; i < size; i++) {
+            if (column.isNull(i)) {
+                assertEquals("Null read as a value at " + i, Type.NULL_VALUE_DOUBLE, view.get(i), 0.0);
+            }
+            assertEquals("View differs at " + i, column.getDouble(i), view.get(i), 0.0);
+        }
+
+        double[] copy = new double[100];
+        for (int from : copyStarts(copy.length)) {
+            view.copyTo(copy, from, copy.length);
+            for (int i = 0; i < copy.length; i++) {
+                assertEquals("Copy differs at " + (from + i), column.getDouble(from + i), copy[i], 0.0);
+            }
+        }
+
+        final BitSet visited = new BitSet();
+        view.forEach(column.getValidRows(), new DoubleColumnView.Visitor() {
+
+            @Override
+            public void visit(int position, double value) {
+                assertFalse("Position visited twice", visited.get(position));
+                visited.set(position);
+                assertEquals(column.getDouble(position), value, 0.0);
+            }
+        });
+        assertEquals(column.getValidRows(), visited);
+    }
+
+    /**
+     * Returns the epoch millis getDate reads at a position, NULL_DATE for
+     * nulls.
+     */
+    private long time(int position) {
+        Date date = column.getDate(position);
+        return date == null ? ColumnImpl.NULL_DATE : date.getTime();
+    }
+
+    private void checkDateView() {
+        LongColumnView view = column.getDateView();
+        int size = column.getMetaData().getRowCount();
+        assertEquals(size, view.size());
+        for (int i = 0; i < size; i++) {
+            assertEquals("Null read as a value at " + i, column.isNull(i), view.get(i) == ColumnImpl.NULL_DATE);
+            assertEquals("View differs at " + i, time(i), view.get(i));
+        }
+
+        long[] copy = new long[100];
+        for (int from : copyStarts(copy.length)) {
+            view.copyTo(copy, from, copy.length);
+            for (int i = 0; i < copy.length; i++) {
+                assertEquals("Copy differs at " + (from + i), time(from + i), copy[i]);
+            }
+        }
+
+        final BitSet visited = new BitSet();
+        view.forEach(column.getValidRows(), new LongColumnView.Visitor() {
+
+            @Override
+            public void visit(int position, long value) {
+                assertFalse("Position visited twice", visited.get(position));
+                visited.set(position);
+                assertEquals(time(position), value);
+            }
+        });
+        assertEquals(column.getValidRows(), visited);
+    }
+
+    @Test(timeout = 300000L)
+    public void testIntViews() throws Exception {
+        List<Integer> data = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            //runs of three for run length encoding, negative values for bit packing
+            data.add(i % 11 == 0 ? null : (i / 3) % 500 - 100);
+        }
+        createColumn(Type.INTEGER, data);
+        checkIntView();
+
+        ColumnEncoding[] encodings = {ColumnEncoding.PLAIN, ColumnEncoding.RLE, ColumnEncoding.BIT_PACKED, ColumnEncoding.OFF_HEAP, ColumnEncoding.PLAIN};
+        for (ColumnEncoding encoding : encodings) {
+            column.setEncoding(encoding);
+            assertEquals(encoding, column.getEncoding());
+            checkIntView();
+        }
+
+        for (ColumnEncoding encoding : encodings) {
+            column.setEncoding(encoding);
+            changeRows(-7);
+            checkIntView();
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testDoubleViews() throws Exception {
+        List<Double> data = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            data.add(i % 11 == 0 ? null : i / 8.0 - 50);
+        }
+        createColumn(Type.DOUBLE, data);
+        checkDoubleView();
+
+        ColumnEncoding[] encodings = {ColumnEncoding.OFF_HEAP, ColumnEncoding.PLAIN};
+        for (ColumnEncoding encoding : encodings) {
+            column.setEncoding(encoding);
+            assertEquals(encoding, column.getEncoding());
+            checkDoubleView();
+            changeRows(-0.5);
+            checkDoubleView();
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testDateViews() throws Exception {
+        List<Date> data = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            data.add(i % 11 == 0 ? null : new Date(START + i * 1000L));
+        }
+        createColumn(Type.DATE, data);
+        checkDateView();
+
+        changeRows(new Date(START - 1000L));
+        checkDateView();
+    }
+
+    @Test(timeout = 300000L)
+    public void testViewsOfEmptyColumns() throws Exception {
+        createColumn(Type.INTEGER, Collections.emptyList());
+        assertEquals(0, column.getIntView().size());
+        column.getIntView().copyTo(new int[0], 0, 0);
+        column.getIntView().forEach(column.getValidRows(), new IntColumnView.Visitor() {
+
+            @Override
+            public void visit(int position, int value) {
+                fail("Empty column visited");
+            }
+        });
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.storage.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.index.Index;
+import dbs_project.index.IndexLayer;
+import dbs_project.index.IndexType;
+import dbs_project.persistenceImpl.PersistenceLayerimpl;
+import dbs_project.query.QueryLayer;
+import dbs_project.query.functional.Statements;
+import dbs_project.query.predicate.Operator;
+import dbs_project.query.predicate.impl.Constants;
+import dbs_project.query.predicate.impl.Expressions;
+import dbs_project.queryImpl.QueryLayerImpl;
+import dbs_project.storage.*;
+import dbs_project.storageImpl.StorageLayerImpl;
+import dbs_project.storageImpl.TableImpl;
+import dbs_project.util.*;
+
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for deleted rows: row ids stay the same until a table is
+ * compacted, compaction reports the old id of every row, new rows can take
+ * the slots of deleted ones, and indexes follow the ids.
+ */
+public final class CompactionTest {
+
+    private static final int ROWS = 1000;
+    private IndexLayer layer;
+    private TableImpl table;
+    private int keyId;
+    private int nameId;
+    private Index keyIndex;
+    //key of every live row by row id
+    private TreeMap<Integer, Integer> keys;
+    private int nextKey;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        layer = DatabaseFactory.INSTANCE.createInstance().getIndexLayer();
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("key", Type.INTEGER);
+        schema.put("name", Type.STRING);
+        table = (TableImpl) layer.getTable(layer.createTable("items", schema));
+        keyId = table.getTableMetaData().getTableSchema().get("key").getId();
+        nameId = table.getTableMetaData().getTableSchema().get("name").getId();
+        keyIndex = table.getIndex(table.createIndex("keyIdx", keyId, IndexType.HASH));
+        keys = new TreeMap<>();
+        nextKey = 0;
+    }
+
+    /**
+     * Adds rows with new keys, a key divisible by 7 has a null name. Returns
+     * the ids the table gave the rows.
+     */
+    private List<Integer> addRows(int count) throws Exception {
+        List<Integer> keyData = new ArrayList<>();
+        List<String> nameData = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keyData.add(nextKey);
+            nameData.add(name(nextKey));
+            nextKey++;
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        IdCursor added = table.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(keyData, keyId, "key", Type.INTEGER),
+                new SimpleColumn(nameData, nameId, "name", Type.STRING))));
+        for (int i = 0; added.next(); i++) {
+            assertNull("Id given to two rows", keys.put(added.getId(), keyData.get(i)));
+            ids.add(added.getId());
+        }
+        assertEquals(count, ids.size());
+        return ids;
+    }
+
+    private static String name(int key) {
+        return key % 7 == 0 ? null : "n" + key;
+    }
+
+    private void deleteRow(int rowId) throws Exception {
+        assertNotNull(keys.remove(rowId));
+        table.deleteRow(rowId);
+    }
+
+    /**
+     * Checks the values of every live row under its expected id, that the
+     * index finds every key under that id and that no other row is live.
+     */
+    private void checkRows() throws Exception {
+        assertEquals(keys.size(), table.getTableMetaData().getRowCount());
+        assertEquals(table.getTableMetaData().getRowCount() + table.getDeadRowCount(), table.getColumn(keyId).getMetaData().getRowCount());
+
+        Column key = table.getColumn(keyId);
+        Column name = table.getColumn(nameId);
+        for (Map.Entry<Integer, Integer> entry : keys.entrySet()) {
+            int pos = entry.getKey() - 1;
+            assertEquals("Row id changed", (int) entry.getValue(), key.getInteger(pos));
+            assertEquals(name(entry.getValue()), name.getString(pos));
+            assertEquals(name(entry.getValue()) == null, name.isNull(pos));
+
+            IdCursor found = keyIndex.pointQueryRowIds(entry.getValue());
+            assertTrue("Key not found in index", found.next());
+            assertEquals("Index returned a stale row id", (int) entry.getKey(), found.getId());
+            assertFalse(found.next());
+        }
+
+        RowCursor rows = table.getRows();
+        List<Integer> live = new ArrayList<>();
+        while (rows.next()) {
+            live.add(rows.getMetaData().getId());
+        }
+        assertEquals(new ArrayList<>(keys.keySet()), live);
+    }
+
+    @Test(timeout = 300000L)
+    public void testIdsStableUntilCompacted() throws Exception {
+        addRows(ROWS);
+        for (int rowId = 3; rowId <= ROWS; rowId += 3) {
+            deleteRow(rowId);
+        }
+        assertEquals(ROWS / 3, table.getDeadRowCount());
+        checkRows();
+
+        addRows(10);
+        assertEquals("Appended rows got the ids of deleted ones", ROWS + 10, (int) keys.lastKey());
+        checkRows();
+    }
+
+    @Test(timeout = 300000L)
+    public void testCompactRemapsIds() throws Exception {
+        addRows(ROWS);
+        for (int rowId = 1; rowId <= ROWS; rowId += 4) {
+            deleteRow(rowId);
+        }
+        deleteRow(ROWS);
+
+        IdCursor oldIds = table.compact();
+        TreeMap<Integer, Integer> compacted = new TreeMap<>();
+        int rowId = 1;
+        for (; oldIds.next(); rowId++) {
+            assertTrue("Deleted row kept by compaction", keys.containsKey(oldIds.getId()));
+            compacted.put(rowId, keys.get(oldIds.getId()));
+        }
+        assertEquals(keys.size(), compacted.size());
+        assertEquals("Old ids out of order", new ArrayList<>(keys.values()), new ArrayList<>(compacted.values()));
+        keys = compacted;
+
+        assertEquals(0, table.getDeadRowCount());
+        checkRows();
+        for (int deleted = 1; deleted <= ROWS; deleted += 4) {
+            assertFalse("Index kept a deleted key", keyIndex.pointQueryRowIds(deleted - 1).next());
+        }
+
+        assertEquals(rowId, (int) addRows(1).get(0));
+        checkRows();
+    }
+
+    @Test(timeout = 300000L)
+    public void testCompactionRatio() throws Exception {
+        addRows(ROWS);
+        table.setCompactionRatio(0.25);
+
+        //ids stay the same as long as the dead rows are at most a quarter of the stored ones
+        for (int rowId = 2; table.getDeadRowCount() < ROWS / 4; rowId += 2) {
+            deleteRow(rowId);
+        }
+        checkRows();
+
+        int liveBefore = keys.size();
+        List<Integer> left = new ArrayList<>(keys.values());
+        table.deleteRow(keys.lastKey());
+        left.remove(left.size() - 1);
+        assertEquals("Delete past the ratio did not compact", 0, table.getDeadRowCount());
+        assertEquals(liveBefore - 1, table.getTableMetaData().getRowCount());
+
+        keys = new TreeMap<>();
+        for (int i = 0; i < left.size(); i++) {
+            keys.put(i + 1, left.get(i));
+        }
+        checkRows();
+    }
+
+    @Test(timeout = 300000L)
+    public void testDeleteStatementCompactsOnce() throws Exception {
+        addRows(ROWS);
+        table.setCompactionRatio(0.1);
+
+        //the statement deletes far more rows than the ratio allows, the ids it found must stay valid until the last one is deleted
+        //persistence stays disabled, the statement writes no files
+        QueryLayer queries = new QueryLayerImpl(new PersistenceLayerimpl((StorageLayerImpl) layer, null));
+        int deleted = queries.executeDeleteRows(Statements.buildDeleteRowsStatement("items",
+                Expressions.createExpression(Operator.LT, Constants.createColumnNameConstant("key"), Constants.createLiteralConstant("300"))));
+        assertEquals(300, deleted);
+        assertEquals("Delete past the ratio did not compact", 0, table.getDeadRowCount());
+
+        List<Integer> left = new ArrayList<>();
+        for (int key : keys.values()) {
+            if (key >= 300) {
+                left.add(key);
+            }
+        }
+        keys = new TreeMap<>();
+        for (int i = 0; i < left.size(); i++) {
+            keys.put(i + 1, left.get(i));
+        }
+        checkRows();
+    }
+
+    @Test(timeout = 300000L)
+    public void testSlotReuse() throws Exception {
+        addRows(ROWS);
+        table.setSlotReuse(true);
+        deleteRow(500);
+        deleteRow(2);
+        deleteRow(ROWS - 1);
+        checkRows();
+
+        //lowest free slots first, then appended
+        assertEquals(Arrays.asList(2, 500, ROWS - 1, ROWS + 1, ROWS + 2), addRows(5));
+        assertEquals(0, table.getDeadRowCount());
+        checkRows();
+
+        //a single row takes a free slot too, and keeps its null
+        deleteRow(70);
+        int key = -7;
+        RowCursor row = new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList(key), keyId, "key", Type.INTEGER),
+                new SimpleColumn(Arrays.asList((String) null), nameId, "name", Type.STRING)));
+        assertTrue(row.next());
+        assertEquals(70, table.addRow(row));
+        keys.put(70, key);
+        checkRows();
+
+        //compaction after reuse keeps the rows in slot order
+        deleteRow(1);
+        deleteRow(ROWS + 1);
+        List<Integer> left = new ArrayList<>(keys.values());
+        IdCursor oldIds = table.compact();
+        List<Integer> compacted = new ArrayList<>();
+        while (oldIds.next()) {
+            compacted.add(keys.get(oldIds.getId()));
+        }
+        assertEquals(left, compacted);
+        keys = new TreeMap<>();
+        for (int i = 0; i < compacted.size(); i++) {
+            keys.put(i + 1, compacted.get(i));
+        }
+        checkRows();
+    }
+}
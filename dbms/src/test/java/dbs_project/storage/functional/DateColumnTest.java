@@ -0,0 +1,147 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.storage.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.query.predicate.Expression;
+import dbs_project.query.predicate.Operator;
+import dbs_project.query.predicate.impl.Constants;
+import dbs_project.query.predicate.impl.Expressions;
+import dbs_project.storage.*;
+import dbs_project.storageImpl.ColumnImpl;
+import dbs_project.storageImpl.RelationImpl;
+import dbs_project.util.*;
+
+import org.apache.commons.collections.primitives.ArrayIntList;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for DATE columns, which store epoch millis: dates and
+ * nulls read back unchanged and joins match dates of the same second.
+ */
+public final class DateColumnTest {
+
+    //a whole second, the dates below differ from it by a few millis
+    private static final long BASE = 1000000000000L;
+    private StorageLayer storage;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        storage = DatabaseFactory.INSTANCE.createInstance().getStorageLayer();
+    }
+
+    private Table createTable(String name, List<SimpleColumn> columns) throws Exception {
+        Map<String, Type> schema = new HashMap<>();
+        for (SimpleColumn column : columns) {
+            schema.put(column.getName(), column.getType());
+        }
+        Table table = storage.getTable(storage.createTable(name, schema));
+        table.addRows(new SimpleRowCursor(columns));
+        return table;
+    }
+
+    private static Date date(long offset) {
+        return new Date(BASE + offset);
+    }
+
+    @Test(timeout = 300000L)
+    public void testRoundTrip() throws Exception {
+        List<Date> dates = Arrays.asList(date(0), date(1), null, new Date(0), new Date(-86400001L), date(-999), null, new Date(Long.MAX_VALUE));
+        Table table = createTable("dates", Arrays.asList(new SimpleColumn(dates, 0, "d", Type.DATE)));
+        ExtendedColumn column = (ExtendedColumn) table.getColumn(table.getTableMetaData().getTableSchema().get("d").getId());
+        checkDates(dates, column);
+
+        //updates and deletes keep the other rows
+        List<Date> expected = new ArrayList<>(dates);
+        expected.set(0, null);
+        expected.set(2, date(42));
+        expected.set(5, null);
+        table.updateRows(ids(1, 3), new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList(null, date(42)), 0, "d", Type.DATE))));
+        table.deleteRow(6);
+        checkDates(expected, column);
+
+        table.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList(null, date(7)), 0, "d", Type.DATE))));
+        expected.addAll(Arrays.asList(null, date(7)));
+        checkDates(expected, column);
+    }
+
+    private static IdCursor ids(int... rowIds) {
+        ArrayIntList list = new ArrayIntList();
+        for (int rowId : rowIds) {
+            list.add(rowId);
+        }
+        return IntIteratorWrapper.wrap(list.iterator());
+    }
+
+    /**
+     * Checks every getter and the epoch view of the column against the
+     * expected dates, null entries are nulls.
+     */
+    private static void checkDates(List<Date> expected, ExtendedColumn column) {
+        LongColumnView view = column.getDateView();
+        assertEquals(expected.size(), view.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Date date = expected.get(i);
+            assertEquals("Null lost at " + i, date == null, column.isNull(i));
+            assertEquals(date, column.getDate(i));
+            assertEquals(date, column.getObject(i));
+            assertEquals(date == null ? ColumnImpl.NULL_DATE : date.getTime(), view.get(i));
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testJoinMatchesSeconds() throws Exception {
+        createTable("t0", Arrays.asList(new SimpleColumn(Arrays.asList(date(0), date(1500), null), 0, "d0", Type.DATE),
+                new SimpleColumn(Arrays.asList("x0", "x1", "x2"), 1, "name", Type.STRING)));
+        createTable("t1", Arrays.asList(new SimpleColumn(Arrays.asList(date(999), date(1000), date(2999), null), 0, "d1", Type.DATE),
+                new SimpleColumn(Arrays.asList(0, 1, 2, 3), 1, "b_id", Type.INTEGER)));
+        createTable("t2", Arrays.asList(new SimpleColumn(Arrays.asList(0, 1, 2, 3), 0, "c_id", Type.INTEGER)));
+
+        Expression join = Expressions.createExpression(Operator.AND,
+                Expressions.createExpression(Operator.EQ, Constants.createColumnNameConstant("d0"), Constants.createColumnNameConstant("d1")),
+                Expressions.createExpression(Operator.EQ, Constants.createColumnNameConstant("b_id"), Constants.createColumnNameConstant("c_id")));
+        RowCursor rows = new RelationImpl(storage, Arrays.asList("t0", "t1", "t2"), Arrays.asList("name", "b_id"), join).getRows();
+
+        Set<String> found = new HashSet<>();
+        while (rows.next()) {
+            assertTrue("Duplicate join row", found.add(rows.getString(0) + "/" + rows.getInteger(1)));
+        }
+        //same second joins, millis are ignored, nulls join with nulls
+        assertEquals(new HashSet<>(Arrays.asList("x0/0", "x1/1", "x2/3")), found);
+    }
+}
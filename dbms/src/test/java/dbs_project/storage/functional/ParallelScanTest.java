@@ -0,0 +1,267 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.storage.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.query.predicate.ExpressionElement;
+import dbs_project.query.predicate.Operator;
+import dbs_project.query.predicate.impl.Constants;
+import dbs_project.query.predicate.impl.Expressions;
+import dbs_project.storage.*;
+import dbs_project.storageImpl.RelationImpl;
+import dbs_project.util.*;
+import dbs_project.utilImpl.ZoneMap;
+
+import org.apache.commons.collections.primitives.ArrayIntList;
+import org.junit.*;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for parallel scans: with a low threshold every scan of a
+ * column over several zone map blocks runs on the scan pool, and finds the
+ * same rows as a row by row evaluation of the predicate.
+ */
+public final class ParallelScanTest {
+
+    static {
+        //read once when RelationImpl is loaded, each test class runs in its own JVM
+        System.setProperty("dbs.scan.threshold", "1024");
+        System.setProperty("dbs.scan.parallelism", "4");
+    }
+
+    private static final int ROWS = 3 * ZoneMap.BLOCK_SIZE + 1000;
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long START = 1325376000000L;
+    private StorageLayer storage;
+    //values of every row by position, nulls and deleted rows are null
+    private Integer[] ints;
+    private Double[] doubles;
+    private Date[] dates;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    /**
+     * Creates the table "values" over four blocks. The values of "a" grow
+     * with the block, so the zone maps skip some blocks of a scan and keep
+     * others. Every 13th row holds nulls, every 17th is deleted.
+     */
+    @Before
+    public void setUp() throws Exception {
+        storage = DatabaseFactory.INSTANCE.createInstance().getStorageLayer();
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("a", Type.INTEGER);
+        schema.put("b", Type.DOUBLE);
+        schema.put("d", Type.DATE);
+        Table table = storage.getTable(storage.createTable("values", schema));
+
+        ints = new Integer[ROWS];
+        doubles = new Double[ROWS];
+        dates = new Date[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            if (i % 13 != 0) {
+                ints[i] = (i / ZoneMap.BLOCK_SIZE) * 1000 + (i * 7919) % 1000;
+                doubles[i] = ints[i] / 4.0 - 100;
+                dates[i] = new Date(START + i * HOUR);
+            }
+        }
+
+        Map<String, ColumnMetaData> columns = table.getTableMetaData().getTableSchema();
+        table.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList(ints), columns.get("a").getId(), "a", Type.INTEGER),
+                new SimpleColumn(Arrays.asList(doubles), columns.get("b").getId(), "b", Type.DOUBLE),
+                new SimpleColumn(Arrays.asList(dates), columns.get("d").getId(), "d", Type.DATE))));
+
+        for (int i = 16; i < ROWS; i += 17) {
+            table.deleteRow(i + 1);
+            ints[i] = null;
+            doubles[i] = null;
+            dates[i] = null;
+        }
+    }
+
+    private static ExpressionElement compare(Operator operator, String column, Object literal) {
+        return Expressions.createExpression(operator, Constants.createColumnNameConstant(column), Constants.createLiteralConstant(literal.toString()));
+    }
+
+    private static String day(long time) {
+        return new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).format(new Date(time));
+    }
+
+    /**
+     * Returns the rows a query with the given predicate finds, by position.
+     */
+    private BitSet query(ExpressionElement predicate) throws Exception {
+        RowCursor rows = new RelationImpl(storage, Arrays.asList("values"), Arrays.asList("a"), predicate).getRows();
+        BitSet found = new BitSet();
+        while (rows.next()) {
+            int pos = rows.getMetaData().getId() - 1;
+            assertFalse("Row returned twice", found.get(pos));
+            found.set(pos);
+        }
+        return found;
+    }
+
+    /**
+     * Returns the positions whose value compares to the literal as the
+     * operator demands, nulls never match.
+     */
+    private static <T extends Comparable<T>> BitSet matching(T[] values, Operator operator, T literal) {
+        BitSet rows = new BitSet();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && matches(operator, values[i].compareTo(literal))) {
+                rows.set(i);
+            }
+        }
+        return rows;
+    }
+
+    private static boolean matches(Operator operator, int cmp) {
+        switch (operator) {
+            case EQ:
+                return cmp == 0;
+            case LT:
+                return cmp < 0;
+            case LEQ:
+                return cmp <= 0;
+            case GT:
+                return cmp > 0;
+            case GEQ:
+                return cmp >= 0;
+            default:
+                throw new IllegalArgumentException(operator.toString());
+        }
+    }
+
+    private static BitSet and(BitSet left, BitSet right) {
+        BitSet result = (BitSet) left.clone();
+        result.and(right);
+        return result;
+    }
+
+    private static BitSet or(BitSet left, BitSet right) {
+        BitSet result = (BitSet) left.clone();
+        result.or(right);
+        return result;
+    }
+
+    @Test(timeout = 300000L)
+    public void testIntegerComparisons() throws Exception {
+        //inside one block, across blocks, below and above all values, and the null placeholder
+        int[] literals = {1500, 2000, 2999, 3200, 500, -1, 3999, 0};
+        Operator[] operators = {Operator.EQ, Operator.LT, Operator.LEQ, Operator.GT, Operator.GEQ};
+        for (int literal : literals) {
+            for (Operator operator : operators) {
+                BitSet expected = matching(ints, operator, literal);
+                assertEquals(operator + " " + literal, expected, query(compare(operator, "a", literal)));
+            }
+        }
+        assertFalse(query(compare(Operator.EQ, "a", 1500)).isEmpty());
+    }
+
+    @Test(timeout = 300000L)
+    public void testDoubleComparisons() throws Exception {
+        double[] literals = {275.0, 275.1, 400.0, -100.0, -100.5, 900.0};
+        Operator[] operators = {Operator.EQ, Operator.LT, Operator.LEQ, Operator.GT, Operator.GEQ};
+        for (double literal : literals) {
+            for (Operator operator : operators) {
+                BitSet expected = matching(doubles, operator, literal);
+                assertEquals(operator + " " + literal, expected, query(compare(operator, "b", literal)));
+            }
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testDateComparisons() throws Exception {
+        long[] days = {START, START + 3000 * HOUR, START + (ROWS - 10) * HOUR, START + 2 * ROWS * HOUR};
+        Operator[] operators = {Operator.LT, Operator.LEQ, Operator.GT, Operator.GEQ};
+        for (long time : days) {
+            String literal = day(time);
+            Date parsed = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(literal);
+            for (Operator operator : operators) {
+                assertEquals(operator + " " + literal, matching(dates, operator, parsed), query(compare(operator, "d", literal)));
+            }
+
+            //a day matches all of its hours
+            Date next = new Date(parsed.getTime() + 24 * HOUR);
+            assertEquals("EQ " + literal, and(matching(dates, Operator.GEQ, parsed), matching(dates, Operator.LT, next)),
+                    query(compare(Operator.EQ, "d", literal)));
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testCombinedPredicates() throws Exception {
+        BitSet expected = and(matching(ints, Operator.GEQ, 1200), matching(doubles, Operator.LT, 400.0));
+        assertEquals(expected, query(Expressions.createExpression(Operator.AND, compare(Operator.GEQ, "a", 1200), compare(Operator.LT, "b", 400.0))));
+
+        expected = or(matching(ints, Operator.LT, 100), matching(ints, Operator.GT, 3900));
+        assertEquals(expected, query(Expressions.createExpression(Operator.OR, compare(Operator.LT, "a", 100), compare(Operator.GT, "a", 3900))));
+
+        Date cut = new SimpleDateFormat("MMMM d, yyyy", Locale.ENGLISH).parse(day(START + 100000 * HOUR));
+        expected = or(and(matching(ints, Operator.EQ, 2500), matching(dates, Operator.GT, cut)), matching(doubles, Operator.LEQ, -99.0));
+        assertEquals(expected, query(Expressions.createExpression(Operator.OR,
+                Expressions.createExpression(Operator.AND, compare(Operator.EQ, "a", 2500), compare(Operator.GT, "d", day(START + 100000 * HOUR))),
+                compare(Operator.LEQ, "b", -99.0))));
+    }
+
+    @Test(timeout = 300000L)
+    public void testScansAfterChanges() throws Exception {
+        Table table = storage.getTable(storage.getDatabaseSchema().get("values").getId());
+        Map<String, ColumnMetaData> columns = table.getTableMetaData().getTableSchema();
+
+        //updates inside blocks the zone maps skipped so far, and deletes next to them
+        List<Integer> changed = Arrays.asList(5, ZoneMap.BLOCK_SIZE + 70, 3 * ZoneMap.BLOCK_SIZE + 5);
+        for (int pos : changed) {
+            if (ints[pos] == null) {
+                continue;
+            }
+            ArrayIntList rowIds = new ArrayIntList();
+            rowIds.add(pos + 1);
+            table.updateRows(IntIteratorWrapper.wrap(rowIds.iterator()), new SimpleRowCursor(Arrays.asList(
+                    new SimpleColumn(Arrays.asList(5000), columns.get("a").getId(), "a", Type.INTEGER),
+                    new SimpleColumn(Arrays.asList(doubles[pos]), columns.get("b").getId(), "b", Type.DOUBLE),
+                    new SimpleColumn(Arrays.asList(dates[pos]), columns.get("d").getId(), "d", Type.DATE))));
+            ints[pos] = 5000;
+        }
+        for (int pos = 6; pos < ROWS; pos += ZoneMap.BLOCK_SIZE) {
+            if (ints[pos] != null) {
+                table.deleteRow(pos + 1);
+                ints[pos] = null;
+            }
+        }
+
+        assertEquals(matching(ints, Operator.EQ, 5000), query(compare(Operator.EQ, "a", 5000)));
+        assertEquals(matching(ints, Operator.GT, 3000), query(compare(Operator.GT, "a", 3000)));
+        assertEquals(matching(ints, Operator.LT, 1000), query(compare(Operator.LT, "a", 1000)));
+    }
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.storage.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.exceptions.NoSuchColumnException;
+import dbs_project.exceptions.SchemaMismatchException;
+import dbs_project.query.predicate.Expression;
+import dbs_project.query.predicate.Operator;
+import dbs_project.query.predicate.impl.Constants;
+import dbs_project.query.predicate.impl.Expressions;
+import dbs_project.storage.*;
+import dbs_project.storageImpl.PartitionedTableImpl;
+import dbs_project.storageImpl.RelationImpl;
+import dbs_project.storageImpl.TableMetaDataImpl;
+import dbs_project.util.*;
+
+import org.apache.commons.collections.primitives.ArrayIntList;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for partitioned tables: rows are routed by hash and
+ * range, updates and deletes reach the right partition, column loads and
+ * updates are split over the partitions, joins and batch cursors read all
+ * partitions.
+ */
+public final class PartitionedTableTest {
+
+    private StorageLayer storage;
+    private PartitionedTableImpl table;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        storage = DatabaseFactory.INSTANCE.createInstance().getStorageLayer();
+    }
+
+    /**
+     * Range partitions of uneven size, keys 0 to 4 go to the first and keys
+     * 5 to 14 to the second partition. Row ids 11 to 19 of the first one
+     * are gaps. Returns the key of every row id.
+     */
+    private Map<Integer, Integer> createRangeTable() throws Exception {
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("k", Type.INTEGER);
+        schema.put("v", Type.STRING);
+        table = (PartitionedTableImpl) storage.getTable(storage.createTable("ranged", schema, PartitionSpec.range("k", 5)));
+
+        List<Integer> keys = new ArrayList<>();
+        List<String> vals = new ArrayList<>();
+        for (int k = 0; k < 15; k++) {
+            keys.add(k);
+            vals.add("v" + k);
+        }
+        IdCursor ids = table.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(keys, columnId(table, "k"), "k", Type.INTEGER),
+                new SimpleColumn(vals, columnId(table, "v"), "v", Type.STRING))));
+
+        Map<Integer, Integer> rows = new HashMap<>();
+        for (int k = 0; ids.next(); k++) {
+            rows.put(ids.getId(), k);
+        }
+        return rows;
+    }
+
+    private static int columnId(Table table, String name) {
+        return table.getTableMetaData().getTableSchema().get(name).getId();
+    }
+
+    @Test(timeout = 300000L)
+    public void testAddColumnSplitsByRowId() throws Exception {
+        Map<Integer, Integer> rows = createRangeTable();
+
+        int bound = table.getColumn(columnId(table, "k")).getMetaData().getRowCount();
+        assertEquals(20, bound);
+
+        List<Integer> data = new ArrayList<>();
+        for (int i = 0; i < bound; i++) {
+            data.add(i % 7 == 0 ? null : i * 100);
+        }
+        int columnId = table.addColumn(new SimpleColumn(data, -1, "added", Type.INTEGER));
+
+        Column added = table.getColumn(columnId);
+        for (int rowId : rows.keySet()) {
+            assertEquals("Null at row " + rowId, data.get(rowId - 1) == null, added.isNull(rowId - 1));
+            if (data.get(rowId - 1) != null) {
+                assertEquals((int) data.get(rowId - 1), added.getInteger(rowId - 1));
+            }
+            assertEquals((int) rows.get(rowId), table.getColumn(columnId(table, "k")).getInteger(rowId - 1));
+        }
+
+        try {
+            table.addColumn(new SimpleColumn(data.subList(0, bound - 1), -1, "short", Type.INTEGER));
+            fail("A column without a value for every row id was added");
+        } catch (SchemaMismatchException ex) {
+            //expected
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testUpdateKeyColumnMovesRows() throws Exception {
+        Map<Integer, Integer> rows = createRangeTable();
+        int keyId = columnId(table, "k");
+        int valId = columnId(table, "v");
+
+        //keys of the second partition drop below the bound and the other way round
+        int bound = table.getColumn(keyId).getMetaData().getRowCount();
+        List<Integer> newKeys = new ArrayList<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < bound; i++) {
+            Integer old = rows.get(i + 1);
+            Integer key = old == null ? null : (old + 8) % 15;
+            newKeys.add(key);
+            if (key != null) {
+                expected.put("v" + old, key);
+            }
+        }
+        table.updateColumn(keyId, new SimpleColumn(newKeys, keyId, "k", Type.INTEGER));
+
+        assertEquals(15, table.getTableMetaData().getRowCount());
+        Map<String, Integer> found = new HashMap<>();
+        RowCursor cursor = table.getRows();
+        while (cursor.next()) {
+            int rowId = cursor.getMetaData().getId();
+            int key = table.getColumn(keyId).getInteger(rowId - 1);
+            found.put(table.getColumn(valId).getString(rowId - 1), key);
+            assertEquals("Row " + rowId + " is in the wrong partition", table.partitionOf(key), table.partitionOfRow(rowId));
+        }
+        assertEquals(expected, found);
+    }
+
+    @Test(timeout = 300000L)
+    public void testDropKeyColumnRejected() throws Exception {
+        createRangeTable();
+
+        try {
+            table.dropColumn(columnId(table, "k"));
+            fail("The partitioning column was dropped");
+        } catch (NoSuchColumnException ex) {
+            //expected
+        }
+        assertNotNull(table.getTableMetaData().getTableSchema().get("k"));
+
+        table.dropColumn(columnId(table, "v"));
+        assertNull(table.getTableMetaData().getTableSchema().get("v"));
+    }
+
+    @Test(timeout = 300000L)
+    public void testJoinOverPartitionedTable() throws Exception {
+        Map<Integer, Integer> rows = createRangeTable();
+        for (Map.Entry<Integer, Integer> entry : rows.entrySet()) {
+            if (entry.getValue() == 6) {
+                table.deleteRow(entry.getKey());
+            }
+        }
+
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("b_k", Type.INTEGER);
+        schema.put("b_c", Type.INTEGER);
+        Table b = storage.getTable(storage.createTable("b", schema));
+        schema.clear();
+        schema.put("c_id", Type.INTEGER);
+        schema.put("c_val", Type.STRING);
+        Table c = storage.getTable(storage.createTable("c", schema));
+
+        List<Integer> bKeys = new ArrayList<>();
+        List<Integer> bRefs = new ArrayList<>();
+        for (int k = 0; k < 20; k++) {
+            bKeys.add(k);
+            bRefs.add(k * 10);
+        }
+        b.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(bKeys, columnId(b, "b_k"), "b_k", Type.INTEGER),
+                new SimpleColumn(bRefs, columnId(b, "b_c"), "b_c", Type.INTEGER))));
+
+        List<Integer> cIds = new ArrayList<>();
+        List<String> cVals = new ArrayList<>();
+        for (int k = 0; k < 20; k += 2) {
+            cIds.add(k * 10);
+            cVals.add("c" + k);
+        }
+        c.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(cIds, columnId(c, "c_id"), "c_id", Type.INTEGER),
+                new SimpleColumn(cVals, columnId(c, "c_val"), "c_val", Type.STRING))));
+
+        Expression join = Expressions.createExpression(Operator.AND,
+                Expressions.createExpression(Operator.EQ, Constants.createColumnNameConstant("k"), Constants.createColumnNameConstant("b_k")),
+                Expressions.createExpression(Operator.EQ, Constants.createColumnNameConstant("b_c"), Constants.createColumnNameConstant("c_id")));
+        RowCursor result = new RelationImpl(storage, Arrays.asList("ranged", "b", "c"), Arrays.asList("v", "c_val"), join).getRows();
+
+        Set<String> expected = new HashSet<>();
+        for (int k = 0; k < 15; k += 2) {
+            if (k != 6) {
+                expected.add("v" + k + "/c" + k);
+            }
+        }
+        Set<String> found = new HashSet<>();
+        while (result.next()) {
+            assertTrue("Duplicate join row", found.add(result.getString(0) + "/" + result.getString(1)));
+        }
+        assertEquals(expected, found);
+    }
+
+    @Test(timeout = 300000L)
+    public void testBatchesOverPartitions() throws Exception {
+        Map<Integer, Integer> rows = createRangeTable();
+        for (Map.Entry<Integer, Integer> entry : rows.entrySet()) {
+            if (entry.getValue() % 4 == 1) {
+                table.deleteRow(entry.getKey());
+            }
+        }
+
+        Expression predicate = Expressions.createExpression(Operator.GT, Constants.createColumnNameConstant("k"), Constants.createLiteralConstant("2"));
+        RowBatchCursor batches = new RelationImpl(storage, Arrays.asList("ranged"), Arrays.asList("k", "v"), predicate).getRowBatches(3);
+
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : rows.entrySet()) {
+            if (entry.getValue() > 2 && entry.getValue() % 4 != 1) {
+                expected.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Map<Integer, Integer> found = new HashMap<>();
+        while (batches.next()) {
+            int[] keys = batches.getIntVector(0);
+            Object[] vals = batches.getObjectVector(1);
+            int[] selection = batches.getSelection();
+            for (int i = 0; i < batches.getSelectedCount(); i++) {
+                int position = selection[i];
+                assertEquals("v" + keys[position], vals[position]);
+                assertNull(found.put(batches.getRowId(position), keys[position]));
+            }
+        }
+        assertEquals(expected, found);
+    }
+
+    @Test(timeout = 300000L)
+    public void testHashRouting() throws Exception {
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("k", Type.INTEGER);
+        table = (PartitionedTableImpl) storage.getTable(storage.createTable("hashed", schema, PartitionSpec.hash("k", 4)));
+        int keyId = columnId(table, "k");
+
+        List<Integer> keys = new ArrayList<>();
+        for (int k = -50; k < 50; k++) {
+            keys.add(k * 7);
+        }
+        keys.add(null);
+        IdCursor ids = table.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(keys, keyId, "k", Type.INTEGER))));
+
+        int[] counts = new int[4];
+        for (Integer key : keys) {
+            assertTrue(ids.next());
+            int rowId = ids.getId();
+            assertEquals("Key " + key + " in the wrong partition", table.getSpec().partitionOf(key), table.partitionOfRow(rowId));
+            assertEquals(key == null, table.getColumn(keyId).isNull(rowId - 1));
+            if (key != null) {
+                assertEquals((int) key, table.getColumn(keyId).getInteger(rowId - 1));
+            }
+            counts[table.partitionOfRow(rowId)]++;
+        }
+        assertFalse(ids.next());
+
+        for (int p = 0; p < counts.length; p++) {
+            assertTrue("Partition " + p + " got no rows", counts[p] > 0);
+            assertEquals(counts[p], table.getPartition(p).getTableMetaData().getRowCount());
+        }
+        assertEquals(keys.size(), table.getTableMetaData().getRowCount());
+    }
+
+    @Test(timeout = 300000L)
+    public void testRangeRouting() throws Exception {
+        Map<String, Type> schema = new HashMap<>();
+        schema.put("k", Type.INTEGER);
+        table = (PartitionedTableImpl) storage.getTable(storage.createTable("ranges", schema, PartitionSpec.range("k", 10, 20)));
+        int keyId = columnId(table, "k");
+
+        List<Integer> keys = new ArrayList<>();
+        for (int k = 29; k >= -5; k--) {
+            keys.add(k);
+        }
+        IdCursor ids = table.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(keys, keyId, "k", Type.INTEGER))));
+        for (int key : keys) {
+            assertTrue(ids.next());
+            assertEquals("Key " + key + " in the wrong partition", key < 10 ? 0 : key < 20 ? 1 : 2, table.partitionOfRow(ids.getId()));
+        }
+
+        Expression predicate = Expressions.createExpression(Operator.AND,
+                Expressions.createExpression(Operator.GEQ, Constants.createColumnNameConstant("k"), Constants.createLiteralConstant("10")),
+                Expressions.createExpression(Operator.LT, Constants.createColumnNameConstant("k"), Constants.createLiteralConstant("20")));
+        RowCursor result = new RelationImpl(storage, Arrays.asList("ranges"), Arrays.asList("k"), predicate).getRows();
+        Set<Integer> found = new HashSet<>();
+        while (result.next()) {
+            assertEquals(1, table.partitionOfRow(result.getMetaData().getId()));
+            found.add(result.getInteger(0));
+        }
+        assertEquals(10, found.size());
+        for (int k = 10; k < 20; k++) {
+            assertTrue(found.contains(k));
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testUpdateAcrossPartitions() throws Exception {
+        Map<Integer, Integer> rows = createRangeTable();
+        int keyId = columnId(table, "k");
+        int valId = columnId(table, "v");
+
+        int rowId = 0;
+        for (Map.Entry<Integer, Integer> entry : rows.entrySet()) {
+            if (entry.getValue() == 2) {
+                rowId = entry.getKey();
+            }
+        }
+        assertTrue(liveRows().get(rowId - 1));
+
+        SimpleRowCursor newRow = new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList(12), keyId, "k", Type.INTEGER),
+                new SimpleColumn(Arrays.asList("moved"), valId, "v", Type.STRING)));
+        assertTrue(newRow.next());
+        table.updateRow(rowId, newRow);
+
+        BitSet after = liveRows();
+        assertFalse("The old id of a moved row is still live", after.get(rowId - 1));
+        assertEquals(15, table.getTableMetaData().getRowCount());
+        assertEquals(15, after.cardinality());
+
+        int movedId = -1;
+        for (int row = after.nextSetBit(0); row >= 0; row = after.nextSetBit(row + 1)) {
+            if ("moved".equals(table.getColumn(valId).getString(row))) {
+                assertEquals("Row moved twice", -1, movedId);
+                movedId = row + 1;
+            }
+        }
+        assertEquals(1, table.partitionOfRow(movedId));
+        assertEquals(12, table.getColumn(keyId).getInteger(movedId - 1));
+
+        //a row updated within its partition keeps its id
+        int stayId = 0;
+        for (Map.Entry<Integer, Integer> entry : rows.entrySet()) {
+            if (entry.getValue() == 7) {
+                stayId = entry.getKey();
+            }
+        }
+        newRow = new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList(9), keyId, "k", Type.INTEGER),
+                new SimpleColumn(Arrays.asList("stayed"), valId, "v", Type.STRING)));
+        assertTrue(newRow.next());
+        table.updateRow(stayId, newRow);
+        assertEquals("stayed", table.getColumn(valId).getString(stayId - 1));
+        assertEquals(9, table.getColumn(keyId).getInteger(stayId - 1));
+    }
+
+    @Test(timeout = 300000L)
+    public void testDeleteAcrossPartitions() throws Exception {
+        Map<Integer, Integer> rows = createRangeTable();
+
+        BitSet live = liveRows();
+        assertSame("Live rows are merged again without a change", live, liveRows());
+        assertEquals(15, live.cardinality());
+        for (int rowId = 11; rowId < 20; rowId += 2) {
+            assertFalse("Gap " + rowId + " is live", live.get(rowId - 1));
+        }
+
+        ArrayIntList deleted = new ArrayIntList();
+        for (Map.Entry<Integer, Integer> entry : rows.entrySet()) {
+            if (entry.getValue() % 3 == 0) {
+                deleted.add(entry.getKey());
+            }
+        }
+        table.deleteRows(IntIteratorWrapper.wrap(deleted.iterator()));
+
+        BitSet after = liveRows();
+        assertNotSame("Live rows kept after a delete", live, after);
+        assertEquals(10, after.cardinality());
+        assertEquals(10, table.getTableMetaData().getRowCount());
+        for (int rowId : rows.keySet()) {
+            assertEquals("Row " + rowId, !deleted.contains(rowId), after.get(rowId - 1));
+        }
+
+        RowCursor cursor = table.getRows();
+        int count = 0;
+        while (cursor.next()) {
+            assertTrue(rows.get(cursor.getMetaData().getId()) % 3 != 0);
+            count++;
+        }
+        assertEquals(10, count);
+    }
+
+    private BitSet liveRows() {
+        return ((TableMetaDataImpl) table.getTableMetaData()).getDeleteList();
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright(c) 2012 Saarland University - Information Systems Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dbs_project.storage.functional;
+
+import dbs_project.database.DatabaseFactory;
+import dbs_project.index.Index;
+import dbs_project.index.IndexType;
+import dbs_project.exceptions.SchemaMismatchException;
+import dbs_project.query.predicate.Operator;
+import dbs_project.query.predicate.impl.Constants;
+import dbs_project.query.predicate.impl.Expressions;
+import dbs_project.storage.*;
+import dbs_project.storageImpl.RelationImpl;
+import dbs_project.storageImpl.RowBatchCursorImpl;
+import dbs_project.storageImpl.RowImpl;
+import dbs_project.storageImpl.SchemaSnapshot;
+import dbs_project.storageImpl.TableImpl;
+import dbs_project.util.*;
+import dbs_project.utilImpl.ChunkedIntList;
+
+import org.apache.commons.collections.primitives.ArrayIntList;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests for reading and loading whole rows: batches, row views,
+ * query results and bulk loads see the same values and nulls as the
+ * columns, and the schema snapshot follows column changes.
+ */
+public final class RowAccessTest {
+
+    //spans two chunks of the column vectors
+    private static final int ROWS = ChunkedIntList.CHUNK_SIZE + 4000;
+    private static final long BASE = 1000000000000L;
+    private static final String[] COLUMNS = {"id", "score", "born", "active", "name", "note"};
+    private static final Type[] TYPES = {Type.INTEGER, Type.DOUBLE, Type.DATE, Type.BOOLEAN, Type.STRING, Type.STRING};
+    private StorageLayer storage;
+    private TableImpl table;
+    //row ids of the rows that are not deleted
+    private BitSet live;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Utils.redirectStreams();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        Utils.revertStreams();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        storage = DatabaseFactory.INSTANCE.createInstance().getStorageLayer();
+    }
+
+    /**
+     * Expected value of a column in the row with the given id, null for a
+     * null. The name column has few distinct values and is dictionary
+     * encoded, the note column is not.
+     */
+    private static Object value(String column, int rowId) {
+        switch (column) {
+            case "id":
+                return rowId;
+            case "score":
+                return rowId % 10 == 0 ? null : rowId * 0.5;
+            case "born":
+                return rowId % 15 == 0 ? null : new Date(BASE + rowId * 1001L);
+            case "active":
+                return rowId % 6 == 0 ? null : rowId % 4 == 0;
+            case "name":
+                return rowId % 9 == 0 ? null : "name" + rowId % 20;
+            default:
+                return rowId % 11 == 0 ? null : "note" + rowId;
+        }
+    }
+
+    private static SimpleColumn column(String name, Type type, int from, int to) {
+        List<Object> data = new ArrayList<>();
+        for (int rowId = from; rowId <= to; rowId++) {
+            data.add(value(name, rowId));
+        }
+        return new SimpleColumn(data, Arrays.asList(COLUMNS).indexOf(name), name, type);
+    }
+
+    private static SimpleRowCursor rows(int from, int to, int... columns) {
+        List<SimpleColumn> cols = new ArrayList<>();
+        for (int c : columns) {
+            cols.add(column(COLUMNS[c], TYPES[c], from, to));
+        }
+        return new SimpleRowCursor(cols);
+    }
+
+    private TableImpl createTable(String name) throws Exception {
+        Map<String, Type> schema = new HashMap<>();
+        for (int c = 0; c < COLUMNS.length; c++) {
+            schema.put(COLUMNS[c], TYPES[c]);
+        }
+        return (TableImpl) storage.getTable(storage.createTable(name, schema));
+    }
+
+    /**
+     * Loads ROWS rows and deletes every seventh.
+     */
+    private void createPeople() throws Exception {
+        table = createTable("people");
+        table.addRows(rows(1, ROWS, 0, 1, 2, 3, 4, 5));
+        live = new BitSet();
+        live.set(1, ROWS + 1);
+        for (int rowId = 7; rowId <= ROWS; rowId += 7) {
+            table.deleteRow(rowId);
+            live.clear(rowId);
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testBatchesMatchColumns() throws Exception {
+        createPeople();
+        SchemaSnapshot schema = table.getSchema();
+        int name = schema.indexOf("name");
+        int note = schema.indexOf("note");
+
+        for (int batchSize : new int[]{1, 7, RowBatchCursorImpl.DEFAULT_BATCH_SIZE, ROWS * 2}) {
+            RowBatchCursor batches = table.getRowBatches(batchSize);
+            assertEquals(COLUMNS.length, batches.getColumnCount());
+            assertTrue(batches.isDictionaryEncoded(name));
+            assertFalse(batches.isDictionaryEncoded(note));
+
+            BitSet seen = new BitSet();
+            int lastId = 0;
+            while (batches.next()) {
+                assertTrue(batches.getLength() <= batchSize);
+                int[] selection = batches.getSelection();
+                int[] codes = batches.getCodeVector(name);
+                for (int i = 0; i < batches.getSelectedCount(); i++) {
+                    int pos = selection[i];
+                    int rowId = batches.getRowId(pos);
+                    assertTrue("Row ids out of order", rowId > lastId);
+                    assertTrue("Deleted row selected", live.get(rowId));
+                    lastId = rowId;
+                    seen.set(rowId);
+
+                    for (int c = 0; c < COLUMNS.length; c++) {
+                        String column = batches.getColumnMetaData(c).getName();
+                        Object expected = value(column, rowId);
+                        assertEquals(column + " of row " + rowId, expected == null, batches.isNull(c, pos));
+                        if (expected != null) {
+                            assertEquals(column + " of row " + rowId, expected, vectorValue(batches, c, pos));
+                        }
+                    }
+                    if (value("name", rowId) != null) {
+                        assertEquals(value("name", rowId), batches.decode(name, codes[pos]));
+                    }
+                }
+            }
+            assertEquals("Rows missing from the batches", live, seen);
+            batches.close();
+        }
+    }
+
+    private static Object vectorValue(RowBatchCursor batches, int column, int pos) {
+        switch (batches.getColumnMetaData(column).getType()) {
+            case INTEGER:
+                return batches.getIntVector(column)[pos];
+            case DOUBLE:
+                return batches.getDoubleVector(column)[pos];
+            case DATE:
+                return new Date(batches.getDateVector(column)[pos]);
+            case BOOLEAN:
+                return batches.getBooleanVector(column)[pos];
+            default:
+                return batches.getObjectVector(column)[pos];
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testRowViews() throws Exception {
+        createPeople();
+        SchemaSnapshot schema = table.getSchema();
+        int[] rowIds = {1, 2, 9, 10, 15, 66, ChunkedIntList.CHUNK_SIZE, ChunkedIntList.CHUNK_SIZE + 1, ROWS};
+
+        for (int rowId : rowIds) {
+            Row row = table.getRow(rowId);
+            assertEquals(rowId, row.getMetaData().getId());
+            checkRow(row, rowId, schema.getColumnMetaData());
+        }
+
+        //projections visit the rows in id order, whatever order the ids come in
+        ArrayIntList ids = new ArrayIntList();
+        for (int i = rowIds.length - 1; i >= 0; i--) {
+            ids.add(rowIds[i]);
+        }
+        RowCursor rows = table.getRows(IntIteratorWrapper.wrap(ids.iterator()));
+        for (int rowId : rowIds) {
+            assertTrue(rows.next());
+            assertEquals(rowId, rows.getMetaData().getId());
+            checkRow(rows, rowId, schema.getColumnMetaData());
+        }
+        assertFalse(rows.next());
+
+        //a view reads the values when it is asked for them
+        Row view = table.getRow(3);
+        ArrayIntList updated = new ArrayIntList();
+        updated.add(3);
+        table.updateRows(IntIteratorWrapper.wrap(updated.iterator()), new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList((Object) null), 1, "score", Type.DOUBLE))));
+        assertTrue(view.isNull(schema.indexOf("score")));
+        assertNull(view.getObject(schema.indexOf("score")));
+    }
+
+    /**
+     * Checks a row against the expected values. Every getter must return
+     * what a RowImpl holding the expected values returns, or fail the same
+     * way.
+     */
+    private static void checkRow(Row row, int rowId, ColumnMetaData[] metaData) {
+        Object[] values = new Object[metaData.length];
+        for (int c = 0; c < metaData.length; c++) {
+            values[c] = value(metaData[c].getName(), rowId);
+        }
+        Row reference = new RowImpl(values, rowId, metaData);
+
+        for (int c = 0; c < metaData.length; c++) {
+            String column = metaData[c].getName() + " of row " + rowId;
+            assertEquals(column, values[c] == null, row.isNull(c));
+            assertEquals(column, values[c], row.getObject(c));
+            if (values[c] == null) {
+                continue;
+            }
+            for (int getter = 0; getter < 5; getter++) {
+                assertEquals(column + ", getter " + getter, read(reference, c, getter), read(row, c, getter));
+            }
+        }
+    }
+
+    /**
+     * Returns the value of one of the typed getters, or the class of the
+     * exception it throws.
+     */
+    private static Object read(Row row, int column, int getter) {
+        try {
+            switch (getter) {
+                case 0:
+                    return row.getInteger(column);
+                case 1:
+                    return row.getDouble(column);
+                case 2:
+                    return row.getBoolean(column);
+                case 3:
+                    return row.getDate(column);
+                default:
+                    return row.getString(column);
+            }
+        } catch (RuntimeException ex) {
+            return ex.getClass();
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testBulkLoadMatchesRowByRow() throws Exception {
+        int count = 10000;
+        TableImpl bulk = createTable("bulk");
+        TableImpl single = createTable("single");
+        Index index = bulk.getIndex(bulk.createIndex("idIdx", bulk.getSchema().getColumn("id").getMetaData().getId(), IndexType.HASH));
+
+        //columns in another order than the table's, loaded in parallel
+        IdCursor ids = bulk.addRows(rows(1, count, 5, 3, 0, 1, 4, 2), 4);
+        for (int rowId = 1; rowId <= count; rowId++) {
+            assertTrue(ids.next());
+            assertEquals(rowId, ids.getId());
+        }
+        assertFalse(ids.next());
+
+        RowCursor rows = rows(1, count, 0, 1, 2, 3, 4, 5);
+        while (rows.next()) {
+            single.addRow(rows);
+        }
+
+        //columns the rows do not have get nulls
+        bulk.addRows(rows(count + 1, count + 10, 4, 0));
+        assertEquals(count + 10, bulk.getTableMetaData().getRowCount());
+
+        SchemaSnapshot schema = bulk.getSchema();
+        for (int rowId = 1; rowId <= count + 10; rowId++) {
+            for (ExtendedColumn column : schema.getColumns()) {
+                String name = column.getMetaData().getName();
+                Object expected = rowId <= count || name.equals("id") || name.equals("name") ? value(name, rowId) : null;
+                assertEquals(name + " of row " + rowId, expected, column.getObject(rowId - 1));
+                assertEquals(name + " of row " + rowId, expected == null, column.isNull(rowId - 1));
+                if (rowId <= count) {
+                    assertEquals(expected, single.getSchema().getColumn(name).getObject(rowId - 1));
+                }
+            }
+            IdCursor found = index.pointQueryRowIds(rowId);
+            assertTrue("Index misses a loaded row", found.next());
+            assertEquals(rowId, found.getId());
+        }
+
+        try {
+            bulk.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList(1), 0, "unknown", Type.INTEGER))));
+            fail("Rows with an unknown column were loaded");
+        } catch (SchemaMismatchException ex) {
+            assertEquals(count + 10, bulk.getTableMetaData().getRowCount());
+            assertEquals(count + 10, schema.getColumn("id").getMetaData().getRowCount());
+        }
+    }
+
+    @Test(timeout = 300000L)
+    public void testSchemaSnapshot() throws Exception {
+        table = createTable("people");
+        table.addRows(rows(1, 100, 0, 1, 2, 3, 4, 5));
+
+        SchemaSnapshot first = table.getSchema();
+        assertSame("Snapshot rebuilt without a schema change", first, table.getSchema());
+        assertEquals(COLUMNS.length, first.getColumnCount());
+        for (int c = 0; c < first.getColumnCount(); c++) {
+            ColumnMetaData metaData = first.getColumnMetaData()[c];
+            if (c > 0) {
+                assertTrue("Columns out of id order", first.getColumnMetaData()[c - 1].getId() < metaData.getId());
+            }
+            assertEquals(c, first.indexOf(metaData.getName()));
+            assertSame(table.getColumn(metaData.getId()), first.getColumn(metaData.getName()));
+            assertSame(first.getColumns()[c], first.getColumnList().get(c));
+        }
+        assertEquals(-1, first.indexOf("missing"));
+        assertNull(first.getColumn("missing"));
+        try {
+            first.getColumnList().remove(0);
+            fail("Column list of a snapshot modified");
+        } catch (UnsupportedOperationException ex) {
+        }
+
+        //renames make a new snapshot, the old one keeps its lookup
+        int namePos = first.indexOf("name");
+        table.renameColumn(first.getColumn("name").getMetaData().getId(), "alias");
+        SchemaSnapshot renamed = table.getSchema();
+        assertNotSame(first, renamed);
+        assertTrue(renamed.getVersion() > first.getVersion());
+        assertEquals(namePos, renamed.indexOf("alias"));
+        assertEquals(-1, renamed.indexOf("name"));
+        assertEquals(namePos, first.indexOf("name"));
+        table.addRows(new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList("renamed"), 0, "alias", Type.STRING))));
+        assertEquals("renamed", renamed.getColumn("alias").getString(100));
+
+        int extraId = table.createColumn("extra", Type.INTEGER);
+        SchemaSnapshot created = table.getSchema();
+        assertEquals(COLUMNS.length + 1, created.getColumnCount());
+        assertEquals(COLUMNS.length, created.indexOf("extra"));
+        assertTrue("Existing rows got a value in a new column", created.getColumn("extra").isNull(0));
+
+        table.dropColumn(table.getSchema().getColumn("score").getMetaData().getId());
+        SchemaSnapshot dropped = table.getSchema();
+        assertEquals(COLUMNS.length, dropped.getColumnCount());
+        assertEquals(-1, dropped.indexOf("score"));
+        assertSame(table.getColumn(extraId), dropped.getColumn("extra"));
+        assertEquals(COLUMNS.length + 1, created.getColumnCount());
+    }
+
+    @Test(timeout = 300000L)
+    public void testQueryResultsAreCopies() throws Exception {
+        createPeople();
+
+        //all columns of the matching rows
+        RowCursor rows = new RelationImpl(storage, Arrays.asList("people"), Arrays.asList("*"),
+                Expressions.createExpression(Operator.LT, Constants.createColumnNameConstant("id"), Constants.createLiteralConstant("200"))).getRows();
+        checkResult(rows, 1, 199);
+
+        //a projection of all live rows, statements after the query change nothing it returns
+        rows = new RelationImpl(storage, Arrays.asList("people"), Arrays.asList("note", "born", "active", "score"), null).getRows();
+        ArrayIntList updated = new ArrayIntList();
+        updated.add(1);
+        table.updateRows(IntIteratorWrapper.wrap(updated.iterator()), new SimpleRowCursor(Arrays.asList(new SimpleColumn(Arrays.asList("changed"), 5, "note", Type.STRING))));
+        table.deleteRow(2);
+        checkResult(rows, 1, ROWS);
+    }
+
+    /**
+     * Checks that a result holds the live rows with ids from from to to, in
+     * id order.
+     */
+    private void checkResult(RowCursor rows, int from, int to) {
+        for (int rowId = live.nextSetBit(from); rowId >= 0 && rowId <= to; rowId = live.nextSetBit(rowId + 1)) {
+            assertTrue("Row " + rowId + " missing", rows.next());
+            RowMetaData metaData = rows.getMetaData();
+            assertEquals(rowId, metaData.getId());
+            ColumnMetaData[] columns = new ColumnMetaData[metaData.getColumnCount()];
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = metaData.getColumnMetaData(c);
+            }
+            checkRow(rows, rowId, columns);
+        }
+        assertFalse(rows.next());
+    }
+}
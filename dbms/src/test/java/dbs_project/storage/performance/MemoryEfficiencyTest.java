@@ -16,6 +16,11 @@
 package dbs_project.storage.performance;
 
 import dbs_project.database.DatabaseFactory;
+import dbs_project.index.Index;
+import dbs_project.index.IndexLayer;
+import dbs_project.index.IndexType;
+import dbs_project.index.IndexableTable;
+import dbs_project.storage.ExtendedColumn;
 import dbs_project.storage.Row;
 import dbs_project.storage.RowCursor;
 import dbs_project.storage.RowMetaData;
@@ -27,10 +32,15 @@ import dbs_project.util.IntIteratorWrapper;
 import dbs_project.util.SimpleColumn;
 import dbs_project.util.SimpleRowCursor;
 import dbs_project.util.Utils;
+import dbs_project.utilImpl.ChunkedIntList;
+import dbs_project.utilImpl.ChunkedList;
+import dbs_project.utilImpl.RunLengthIntList;
+import dbs_project.utilImpl.StringArenaList;
 
 import java.util.List;
 
 import org.apache.commons.collections.primitives.ArrayIntList;
+import org.apache.commons.collections.primitives.IntList;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -44,6 +54,10 @@ public class MemoryEfficiencyTest {
 
     public static final int ROW_BASE_COUNT = 5000;
     public static final int ITER = 2000;
+    public static final int RUN_VALUE_COUNT = 4000000;
+    public static final int RUN_LENGTH = 1000;
+    public static final int STRING_VALUE_COUNT = 1000000;
+    public static final int ACCOUNTING_ITER = 100;
     
     private Type[] types;
     private long checksum = 0;
@@ -99,6 +113,120 @@ public class MemoryEfficiencyTest {
         }
     }
     
+    @Test(timeout = 300000)
+    public void runLengthHeapTest() throws Exception {
+        Utils.getOut().println("Comparing plain and run length encoded integer columns.");
+        long base = usedMemory();
+        IntList plain = new ChunkedIntList();
+        for (int i = 0; i < RUN_VALUE_COUNT; ++i) {
+            plain.add(i / RUN_LENGTH);
+        }
+        long plainMemory = usedMemory() - base;
+
+        base = usedMemory();
+        IntList runs = new RunLengthIntList(plain);
+        long runMemory = usedMemory() - base;
+
+        // both lists have to hold the same values
+        assertEquals(plain.size(), runs.size());
+        for (int i = 0; i < RUN_VALUE_COUNT; i += 997) {
+            assertEquals(plain.get(i), runs.get(i));
+        }
+        assertEquals(RUN_VALUE_COUNT / RUN_LENGTH, ((RunLengthIntList) runs).getRunCount());
+        assertTrue("Run length encoding did not save memory: " + runMemory + " vs. " + plainMemory + " bytes",
+                runMemory * 10 < plainMemory);
+
+        Utils.getOut().println("Plain: " + plainMemory + " bytes, run length encoded: " + runMemory + " bytes");
+        Utils.getOut().println(
+        	"<measurements layer=\"storage\">\r\n" +  
+        	"<measurement><name>rle footprint</name><scale>" + RUN_VALUE_COUNT + "</scale><value>" + runMemory / 1024f / 1024f + "</value></measurement>\r\n" + 
+        	"</measurements>"
+        );
+        Utils.getOut().println();
+    }
+
+    @Test
+    public void stringArenaHeapTest() throws Exception {
+        Utils.getOut().println("Comparing plain and arena string columns.");
+        long base = usedMemory();
+        List<String> plain = new ChunkedList<>();
+        for (int i = 0; i < STRING_VALUE_COUNT; ++i) {
+            plain.add("comment " + i + " carefully final deposits");
+        }
+        long plainMemory = usedMemory() - base;
+
+        base = usedMemory();
+        StringArenaList arena = new StringArenaList(plain);
+        long arenaMemory = usedMemory() - base;
+
+        // both lists have to hold the same values
+        assertEquals(plain.size(), arena.size());
+        for (int i = 0; i < STRING_VALUE_COUNT; i += 997) {
+            assertEquals(plain.get(i), arena.get(i));
+            assertTrue(arena.equalsBytes(i, StringArenaList.encode(plain.get(i))));
+        }
+        assertTrue("Arena storage did not save memory: " + arenaMemory + " vs. " + plainMemory + " bytes",
+                arenaMemory * 2 < plainMemory);
+
+        Utils.getOut().println("Plain: " + plainMemory + " bytes, arena: " + arenaMemory + " bytes");
+        Utils.getOut().println(
+        	"<measurements layer=\"storage\">\r\n" +  
+        	"<measurement><name>string arena footprint</name><scale>" + STRING_VALUE_COUNT + "</scale><value>" + arenaMemory / 1024f / 1024f + "</value></measurement>\r\n" + 
+        	"</measurements>"
+        );
+        Utils.getOut().println();
+    }
+
+    @Test(timeout = 300000)
+    public void memoryAccountingTest() throws Exception {
+        Utils.getOut().println("Comparing the memory accounting with the heap.");
+        long base = usedMemory();
+        IndexLayer storage = DatabaseFactory.INSTANCE.createInstance().getIndexLayer();
+        List<SimpleColumn> columns = StorageTest.generateColumns(0);
+        IndexableTable table = (IndexableTable) Utils.createEmptyTableForSimpleColumns("accounting", columns, storage);
+        for (int i = 0; i < ACCOUNTING_ITER; ++i) {
+            columns = StorageTest.generateColumns(ROW_BASE_COUNT);
+            table.addRows(new SimpleRowCursor(columns));
+        }
+        long measured = usedMemory() - base;
+        long estimated = storage.getMemoryUsage();
+
+        // the estimate has to be close to what the heap holds
+        assertTrue("Estimate " + estimated + " bytes is far from " + measured + " measured bytes",
+                estimated * 2 > measured && estimated < measured * 2);
+
+        // the table is the sum of its columns and its bitmap of live rows
+        long parts = table.getDeleteListMemoryUsage();
+        for (int i = 0; i < table.getTableMetaData().getTableSchema().size(); ++i) {
+            parts += ((ExtendedColumn) table.getColumn(i)).getMemoryUsage();
+        }
+        assertEquals(estimated, table.getMemoryUsage());
+        assertEquals(parts, table.getMemoryUsage());
+
+        // indexes are accounted on their own and as part of the table
+        assertEquals(0, storage.getIndexMemoryUsage());
+        int columnId = table.getTableMetaData().getTableSchema().get("Integer1").getId();
+        Index hash = table.getIndex(table.createIndex("hash", columnId, IndexType.HASH));
+        Index tree = table.getIndex(table.createIndex("tree", columnId, IndexType.TREE));
+        assertTrue(hash.getMemoryUsage() > 0 && tree.getMemoryUsage() > 0);
+        assertEquals(hash.getMemoryUsage() + tree.getMemoryUsage(), storage.getIndexMemoryUsage());
+        assertEquals(estimated + storage.getIndexMemoryUsage(), storage.getMemoryUsage());
+
+        String report = storage.getMemoryReport();
+        assertTrue(report.contains("table accounting: " + storage.getMemoryUsage() + " bytes"));
+        assertTrue(report.contains("index hash HASH: " + hash.getMemoryUsage() + " bytes"));
+        assertTrue(report.endsWith("total: " + storage.getMemoryUsage() + " bytes\n"));
+
+        Utils.getOut().println("Measured: " + measured + " bytes, estimated: " + estimated + " bytes");
+        Utils.getOut().print(report);
+        Utils.getOut().println(
+        	"<measurements layer=\"storage\">\r\n" +  
+        	"<measurement><name>accounted footprint</name><scale>" + ACCOUNTING_ITER + "</scale><value>" + estimated / 1024f / 1024f + "</value></measurement>\r\n" + 
+        	"</measurements>"
+        );
+        Utils.getOut().println();
+    }
+
     private void computeCheckSum(Table table) throws Exception {
         RowCursor retrievedRowsCursor = table.getRows();
         if (retrievedRowsCursor.next()) {
@@ -142,6 +270,13 @@ public class MemoryEfficiencyTest {
         }
     }
 
+    private static long usedMemory() {
+        for (int i = 0; i < 5; ++i) {
+            System.gc();
+        }
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
     private static void printMemory() {
         for (int i = 0; i < 5; ++i) {
             System.gc();
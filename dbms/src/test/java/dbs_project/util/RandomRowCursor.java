@@ -161,6 +161,11 @@ public final class RandomRowCursor implements RowCursor, RowMetaData {
             return positionInColumn;
         }
 
+        @Override
+        public ColumnStatistics getStatistics() {
+            return null;
+        }
+
         @Override
         public int getId() {
             return index;